@@ -0,0 +1,312 @@
+package com.handoitasdf.drive_checker;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntConsumer;
+import java.util.function.LongConsumer;
+
+/**
+ * Streams a file through a fixed number of in-flight chunk reads, digests the chunks in file order, and
+ * optionally writes every chunk to a sink channel at the same offset.
+ *
+ * Every slot owns a buffer and goes through read, digest and write; it takes the next chunk of the file once
+ * its current chunk is both digested and written. Reads and writes may complete out of order, so chunks wait in
+ * {@link #undigested} until all chunks before them have been digested.
+ */
+class AsyncChunkPipeline {
+    private static final int CHUNK_SIZE = 1024 * 1024;
+    private final AsynchronousFileChannel source;
+    private final AsynchronousFileChannel sink;
+    private final ContentHasher digester;
+    private final long size;
+    private final int queueDepth;
+    private final LongConsumer progressListener;
+    private final ChunkIoProbe probe;
+    private final ChunkOperation readOperation;
+    private final ChunkOperation digestOperation;
+    private final ScheduledExecutorService scheduler;
+    private final CompletableFuture<byte[]> result = new CompletableFuture<>();
+    private final TreeMap<Long, Slot> undigested = new TreeMap<>();
+    private final AtomicLong completedBytes = new AtomicLong();
+    private long syncIntervalBytes = 0;
+    private long nextReadOffset = 0;
+    private long digestOffset = 0;
+    private int activeSlots = 0;
+
+    /**
+     * @param sink If null, the chunks are only digested.
+     * @param progressListener Receives the number of bytes which have been written, or digested if there is no
+     *                         sink. It is called from the I/O threads.
+     * @param readOperation How the reads of the source are reported to the probe.
+     * @param scheduler Delays the chunks held back by the throttle of the probe, so that no I/O thread sleeps.
+     */
+    AsyncChunkPipeline(@Nonnull AsynchronousFileChannel source,
+                       @Nullable AsynchronousFileChannel sink,
+                       @Nonnull ContentHasher digester,
+                       long size,
+                       int queueDepth,
+                       @Nonnull LongConsumer progressListener,
+                       @Nonnull ChunkIoProbe probe,
+                       @Nonnull ChunkOperation readOperation,
+                       @Nonnull ScheduledExecutorService scheduler) {
+        this.source = source;
+        this.sink = sink;
+        this.digester = digester;
+        this.size = size;
+        this.queueDepth = queueDepth;
+        this.progressListener = progressListener;
+        this.probe = probe;
+        this.readOperation = readOperation;
+        this.digestOperation = ChunkOperation.SOURCE_READ.equals(readOperation)
+                ? ChunkOperation.SOURCE_DIGEST
+                : ChunkOperation.TARGET_DIGEST;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Sync the sink to the drive whenever the bytes written so far pass a multiple of the interval, and at the
+     * end. The writes complete out of order, so the synced bytes are a count, not a range of the file; the sync
+     * is timed with the write which passes the multiple.
+     *
+     * @param bytes 0 not to sync.
+     */
+    void setSyncIntervalBytes(long bytes) {
+        this.syncIntervalBytes = bytes;
+    }
+
+    void start() {
+        int slotCount = (int) Math.min(queueDepth, (size + CHUNK_SIZE - 1) / CHUNK_SIZE);
+        synchronized (this) {
+            activeSlots = slotCount;
+        }
+        if (slotCount == 0) {
+            result.complete(digester.digest());
+            return;
+        }
+        for (int i = 0; i < slotCount; ++i) {
+            new Slot().next();
+        }
+    }
+
+    /**
+     * Fail the result with a {@link CancellationException}. The chunks in flight are finished, but no new chunk
+     * is started.
+     */
+    void cancel() {
+        result.completeExceptionally(new CancellationException("Asynchronous I/O is canceled"));
+    }
+
+    /**
+     * @return Completes with the digest of the source once all chunks are processed.
+     */
+    @Nonnull
+    CompletableFuture<byte[]> getResult() {
+        return result;
+    }
+
+    /**
+     * Wait for the result of a pipeline, or of a stage chained on it.
+     */
+    static <T> T await(@Nonnull CompletableFuture<T> future)
+            throws IOException, InterruptedException, CancellationException {
+        try {
+            return future.get();
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof CancellationException) {
+                throw (CancellationException) cause;
+            }
+            throw new IOException("Asynchronous I/O fails", cause);
+        }
+    }
+
+    private void fail(@Nonnull Throwable cause) {
+        result.completeExceptionally(cause);
+    }
+
+    private void digest(@Nonnull Slot slot) {
+        List<Slot> recyclable = new ArrayList<>();
+        synchronized (this) {
+            undigested.put(slot.offset, slot);
+            Slot next;
+            while ((next = undigested.remove(digestOffset)) != null) {
+                long startNanos = probe.start(digestOperation, next.offset, next.length);
+                try {
+                    digester.update(next.buffer.array(), 0, next.length);
+                } finally {
+                    probe.finish(digestOperation, next.offset, next.length, startNanos);
+                }
+                digestOffset += next.length;
+                next.digested = true;
+                if (next.written) {
+                    recyclable.add(next);
+                }
+            }
+        }
+        if (sink == null) {
+            progressListener.accept(completedBytes.addAndGet(slot.length));
+        }
+        for (Slot next : recyclable) {
+            next.next();
+        }
+    }
+
+    private synchronized void onSlotRetired() {
+        --activeSlots;
+        if (activeSlots == 0 && digestOffset == size) {
+            result.complete(digester.digest());
+        }
+    }
+
+    private class Slot {
+        private final ByteBuffer buffer = ByteBuffer.allocate(CHUNK_SIZE);
+        private long offset;
+        private int length;
+        private boolean digested;
+        private boolean written;
+
+        // The operation in flight, so that it's finished even if it fails; null if there is none.
+        private ChunkOperation operation;
+        private long operationStartNanos;
+
+        private void next() {
+            synchronized (AsyncChunkPipeline.this) {
+                if (result.isDone() || nextReadOffset >= size) {
+                    onSlotRetired();
+                    return;
+                }
+                offset = nextReadOffset;
+                length = (int) Math.min(CHUNK_SIZE, size - offset);
+                nextReadOffset += length;
+                digested = false;
+                written = sink == null;
+            }
+            buffer.clear();
+            buffer.limit(length);
+            long waitNanos = probe.reserve(sink != null ? ChunkOperation.TARGET_WRITE : readOperation, length);
+            if (waitNanos > 0) {
+                scheduler.schedule(() -> {
+                    try {
+                        startRead();
+                    } catch (RuntimeException ex) {
+                        fail(ex);
+                    }
+                }, waitNanos, TimeUnit.NANOSECONDS);
+            } else {
+                startRead();
+            }
+        }
+
+        private void startRead() {
+            if (result.isDone()) {
+                return;
+            }
+            startOperation(readOperation);
+            read();
+        }
+
+        private void read() {
+            source.read(buffer, offset + buffer.position(), null, handler(nRead -> {
+                if (nRead < 0) {
+                    fail(new IOException("Unexpected end of file at offset " + (offset + buffer.position())));
+                } else if (buffer.hasRemaining()) {
+                    read();
+                } else {
+                    finishOperation();
+                    if (sink != null) {
+                        buffer.flip();
+                        startOperation(ChunkOperation.TARGET_WRITE);
+                        write();
+                    }
+                    digest(this);
+                }
+            }));
+        }
+
+        private void write() {
+            if (result.isDone()) {
+                finishOperation();
+                return;
+            }
+            sink.write(buffer, offset + buffer.position(), null, handler(nWritten -> {
+                if (buffer.hasRemaining()) {
+                    write();
+                    return;
+                }
+                long writtenBytes = completedBytes.addAndGet(length);
+                long previousBytes = writtenBytes - length;
+                if (syncIntervalBytes > 0
+                        && (writtenBytes / syncIntervalBytes > previousBytes / syncIntervalBytes
+                        || writtenBytes >= size)) {
+                    try {
+                        sink.force(false);
+                    } catch (IOException ex) {
+                        fail(ex);
+                        return;
+                    }
+                }
+                finishOperation();
+                progressListener.accept(writtenBytes);
+                boolean recyclable;
+                synchronized (AsyncChunkPipeline.this) {
+                    written = true;
+                    recyclable = digested;
+                }
+                if (recyclable) {
+                    next();
+                }
+            }));
+        }
+
+        private void startOperation(@Nonnull ChunkOperation nextOperation) {
+            operation = nextOperation;
+            operationStartNanos = probe.start(nextOperation, offset, length);
+        }
+
+        private void finishOperation() {
+            if (operation != null) {
+                probe.finish(operation, offset, length, operationStartNanos);
+                operation = null;
+            }
+        }
+
+        private void fail(@Nonnull Throwable cause) {
+            finishOperation();
+            AsyncChunkPipeline.this.fail(cause);
+        }
+
+        @Nonnull
+        private CompletionHandler<Integer, Void> handler(@Nonnull IntConsumer onCompleted) {
+            return new CompletionHandler<Integer, Void>() {
+                @Override
+                public void completed(Integer nBytes, Void attachment) {
+                    try {
+                        onCompleted.accept(nBytes);
+                    } catch (RuntimeException ex) {
+                        fail(ex);
+                    }
+                }
+
+                @Override
+                public void failed(Throwable exc, Void attachment) {
+                    fail(exc);
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.handoitasdf.drive_checker;
+
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.file.StandardOpenOption;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Checks the digest of a file with an asynchronous file channel, keeping several chunk reads in flight.
+ */
+public class AsyncFileChecker implements Verifier {
+    private static final Logger LOGGER = LoggerFactory.getLogger(AsyncFileChecker.class);
+    private final File file;
+    private final MessageDigestProvider digestProvider;
+    private final AsyncIoEngine engine;
+    private volatile boolean canceled = false;
+    private volatile AsyncChunkPipeline pipeline;
+    private final ChunkIoProbe probe = new ChunkIoProbe();
+
+    public AsyncFileChecker(@Nonnull File file,
+                            @Nonnull MessageDigestProvider digestProvider,
+                            @Nonnull AsyncIoEngine engine) {
+        this.file = file;
+        this.digestProvider = digestProvider;
+        this.engine = engine;
+    }
+
+    @Override
+    public boolean check(byte[] digest) throws IOException, InterruptedException, CancellationException {
+        try {
+            return AsyncChunkPipeline.await(checkAsync(digest));
+        } catch (InterruptedException ex) {
+            cancel();
+            throw ex;
+        }
+    }
+
+    /**
+     * Start reading the file back without waiting for it.
+     *
+     * @return Completes with true if the file has the given digest, or exceptionally if it can't be read or the
+     *         check is canceled.
+     */
+    @Nonnull
+    CompletableFuture<Boolean> checkAsync(@Nonnull byte[] digest) {
+        LOGGER.debug("Checking digest of file {} asynchronously", file.getPath());
+        AsynchronousFileChannel channel = null;
+        try {
+            channel = engine.open(file.toPath(), StandardOpenOption.READ);
+            AsyncChunkPipeline newPipeline = new AsyncChunkPipeline(
+                    channel,
+                    null,
+                    digestProvider.getContentHasher(),
+                    channel.size(),
+                    engine.getQueueDepth(),
+                    nBytes -> { },
+                    probe,
+                    ChunkOperation.TARGET_READ,
+                    engine.getScheduler());
+            pipeline = newPipeline;
+
+            // A cancellation racing with the start may have missed the new pipeline.
+            if (canceled) {
+                newPipeline.cancel();
+            }
+            newPipeline.start();
+            AsynchronousFileChannel openChannel = channel;
+            return newPipeline.getResult()
+                    .thenApply(actual -> Arrays.equals(actual, digest))
+                    .whenComplete((matched, failure) -> IOUtils.closeQuietly(openChannel));
+        } catch (IOException | NoSuchAlgorithmException ex) {
+            IOUtils.closeQuietly(channel);
+            return CompletableFuture.failedFuture(ex instanceof IOException
+                    ? ex
+                    : new IOException("Fail to instantiate message digest", ex));
+        }
+    }
+
+    @Override
+    public void cancel() {
+        canceled = true;
+        AsyncChunkPipeline currentPipeline = pipeline;
+        if (currentPipeline != null) {
+            currentPipeline.cancel();
+        }
+    }
+
+    @Override
+    public void setChunkIoListener(@Nullable ChunkIoListener listener) {
+        probe.setListener(listener);
+    }
+
+    @Override
+    public void setThrottle(@Nullable ChunkThrottle throttle) {
+        probe.setThrottle(throttle);
+    }
+}
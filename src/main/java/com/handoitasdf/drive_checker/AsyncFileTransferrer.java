@@ -0,0 +1,166 @@
+package com.handoitasdf.drive_checker;
+
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.file.StandardOpenOption;
+import java.security.NoSuchAlgorithmException;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Transfers the test file with asynchronous file channels, keeping several chunk reads and writes in flight.
+ */
+public class AsyncFileTransferrer implements Transferrer {
+    private static final Logger LOGGER = LoggerFactory.getLogger(AsyncFileTransferrer.class);
+    private final File inputFile;
+    private final File outputFile;
+    private final MessageDigestProvider digestProvider;
+    private final AsyncIoEngine engine;
+    private volatile byte[] digest = new byte[0];
+    private volatile boolean canceled = false;
+    private volatile AsyncChunkPipeline pipeline;
+    private boolean preallocated = false;
+    private long syncIntervalBytes = 0;
+    private FileTransferrerListener listener;
+    private final ChunkIoProbe probe = new ChunkIoProbe();
+
+    public AsyncFileTransferrer(@Nonnull File inputFile,
+                                @Nonnull File outputFile,
+                                @Nonnull MessageDigestProvider digestProvider,
+                                @Nonnull AsyncIoEngine engine) {
+        this.inputFile = inputFile;
+        this.outputFile = outputFile;
+        this.digestProvider = digestProvider;
+        this.engine = engine;
+    }
+
+    @Override
+    public void transfer() throws IOException, InterruptedException, CancellationException {
+        try {
+            AsyncChunkPipeline.await(transferAsync());
+        } catch (InterruptedException ex) {
+            cancel();
+            throw ex;
+        }
+    }
+
+    /**
+     * Start the transfer without waiting for it.
+     *
+     * @return Completes with the digest of the test file once it's written, or exceptionally if the transfer
+     *         fails or is canceled.
+     */
+    @Nonnull
+    CompletableFuture<byte[]> transferAsync() {
+        AsynchronousFileChannel inputChannel = null;
+        AsynchronousFileChannel outputChannel = null;
+        try {
+            inputChannel = engine.open(inputFile.toPath(), StandardOpenOption.READ);
+            Set<StandardOpenOption> outputOptions = EnumSet.of(StandardOpenOption.WRITE);
+            if (!preallocated) {
+                outputOptions.add(StandardOpenOption.CREATE);
+                outputOptions.add(StandardOpenOption.TRUNCATE_EXISTING);
+            }
+            outputChannel = engine.open(outputFile.toPath(), outputOptions.toArray(new StandardOpenOption[0]));
+            long inputSize = inputChannel.size();
+            LOGGER.debug("Transferring {} bytes to {} asynchronously", inputSize, outputFile.getPath());
+            invokeListenerDataTransferred(0);
+            AsyncChunkPipeline newPipeline = new AsyncChunkPipeline(
+                    inputChannel,
+                    outputChannel,
+                    digestProvider.getContentHasher(),
+                    inputSize,
+                    engine.getQueueDepth(),
+                    this::invokeListenerDataTransferred,
+                    probe,
+                    ChunkOperation.SOURCE_READ,
+                    engine.getScheduler());
+            newPipeline.setSyncIntervalBytes(syncIntervalBytes);
+            pipeline = newPipeline;
+
+            // A cancellation racing with the start may have missed the new pipeline.
+            if (canceled) {
+                newPipeline.cancel();
+            }
+            newPipeline.start();
+            AsynchronousFileChannel input = inputChannel;
+            AsynchronousFileChannel output = outputChannel;
+            return newPipeline.getResult().thenApply(newDigest -> {
+                try {
+                    if (output.size() > inputSize) {
+                        output.truncate(inputSize);
+                    }
+                } catch (IOException ex) {
+                    throw new CompletionException(ex);
+                }
+                digest = newDigest;
+                return newDigest;
+            }).whenComplete((newDigest, failure) -> {
+                IOUtils.closeQuietly(input);
+                IOUtils.closeQuietly(output);
+            });
+        } catch (IOException | NoSuchAlgorithmException ex) {
+            IOUtils.closeQuietly(inputChannel);
+            IOUtils.closeQuietly(outputChannel);
+            return CompletableFuture.failedFuture(ex instanceof IOException
+                    ? ex
+                    : new IOException("Fail to instantiate MD5 instance", ex));
+        }
+    }
+
+    @Override
+    public void cancel() {
+        canceled = true;
+        AsyncChunkPipeline currentPipeline = pipeline;
+        if (currentPipeline != null) {
+            currentPipeline.cancel();
+        }
+    }
+
+    @Override
+    @Nonnull
+    public byte[] getDigest() {
+        return digest;
+    }
+
+    @Override
+    public void setListener(@Nullable FileTransferrerListener listener) {
+        this.listener = listener;
+    }
+
+    @Override
+    public void setChunkIoListener(@Nullable ChunkIoListener listener) {
+        probe.setListener(listener);
+    }
+
+    @Override
+    public void setThrottle(@Nullable ChunkThrottle throttle) {
+        probe.setThrottle(throttle);
+    }
+
+    @Override
+    public void setPreallocated(boolean preallocated) {
+        this.preallocated = preallocated;
+    }
+
+    @Override
+    public void setSyncIntervalBytes(long bytes) {
+        this.syncIntervalBytes = bytes;
+    }
+
+    private void invokeListenerDataTransferred(long nBytes) {
+        if (listener != null) {
+            listener.onDataTransferred(nBytes);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.handoitasdf.drive_checker;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A fixed thread pool shared by the asynchronous file channels of all drives, so that the number of I/O threads
+ * doesn't grow with the number of drives.
+ */
+public class AsyncIoEngine implements Closeable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(AsyncIoEngine.class);
+    private final ExecutorService executor;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "async-io-scheduler");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final int threadCount;
+    private final int queueDepth;
+
+    public AsyncIoEngine(@Nonnull CheckOptions options) {
+        this.threadCount = options.getAsyncThreadCount() > 0
+                ? options.getAsyncThreadCount()
+                : Runtime.getRuntime().availableProcessors();
+        this.queueDepth = Math.max(1, options.getAsyncQueueDepth());
+        AtomicInteger threadIndex = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(threadCount, runnable -> {
+            Thread thread = new Thread(runnable, "async-io-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        LOGGER.info("Async I/O engine started with {} threads and queue depth {}", threadCount, queueDepth);
+    }
+
+    @Nonnull
+    public AsynchronousFileChannel open(@Nonnull Path path, @Nonnull OpenOption... options) throws IOException {
+        return AsynchronousFileChannel.open(path, new HashSet<>(Arrays.asList(options)), executor);
+    }
+
+    public int getThreadCount() {
+        return threadCount;
+    }
+
+    /**
+     * @return Number of chunk operations kept in flight for each drive.
+     */
+    public int getQueueDepth() {
+        return queueDepth;
+    }
+
+    /**
+     * @return Schedules the chunk operations which have to wait, e.g. for the throttle.
+     */
+    @Nonnull
+    public ScheduledExecutorService getScheduler() {
+        return scheduler;
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,441 @@
+package com.handoitasdf.drive_checker;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Reads and hashes the test file once per pass, and fans the chunks out to all subscribed drives.
+ *
+ * A pass starts once every registered drive has subscribed to it; a drive which subscribes while a pass is
+ * running waits for the next one. A drive which hasn't subscribed within the gather timeout is left out of the
+ * passes until it subscribes again, so that a dead drive doesn't hold the others.
+ *
+ * Chunks are shared by the subscribers and reference counted, so a buffer goes back to the pool as soon as
+ * the last drive has written it. Each subscriber may lag behind the reader by a bounded number of chunks;
+ * when a subscriber stays full for longer than the detach timeout, it is detached from the pass and
+ * continues on its own stream of the test file, so that a slow drive doesn't stall the others.
+ */
+public class BroadcastSource implements Closeable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(BroadcastSource.class);
+    private static final int CHUNK_SIZE = 1024 * 1024;
+    private final Chunk endOfPass = new Chunk(new byte[0], 0, -1, 0);
+    private final File sourceFile;
+    private final MessageDigestProvider digestProvider;
+    private final int maxLagChunks;
+    private final long detachTimeoutMillis;
+    private final long gatherTimeoutMillis;
+    private final Object lock = new Object();
+    private final Set<Participant> participants = new HashSet<>();
+    private final List<Subscription> waitingSubscriptions = new ArrayList<>();
+    private final Queue<byte[]> bufferPool = new ConcurrentLinkedQueue<>();
+    private final AtomicLong sourceBytesRead = new AtomicLong();
+    private final Thread readerThread;
+    private long firstWaitingNanos;
+    private long lastPassDoneNanos;
+    private volatile boolean closed = false;
+
+    public BroadcastSource(@Nonnull File sourceFile,
+                           @Nonnull MessageDigestProvider digestProvider,
+                           @Nonnull CheckOptions options) {
+        this.sourceFile = sourceFile;
+        this.digestProvider = digestProvider;
+        this.maxLagChunks = Math.max(1, options.getBroadcastMaxLagChunks());
+        this.detachTimeoutMillis = options.getBroadcastDetachTimeoutMillis();
+        this.gatherTimeoutMillis = options.getBroadcastGatherTimeoutMillis();
+        readerThread = new Thread(this::runReader, "broadcast-reader");
+        readerThread.setDaemon(true);
+        readerThread.start();
+    }
+
+    @Nonnull
+    public File getSourceFile() {
+        return sourceFile;
+    }
+
+    /**
+     * @return Total number of bytes read from the test file by the broadcast reader.
+     */
+    public long getSourceBytesRead() {
+        return sourceBytesRead.get();
+    }
+
+    /**
+     * Register a drive which will subscribe to the passes. The passes wait for all registered drives.
+     */
+    @Nonnull
+    public Participant register() {
+        synchronized (lock) {
+            Participant participant = new Participant();
+            participants.add(participant);
+            return participant;
+        }
+    }
+
+    @Override
+    public void close() {
+        synchronized (lock) {
+            closed = true;
+            lock.notifyAll();
+        }
+        readerThread.interrupt();
+        LOGGER.info("Broadcast source closed, {} bytes read from {}", sourceBytesRead.get(), sourceFile.getPath());
+    }
+
+    private void runReader() {
+        try {
+            while (!closed) {
+                runPass(awaitPassSubscriptions());
+            }
+        } catch (InterruptedException ex) {
+            LOGGER.debug("Broadcast reader is interrupted");
+        }
+    }
+
+    @Nonnull
+    private List<Subscription> awaitPassSubscriptions() throws InterruptedException {
+        synchronized (lock) {
+            while (true) {
+                if (closed) {
+                    throw new InterruptedException("Broadcast source is closed");
+                }
+                if (waitingSubscriptions.isEmpty()) {
+                    lock.wait();
+                    continue;
+                }
+                List<Participant> missing = getMissingParticipants();
+
+                // The drives which subscribed during the last pass have waited for it, not for the others.
+                long waitedMillis = TimeUnit.NANOSECONDS.toMillis(
+                        System.nanoTime() - Math.max(firstWaitingNanos, lastPassDoneNanos));
+                if (!missing.isEmpty() && waitedMillis < gatherTimeoutMillis) {
+                    lock.wait(gatherTimeoutMillis - waitedMillis);
+                    continue;
+                }
+                if (!missing.isEmpty()) {
+                    LOGGER.warn("{} drives haven't subscribed to the broadcast in {} ms, leaving them out until "
+                            + "they do", missing.size(), gatherTimeoutMillis);
+                    for (Participant participant : missing) {
+                        participant.absent = true;
+                    }
+                }
+                List<Subscription> subscriptions = new ArrayList<>(waitingSubscriptions);
+                waitingSubscriptions.clear();
+                Pass pass = new Pass();
+                for (Subscription subscription : subscriptions) {
+                    subscription.pass = pass;
+                }
+                lock.notifyAll();
+                return subscriptions;
+            }
+        }
+    }
+
+    /**
+     * @return The registered drives which the next pass still waits for.
+     */
+    @Nonnull
+    private List<Participant> getMissingParticipants() {
+        Set<Participant> waiting = new HashSet<>();
+        for (Subscription subscription : waitingSubscriptions) {
+            waiting.add(subscription.participant);
+        }
+        List<Participant> missing = new ArrayList<>();
+        for (Participant participant : participants) {
+            if (!participant.absent && !waiting.contains(participant)) {
+                missing.add(participant);
+            }
+        }
+        return missing;
+    }
+
+    private void runPass(@Nonnull List<Subscription> subscriptions) throws InterruptedException {
+        Pass pass = subscriptions.get(0).pass;
+        List<Subscription> attached = new ArrayList<>(subscriptions);
+        LOGGER.debug("Broadcast pass started with {} drives", attached.size());
+        long offset = 0;
+        try (FileInputStream inputStream = new FileInputStream(sourceFile)) {
+            ContentHasher digester = digestProvider.getContentHasher();
+            while (true) {
+                byte[] buffer = acquireBuffer();
+                int nRead = inputStream.read(buffer);
+                if (nRead < 0) {
+                    bufferPool.offer(buffer);
+                    break;
+                }
+                digester.update(buffer, 0, nRead);
+                sourceBytesRead.addAndGet(nRead);
+                attached.removeIf(Subscription::isClosed);
+                Chunk chunk = new Chunk(buffer, nRead, offset, attached.size());
+                if (attached.isEmpty()) {
+                    bufferPool.offer(buffer);
+                }
+                for (Iterator<Subscription> iterator = attached.iterator(); iterator.hasNext(); ) {
+                    Subscription subscription = iterator.next();
+                    if (!subscription.queue.offer(chunk, detachTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                        chunk.release();
+                        subscription.detach(offset);
+                        iterator.remove();
+                    }
+                }
+                offset += nRead;
+            }
+            pass.complete(digester.digest());
+            for (Subscription subscription : attached) {
+                if (!subscription.queue.offer(endOfPass, detachTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                    subscription.detach(offset);
+                }
+            }
+        } catch (NoSuchAlgorithmException ex) {
+            pass.fail(new IOException("Fail to instantiate message digest", ex));
+        } catch (IOException ex) {
+            pass.fail(ex);
+        } catch (InterruptedException ex) {
+            pass.fail(new InterruptedIOException("Broadcast reader is interrupted"));
+            throw ex;
+        } finally {
+            synchronized (lock) {
+                lastPassDoneNanos = System.nanoTime();
+                lock.notifyAll();
+            }
+        }
+    }
+
+    @Nonnull
+    private byte[] acquireBuffer() {
+        byte[] buffer = bufferPool.poll();
+        return buffer != null ? buffer : new byte[CHUNK_SIZE];
+    }
+
+    /**
+     * A chunk of the test file shared by all drives attached to a pass.
+     */
+    public final class Chunk {
+        private final byte[] data;
+        private final int length;
+        private final long offset;
+        private final AtomicInteger references;
+
+        private Chunk(@Nonnull byte[] data, int length, long offset, int references) {
+            this.data = data;
+            this.length = length;
+            this.offset = offset;
+            this.references = new AtomicInteger(references);
+        }
+
+        @Nonnull
+        public byte[] getData() {
+            return data;
+        }
+
+        public int getLength() {
+            return length;
+        }
+
+        public long getOffset() {
+            return offset;
+        }
+
+        public boolean isEndOfPass() {
+            return this == endOfPass;
+        }
+
+        /**
+         * Release a reference of the chunk. Once all drives have released it, the buffer is recycled.
+         */
+        public void release() {
+            if (!isEndOfPass() && references.decrementAndGet() == 0) {
+                bufferPool.offer(data);
+            }
+        }
+    }
+
+    /**
+     * A drive registered to the passes.
+     */
+    public final class Participant {
+
+        // Left out of the passes since it didn't subscribe in time, until it subscribes again. Guarded by lock.
+        private boolean absent = false;
+
+        private Participant() {
+        }
+
+        @Nonnull
+        public File getSourceFile() {
+            return sourceFile;
+        }
+
+        /**
+         * Subscribe to the next pass, which starts once all registered drives have subscribed. If a pass is
+         * already running, the subscription waits for the next one.
+         */
+        @Nonnull
+        public Subscription subscribe() throws IOException {
+            synchronized (lock) {
+                if (closed) {
+                    throw new IOException("Broadcast source of " + sourceFile.getPath() + " is closed");
+                }
+                if (!participants.contains(this)) {
+                    throw new IllegalStateException("The drive isn't registered to the broadcast");
+                }
+                absent = false;
+                Subscription subscription = new Subscription(this);
+                if (waitingSubscriptions.isEmpty()) {
+                    firstWaitingNanos = System.nanoTime();
+                }
+                waitingSubscriptions.add(subscription);
+                lock.notifyAll();
+                return subscription;
+            }
+        }
+
+        /**
+         * Leave the passes, so that they don't wait for this drive anymore.
+         */
+        public void unregister() {
+            synchronized (lock) {
+                participants.remove(this);
+                lock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * The subscription of a drive to a pass.
+     */
+    public final class Subscription {
+        private final Participant participant;
+        private final BlockingQueue<Chunk> queue;
+        private volatile Pass pass;
+        private volatile long detachedOffset = -1;
+        private volatile boolean closed = false;
+
+        private Subscription(@Nonnull Participant participant) {
+            this.participant = participant;
+            this.queue = new ArrayBlockingQueue<>(maxLagChunks);
+        }
+
+        /**
+         * Wait for the pass to start.
+         *
+         * @return True if the pass has started; false on timeout.
+         */
+        public boolean awaitStart(long timeout, @Nonnull TimeUnit unit) throws IOException, InterruptedException {
+            long deadline = System.nanoTime() + unit.toNanos(timeout);
+            synchronized (lock) {
+                while (pass == null) {
+                    if (BroadcastSource.this.closed) {
+                        throw new IOException("Broadcast source of " + sourceFile.getPath() + " is closed");
+                    }
+                    long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                    if (remainingMillis <= 0) {
+                        return false;
+                    }
+                    lock.wait(remainingMillis);
+                }
+                return true;
+            }
+        }
+
+        /**
+         * @return The next chunk, or null if no chunk arrives in time.
+         */
+        public Chunk poll(long timeout, @Nonnull TimeUnit unit) throws InterruptedException {
+            return queue.poll(timeout, unit);
+        }
+
+        /**
+         * @return True if the reader has detached this subscription and won't deliver chunks anymore.
+         *         The subscriber should catch up from {@link #getDetachedOffset()} on its own.
+         */
+        public boolean isDetached() {
+            return detachedOffset >= 0;
+        }
+
+        public long getDetachedOffset() {
+            return detachedOffset;
+        }
+
+        public boolean isClosed() {
+            return closed;
+        }
+
+        /**
+         * @return True if the pass has failed or finished.
+         */
+        public boolean isPassDone() {
+            return pass != null && pass.done.getCount() == 0;
+        }
+
+        /**
+         * Wait for the pass to finish and return the digest of the test file.
+         *
+         * @return The digest, or null on timeout.
+         */
+        public byte[] awaitDigest(long timeout, @Nonnull TimeUnit unit) throws IOException, InterruptedException {
+            if (!pass.done.await(timeout, unit)) {
+                return null;
+            }
+            if (pass.failure != null) {
+                throw new IOException("Broadcast of test file " + sourceFile.getPath() + " fails", pass.failure);
+            }
+            return pass.digest;
+        }
+
+        /**
+         * Leave the pass and release all chunks that haven't been consumed.
+         */
+        public void close() {
+            closed = true;
+            synchronized (lock) {
+                waitingSubscriptions.remove(this);
+            }
+            Chunk chunk;
+            while ((chunk = queue.poll()) != null) {
+                chunk.release();
+            }
+        }
+
+        private void detach(long offset) {
+            LOGGER.info("Detaching a lagging drive from the broadcast at offset {}", offset);
+            detachedOffset = offset;
+        }
+    }
+
+    private static final class Pass {
+        private final CountDownLatch done = new CountDownLatch(1);
+        private volatile byte[] digest;
+        private volatile IOException failure;
+
+        private void complete(@Nonnull byte[] digest) {
+            this.digest = digest;
+            done.countDown();
+        }
+
+        private void fail(@Nonnull IOException failure) {
+            this.failure = failure;
+            done.countDown();
+        }
+    }
+}
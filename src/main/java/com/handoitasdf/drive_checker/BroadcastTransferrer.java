@@ -0,0 +1,221 @@
+package com.handoitasdf.drive_checker;
+
+import com.handoitasdf.drive_checker.storage.StorageFile;
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes the chunks broadcast by a {@link BroadcastSource} to a target file.
+ *
+ * If the drive subscribes while a pass is running, it waits for the next one; if the drive is detached during
+ * the pass, the rest of the test file is copied from its own stream, and the digest of the pass is used.
+ */
+public class BroadcastTransferrer implements InlineVerifyingTransferrer {
+    private static final Logger LOGGER = LoggerFactory.getLogger(BroadcastTransferrer.class);
+    private static final int CHUNK_SIZE = 1024 * 1024;
+    private static final long POLL_INTERVAL_MILLIS = 100;
+    private final BroadcastSource.Participant participant;
+    private final StorageFile outputFile;
+    private final MessageDigestProvider digestProvider;
+    private byte[] digest = new byte[0];
+    private long outputPosition;
+    private volatile boolean canceled = false;
+    private boolean preallocated = false;
+    private int inlineVerifyWindow = 0;
+    private long syncIntervalBytes = 0;
+    private FileTransferrerListener listener;
+    private ChunkIoListener chunkIoListener;
+    private ChunkThrottle throttle;
+    private final ChunkIoProbe probe = new ChunkIoProbe();
+
+    public BroadcastTransferrer(@Nonnull BroadcastSource.Participant participant,
+                                @Nonnull StorageFile outputFile,
+                                @Nonnull MessageDigestProvider digestProvider) {
+        this.participant = participant;
+        this.outputFile = outputFile;
+        this.digestProvider = digestProvider;
+    }
+
+    @Override
+    public void transfer() throws IOException, InterruptedException, CancellationException {
+        BroadcastSource.Subscription subscription = participant.subscribe();
+        try {
+            while (!subscription.awaitStart(POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS)) {
+                checkCanceled();
+            }
+            transferBroadcast(subscription);
+        } finally {
+            subscription.close();
+        }
+    }
+
+    @Override
+    public void cancel() {
+        canceled = true;
+    }
+
+    @Override
+    @Nonnull
+    public byte[] getDigest() {
+        return digest;
+    }
+
+    @Override
+    public void setListener(@Nullable FileTransferrerListener listener) {
+        this.listener = listener;
+    }
+
+    @Override
+    public void setChunkIoListener(@Nullable ChunkIoListener listener) {
+        this.chunkIoListener = listener;
+        probe.setListener(listener);
+    }
+
+    @Override
+    public void setThrottle(@Nullable ChunkThrottle throttle) {
+        this.throttle = throttle;
+        probe.setThrottle(throttle);
+    }
+
+    @Override
+    public void setPreallocated(boolean preallocated) {
+        this.preallocated = preallocated;
+    }
+
+    @Override
+    public void setSyncIntervalBytes(long bytes) {
+        this.syncIntervalBytes = bytes;
+    }
+
+    @Override
+    public void setInlineVerifyWindow(int windowChunks) {
+        this.inlineVerifyWindow = windowChunks;
+    }
+
+    private void invokeListenerDataTransferred(long nBytes) {
+        if (listener != null) {
+            listener.onDataTransferred(nBytes);
+        }
+    }
+
+    private void checkCanceled() {
+        if (canceled) {
+            throw new CancellationException("Transferring is canceled");
+        }
+    }
+
+    private void transferBroadcast(@Nonnull BroadcastSource.Subscription subscription)
+            throws IOException, InterruptedException {
+        outputPosition = 0;
+        long sourceSize = participant.getSourceFile().length();
+        try (SeekableByteChannel outputChannel = outputFile.openForWrite(!preallocated);
+             InlineVerifier verifier = inlineVerifyWindow > 0
+                     ? new InlineVerifier(outputFile, inlineVerifyWindow, probe) : null) {
+            invokeListenerDataTransferred(outputPosition);
+            while (true) {
+                checkCanceled();
+                BroadcastSource.Chunk chunk = subscription.poll(POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+                if (chunk != null) {
+                    if (chunk.isEndOfPass()) {
+                        break;
+                    }
+                    try {
+                        writeChunk(outputChannel, chunk.getData(), chunk.getLength(), sourceSize);
+                        if (verifier != null) {
+                            verifier.onChunkWritten(outputChannel, outputPosition, chunk.getData(), 0,
+                                    chunk.getLength());
+                        }
+                        outputPosition += chunk.getLength();
+                    } finally {
+                        chunk.release();
+                    }
+                    invokeListenerDataTransferred(outputPosition);
+                } else if (subscription.isDetached()) {
+                    catchUp(outputChannel, verifier, subscription.getDetachedOffset());
+                    break;
+                } else if (subscription.isPassDone()) {
+
+                    // Throws if the pass has failed; otherwise the end of pass is on its way.
+                    subscription.awaitDigest(0, TimeUnit.MILLISECONDS);
+                }
+            }
+            if (verifier != null) {
+                verifier.finish(outputChannel);
+            }
+            if (outputChannel.size() > outputPosition) {
+                outputChannel.truncate(outputPosition);
+            }
+        }
+        byte[] passDigest;
+        while ((passDigest = subscription.awaitDigest(POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS)) == null) {
+            checkCanceled();
+        }
+        digest = passDigest;
+    }
+
+    private void catchUp(@Nonnull SeekableByteChannel outputChannel,
+                         @Nullable InlineVerifier verifier,
+                         long detachedOffset) throws IOException, InterruptedException {
+        if (detachedOffset != outputPosition) {
+            throw new IOException("Detached at offset " + detachedOffset
+                    + ", but " + outputPosition + " bytes were written");
+        }
+        LOGGER.info("Catching up {} from offset {} on its own", outputFile.getPath(), detachedOffset);
+        byte[] buffer = new byte[CHUNK_SIZE];
+        long sourceSize = participant.getSourceFile().length();
+        try (FileInputStream inputStream = new FileInputStream(participant.getSourceFile())) {
+            IOUtils.skipFully(inputStream, detachedOffset);
+            while (true) {
+                long startNanos = probe.start(ChunkOperation.SOURCE_READ, outputPosition, buffer.length);
+                int nRead = -1;
+                try {
+                    nRead = inputStream.read(buffer);
+                } finally {
+                    probe.finish(ChunkOperation.SOURCE_READ, outputPosition, Math.max(nRead, 0), startNanos);
+                }
+                if (nRead < 0) {
+                    break;
+                }
+                checkCanceled();
+                invokeListenerDataTransferred(outputPosition);
+                writeChunk(outputChannel, buffer, nRead, sourceSize);
+                if (verifier != null) {
+                    verifier.onChunkWritten(outputChannel, outputPosition, buffer, 0, nRead);
+                }
+                outputPosition += nRead;
+            }
+        }
+    }
+
+    private void writeChunk(@Nonnull SeekableByteChannel outputChannel,
+                            @Nonnull byte[] data,
+                            int length,
+                            long sourceSize) throws IOException, InterruptedException {
+        probe.throttle(ChunkOperation.TARGET_WRITE, length);
+        long startNanos = probe.start(ChunkOperation.TARGET_WRITE, outputPosition, length);
+        try {
+            writeFully(outputChannel, data, length);
+            WriteProfiler.syncAtBinEnd(outputChannel, syncIntervalBytes, outputPosition, length, sourceSize);
+        } finally {
+            probe.finish(ChunkOperation.TARGET_WRITE, outputPosition, length, startNanos);
+        }
+    }
+
+    private static void writeFully(@Nonnull SeekableByteChannel channel, @Nonnull byte[] data, int length)
+            throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(data, 0, length);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
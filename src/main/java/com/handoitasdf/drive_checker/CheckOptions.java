@@ -0,0 +1,520 @@
+package com.handoitasdf.drive_checker;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Tunables shared by all drive checkers of a run.
+ */
+public class CheckOptions {
+
+    public enum TransferMode {
+        /**
+         * Every drive reads and hashes the test file on its own.
+         */
+        INDEPENDENT,
+
+        /**
+         * The test file is read and hashed once, and the chunks are fanned out to all drives.
+         */
+        BROADCAST
+    }
+
+    public enum Engine {
+        /**
+         * One blocked thread per drive, with one chunk in flight.
+         */
+        BLOCKING,
+
+        /**
+         * Asynchronous file channels multiplexed on a fixed thread pool, with several chunks in flight per drive.
+         */
+        ASYNC
+    }
+
+    public enum HashMode {
+        /**
+         * One digest of the whole test file, computed on the thread of the drive.
+         */
+        SEQUENTIAL,
+
+        /**
+         * A Merkle tree of 1 MB leaves, hashed in parallel on all processors.
+         */
+        TREE
+    }
+
+    public enum Workload {
+        /**
+         * The test file is copied to every drive and read back.
+         */
+        LARGE_FILE,
+
+        /**
+         * Many small files are created, synced, read back and deleted across a tree of directories, to exercise
+         * the metadata of the filesystem rather than its bandwidth.
+         */
+        SMALL_FILES,
+
+        /**
+         * The drive is filled with copies of the test file, which are all read back.
+         */
+        FILL,
+
+        /**
+         * Blocks at random offsets of a preallocated region are written and read back.
+         */
+        RANDOM_BLOCKS,
+
+        /**
+         * The copies kept by an earlier fill are read back without writing, e.g. in the last phase of a test
+         * plan.
+         */
+        RETENTION_VERIFY
+    }
+
+    private TransferMode transferMode = TransferMode.INDEPENDENT;
+    private int broadcastMaxLagChunks = 16;
+    private long broadcastDetachTimeoutMillis = 2000;
+    private long broadcastGatherTimeoutMillis = 60000;
+    private Engine engine = Engine.BLOCKING;
+    private int asyncQueueDepth = 4;
+    private int asyncThreadCount = 0;
+    private long stallDeadlineMillis = 60000;
+    private boolean flightRecording = false;
+    private boolean forensicMode = false;
+    private int forensicBlockSize = 4096;
+    private int forensicReReadCount = 3;
+    private long forensicMaxErrorBlocks = 4096;
+    private boolean preallocateTarget = false;
+    private boolean writeProfiling = false;
+    private int inlineVerifyWindowChunks = 0;
+    private boolean pipelineIterations = false;
+    private HashMode hashMode = HashMode.SEQUENTIAL;
+    private double throttleDriveMBps = 0;
+    private double throttleGlobalMBps = 0;
+    private long throttleLatencyTargetMillis = 0;
+    private String throttleProbeDirectory = null;
+    private Workload workload = Workload.LARGE_FILE;
+    private int smallFileCount = 10000;
+    private int smallFileSize = 4096;
+    private int smallFileFanOut = 64;
+    private int smallFileWorkers = 4;
+    private DataPattern dataPattern = null;
+    private long dataPatternSizeMB = 1024;
+    private long durationMillis = 0;
+    private long fillReserveMB = 64;
+    private int fillMaxFiles = 0;
+    private long randomRegionMB = 1024;
+    private int randomBlockSize = 4096;
+    private long randomOperations = 65536;
+    private int randomWorkers = 4;
+    private int treeWorkers = 4;
+
+    @Nonnull
+    public TransferMode getTransferMode() {
+        return transferMode;
+    }
+
+    public void setTransferMode(@Nonnull TransferMode transferMode) {
+        this.transferMode = transferMode;
+    }
+
+    /**
+     * @return How many chunks a drive may fall behind the broadcast reader before the reader blocks on it.
+     */
+    public int getBroadcastMaxLagChunks() {
+        return broadcastMaxLagChunks;
+    }
+
+    public void setBroadcastMaxLagChunks(int broadcastMaxLagChunks) {
+        this.broadcastMaxLagChunks = broadcastMaxLagChunks;
+    }
+
+    /**
+     * @return How long the broadcast reader blocks on a lagging drive before detaching it into
+     *         its own catch-up stream.
+     */
+    public long getBroadcastDetachTimeoutMillis() {
+        return broadcastDetachTimeoutMillis;
+    }
+
+    public void setBroadcastDetachTimeoutMillis(long broadcastDetachTimeoutMillis) {
+        this.broadcastDetachTimeoutMillis = broadcastDetachTimeoutMillis;
+    }
+
+    /**
+     * @return How long the broadcast reader waits for a registered drive to join a pass once the
+     *         first drive is ready, before leaving it out of the passes until it joins again.
+     */
+    public long getBroadcastGatherTimeoutMillis() {
+        return broadcastGatherTimeoutMillis;
+    }
+
+    public void setBroadcastGatherTimeoutMillis(long broadcastGatherTimeoutMillis) {
+        this.broadcastGatherTimeoutMillis = broadcastGatherTimeoutMillis;
+    }
+
+    @Nonnull
+    public Engine getEngine() {
+        return engine;
+    }
+
+    public void setEngine(@Nonnull Engine engine) {
+        this.engine = engine;
+    }
+
+    /**
+     * @return Number of chunk reads and writes the asynchronous engine keeps in flight for each drive.
+     */
+    public int getAsyncQueueDepth() {
+        return asyncQueueDepth;
+    }
+
+    public void setAsyncQueueDepth(int asyncQueueDepth) {
+        this.asyncQueueDepth = asyncQueueDepth;
+    }
+
+    /**
+     * @return Number of threads of the asynchronous engine; 0 means the number of processors.
+     */
+    public int getAsyncThreadCount() {
+        return asyncThreadCount;
+    }
+
+    public void setAsyncThreadCount(int asyncThreadCount) {
+        this.asyncThreadCount = asyncThreadCount;
+    }
+
+    /**
+     * @return How long a chunk read or write may take before the drive is flagged as stalled;
+     *         0 disables the stall watchdog.
+     */
+    public long getStallDeadlineMillis() {
+        return stallDeadlineMillis;
+    }
+
+    public void setStallDeadlineMillis(long stallDeadlineMillis) {
+        this.stallDeadlineMillis = stallDeadlineMillis;
+    }
+
+    /**
+     * @return True if a Flight Recorder recording is made for the run and saved next to the report.
+     */
+    public boolean isFlightRecording() {
+        return flightRecording;
+    }
+
+    public void setFlightRecording(boolean flightRecording) {
+        this.flightRecording = flightRecording;
+    }
+
+    /**
+     * @return True if a failed digest check localizes and classifies the corruption, and the checking goes on
+     *         until the error budget is exhausted.
+     */
+    public boolean isForensicMode() {
+        return forensicMode;
+    }
+
+    public void setForensicMode(boolean forensicMode) {
+        this.forensicMode = forensicMode;
+    }
+
+    public int getForensicBlockSize() {
+        return forensicBlockSize;
+    }
+
+    public void setForensicBlockSize(int forensicBlockSize) {
+        this.forensicBlockSize = forensicBlockSize;
+    }
+
+    /**
+     * @return How many times a corrupted block is re-read to tell transient from persistent corruption.
+     */
+    public int getForensicReReadCount() {
+        return forensicReReadCount;
+    }
+
+    public void setForensicReReadCount(int forensicReReadCount) {
+        this.forensicReReadCount = forensicReReadCount;
+    }
+
+    /**
+     * @return The error budget: how many corrupted blocks are tolerated before the drive is given up.
+     */
+    public long getForensicMaxErrorBlocks() {
+        return forensicMaxErrorBlocks;
+    }
+
+    public void setForensicMaxErrorBlocks(long forensicMaxErrorBlocks) {
+        this.forensicMaxErrorBlocks = forensicMaxErrorBlocks;
+    }
+
+    /**
+     * @return True if the target file is preallocated to the size of the test file once, and overwritten in place
+     *         by every iteration instead of being truncated and grown again.
+     */
+    public boolean isPreallocateTarget() {
+        return preallocateTarget;
+    }
+
+    public void setPreallocateTarget(boolean preallocateTarget) {
+        this.preallocateTarget = preallocateTarget;
+    }
+
+    /**
+     * @return True if the write throughput of every copy of the test file is profiled against the offset. The
+     *         copy is then synced to the drive once per bin of the profile, which slows it down.
+     */
+    public boolean isWriteProfiling() {
+        return writeProfiling;
+    }
+
+    public void setWriteProfiling(boolean writeProfiling) {
+        this.writeProfiling = writeProfiling;
+    }
+
+    /**
+     * @return How many chunks behind the write head the target file is read back and compared while it's being
+     *         written; 0 if it's only checked once it's complete.
+     */
+    public int getInlineVerifyWindowChunks() {
+        return inlineVerifyWindowChunks;
+    }
+
+    public void setInlineVerifyWindowChunks(int inlineVerifyWindowChunks) {
+        this.inlineVerifyWindowChunks = inlineVerifyWindowChunks;
+    }
+
+    /**
+     * @return True to write the copy of the next iteration to a second target file while the copy of the last
+     *         one is being verified, if the drive has room for both.
+     */
+    public boolean isPipelineIterations() {
+        return pipelineIterations;
+    }
+
+    public void setPipelineIterations(boolean pipelineIterations) {
+        this.pipelineIterations = pipelineIterations;
+    }
+
+    @Nonnull
+    public HashMode getHashMode() {
+        return hashMode;
+    }
+
+    public void setHashMode(@Nonnull HashMode hashMode) {
+        this.hashMode = hashMode;
+    }
+
+    /**
+     * @return Limit of the reads and writes of every drive in MB/s; 0 for no limit.
+     */
+    public double getThrottleDriveMBps() {
+        return throttleDriveMBps;
+    }
+
+    public void setThrottleDriveMBps(double throttleDriveMBps) {
+        this.throttleDriveMBps = throttleDriveMBps;
+    }
+
+    /**
+     * @return Limit of the reads and writes of all drives together in MB/s; 0 for no limit.
+     */
+    public double getThrottleGlobalMBps() {
+        return throttleGlobalMBps;
+    }
+
+    public void setThrottleGlobalMBps(double throttleGlobalMBps) {
+        this.throttleGlobalMBps = throttleGlobalMBps;
+    }
+
+    /**
+     * @return Latency the throttle of every drive adapts to; 0 to not adapt.
+     */
+    public long getThrottleLatencyTargetMillis() {
+        return throttleLatencyTargetMillis;
+    }
+
+    public void setThrottleLatencyTargetMillis(long throttleLatencyTargetMillis) {
+        this.throttleLatencyTargetMillis = throttleLatencyTargetMillis;
+    }
+
+    /**
+     * @return Directory to probe the foreground latency in, or null to adapt to the latency of the drives.
+     */
+    @Nullable
+    public String getThrottleProbeDirectory() {
+        return throttleProbeDirectory;
+    }
+
+    public void setThrottleProbeDirectory(@Nullable String throttleProbeDirectory) {
+        this.throttleProbeDirectory = throttleProbeDirectory;
+    }
+
+    @Nonnull
+    public Workload getWorkload() {
+        return workload;
+    }
+
+    public void setWorkload(@Nonnull Workload workload) {
+        this.workload = workload;
+    }
+
+    /**
+     * @return How many files every round of the small-file workload creates.
+     */
+    public int getSmallFileCount() {
+        return smallFileCount;
+    }
+
+    public void setSmallFileCount(int smallFileCount) {
+        this.smallFileCount = smallFileCount;
+    }
+
+    /**
+     * @return Size of every file of the small-file workload in bytes.
+     */
+    public int getSmallFileSize() {
+        return smallFileSize;
+    }
+
+    public void setSmallFileSize(int smallFileSize) {
+        this.smallFileSize = smallFileSize;
+    }
+
+    /**
+     * @return How many directories the files of the small-file workload are spread across.
+     */
+    public int getSmallFileFanOut() {
+        return smallFileFanOut;
+    }
+
+    public void setSmallFileFanOut(int smallFileFanOut) {
+        this.smallFileFanOut = smallFileFanOut;
+    }
+
+    /**
+     * @return Threads working on the small files of every drive in parallel.
+     */
+    public int getSmallFileWorkers() {
+        return smallFileWorkers;
+    }
+
+    public void setSmallFileWorkers(int smallFileWorkers) {
+        this.smallFileWorkers = smallFileWorkers;
+    }
+
+    /**
+     * @return Content of the data written to the drives: the workloads copying the test file copy a file of the
+     *         pattern instead, and the others generate it. Null to copy the test file, and to generate random
+     *         data.
+     */
+    @Nullable
+    public DataPattern getDataPattern() {
+        return dataPattern;
+    }
+
+    public void setDataPattern(@Nullable DataPattern dataPattern) {
+        this.dataPattern = dataPattern;
+    }
+
+    /**
+     * @return Size of the file of the data pattern copied in place of the test file.
+     */
+    public long getDataPatternSizeMB() {
+        return dataPatternSizeMB;
+    }
+
+    public void setDataPatternSizeMB(long dataPatternSizeMB) {
+        this.dataPatternSizeMB = dataPatternSizeMB;
+    }
+
+    /**
+     * @return How long to keep starting new rounds; 0 for no limit. The round in progress is always finished.
+     */
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+
+    public void setDurationMillis(long durationMillis) {
+        this.durationMillis = durationMillis;
+    }
+
+    /**
+     * @return Free space the fill workload leaves on the drive.
+     */
+    public long getFillReserveMB() {
+        return fillReserveMB;
+    }
+
+    public void setFillReserveMB(long fillReserveMB) {
+        this.fillReserveMB = fillReserveMB;
+    }
+
+    /**
+     * @return Most copies the fill workload writes; 0 to fill the drive. Required for the targets whose free
+     *         space is unknown, e.g. simulated drives.
+     */
+    public int getFillMaxFiles() {
+        return fillMaxFiles;
+    }
+
+    public void setFillMaxFiles(int fillMaxFiles) {
+        this.fillMaxFiles = fillMaxFiles;
+    }
+
+    /**
+     * @return Size of the region the random-block workload writes in.
+     */
+    public long getRandomRegionMB() {
+        return randomRegionMB;
+    }
+
+    public void setRandomRegionMB(long randomRegionMB) {
+        this.randomRegionMB = randomRegionMB;
+    }
+
+    public int getRandomBlockSize() {
+        return randomBlockSize;
+    }
+
+    public void setRandomBlockSize(int randomBlockSize) {
+        this.randomBlockSize = randomBlockSize;
+    }
+
+    /**
+     * @return Blocks written and read back in every round of the random-block workload.
+     */
+    public long getRandomOperations() {
+        return randomOperations;
+    }
+
+    public void setRandomOperations(long randomOperations) {
+        this.randomOperations = randomOperations;
+    }
+
+    /**
+     * @return Threads working on the random blocks of every drive in parallel.
+     */
+    public int getRandomWorkers() {
+        return randomWorkers;
+    }
+
+    public void setRandomWorkers(int randomWorkers) {
+        this.randomWorkers = randomWorkers;
+    }
+
+    /**
+     * @return Threads copying and verifying the files of every drive in parallel when the test file is a
+     *         directory.
+     */
+    public int getTreeWorkers() {
+        return treeWorkers;
+    }
+
+    public void setTreeWorkers(int treeWorkers) {
+        this.treeWorkers = treeWorkers;
+    }
+}
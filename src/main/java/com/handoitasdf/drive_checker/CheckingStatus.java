@@ -8,5 +8,10 @@ public enum CheckingStatus {
     SUCCESS,
     FAILED,
     RUNNING,
-    CANCELED
+    CANCELED,
+
+    /**
+     * A chunk operation has exceeded the stall deadline; the drive is considered failed.
+     */
+    STALLED
 }
@@ -0,0 +1,20 @@
+package com.handoitasdf.drive_checker;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Receives the start and the end of every chunk operation of a drive. The callbacks are made on the I/O path,
+ * so they must be cheap and must not throw.
+ *
+ * The start time of an operation, in {@link System#nanoTime} units, is unique among all operations, so it
+ * identifies an operation from its start to its end even if others in flight have the same offset, e.g. the
+ * files of a directory tree or of the small-file workload.
+ */
+public interface ChunkIoListener {
+    void onChunkStarted(@Nonnull ChunkOperation operation, long offset, int length, long startNanos);
+    void onChunkFinished(@Nonnull ChunkOperation operation,
+                         long offset,
+                         int length,
+                         long startNanos,
+                         long elapsedNanos);
+}
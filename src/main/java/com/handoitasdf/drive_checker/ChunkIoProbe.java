@@ -0,0 +1,70 @@
+package com.handoitasdf.drive_checker;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Times chunk operations for a {@link ChunkIoListener}, and paces them with a {@link ChunkThrottle}. It does
+ * nothing when neither is set.
+ */
+final class ChunkIoProbe {
+    // The last start time given to an operation, so that no two operations start at the same time.
+    private static final AtomicLong LAST_START_NANOS = new AtomicLong(System.nanoTime());
+    private volatile ChunkIoListener listener;
+    private volatile ChunkThrottle throttle;
+
+    void setListener(@Nullable ChunkIoListener listener) {
+        this.listener = listener;
+    }
+
+    void setThrottle(@Nullable ChunkThrottle throttle) {
+        this.throttle = throttle;
+    }
+
+    /**
+     * Wait until the throttle lets an operation start. Call it before {@link #start}, so that the wait isn't
+     * counted as latency of the operation.
+     */
+    void throttle(@Nonnull ChunkOperation operation, int length) throws InterruptedException {
+        long waitNanos = reserve(operation, length);
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+
+    /**
+     * Like {@link #throttle}, but never blocks.
+     *
+     * @return How long the operation must wait before it starts, in nanoseconds.
+     */
+    long reserve(@Nonnull ChunkOperation operation, int length) {
+        ChunkThrottle currentThrottle = throttle;
+        return currentThrottle == null ? 0 : currentThrottle.reserve(operation, length);
+    }
+
+    /**
+     * Call {@link #finish} in a finally block after it, so that an operation which throws is never left in
+     * flight for the listener.
+     *
+     * @return The start time to pass to {@link #finish}, unique among all operations.
+     */
+    long start(@Nonnull ChunkOperation operation, long offset, int length) {
+        ChunkIoListener currentListener = listener;
+        if (currentListener == null) {
+            return 0;
+        }
+        long startNanos = LAST_START_NANOS.accumulateAndGet(System.nanoTime(), (last, now) -> Math.max(now, last + 1));
+        currentListener.onChunkStarted(operation, offset, length, startNanos);
+        return startNanos;
+    }
+
+    void finish(@Nonnull ChunkOperation operation, long offset, int length, long startNanos) {
+        ChunkIoListener currentListener = listener;
+        if (currentListener == null) {
+            return;
+        }
+        currentListener.onChunkFinished(operation, offset, length, startNanos, System.nanoTime() - startNanos);
+    }
+}
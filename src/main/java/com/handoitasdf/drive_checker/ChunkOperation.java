@@ -0,0 +1,32 @@
+package com.handoitasdf.drive_checker;
+
+/**
+ * Kinds of chunk operations reported to a {@link ChunkIoListener}.
+ */
+public enum ChunkOperation {
+    SOURCE_READ,
+    TARGET_WRITE,
+    TARGET_READ,
+    /**
+     * Digest update of a chunk read from the test file.
+     */
+    SOURCE_DIGEST,
+    /**
+     * Digest update of a chunk read back from the drive.
+     */
+    TARGET_DIGEST;
+
+    /**
+     * @return True if the operation is a digest update, which doesn't touch any storage.
+     */
+    public boolean isDigest() {
+        return this == SOURCE_DIGEST || this == TARGET_DIGEST;
+    }
+
+    /**
+     * @return True if the operation is on a chunk of the test file rather than of the drive.
+     */
+    public boolean isSource() {
+        return this == SOURCE_READ || this == SOURCE_DIGEST;
+    }
+}
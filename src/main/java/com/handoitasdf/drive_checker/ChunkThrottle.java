@@ -0,0 +1,17 @@
+package com.handoitasdf.drive_checker;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Paces the chunk operations of a drive.
+ */
+public interface ChunkThrottle {
+
+    /**
+     * Reserve the bandwidth of an operation. It never blocks, so it may be called from the shared I/O threads
+     * of the async engine; the caller is responsible for delaying the operation.
+     *
+     * @return How long the operation must wait before it starts, in nanoseconds.
+     */
+    long reserve(@Nonnull ChunkOperation operation, int length);
+}
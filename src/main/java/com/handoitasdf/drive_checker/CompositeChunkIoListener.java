@@ -0,0 +1,42 @@
+package com.handoitasdf.drive_checker;
+
+import javax.annotation.Nonnull;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Forwards the chunk operations to any number of listeners.
+ */
+public class CompositeChunkIoListener implements ChunkIoListener {
+    private final List<ChunkIoListener> listeners = new CopyOnWriteArrayList<>();
+
+    public void add(@Nonnull ChunkIoListener listener) {
+        listeners.add(listener);
+    }
+
+    public void remove(@Nonnull ChunkIoListener listener) {
+        listeners.remove(listener);
+    }
+
+    public boolean isEmpty() {
+        return listeners.isEmpty();
+    }
+
+    @Override
+    public void onChunkStarted(@Nonnull ChunkOperation operation, long offset, int length, long startNanos) {
+        for (ChunkIoListener listener : listeners) {
+            listener.onChunkStarted(operation, offset, length, startNanos);
+        }
+    }
+
+    @Override
+    public void onChunkFinished(@Nonnull ChunkOperation operation,
+                                long offset,
+                                int length,
+                                long startNanos,
+                                long elapsedNanos) {
+        for (ChunkIoListener listener : listeners) {
+            listener.onChunkFinished(operation, offset, length, startNanos, elapsedNanos);
+        }
+    }
+}
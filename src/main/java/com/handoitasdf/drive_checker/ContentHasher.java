@@ -0,0 +1,20 @@
+package com.handoitasdf.drive_checker;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Computes the digest of a content fed in order, chunk by chunk.
+ */
+public interface ContentHasher {
+
+    /**
+     * Hash the next bytes of the content. The bytes may be reused by the caller once it returns.
+     */
+    void update(@Nonnull byte[] data, int offset, int length);
+
+    /**
+     * Finish the digest and reset the hasher.
+     */
+    @Nonnull
+    byte[] digest();
+}
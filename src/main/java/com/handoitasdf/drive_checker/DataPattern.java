@@ -0,0 +1,88 @@
+package com.handoitasdf.drive_checker;
+
+import javax.annotation.Nonnull;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Content of generated data. The content is a function of a seed, e.g. the round and the index of a block, so
+ * it can be verified by generating it again rather than by keeping it.
+ */
+public enum DataPattern {
+    /**
+     * Pseudo-random bytes, different for every seed, so misplaced blocks and stale data are detected.
+     */
+    RANDOM,
+
+    ZEROS,
+
+    ONES,
+
+    /**
+     * Alternating 0x55 and 0xAA bytes, flipping every bit between neighbours.
+     */
+    CHECKERBOARD;
+
+    private static final int FILE_CHUNK_SIZE = 1024 * 1024;
+
+    public void fill(@Nonnull byte[] buffer, int offset, int length, long seed) {
+        switch (this) {
+            case ZEROS:
+                Arrays.fill(buffer, offset, offset + length, (byte) 0);
+                break;
+            case ONES:
+                Arrays.fill(buffer, offset, offset + length, (byte) 0xff);
+                break;
+            case CHECKERBOARD:
+                for (int i = 0; i < length; ++i) {
+                    buffer[offset + i] = (i & 1) == 0 ? (byte) 0x55 : (byte) 0xaa;
+                }
+                break;
+            default:
+                fillRandom(buffer, offset, length, seed);
+                break;
+        }
+    }
+
+    /**
+     * Write a file of the pattern, e.g. to copy it to the drives in place of a test file. Every MB of the file
+     * is seeded by the seed plus its index.
+     */
+    public void writeFile(@Nonnull File file, long size, long seed) throws IOException, InterruptedException {
+        byte[] buffer = new byte[FILE_CHUNK_SIZE];
+        try (OutputStream outputStream = new FileOutputStream(file)) {
+            for (long position = 0; position < size; position += FILE_CHUNK_SIZE) {
+                if (Thread.interrupted()) {
+                    throw new InterruptedException("Writing " + file.getPath() + " is interrupted");
+                }
+                int length = (int) Math.min(FILE_CHUNK_SIZE, size - position);
+                fill(buffer, 0, length, seed + position / FILE_CHUNK_SIZE);
+                outputStream.write(buffer, 0, length);
+            }
+        }
+    }
+
+    /**
+     * Xorshift noise, seeded by the seed scrambled with splitmix64 so that close seeds give unrelated noise.
+     */
+    private static void fillRandom(@Nonnull byte[] buffer, int offset, int length, long seed) {
+        long state = seed + 0x9E3779B97F4A7C15L;
+        state = (state ^ (state >>> 30)) * 0xBF58476D1CE4E5B9L;
+        state = (state ^ (state >>> 27)) * 0x94D049BB133111EBL;
+        state ^= state >>> 31;
+        if (state == 0) {
+            state = 0x9E3779B97F4A7C15L;
+        }
+        for (int i = 0; i < length; i += Long.BYTES) {
+            state ^= state << 13;
+            state ^= state >>> 7;
+            state ^= state << 17;
+            for (int j = 0; j < Long.BYTES && i + j < length; ++j) {
+                buffer[offset + i + j] = (byte) (state >>> (j * Byte.SIZE));
+            }
+        }
+    }
+}
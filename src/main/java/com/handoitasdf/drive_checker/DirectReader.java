@@ -0,0 +1,127 @@
+package com.handoitasdf.drive_checker;
+
+import com.handoitasdf.drive_checker.storage.StorageFile;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads a target file back from the drive, bypassing the OS page cache with direct I/O where it can, so that a
+ * read back checks the medium rather than the copy the OS still holds in memory.
+ *
+ * The direct open option is internal API of the JDK, so it's looked up by reflection; it's only supported for
+ * local files on some platforms, e.g. Linux. Elsewhere the reads fall back to the page cache, and
+ * {@link #isDirect} tells the caller so.
+ */
+final class DirectReader implements Closeable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(DirectReader.class);
+    private static final int DEFAULT_ALIGNMENT = 4096;
+    private static final OpenOption DIRECT = detectDirectOption();
+    private final SeekableByteChannel channel;
+
+    // Direct reads must start and end on a block boundary, into a buffer aligned as well; 1 if not direct.
+    private final int alignment;
+    private ByteBuffer buffer = ByteBuffer.allocate(0);
+
+    private DirectReader(@Nonnull SeekableByteChannel channel, int alignment) {
+        this.channel = channel;
+        this.alignment = alignment;
+    }
+
+    /**
+     * Open the file with direct I/O if possible, or else through the page cache.
+     */
+    @Nonnull
+    static DirectReader open(@Nonnull StorageFile file) throws IOException {
+        File localFile = file.toFile();
+        if (localFile != null && DIRECT != null) {
+            Path path = localFile.toPath();
+            try {
+                return new DirectReader(FileChannel.open(path, StandardOpenOption.READ, DIRECT), getBlockSize(path));
+            } catch (IOException | UnsupportedOperationException | IllegalArgumentException ex) {
+                LOGGER.debug("Cannot open {} with direct I/O", file.getPath(), ex);
+            }
+        }
+        return new DirectReader(file.openForRead(), 1);
+    }
+
+    /**
+     * @return False if the reads may be served from the page cache.
+     */
+    boolean isDirect() {
+        return alignment > 1;
+    }
+
+    /**
+     * Read a range of the file. The buffer is reused by the next read.
+     *
+     * @return The bytes of the range, fewer than asked for if the file ends within it.
+     */
+    @Nonnull
+    ByteBuffer read(long offset, int length) throws IOException {
+        long readOffset = offset - offset % alignment;
+        int skip = (int) (offset - readOffset);
+        int readLength = (skip + length + alignment - 1) / alignment * alignment;
+        if (buffer.capacity() < readLength) {
+            buffer = alignment > 1
+                    ? ByteBuffer.allocateDirect(readLength + alignment).alignedSlice(alignment)
+                    : ByteBuffer.allocate(readLength);
+        }
+        buffer.clear().limit(readLength);
+        channel.position(readOffset);
+        // A direct read only returns short at the end of the file.
+        while (buffer.position() < skip + length) {
+            if (channel.read(buffer) < 0) {
+                break;
+            }
+        }
+        ByteBuffer range = buffer.duplicate();
+        range.limit(Math.min(buffer.position(), skip + length)).position(Math.min(skip, range.limit()));
+        return range.slice();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private static int getBlockSize(@Nonnull Path path) {
+        try {
+            long blockSize = Files.getFileStore(path).getBlockSize();
+            if (blockSize > 0 && blockSize <= DEFAULT_ALIGNMENT * 16 && Long.bitCount(blockSize) == 1) {
+                return (int) blockSize;
+            }
+        } catch (IOException | UnsupportedOperationException ex) {
+            LOGGER.debug("Cannot get the block size of {}, use {}", path, DEFAULT_ALIGNMENT, ex);
+        }
+        return DEFAULT_ALIGNMENT;
+    }
+
+    @Nullable
+    private static OpenOption detectDirectOption() {
+        try {
+            Class<?> optionClass = Class.forName("com.sun.nio.file.ExtendedOpenOption");
+            for (Object option : optionClass.getEnumConstants()) {
+                if ("DIRECT".equals(((Enum<?>) option).name())) {
+                    return (OpenOption) option;
+                }
+            }
+        } catch (ClassNotFoundException | LinkageError | ClassCastException ex) {
+            LOGGER.debug("Direct I/O isn't available", ex);
+        }
+        LOGGER.info("Direct I/O isn't available, so files are read back through the page cache");
+        return null;
+    }
+}
@@ -1,5 +1,8 @@
 package com.handoitasdf.drive_checker;
 
+import com.handoitasdf.drive_checker.storage.FileSystemStorageTarget;
+import com.handoitasdf.drive_checker.storage.StorageFile;
+import com.handoitasdf.drive_checker.storage.StorageTarget;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -8,57 +11,486 @@ import javax.annotation.Nullable;
 import java.io.File;
 import java.io.IOException;
 import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
 
 /**
  * Created by icand on 2017/8/30.
+ *
+ * The status and progress of the checker are kept in an immutable {@link DriveCheckerSnapshot} replaced by
+ * compare-and-set, so monitors read them without locking the checking thread.
+ *
+ * With {@link CheckOptions#isPipelineIterations()}, the test file is copied to two target files in turn, and
+ * every iteration is verified on another thread while the next one is written, so two iterations are in
+ * flight at once.
  */
 public class DriveChecker {
     private final Logger LOGGER = LoggerFactory.getLogger(DriveChecker.class);
     private final File drive;
     private final File testFile;
     private final MessageDigestProvider digestProvider;
-    private volatile FileTransferrer transferrer;
-    private volatile FileChecker fileChecker;
-    private File outputFile;
-    private Instant startTime;
-    private Instant doneTime;
-    private int finishedIteration = 0;
-    private volatile CheckingStatus status = CheckingStatus.PENDING;
-    private Exception failedReason;
-    private DriveCheckerListener listener;
+    private final CheckOptions options;
+    private BroadcastSource broadcastSource;
+    private BroadcastSource.Participant broadcastParticipant;
+    private AsyncIoEngine asyncIoEngine;
+    private DriveThrottle throttle;
+    private StorageTarget storageTarget;
+    private volatile Target[] targets = new Target[0];
+    private volatile RoundWorkload roundWorkload;
+    private RetainedFiles retainedFiles;
+    private final AtomicReference<DriveCheckerSnapshot> state = new AtomicReference<>(DriveCheckerSnapshot.PENDING);
+    private volatile DriveCheckerListener listener;
+    private final CompositeChunkIoListener chunkIoListeners = new CompositeChunkIoListener();
+    private final DriveCheckerMetrics metrics = new DriveCheckerMetrics();
+    private final SmallFileMetrics smallFileMetrics = new SmallFileMetrics();
+    private final TreeCopyMetrics treeCopyMetrics = new TreeCopyMetrics();
+    private final WriteProfiler writeProfiler = new WriteProfiler();
+    private volatile WriteProfile firstWriteProfile;
+    private volatile WriteProfile slowestWriteProfile;
+    private final List<IterationListener> iterationListeners = new CopyOnWriteArrayList<>();
+    private final ErrorMap errorMap;
     public DriveChecker(@Nonnull File drive, @Nonnull File testFile) {
+        this(drive, testFile, new CheckOptions());
+    }
+
+    public DriveChecker(@Nonnull File drive, @Nonnull File testFile, @Nonnull CheckOptions options) {
         this.drive = drive;
         this.testFile = testFile;
-        this.digestProvider = new MessageDigestProvider();
+        this.options = options;
+        this.digestProvider = new MessageDigestProvider(options.getHashMode());
+        this.errorMap = new ErrorMap(options.getForensicMaxErrorBlocks());
+        this.storageTarget = new FileSystemStorageTarget(drive);
+        chunkIoListeners.add(metrics);
+        if (options.isWriteProfiling()) {
+            chunkIoListeners.add(writeProfiler);
+        }
     }
 
     public void check(int maxIterations) throws IOException, InterruptedException, CancellationException {
-        if (!CheckingStatus.PENDING.equals(status)) {
-            throw new IllegalStateException("This current status is " + status
+        register();
+        try {
+            long deadlineNanos = begin();
+            checkRounds(maxIterations, deadlineNanos);
+            succeed();
+        } catch (Exception ex) {
+            failUnlessCanceled(ex);
+            throw ex;
+        } finally {
+            unregister();
+        }
+    }
+
+    /**
+     * Check like {@link #check}, but without a thread waiting on the async engine: every round is chained on the
+     * completion of its copy and of its read back, and only the steps in between, e.g. preparing the target file
+     * or localizing a corruption, run on the executor, so that a few threads check any number of drives. A check
+     * the async engine doesn't run alone, e.g. a workload, a simulated drive or pipelined iterations, runs its
+     * rounds on a thread of its own instead.
+     *
+     * @return Completes once the check is done, or exceptionally with what {@link #check} would throw.
+     */
+    @Nonnull
+    public CompletableFuture<Void> checkAsync(int maxIterations, @Nonnull Executor executor) {
+        register();
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        try {
+            executor.execute(() -> {
+                long deadlineNanos;
+                try {
+                    deadlineNanos = begin();
+                } catch (Exception ex) {
+                    finishAsync(done, ex);
+                    return;
+                }
+                Target target = targets.length == 1 ? targets[0] : null;
+                if (target != null
+                        && target.transferrer instanceof AsyncFileTransferrer
+                        && target.checker instanceof AsyncFileChecker) {
+                    checkRoundAsync(target, maxIterations, deadlineNanos, executor, done);
+                    return;
+                }
+                // Daemon, because the thread of a stalled drive may never return.
+                Thread thread = new Thread(() -> {
+                    Exception failure = null;
+                    try {
+                        checkRounds(maxIterations, deadlineNanos);
+                    } catch (Exception ex) {
+                        failure = ex;
+                    }
+                    finishAsync(done, failure);
+                }, "drive-checker-" + drive.getPath());
+                thread.setDaemon(true);
+                thread.start();
+            });
+        } catch (RejectedExecutionException ex) {
+            finishAsync(done, ex);
+        }
+        return done;
+    }
+
+    private void register() {
+        CheckingStatus initialStatus = state.get().getStatus();
+        if (!CheckingStatus.PENDING.equals(initialStatus)) {
+            throw new IllegalStateException("This current status is " + initialStatus
                     + ", and checking cannot be run multiple times");
         }
+        if (broadcastSource != null) {
+            broadcastParticipant = broadcastSource.register();
+        }
+    }
+
+    /**
+     * @return The deadline of the rounds, if they are limited by {@link CheckOptions#getDurationMillis()}.
+     */
+    private long begin() throws IOException {
+        setStatusUnlessCanceled(CheckingStatus.RUNNING);
+        prepare();
+
+        // A cancellation racing with prepare() may have missed the new transferrer or workload.
+        setStatusUnlessCanceled(CheckingStatus.RUNNING);
+        return System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(options.getDurationMillis());
+    }
+
+    private void checkRounds(int maxIterations, long deadlineNanos) throws IOException, InterruptedException {
+        if (targets.length > 1) {
+            checkPipelined(maxIterations, deadlineNanos);
+        } else {
+            checkSequentially(maxIterations, deadlineNanos);
+        }
+    }
+
+    private void succeed() throws IOException {
+        if (!errorMap.isEmpty()) {
+            throw new IOException("MD5 digest checking fails: " + errorMap.summarize());
+        }
+        setStatusUnlessCanceled(CheckingStatus.SUCCESS);
+    }
+
+    private void unregister() throws IOException {
         try {
-            setStatusUnlessCanceled(CheckingStatus.RUNNING);
-            prepare();
+            if (broadcastParticipant != null) {
+                broadcastParticipant.unregister();
+            }
+        } finally {
+            release();
+        }
+    }
+
+    /**
+     * Run one round of {@link #checkAsync}, and chain the next one on it.
+     */
+    private void checkRoundAsync(@Nonnull Target target,
+                                 int maxIterations,
+                                 long deadlineNanos,
+                                 @Nonnull Executor executor,
+                                 @Nonnull CompletableFuture<Void> done) {
+        int iteration = state.get().getIteration();
+        invokeIterationStarted(iteration);
+        target.iteration = iteration;
+        boolean profiled = options.isWriteProfiling();
+        if (profiled) {
+            writeProfiler.start(iteration, testFile.length());
+        }
+        ((AsyncFileTransferrer) target.transferrer).transferAsync()
+                .whenComplete((digest, failure) -> {
+                    if (profiled) {
+                        onWriteProfiled(writeProfiler.finish());
+                    }
+                })
+                .thenCompose(digest -> {
+                    setStatusUnlessCanceled(CheckingStatus.RUNNING);
+                    return ((AsyncFileChecker) target.checker).checkAsync(digest);
+                })
+                .thenApplyAsync(matched -> {
+                    try {
+                        return onChecked(iteration, target, matched);
+                    } catch (IOException | InterruptedException ex) {
+                        throw new CompletionException(ex);
+                    }
+                }, executor)
+                .whenCompleteAsync((passed, failure) -> {
+                    try {
+                        invokeIterationFinished(iteration, failure == null && passed);
+                        if (failure != null) {
+                            finishAsync(done, failure);
+                            return;
+                        }
+                        int finishedIteration = updateState(snapshot -> snapshot.iterationFinished(!passed))
+                                .getCheckedCount();
+                        if (hasNextIteration(finishedIteration, maxIterations, deadlineNanos)) {
+                            checkRoundAsync(target, maxIterations, deadlineNanos, executor, done);
+                        } else {
+                            finishAsync(done, null);
+                        }
+                    } catch (RuntimeException ex) {
+                        finishAsync(done, ex);
+                    }
+                }, executor);
+    }
+
+    /**
+     * Finish {@link #checkAsync} the way {@link #check} returns or throws.
+     *
+     * @param failure Why the rounds failed, or null if they passed.
+     */
+    private void finishAsync(@Nonnull CompletableFuture<Void> done, @Nullable Throwable failure) {
+        Throwable reason = failure instanceof CompletionException && failure.getCause() != null
+                ? failure.getCause()
+                : failure;
+        if (reason == null) {
+            try {
+                succeed();
+            } catch (IOException | RuntimeException ex) {
+                reason = ex;
+            }
+        }
+        if (reason instanceof Exception) {
+            try {
+                failUnlessCanceled((Exception) reason);
+            } catch (CancellationException ex) {
+                reason = ex;
+            }
+        }
+        try {
+            unregister();
+        } catch (IOException | RuntimeException ex) {
+            reason = ex;
+        }
+        if (reason == null) {
+            done.complete(null);
+        } else {
+            done.completeExceptionally(reason);
+        }
+    }
+
+    private void checkSequentially(int maxIterations, long deadlineNanos) throws IOException, InterruptedException {
+        while (true) {
+            int iteration = state.get().getIteration();
+            boolean passed = false;
+            invokeIterationStarted(iteration);
+            try {
+                if (roundWorkload != null) {
+                    roundWorkload.run(iteration);
+                    setStatusUnlessCanceled(CheckingStatus.RUNNING);
+                    passed = true;
+                } else {
+                    write(iteration, targets[0]);
+                    passed = verify(iteration, targets[0]);
+                }
+            } finally {
+                invokeIterationFinished(iteration, passed);
+            }
+            boolean corrupted = !passed;
+            int finishedIteration = updateState(snapshot -> snapshot.iterationFinished(corrupted))
+                    .getCheckedCount();
+            if (!hasNextIteration(finishedIteration, maxIterations, deadlineNanos)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Verify every iteration on another thread while the next one is written to the other target file. The
+     * next iteration is only written once the last one is, and a target file is only overwritten once its copy
+     * has been verified, so there are never more than two copies on the drive.
+     */
+    private void checkPipelined(int maxIterations, long deadlineNanos) throws IOException, InterruptedException {
+        ExecutorService verifier = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "verifier-" + drive.getPath());
+            thread.setDaemon(true);
+            return thread;
+        });
+        int lastStarted = state.get().getCheckedCount();
+        int lastFinished = lastStarted;
+        try {
+            invokeIterationStarted(++lastStarted);
+            write(lastStarted, targetOf(lastStarted));
             while (true) {
-                transferrer.transfer();
-                setStatusUnlessCanceled(CheckingStatus.RUNNING);
-                if (!fileChecker.check(transferrer.getDigest())) {
-                    throw new IOException("MD5 digest checking fails");
+                int iteration = lastFinished + 1;
+                Target target = targetOf(iteration);
+                Target nextTarget = targetOf(iteration + 1);
+                Future<Boolean> verification = verifier.submit(() -> verifyOrStopWriting(iteration, target,
+                        nextTarget));
+                Exception writeFailure = null;
+                if (hasNextIteration(iteration, maxIterations, deadlineNanos)) {
+                    invokeIterationStarted(++lastStarted);
+                    metrics.setOverlapping(true);
+                    try {
+                        write(lastStarted, nextTarget);
+                    } catch (IOException | CancellationException ex) {
+                        // A failed verification stops the write, and is the reason to report.
+                        writeFailure = ex;
+                    } finally {
+                        metrics.setOverlapping(false);
+                    }
                 }
-                ++finishedIteration;
-                if (maxIterations > 0 && finishedIteration >= maxIterations) {
-                    break;
+                boolean passed = getVerification(verification);
+                invokeIterationFinished(iteration, passed);
+                boolean writing = lastStarted > iteration;
+                lastFinished = updateState(snapshot -> {
+                    // The bytes copied so far are those of the next iteration, which is already written.
+                    DriveCheckerSnapshot finished = snapshot.iterationFinished(!passed);
+                    return writing ? finished.withCopiedBytes(snapshot.getCopiedBytes()) : finished;
+                }).getCheckedCount();
+                if (writeFailure instanceof IOException) {
+                    throw (IOException) writeFailure;
+                } else if (writeFailure != null) {
+                    throw (CancellationException) writeFailure;
+                }
+                if (lastFinished == lastStarted) {
+                    return;
                 }
             }
-            setStatusUnlessCanceled(CheckingStatus.SUCCESS);
-        } catch (Exception ex) {
-            setStatusUnlessCanceled(CheckingStatus.FAILED);
-            failedReason = ex;
-            throw ex;
         } finally {
-            release();
+            if (lastFinished < lastStarted) {
+                // Don't leave a verification reading the target file while it's being deleted.
+                for (Target target : targets) {
+                    target.checker.cancel();
+                }
+            }
+            verifier.shutdownNow();
+            for (int iteration = lastFinished + 1; iteration <= lastStarted; ++iteration) {
+                invokeIterationFinished(iteration, false);
+            }
+        }
+    }
+
+    /**
+     * @return True if another iteration may start after the given number of iterations.
+     */
+    private boolean hasNextIteration(int iterations, int maxIterations, long deadlineNanos) {
+        if (maxIterations > 0 && iterations >= maxIterations) {
+            return false;
+        }
+        if (options.getDurationMillis() > 0 && System.nanoTime() - deadlineNanos >= 0) {
+            LOGGER.info("Drive {} has been checked for {} ms, stopping after {} rounds", drive.getPath(),
+                    options.getDurationMillis(), iterations);
+            return false;
+        }
+        return true;
+    }
+
+    @Nonnull
+    private Target targetOf(int iteration) {
+        return targets[(iteration - 1) % targets.length];
+    }
+
+    private void write(int iteration, @Nonnull Target target) throws IOException, InterruptedException {
+        target.iteration = iteration;
+        boolean profiled = options.isWriteProfiling();
+        if (profiled) {
+            writeProfiler.start(iteration, testFile.length());
+        }
+        try {
+            target.transferrer.transfer();
+        } finally {
+            if (profiled) {
+                onWriteProfiled(writeProfiler.finish());
+            }
+        }
+        setStatusUnlessCanceled(CheckingStatus.RUNNING);
+    }
+
+    /**
+     * @return False if the round is corrupted in forensic mode.
+     */
+    private boolean verify(int iteration, @Nonnull Target target) throws IOException, InterruptedException {
+        return onChecked(iteration, target, target.checker.check(target.transferrer.getDigest()));
+    }
+
+    /**
+     * @param matched True if the target file has the digest of the test file.
+     * @return False if the round is corrupted in forensic mode.
+     */
+    private boolean onChecked(int iteration, @Nonnull Target target, boolean matched)
+            throws IOException, InterruptedException {
+        if (matched) {
+            // The corrupted rounds are counted by the forensic scan.
+            errorMap.addScannedBytes(testFile.length());
+            return true;
+        } else if (options.isForensicMode()) {
+            localizeCorruption(iteration, target.file);
+            return false;
+        } else {
+            throw new IOException("MD5 digest checking fails");
+        }
+    }
+
+    /**
+     * Verify the iteration, and stop writing the next one if it fails, since the check is over.
+     */
+    private boolean verifyOrStopWriting(int iteration, @Nonnull Target target, @Nonnull Target writingTarget)
+            throws IOException, InterruptedException {
+        try {
+            return verify(iteration, target);
+        } catch (IOException | RuntimeException ex) {
+            writingTarget.transferrer.cancel();
+            throw ex;
+        }
+    }
+
+    private static boolean getVerification(@Nonnull Future<Boolean> verification)
+            throws IOException, InterruptedException {
+        try {
+            return verification.get();
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof InterruptedException) {
+                throw (InterruptedException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    private void onWriteProfiled(@Nullable WriteProfile profile) {
+        if (profile == null) {
+            return;
+        }
+        LOGGER.debug("Drive {} iteration {} write profile: {}", drive.getPath(), profile.getIteration(), profile);
+        if (firstWriteProfile == null) {
+            firstWriteProfile = profile;
+        }
+        if (slowestWriteProfile == null || profile.getSustainedMBps() < slowestWriteProfile.getSustainedMBps()) {
+            slowestWriteProfile = profile;
+        }
+    }
+
+    private void localizeCorruption(int iteration, @Nonnull StorageFile outputFile) throws IOException {
+        errorMap.addCorruptedRound();
+        long corruptedBytes = errorMap.getCorruptedBytes();
+        ForensicVerifier verifier = new ForensicVerifier(
+                testFile,
+                outputFile,
+                options.getForensicBlockSize(),
+                options.getForensicReReadCount());
+        verifier.scan(errorMap, iteration, () -> !CheckingStatus.RUNNING.equals(getStatus()));
+        if (errorMap.getCorruptedBytes() == corruptedBytes) {
+            LOGGER.warn("Drive {} iteration {} failed its digest check, but the scan can't find the corruption "
+                    + "again", drive.getPath(), iteration);
+        }
+        LOGGER.warn("Drive {} iteration {} is corrupted, so far: {}", drive.getPath(), iteration,
+                errorMap.summarize());
+        if (errorMap.isBudgetExhausted()) {
+            throw new IOException("Error budget is exhausted: " + errorMap.summarize());
         }
     }
 
@@ -66,33 +498,204 @@ public class DriveChecker {
         this.listener = listener;
     }
 
-    private void invokeDataCopiedListener(int iteration, long dataCopied) {
-        if (listener != null) {
-            listener.onDataCopied(iteration, dataCopied);
+    @Nonnull
+    public DriveCheckerMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @return The metrics of the {@link CheckOptions.Workload#SMALL_FILES} workload; empty for the other
+     *         workloads.
+     */
+    @Nonnull
+    public SmallFileMetrics getSmallFileMetrics() {
+        return smallFileMetrics;
+    }
+
+    /**
+     * @return The metrics of copying the test file when it's a directory; empty otherwise.
+     */
+    @Nonnull
+    public TreeCopyMetrics getTreeCopyMetrics() {
+        return treeCopyMetrics;
+    }
+
+    /**
+     * @return The write profile of the first copy of the test file, or null if no copy has been written, e.g.
+     *         for the workloads which don't copy the test file.
+     */
+    @Nullable
+    public WriteProfile getFirstWriteProfile() {
+        return firstWriteProfile;
+    }
+
+    /**
+     * @return The write profile of the copy with the lowest sustained throughput, or null if no copy has been
+     *         written.
+     */
+    @Nullable
+    public WriteProfile getSlowestWriteProfile() {
+        return slowestWriteProfile;
+    }
+
+    public void addIterationListener(@Nonnull IterationListener listener) {
+        iterationListeners.add(listener);
+    }
+
+    public void removeIterationListener(@Nonnull IterationListener listener) {
+        iterationListeners.remove(listener);
+    }
+
+    private void invokeIterationStarted(int iteration) {
+        for (IterationListener iterationListener : iterationListeners) {
+            iterationListener.onIterationStarted(this, iteration);
         }
     }
 
-    private synchronized void setStatusUnlessCanceled(@Nonnull CheckingStatus newStatus) {
-        if (CheckingStatus.CANCELED.equals(status)) {
-            throw new CancellationException(
-                    "Cannot set status to " + newStatus + " because checking is canceled");
+    private void invokeIterationFinished(int iteration, boolean passed) {
+        for (IterationListener iterationListener : iterationListeners) {
+            iterationListener.onIterationFinished(this, iteration, passed);
+        }
+    }
+
+    public void addChunkIoListener(@Nonnull ChunkIoListener listener) {
+        chunkIoListeners.add(listener);
+    }
+
+    public void removeChunkIoListener(@Nonnull ChunkIoListener listener) {
+        chunkIoListeners.remove(listener);
+    }
+
+    /**
+     * @param broadcastSource If not null, the test file is received from the broadcast source instead of being
+     *                        read by this checker.
+     */
+    public void setBroadcastSource(@Nullable BroadcastSource broadcastSource) {
+        this.broadcastSource = broadcastSource;
+    }
+
+    /**
+     * @param asyncIoEngine The engine shared by the drives when the {@link CheckOptions.Engine#ASYNC} engine
+     *                      is selected.
+     */
+    public void setAsyncIoEngine(@Nullable AsyncIoEngine asyncIoEngine) {
+        this.asyncIoEngine = asyncIoEngine;
+    }
+
+    /**
+     * @param throttle If not null, paces the reads and writes of the drive. It also receives the chunk operations
+     *                 to adapt to their latency.
+     */
+    public void setThrottle(@Nullable DriveThrottle throttle) {
+        if (this.throttle != null) {
+            chunkIoListeners.remove(this.throttle);
+        }
+        this.throttle = throttle;
+        if (throttle != null) {
+            chunkIoListeners.add(throttle);
         }
-        this.status = newStatus;
+    }
+
+    @Nullable
+    public DriveThrottle getThrottle() {
+        return throttle;
+    }
+
+    /**
+     * @param storageTarget Where the target files are written, instead of the root directory of the drive, e.g.
+     *                      to simulate the drive. The async engine needs files on the local filesystem, so
+     *                      the blocking engine is used for the other targets.
+     */
+    public void setStorageTarget(@Nonnull StorageTarget storageTarget) {
+        this.storageTarget = storageTarget;
+    }
+
+    /**
+     * @param retainedFiles If not null, the {@link CheckOptions.Workload#FILL} workload keeps the copies of its
+     *                      last round in it instead of deleting them, and the
+     *                      {@link CheckOptions.Workload#RETENTION_VERIFY} workload verifies the copies in it.
+     */
+    public void setRetainedFiles(@Nullable RetainedFiles retainedFiles) {
+        this.retainedFiles = retainedFiles;
+    }
+
+    private void onDataCopied(long dataCopied) {
+        int iteration = updateState(snapshot -> snapshot.withCopiedBytes(dataCopied)).getIteration();
+        notifyDataCopied(iteration, dataCopied);
+    }
+
+    private void onDataCopied(@Nonnull Target target, long dataCopied) {
+        updateState(snapshot -> snapshot.withCopiedBytes(dataCopied));
+        notifyDataCopied(target.iteration, dataCopied);
+    }
+
+    private void notifyDataCopied(int iteration, long dataCopied) {
+        DriveCheckerListener currentListener = listener;
+        if (currentListener != null) {
+            currentListener.onDataCopied(iteration, dataCopied);
+        }
+    }
+
+    @Nonnull
+    private DriveCheckerSnapshot updateState(@Nonnull UnaryOperator<DriveCheckerSnapshot> update) {
+        while (true) {
+            DriveCheckerSnapshot snapshot = state.get();
+            DriveCheckerSnapshot newSnapshot = update.apply(snapshot);
+            if (state.compareAndSet(snapshot, newSnapshot)) {
+                return newSnapshot;
+            }
+        }
+    }
+
+    private void setStatusUnlessCanceled(@Nonnull CheckingStatus newStatus) {
+        while (true) {
+            DriveCheckerSnapshot snapshot = state.get();
+            checkNotCanceled(snapshot, newStatus);
+            if (newStatus.equals(snapshot.getStatus())
+                    || state.compareAndSet(snapshot, snapshot.withStatus(newStatus))) {
+                return;
+            }
+        }
+    }
+
+    private void failUnlessCanceled(@Nonnull Exception reason) {
+        while (true) {
+            DriveCheckerSnapshot snapshot = state.get();
+            checkNotCanceled(snapshot, CheckingStatus.FAILED);
+            if (state.compareAndSet(snapshot, snapshot.failed(reason))) {
+                return;
+            }
+        }
+    }
+
+    private static void checkNotCanceled(@Nonnull DriveCheckerSnapshot snapshot, @Nonnull CheckingStatus newStatus) {
+        CheckingStatus status = snapshot.getStatus();
+        if (CheckingStatus.CANCELED.equals(status) || CheckingStatus.STALLED.equals(status)) {
+            throw new CancellationException("Cannot set status to " + newStatus + " because checking is " + status);
+        }
+    }
+
+    /**
+     * @return The current state and progress of the checker, without locking.
+     */
+    @Nonnull
+    public DriveCheckerSnapshot getSnapshot() {
+        return state.get();
     }
 
     @Nullable
     public Exception getFailedReason() {
-        return failedReason;
+        return state.get().getFailedReason();
     }
 
     @Nullable
     public Instant getStartTime() {
-        return startTime;
+        return state.get().getStartTime();
     }
 
     @Nullable
     public Instant getDoneTime() {
-        return doneTime;
+        return state.get().getDoneTime();
     }
 
     @Nonnull
@@ -102,36 +705,183 @@ public class DriveChecker {
 
     @Nonnull
     public CheckingStatus getStatus() {
-        return status;
+        return state.get().getStatus();
+    }
+
+    /**
+     * @return The corrupted ranges found in forensic mode.
+     */
+    @Nonnull
+    public ErrorMap getErrorMap() {
+        return errorMap;
     }
 
     public int getCheckedCount() {
-        return finishedIteration;
+        return state.get().getCheckedCount();
     }
 
-    private synchronized void prepare() throws IOException {
-        startTime = Instant.now();
-        doneTime = null;
-        finishedIteration = 0;
-        outputFile = getTargetFile();
-        LOGGER.debug("Output file: {}", outputFile.getPath());
-        transferrer = new FileTransferrer(
-                testFile, outputFile, digestProvider);
-        fileChecker = new FileChecker(outputFile, digestProvider);
-        transferrer.setListener(numBytes -> {
-            invokeDataCopiedListener(finishedIteration + 1, numBytes);
-        });
+    /**
+     * @return How many of the checked iterations were corrupted; only non-zero in forensic mode, where corrupted
+     *         iterations don't stop the checking.
+     */
+    public int getCorruptedIterationCount() {
+        return state.get().getCorruptedCount();
+    }
+
+    /**
+     * @return How long the stalled operation had been running when the drive was flagged as stalled;
+     *         0 if the drive hasn't stalled.
+     */
+    public long getStallNanos() {
+        return state.get().getStallNanos();
     }
 
-    private synchronized void release() throws IOException {
-        doneTime = Instant.now();
-        if (outputFile == null || !outputFile.exists()) {
+    private void prepare() throws IOException {
+        Instant startTime = Instant.now();
+        updateState(snapshot -> snapshot.started(startTime));
+        roundWorkload = createRoundWorkload();
+        if (roundWorkload != null) {
+            roundWorkload.setChunkIoListener(chunkIoListeners);
+            roundWorkload.setThrottle(throttle);
+            roundWorkload.setListener(this::onDataCopied);
             return;
         }
-        if (!outputFile.delete()) {
-            throw new IOException("Check succeeds, but fail to delete test file " + outputFile.getPath());
+        int targetCount = getPipelineDepth();
+        for (int i = 0; i < targetCount; ++i) {
+            Target[] newTargets = Arrays.copyOf(targets, i + 1);
+            newTargets[i] = createTarget();
+            targets = newTargets;
+        }
+    }
+
+    /**
+     * @return How many target files the test file is copied to in turn: two to pipeline the iterations if the
+     *         drive has room for both, otherwise one.
+     */
+    private int getPipelineDepth() throws IOException {
+        if (!options.isPipelineIterations()) {
+            return 1;
+        }
+        if (broadcastSource != null) {
+            LOGGER.info("Iterations of drive {} aren't pipelined, since it receives a broadcast", drive.getPath());
+            return 1;
+        }
+        long usableSpace = storageTarget.getUsableSpace();
+        if (usableSpace >= 0 && usableSpace / 2 < testFile.length()) {
+            LOGGER.warn("Iterations of drive {} aren't pipelined, since it has no room for two copies of {}",
+                    drive.getPath(), testFile.getPath());
+            return 1;
+        }
+        return 2;
+    }
+
+    @Nonnull
+    private Target createTarget() throws IOException {
+        StorageFile outputFile = getTargetFile();
+        LOGGER.debug("Output file: {}", outputFile.getPath());
+        if (options.isPreallocateTarget()) {
+            LOGGER.info("Preallocating {} bytes for {}", testFile.length(), outputFile.getPath());
+            outputFile.preallocate(testFile.length());
+        }
+        File localOutputFile = outputFile.toFile();
+        boolean async = CheckOptions.Engine.ASYNC.equals(options.getEngine())
+                && asyncIoEngine != null
+                && localOutputFile != null
+                && options.getInlineVerifyWindowChunks() <= 0;
+        Transferrer transferrer;
+        Verifier fileChecker;
+        if (async && broadcastSource == null) {
+            transferrer = new AsyncFileTransferrer(testFile, localOutputFile, digestProvider, asyncIoEngine);
+        } else {
+            // The async engine doesn't verify inline, so it isn't used when inline verification is on.
+            InlineVerifyingTransferrer blockingTransferrer = broadcastSource != null
+                    ? new BroadcastTransferrer(broadcastParticipant, outputFile, digestProvider)
+                    : new FileTransferrer(testFile, outputFile, digestProvider);
+            blockingTransferrer.setInlineVerifyWindow(Math.max(0, options.getInlineVerifyWindowChunks()));
+            transferrer = blockingTransferrer;
+        }
+        if (async) {
+            fileChecker = new AsyncFileChecker(localOutputFile, digestProvider, asyncIoEngine);
+        } else {
+            fileChecker = new FileChecker(outputFile, digestProvider);
+        }
+        Target target = new Target(outputFile, transferrer, fileChecker);
+        transferrer.setPreallocated(options.isPreallocateTarget());
+        if (options.isWriteProfiling()) {
+            transferrer.setSyncIntervalBytes(WriteProfiler.getBinBytes(testFile.length()));
+        }
+        transferrer.setChunkIoListener(chunkIoListeners);
+        fileChecker.setChunkIoListener(chunkIoListeners);
+        transferrer.setThrottle(throttle);
+        fileChecker.setThrottle(throttle);
+        transferrer.setListener(dataCopied -> onDataCopied(target, dataCopied));
+        return target;
+    }
+
+    /**
+     * @return The workload of the rounds, or null to copy the test file and read it back.
+     */
+    @Nullable
+    private RoundWorkload createRoundWorkload() throws IOException {
+        switch (options.getWorkload()) {
+            case LARGE_FILE:
+                if (!testFile.isDirectory()) {
+                    return null;
+                }
+                return new TreeCopyWorkload(testFile, getLocalDirectory("Copying a directory tree"), digestProvider,
+                        options, treeCopyMetrics);
+            case SMALL_FILES:
+                return new SmallFileWorkload(getLocalDirectory("The small-file workload"), options,
+                        smallFileMetrics);
+            case FILL:
+                if (testFile.isDirectory()) {
+                    throw new IOException("The fill workload copies a single test file, not the directory "
+                            + testFile.getPath());
+                }
+                return new FillWorkload(testFile, storageTarget, digestProvider, options, retainedFiles);
+            case RANDOM_BLOCKS:
+                return new RandomBlockWorkload(storageTarget, options);
+            case RETENTION_VERIFY:
+                if (retainedFiles == null) {
+                    throw new IOException("There are no retained files to verify");
+                }
+                return new RetentionWorkload(retainedFiles, digestProvider);
+            default:
+                return null;
+        }
+    }
+
+    @Nonnull
+    private File getLocalDirectory(@Nonnull String workload) throws IOException {
+        File directory = storageTarget.getDirectory();
+        if (directory == null) {
+            throw new IOException(workload + " needs a directory on the local filesystem, not "
+                    + storageTarget.getLocation());
+        }
+        return directory;
+    }
+
+    private void release() throws IOException {
+        Instant doneTime = Instant.now();
+        updateState(snapshot -> snapshot.done(doneTime));
+        metrics.setIdle();
+        if (roundWorkload != null) {
+            roundWorkload.close();
+        }
+        Target[] releasedTargets = targets;
+        targets = new Target[0];
+        IOException failure = null;
+        for (Target target : releasedTargets) {
+            try {
+                target.file.delete();
+            } catch (IOException ex) {
+                failure = new IOException("Check succeeds, but fail to delete test file " + target.file.getPath(),
+                        ex);
+            }
+        }
+        if (failure != null) {
+            throw failure;
         }
-        outputFile = null;
     }
 
     /**
@@ -140,22 +890,69 @@ public class DriveChecker {
      * @return True if the cancellation request has been sent;
      *         false if the checker has already been canceled or is done.
      */
-    public synchronized boolean cancel() {
-        if (!CheckingStatus.PENDING.equals(status) && !CheckingStatus.RUNNING.equals(status)) {
-            return false;
-        }
-        status = CheckingStatus.CANCELED;
-        if (transferrer != null) {
-            transferrer.cancel();
+    public boolean cancel() {
+        DriveCheckerSnapshot snapshot;
+        do {
+            snapshot = state.get();
+            if (!snapshot.isActive()) {
+                return false;
+            }
+        } while (!state.compareAndSet(snapshot, snapshot.withStatus(CheckingStatus.CANCELED)));
+        cancelOperations();
+        return true;
+    }
+
+    private void cancelOperations() {
+        for (Target target : targets) {
+            target.transferrer.cancel();
+            target.checker.cancel();
         }
-        if (fileChecker != null) {
-            fileChecker.cancel();
+        if (roundWorkload != null) {
+            roundWorkload.cancel();
         }
+    }
+
+    /**
+     * Flag the drive as stalled. The checker is canceled, but its thread may stay blocked in the stalled
+     * operation.
+     *
+     * @return True if the drive has been flagged; false if the checker isn't running.
+     */
+    public boolean markStalled(@Nonnull ChunkOperation operation, long offset, long elapsedNanos) {
+        IOException reason = new IOException(String.format("%s at offset %d has been stalled for %d ms",
+                operation, offset, TimeUnit.NANOSECONDS.toMillis(elapsedNanos)));
+        Instant doneTime = Instant.now();
+        DriveCheckerSnapshot snapshot;
+        do {
+            snapshot = state.get();
+            if (!CheckingStatus.RUNNING.equals(snapshot.getStatus())) {
+                return false;
+            }
+        } while (!state.compareAndSet(snapshot, snapshot.stalled(doneTime, elapsedNanos, reason)));
+        cancelOperations();
         return true;
     }
 
     @Nonnull
-    private File getTargetFile() throws IOException {
-        return File.createTempFile(testFile.getName() + ".", ".tmp", drive);
+    private StorageFile getTargetFile() throws IOException {
+        return storageTarget.createFile(testFile.getName() + ".");
+    }
+
+    /**
+     * A target file of the test file, with the transferrer writing it and the checker reading it back.
+     */
+    private static final class Target {
+        final StorageFile file;
+        final Transferrer transferrer;
+        final Verifier checker;
+
+        // The iteration written last, for the progress listener.
+        volatile int iteration;
+
+        Target(@Nonnull StorageFile file, @Nonnull Transferrer transferrer, @Nonnull Verifier checker) {
+            this.file = file;
+            this.transferrer = transferrer;
+            this.checker = checker;
+        }
     }
 }
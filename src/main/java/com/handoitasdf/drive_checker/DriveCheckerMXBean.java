@@ -0,0 +1,21 @@
+package com.handoitasdf.drive_checker;
+
+/**
+ * Live progress of a running drive checker, exposed through JMX.
+ */
+public interface DriveCheckerMXBean {
+    String getDrive();
+    String getStatus();
+    String getPhase();
+    int getIteration();
+    long getBytesWritten();
+    long getBytesVerified();
+    double getCurrentMBps();
+    double getAverageMBps();
+    double getWriteLatencyP50Millis();
+    double getWriteLatencyP99Millis();
+    double getWriteLatencyMaxMillis();
+    double getReadLatencyP50Millis();
+    double getReadLatencyP99Millis();
+    double getReadLatencyMaxMillis();
+}
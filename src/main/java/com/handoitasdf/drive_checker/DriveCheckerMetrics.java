@@ -0,0 +1,159 @@
+package com.handoitasdf.drive_checker;
+
+import javax.annotation.Nonnull;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free counters of the chunk operations of a drive. They are updated on the I/O path and can be read by any
+ * number of monitors without contending with it.
+ */
+public class DriveCheckerMetrics implements ChunkIoListener {
+    private static final long RATE_WINDOW_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final double BYTES_PER_MB = 1024.0 * 1024.0;
+
+    public enum Phase {
+        IDLE,
+        WRITE,
+        VERIFY,
+        /**
+         * Writing and verifying at once, when the iterations are pipelined.
+         */
+        MIXED
+    }
+
+    private final LongAdder bytesWritten = new LongAdder();
+    private final LongAdder bytesVerified = new LongAdder();
+    private final LatencyHistogram writeLatency = new LatencyHistogram();
+    private final LatencyHistogram readLatency = new LatencyHistogram();
+    private final LongAdder windowBytes = new LongAdder();
+    private final AtomicLong windowStartNanos = new AtomicLong(System.nanoTime());
+    private volatile RateWindow lastWindow = new RateWindow(0, 0);
+    private volatile long firstOperationNanos = 0;
+    private volatile long lastFinishedNanos = 0;
+    private volatile long idleNanos = 0;
+    private volatile Phase phase = Phase.IDLE;
+    private volatile boolean overlapping = false;
+
+    @Override
+    public void onChunkStarted(@Nonnull ChunkOperation operation, long offset, int length, long startNanos) {
+        if (firstOperationNanos == 0) {
+            firstOperationNanos = System.nanoTime();
+        }
+        if (ChunkOperation.TARGET_WRITE.equals(operation)) {
+            phase = Phase.WRITE;
+        } else if (ChunkOperation.TARGET_READ.equals(operation)) {
+            phase = Phase.VERIFY;
+        }
+    }
+
+    @Override
+    public void onChunkFinished(@Nonnull ChunkOperation operation,
+                                long offset,
+                                int length,
+                                long startNanos,
+                                long elapsedNanos) {
+        switch (operation) {
+            case TARGET_WRITE:
+                bytesWritten.add(length);
+                writeLatency.record(elapsedNanos);
+                break;
+            case TARGET_READ:
+                bytesVerified.add(length);
+                readLatency.record(elapsedNanos);
+                break;
+            default:
+                return;
+        }
+        windowBytes.add(length);
+        long now = System.nanoTime();
+        lastFinishedNanos = now;
+        long windowStart = windowStartNanos.get();
+        long windowNanos = now - windowStart;
+        if (windowNanos >= RATE_WINDOW_NANOS && windowStartNanos.compareAndSet(windowStart, now)) {
+            lastWindow = new RateWindow(windowBytes.sumThenReset(), windowNanos);
+        }
+    }
+
+    /**
+     * Mark the drive as idle, e.g. when the checking is done. The average throughput stops there.
+     */
+    public void setIdle() {
+        idleNanos = System.nanoTime();
+        phase = Phase.IDLE;
+        overlapping = false;
+    }
+
+    /**
+     * @param overlapping True while a copy is being written and another one verified at once.
+     */
+    void setOverlapping(boolean overlapping) {
+        this.overlapping = overlapping;
+    }
+
+    /**
+     * @return The phase of the last chunk operation, or {@link Phase#MIXED} while writes and reads overlap.
+     */
+    @Nonnull
+    public Phase getPhase() {
+        Phase current = phase;
+        return overlapping && !Phase.IDLE.equals(current) ? Phase.MIXED : current;
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten.sum();
+    }
+
+    public long getBytesVerified() {
+        return bytesVerified.sum();
+    }
+
+    /**
+     * @return Throughput of the drive over the last rate window of about one second and the one still open, up to
+     *         now; 0 once no chunk has finished for a whole window, e.g. while the drive stalls.
+     */
+    public double getCurrentMBps() {
+        long now = System.nanoTime();
+        if (Phase.IDLE.equals(phase) || now - lastFinishedNanos >= RATE_WINDOW_NANOS) {
+            return 0;
+        }
+        RateWindow last = lastWindow;
+        long nanos = last.nanos + now - windowStartNanos.get();
+        return nanos <= 0 ? 0 : (last.bytes + windowBytes.sum()) / BYTES_PER_MB * TimeUnit.SECONDS.toNanos(1) / nanos;
+    }
+
+    /**
+     * @return Bytes written and verified per second from the first chunk operation until now, or until the drive
+     *         became idle.
+     */
+    public double getAverageMBps() {
+        long start = firstOperationNanos;
+        if (start == 0) {
+            return 0;
+        }
+        long end = Phase.IDLE.equals(phase) && idleNanos != 0 ? idleNanos : System.nanoTime();
+        double seconds = (end - start) / (double) TimeUnit.SECONDS.toNanos(1);
+        return seconds <= 0 ? 0 : (getBytesWritten() + getBytesVerified()) / BYTES_PER_MB / seconds;
+    }
+
+    @Nonnull
+    public LatencyHistogram getWriteLatency() {
+        return writeLatency;
+    }
+
+    @Nonnull
+    public LatencyHistogram getReadLatency() {
+        return readLatency;
+    }
+
+    private static final class RateWindow {
+        final long bytes;
+        final long nanos;
+
+        RateWindow(long bytes, long nanos) {
+            this.bytes = bytes;
+            this.nanos = nanos;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.handoitasdf.drive_checker;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Exposes the progress of a {@link DriveChecker} as a {@link DriveCheckerMXBean}.
+ */
+public class DriveCheckerMonitor implements DriveCheckerMXBean {
+    private static final double MICROS_PER_MILLI = 1000.0;
+    private final DriveChecker checker;
+    private final DriveCheckerMetrics metrics;
+
+    public DriveCheckerMonitor(@Nonnull DriveChecker checker) {
+        this.checker = checker;
+        this.metrics = checker.getMetrics();
+    }
+
+    @Override
+    public String getDrive() {
+        return checker.getDrive().getPath();
+    }
+
+    @Override
+    public String getStatus() {
+        return checker.getStatus().name();
+    }
+
+    @Override
+    public String getPhase() {
+        return metrics.getPhase().name();
+    }
+
+    @Override
+    public int getIteration() {
+        return checker.getCheckedCount() + 1;
+    }
+
+    @Override
+    public long getBytesWritten() {
+        return metrics.getBytesWritten();
+    }
+
+    @Override
+    public long getBytesVerified() {
+        return metrics.getBytesVerified();
+    }
+
+    @Override
+    public double getCurrentMBps() {
+        return metrics.getCurrentMBps();
+    }
+
+    @Override
+    public double getAverageMBps() {
+        return metrics.getAverageMBps();
+    }
+
+    @Override
+    public double getWriteLatencyP50Millis() {
+        return metrics.getWriteLatency().getPercentileMicros(50) / MICROS_PER_MILLI;
+    }
+
+    @Override
+    public double getWriteLatencyP99Millis() {
+        return metrics.getWriteLatency().getPercentileMicros(99) / MICROS_PER_MILLI;
+    }
+
+    @Override
+    public double getWriteLatencyMaxMillis() {
+        return metrics.getWriteLatency().getPercentileMicros(100) / MICROS_PER_MILLI;
+    }
+
+    @Override
+    public double getReadLatencyP50Millis() {
+        return metrics.getReadLatency().getPercentileMicros(50) / MICROS_PER_MILLI;
+    }
+
+    @Override
+    public double getReadLatencyP99Millis() {
+        return metrics.getReadLatency().getPercentileMicros(99) / MICROS_PER_MILLI;
+    }
+
+    @Override
+    public double getReadLatencyMaxMillis() {
+        return metrics.getReadLatency().getPercentileMicros(100) / MICROS_PER_MILLI;
+    }
+}
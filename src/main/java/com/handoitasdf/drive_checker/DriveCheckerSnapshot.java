@@ -0,0 +1,138 @@
+package com.handoitasdf.drive_checker;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.time.Instant;
+
+/**
+ * An immutable view of the state and progress of a {@link DriveChecker}. The checker replaces its snapshot
+ * atomically on every transition, so a monitor polling it never blocks the checker nor sees a status that
+ * doesn't match the times, counts and reason beside it.
+ */
+public final class DriveCheckerSnapshot {
+    static final DriveCheckerSnapshot PENDING =
+            new DriveCheckerSnapshot(CheckingStatus.PENDING, null, null, 0, 0, 0, 0, null);
+    private final CheckingStatus status;
+    private final Instant startTime;
+    private final Instant doneTime;
+    private final int checkedCount;
+    private final int corruptedCount;
+    private final long copiedBytes;
+    private final long stallNanos;
+    private final Exception failedReason;
+
+    private DriveCheckerSnapshot(@Nonnull CheckingStatus status,
+                                 @Nullable Instant startTime,
+                                 @Nullable Instant doneTime,
+                                 int checkedCount,
+                                 int corruptedCount,
+                                 long copiedBytes,
+                                 long stallNanos,
+                                 @Nullable Exception failedReason) {
+        this.status = status;
+        this.startTime = startTime;
+        this.doneTime = doneTime;
+        this.checkedCount = checkedCount;
+        this.corruptedCount = corruptedCount;
+        this.copiedBytes = copiedBytes;
+        this.stallNanos = stallNanos;
+        this.failedReason = failedReason;
+    }
+
+    @Nonnull
+    public CheckingStatus getStatus() {
+        return status;
+    }
+
+    /**
+     * @return True if the checker can still be canceled or flagged as stalled.
+     */
+    public boolean isActive() {
+        return CheckingStatus.PENDING.equals(status) || CheckingStatus.RUNNING.equals(status);
+    }
+
+    @Nullable
+    public Instant getStartTime() {
+        return startTime;
+    }
+
+    @Nullable
+    public Instant getDoneTime() {
+        return doneTime;
+    }
+
+    /**
+     * @return Finished iterations.
+     */
+    public int getCheckedCount() {
+        return checkedCount;
+    }
+
+    /**
+     * @return The iteration in progress, or the next one.
+     */
+    public int getIteration() {
+        return checkedCount + 1;
+    }
+
+    public int getCorruptedCount() {
+        return corruptedCount;
+    }
+
+    /**
+     * @return Bytes copied so far by the iteration in progress.
+     */
+    public long getCopiedBytes() {
+        return copiedBytes;
+    }
+
+    public long getStallNanos() {
+        return stallNanos;
+    }
+
+    @Nullable
+    public Exception getFailedReason() {
+        return failedReason;
+    }
+
+    @Nonnull
+    DriveCheckerSnapshot withStatus(@Nonnull CheckingStatus newStatus) {
+        return new DriveCheckerSnapshot(newStatus, startTime, doneTime, checkedCount, corruptedCount, copiedBytes,
+                stallNanos, failedReason);
+    }
+
+    @Nonnull
+    DriveCheckerSnapshot started(@Nonnull Instant newStartTime) {
+        return new DriveCheckerSnapshot(status, newStartTime, null, 0, 0, 0, stallNanos, failedReason);
+    }
+
+    @Nonnull
+    DriveCheckerSnapshot withCopiedBytes(long newCopiedBytes) {
+        return new DriveCheckerSnapshot(status, startTime, doneTime, checkedCount, corruptedCount, newCopiedBytes,
+                stallNanos, failedReason);
+    }
+
+    @Nonnull
+    DriveCheckerSnapshot iterationFinished(boolean corrupted) {
+        return new DriveCheckerSnapshot(status, startTime, doneTime, checkedCount + 1,
+                corrupted ? corruptedCount + 1 : corruptedCount, 0, stallNanos, failedReason);
+    }
+
+    @Nonnull
+    DriveCheckerSnapshot failed(@Nonnull Exception reason) {
+        return new DriveCheckerSnapshot(CheckingStatus.FAILED, startTime, doneTime, checkedCount, corruptedCount,
+                copiedBytes, stallNanos, reason);
+    }
+
+    @Nonnull
+    DriveCheckerSnapshot stalled(@Nonnull Instant newDoneTime, long newStallNanos, @Nonnull Exception reason) {
+        return new DriveCheckerSnapshot(CheckingStatus.STALLED, startTime, newDoneTime, checkedCount,
+                corruptedCount, copiedBytes, newStallNanos, reason);
+    }
+
+    @Nonnull
+    DriveCheckerSnapshot done(@Nonnull Instant newDoneTime) {
+        return new DriveCheckerSnapshot(status, startTime, newDoneTime, checkedCount, corruptedCount, copiedBytes,
+                stallNanos, failedReason);
+    }
+}
@@ -0,0 +1,193 @@
+package com.handoitasdf.drive_checker;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Limits the reads and writes of a drive to a rate of its own and to a rate shared by all drives.
+ *
+ * In adaptive mode, the limit of the drive follows the latency: once per window, if the latency is above the
+ * target, the limit is cut to 70% of the observed rate; if it's well below, the limit grows back by 5% of the
+ * ceiling, and is lifted once it passes the ceiling. The latency is the one of the foreground probe if there is
+ * one, or else the mean latency of the chunk operations of the drive in the window.
+ *
+ * A drive may be slow for reasons the rate doesn't change, so the limit is cut again only if the last cut has
+ * lowered the latency, and at most {@link #MAX_CONSECUTIVE_BACKOFFS} times in a row; otherwise it's held.
+ */
+public class DriveThrottle implements ChunkThrottle, ChunkIoListener {
+    private static final Logger LOGGER = LoggerFactory.getLogger(DriveThrottle.class);
+    private static final long WINDOW_NANOS = TimeUnit.MILLISECONDS.toNanos(500);
+    private static final double BACKOFF_FACTOR = 0.7;
+    private static final double RECOVERY_FRACTION = 0.05;
+    private static final double RECOVERY_THRESHOLD = 0.8;
+    private static final double MIN_BYTES_PER_SECOND = 1024 * 1024;
+    private static final int MAX_CONSECUTIVE_BACKOFFS = 5;
+    private static final double BYTES_PER_MB = 1024 * 1024;
+    private final String name;
+    private final TokenBucket driveBucket;
+    private final TokenBucket globalBucket;
+    private final double ceilingBytesPerSecond;
+    private final long latencyTargetNanos;
+    private final ForegroundLatencyProbe latencyProbe;
+    private final LongAdder throttledNanos = new LongAdder();
+    private final LongAdder windowBytes = new LongAdder();
+    private final LongAdder windowLatencyNanos = new LongAdder();
+    private final LongAdder windowOperations = new LongAdder();
+    private final AtomicLong windowStartNanos = new AtomicLong(System.nanoTime());
+    private volatile double peakBytesPerSecond = 0;
+    private volatile double lowestLimitBytesPerSecond = 0;
+    private volatile int backoffCount = 0;
+
+    // Only used by the thread that closes a window, so ordered by the window start.
+    private long backoffLatencyNanos = 0;
+    private int consecutiveBackoffs = 0;
+
+    /**
+     * @param name                  Name of the drive, for logging.
+     * @param driveBytesPerSecond   Limit of the drive, or 0 for no limit.
+     * @param globalBucket          Bucket shared by all drives, or null for no global limit.
+     * @param latencyTargetNanos    Latency to keep below by adapting the limit, or 0 to not adapt it.
+     * @param latencyProbe          Source of the latency to adapt to, or null to use the chunk latency.
+     */
+    public DriveThrottle(@Nonnull String name,
+                         double driveBytesPerSecond,
+                         @Nullable TokenBucket globalBucket,
+                         long latencyTargetNanos,
+                         @Nullable ForegroundLatencyProbe latencyProbe) {
+        this.name = name;
+        this.driveBucket = new TokenBucket(driveBytesPerSecond);
+        this.globalBucket = globalBucket;
+        this.ceilingBytesPerSecond = driveBytesPerSecond;
+        this.latencyTargetNanos = latencyTargetNanos;
+        this.latencyProbe = latencyProbe;
+    }
+
+    @Override
+    public long reserve(@Nonnull ChunkOperation operation, int length) {
+        if (!isDriveOperation(operation)) {
+            return 0;
+        }
+        long waitNanos = driveBucket.reserve(length);
+        if (globalBucket != null) {
+            waitNanos = Math.max(waitNanos, globalBucket.reserve(length));
+        }
+        throttledNanos.add(waitNanos);
+        return waitNanos;
+    }
+
+    @Override
+    public void onChunkStarted(@Nonnull ChunkOperation operation, long offset, int length, long startNanos) {
+    }
+
+    @Override
+    public void onChunkFinished(@Nonnull ChunkOperation operation,
+                                long offset,
+                                int length,
+                                long startNanos,
+                                long elapsedNanos) {
+        if (latencyTargetNanos <= 0 || !isDriveOperation(operation)) {
+            return;
+        }
+        windowBytes.add(length);
+        windowLatencyNanos.add(elapsedNanos);
+        windowOperations.increment();
+        long now = System.nanoTime();
+        long windowStart = windowStartNanos.get();
+        long windowNanos = now - windowStart;
+        if (windowNanos >= WINDOW_NANOS && windowStartNanos.compareAndSet(windowStart, now)) {
+            long operations = windowOperations.sumThenReset();
+            long latencyNanos = windowLatencyNanos.sumThenReset();
+            double bytesPerSecond = windowBytes.sumThenReset() * (double) TimeUnit.SECONDS.toNanos(1) / windowNanos;
+            if (latencyProbe != null && latencyProbe.getLatencyNanos() > 0) {
+                adapt(latencyProbe.getLatencyNanos(), bytesPerSecond);
+            } else if (operations > 0) {
+                adapt(latencyNanos / operations, bytesPerSecond);
+            }
+        }
+    }
+
+    /**
+     * @return Configured limit of the drive in MB/s, or 0 if there is none.
+     */
+    public double getTargetMBps() {
+        return ceilingBytesPerSecond / BYTES_PER_MB;
+    }
+
+    /**
+     * @return Current limit of the drive in MB/s, or 0 if there is none.
+     */
+    public double getLimitMBps() {
+        return driveBucket.getRate() / BYTES_PER_MB;
+    }
+
+    /**
+     * @return Lowest limit the drive has been backed off to in MB/s, or 0 if it never backed off.
+     */
+    public double getLowestLimitMBps() {
+        return lowestLimitBytesPerSecond / BYTES_PER_MB;
+    }
+
+    public boolean isAdaptive() {
+        return latencyTargetNanos > 0;
+    }
+
+    public long getLatencyTargetNanos() {
+        return latencyTargetNanos;
+    }
+
+    public int getBackoffCount() {
+        return backoffCount;
+    }
+
+    /**
+     * @return Total time the operations of the drive have been held back. The waits of the operations kept in
+     *         flight together by the async engine overlap, so it may exceed the elapsed time.
+     */
+    public long getThrottledNanos() {
+        return throttledNanos.sum();
+    }
+
+    private void adapt(long latencyNanos, double bytesPerSecond) {
+        peakBytesPerSecond = Math.max(peakBytesPerSecond, bytesPerSecond);
+        double limit = driveBucket.getRate();
+        if (latencyNanos > latencyTargetNanos) {
+            if (consecutiveBackoffs >= MAX_CONSECUTIVE_BACKOFFS
+                    || (consecutiveBackoffs > 0 && latencyNanos >= backoffLatencyNanos)) {
+                LOGGER.debug("Latency of drive {} is {} ms and backing off doesn't lower it, holding {} MB/s", name,
+                        TimeUnit.NANOSECONDS.toMillis(latencyNanos), String.format("%.1f", limit / BYTES_PER_MB));
+                return;
+            }
+            double base = limit > 0 ? Math.min(limit, bytesPerSecond) : bytesPerSecond;
+            double newLimit = Math.max(MIN_BYTES_PER_SECOND, base * BACKOFF_FACTOR);
+            driveBucket.setRate(newLimit);
+            ++backoffCount;
+            ++consecutiveBackoffs;
+            backoffLatencyNanos = latencyNanos;
+            if (lowestLimitBytesPerSecond == 0 || newLimit < lowestLimitBytesPerSecond) {
+                lowestLimitBytesPerSecond = newLimit;
+            }
+            LOGGER.debug("Latency of drive {} is {} ms, backing off to {} MB/s", name,
+                    TimeUnit.NANOSECONDS.toMillis(latencyNanos), String.format("%.1f", newLimit / BYTES_PER_MB));
+            return;
+        }
+        consecutiveBackoffs = 0;
+        if (limit > 0 && latencyNanos < latencyTargetNanos * RECOVERY_THRESHOLD) {
+            double ceiling = ceilingBytesPerSecond > 0 ? ceilingBytesPerSecond : peakBytesPerSecond;
+            double newLimit = limit + Math.max(ceiling * RECOVERY_FRACTION, MIN_BYTES_PER_SECOND);
+            if (newLimit >= ceiling) {
+                newLimit = ceilingBytesPerSecond;
+            }
+            driveBucket.setRate(newLimit);
+        }
+    }
+
+    private static boolean isDriveOperation(@Nonnull ChunkOperation operation) {
+        return ChunkOperation.TARGET_WRITE.equals(operation) || ChunkOperation.TARGET_READ.equals(operation);
+    }
+}
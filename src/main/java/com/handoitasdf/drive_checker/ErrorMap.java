@@ -0,0 +1,198 @@
+package com.handoitasdf.drive_checker;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A compact map of the corrupted ranges of a drive. Adjacent corrupted blocks of the same iteration and the same
+ * kind are merged into one range, and only the first {@value #MAX_RANGES} ranges are kept; the totals keep
+ * counting after that.
+ *
+ * Every round whose digest check fails is counted too, so that the map isn't empty even if the scan can't find
+ * the corruption again.
+ */
+public class ErrorMap {
+    private static final int MAX_RANGES = 1000;
+    private static final double BYTES_PER_GB = 1024.0 * 1024.0 * 1024.0;
+
+    public enum Kind {
+        /**
+         * A re-read has returned the expected content.
+         */
+        TRANSIENT,
+
+        /**
+         * All re-reads have returned wrong content.
+         */
+        PERSISTENT,
+
+        /**
+         * The target is longer than the test file; the range is the extra tail.
+         */
+        EXTRA
+    }
+
+    public static class Range {
+        private final int iteration;
+        private final long offset;
+        private long length;
+        private long bitFlips;
+        private final Kind kind;
+
+        private Range(int iteration, long offset, long length, long bitFlips, @Nonnull Kind kind) {
+            this.iteration = iteration;
+            this.offset = offset;
+            this.length = length;
+            this.bitFlips = bitFlips;
+            this.kind = kind;
+        }
+
+        public int getIteration() {
+            return iteration;
+        }
+
+        public long getOffset() {
+            return offset;
+        }
+
+        public long getLength() {
+            return length;
+        }
+
+        public long getBitFlips() {
+            return bitFlips;
+        }
+
+        @Nonnull
+        public Kind getKind() {
+            return kind;
+        }
+    }
+
+    private final List<Range> ranges = new ArrayList<>();
+    private final long maxErrorBlocks;
+    private long bytesScanned = 0;
+    private long corruptedBytes = 0;
+    private long bitFlips = 0;
+    private long transientBlocks = 0;
+    private long persistentBlocks = 0;
+    private long corruptedRounds = 0;
+    private boolean truncated = false;
+
+    /**
+     * @param maxErrorBlocks The error budget; once more blocks are corrupted, the budget is exhausted.
+     */
+    public ErrorMap(long maxErrorBlocks) {
+        this.maxErrorBlocks = maxErrorBlocks;
+    }
+
+    public synchronized void addScannedBytes(long nBytes) {
+        bytesScanned += nBytes;
+    }
+
+    /**
+     * Count a round whose digest check has failed, whether or not its corrupted blocks are found.
+     */
+    public synchronized void addCorruptedRound() {
+        ++corruptedRounds;
+    }
+
+    /**
+     * Add the tail of a target which is longer than the test file.
+     */
+    public synchronized void addExtraBytes(int iteration, long offset, long length) {
+        corruptedBytes += length;
+        addRange(new Range(iteration, offset, length, 0, Kind.EXTRA));
+    }
+
+    public synchronized void addCorruptedBlock(
+            int iteration, long offset, int length, long blockBitFlips, @Nonnull Kind kind) {
+        corruptedBytes += length;
+        bitFlips += blockBitFlips;
+        if (Kind.TRANSIENT.equals(kind)) {
+            ++transientBlocks;
+        } else {
+            ++persistentBlocks;
+        }
+        Range last = ranges.isEmpty() ? null : ranges.get(ranges.size() - 1);
+        if (last != null && last.iteration == iteration && last.kind.equals(kind)
+                && last.offset + last.length == offset) {
+            last.length += length;
+            last.bitFlips += blockBitFlips;
+        } else {
+            addRange(new Range(iteration, offset, length, blockBitFlips, kind));
+        }
+    }
+
+    private void addRange(@Nonnull Range range) {
+        if (ranges.size() < MAX_RANGES) {
+            ranges.add(range);
+        } else {
+            truncated = true;
+        }
+    }
+
+    public synchronized boolean isEmpty() {
+        return corruptedRounds == 0 && corruptedBytes == 0;
+    }
+
+    public synchronized boolean isBudgetExhausted() {
+        return transientBlocks + persistentBlocks > maxErrorBlocks;
+    }
+
+    @Nonnull
+    public synchronized List<Range> getRanges() {
+        return Collections.unmodifiableList(new ArrayList<>(ranges));
+    }
+
+    /**
+     * @return True if there were more ranges than the map keeps.
+     */
+    public synchronized boolean isTruncated() {
+        return truncated;
+    }
+
+    public synchronized long getBytesScanned() {
+        return bytesScanned;
+    }
+
+    public synchronized long getCorruptedBytes() {
+        return corruptedBytes;
+    }
+
+    public synchronized long getBitFlips() {
+        return bitFlips;
+    }
+
+    public synchronized long getTransientBlocks() {
+        return transientBlocks;
+    }
+
+    public synchronized long getPersistentBlocks() {
+        return persistentBlocks;
+    }
+
+    /**
+     * @return Rounds whose digest check has failed.
+     */
+    public synchronized long getCorruptedRounds() {
+        return corruptedRounds;
+    }
+
+    /**
+     * @return Corrupted blocks per GB scanned.
+     */
+    public synchronized double getErrorBlocksPerGB() {
+        return bytesScanned == 0 ? 0 : (transientBlocks + persistentBlocks) / (bytesScanned / BYTES_PER_GB);
+    }
+
+    @Nonnull
+    public synchronized String summarize() {
+        return String.format("%d corrupted rounds, %d corrupted blocks (%d transient, %d persistent), %d bytes, "
+                        + "%d bit flips, %.3f errors per GB in %d bytes scanned",
+                corruptedRounds, transientBlocks + persistentBlocks, transientBlocks, persistentBlocks,
+                corruptedBytes, bitFlips, getErrorBlocksPerGB(), bytesScanned);
+    }
+}
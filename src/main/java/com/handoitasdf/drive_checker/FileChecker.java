@@ -1,14 +1,15 @@
 package com.handoitasdf.drive_checker;
 
+import com.handoitasdf.drive_checker.storage.StorageFile;
 import org.apache.commons.io.IOUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nonnull;
-import java.io.File;
-import java.io.FileInputStream;
+import javax.annotation.Nullable;
 import java.io.IOException;
-import java.security.MessageDigest;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
 import java.security.NoSuchAlgorithmException;
 import java.util.Arrays;
 import java.util.concurrent.CancellationException;
@@ -16,32 +17,34 @@ import java.util.concurrent.CancellationException;
 /**
  * Created by icand on 2017/8/31.
  */
-public class FileChecker {
+public class FileChecker implements Verifier {
     private static final Logger LOGGER = LoggerFactory.getLogger(FileChecker.class);
     private static final int CHUNK_SIZE = 1024 * 1024;
-    private final File file;
+    private final StorageFile file;
     private long filePosition;
     private long fileSize;
-    private FileInputStream inputStream;
+    private SeekableByteChannel inputChannel;
     private byte[] buffer;
+    private ByteBuffer bufferView;
     private final MessageDigestProvider digestProvider;
-    private MessageDigest digester;
+    private ContentHasher digester;
     private byte[] realDigest;
     private volatile boolean canceled = false;
-    public FileChecker(@Nonnull File file, @Nonnull MessageDigestProvider digestProvider) {
+    private final ChunkIoProbe probe = new ChunkIoProbe();
+    public FileChecker(@Nonnull StorageFile file, @Nonnull MessageDigestProvider digestProvider) {
         this.file = file;
         this.digestProvider = digestProvider;
     }
 
+    @Override
     public boolean check(byte[] digest) throws IOException, InterruptedException, CancellationException {
         try {
-            LOGGER.debug("Checking digest of file {}", file.getPath());
             init();
+            LOGGER.debug("Checking digest of file {} ({} bytes)", file.getPath(), fileSize);
             do {
                 if (canceled) {
                     throw new CancellationException("Checking is canceled");
                 }
-                LOGGER.debug("Total bytes: {}, current offset: {}", fileSize, filePosition);
             } while (readChunk());
             return Arrays.equals(realDigest, digest);
         } finally {
@@ -49,35 +52,60 @@ public class FileChecker {
         }
     }
 
+    @Override
     public void cancel() {
         canceled = true;
     }
 
-    private boolean readChunk() throws IOException {
-        int nRead = inputStream.read(buffer);
+    @Override
+    public void setChunkIoListener(@Nullable ChunkIoListener listener) {
+        probe.setListener(listener);
+    }
+
+    @Override
+    public void setThrottle(@Nullable ChunkThrottle throttle) {
+        probe.setThrottle(throttle);
+    }
+
+    private boolean readChunk() throws IOException, InterruptedException {
+        probe.throttle(ChunkOperation.TARGET_READ, buffer.length);
+        long startNanos = probe.start(ChunkOperation.TARGET_READ, filePosition, buffer.length);
+        int nRead = -1;
+        try {
+            bufferView.clear();
+            nRead = inputChannel.read(bufferView);
+        } finally {
+            probe.finish(ChunkOperation.TARGET_READ, filePosition, Math.max(nRead, 0), startNanos);
+        }
         if (nRead < 0) {
             realDigest = digester.digest();
             return false;
         }
+        startNanos = probe.start(ChunkOperation.TARGET_DIGEST, filePosition, nRead);
+        try {
+            digester.update(buffer, 0, nRead);
+        } finally {
+            probe.finish(ChunkOperation.TARGET_DIGEST, filePosition, nRead, startNanos);
+        }
         filePosition += nRead;
-        digester.update(buffer, 0, nRead);
         return true;
     }
 
     private void init() throws IOException {
-        inputStream = new FileInputStream(file);
+        inputChannel = file.openForRead();
         filePosition = 0;
-        fileSize = file.length();
+        fileSize = file.size();
         buffer = new byte[CHUNK_SIZE];
+        bufferView = ByteBuffer.wrap(buffer);
         try {
-            digester = digestProvider.getMessageDigest();
+            digester = digestProvider.getContentHasher();
         } catch (NoSuchAlgorithmException ex) {
             throw new IOException("Fail to instantiate message digest", ex);
         }
     }
 
     private void release() {
-        IOUtils.closeQuietly(inputStream);
-        inputStream = null;
+        IOUtils.closeQuietly(inputChannel);
+        inputChannel = null;
     }
 }
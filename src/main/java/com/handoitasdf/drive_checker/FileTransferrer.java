@@ -1,5 +1,6 @@
 package com.handoitasdf.drive_checker;
 
+import com.handoitasdf.drive_checker.storage.StorageFile;
 import org.apache.commons.io.IOUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -8,77 +9,115 @@ import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.security.MessageDigest;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
 import java.security.NoSuchAlgorithmException;
 import java.util.concurrent.CancellationException;
 
 /**
  * Created by icand on 2017/8/30.
  */
-public class FileTransferrer {
+public class FileTransferrer implements InlineVerifyingTransferrer {
     private static final Logger LOGGER = LoggerFactory.getLogger(FileTransferrer.class);
     private static final int CHUNK_SIZE = 1024 * 1024;
-    private MessageDigest digester;
+    private ContentHasher digester;
     private byte[] digest = new byte[0];
-    private final File outputFile;
+    private final StorageFile outputFile;
     private final File inputFile;
     private final MessageDigestProvider digestProvider;
     private long inputSize;
     private long inputPosition = 0;
     private FileInputStream inputStream;
-    private FileOutputStream outputStream;
+    private SeekableByteChannel outputChannel;
+    private boolean preallocated = false;
+    private int inlineVerifyWindow = 0;
+    private long syncIntervalBytes = 0;
+    private InlineVerifier inlineVerifier;
     private byte[] buffer;
     private int bufferSize;
     private int bufferOffset;
     private volatile boolean canceled = false;
     private FileTransferrerListener listener;
+    private final ChunkIoProbe probe = new ChunkIoProbe();
     public FileTransferrer(@Nonnull File inputFile,
-                           @Nonnull File outputFile,
+                           @Nonnull StorageFile outputFile,
                            @Nonnull MessageDigestProvider digestProvider) {
         this.inputFile = inputFile;
         this.outputFile = outputFile;
         this.digestProvider = digestProvider;
     }
 
+    @Override
     public void transfer() throws IOException, InterruptedException, CancellationException {
         try {
             initStreams();
+            LOGGER.debug("Transferring {} bytes to {}", inputSize, outputFile.getPath());
             do {
                 if (canceled) {
                     throw new CancellationException("Transferring is canceled");
                 }
-                LOGGER.debug("Total number bytes to transferred: {}, number of bytes transferred: {}",
-                        inputSize, inputPosition);
                 invokeListenerDataTransferred(inputPosition);
             } while (transferChunk());
-
+            if (inlineVerifier != null) {
+                inlineVerifier.finish(outputChannel);
+            }
+            if (outputChannel.size() > inputPosition) {
+                outputChannel.truncate(inputPosition);
+            }
         } finally {
             release();
         }
     }
 
+    @Override
     public void cancel() {
         canceled = true;
     }
 
+    @Override
     @Nonnull
     public byte[] getDigest() {
         return digest;
     }
 
+    @Override
     public void setListener(@Nullable FileTransferrerListener listener) {
         this.listener = listener;
     }
 
+    @Override
+    public void setChunkIoListener(@Nullable ChunkIoListener listener) {
+        probe.setListener(listener);
+    }
+
+    @Override
+    public void setThrottle(@Nullable ChunkThrottle throttle) {
+        probe.setThrottle(throttle);
+    }
+
+    @Override
+    public void setPreallocated(boolean preallocated) {
+        this.preallocated = preallocated;
+    }
+
+    @Override
+    public void setSyncIntervalBytes(long bytes) {
+        this.syncIntervalBytes = bytes;
+    }
+
+    @Override
+    public void setInlineVerifyWindow(int windowChunks) {
+        this.inlineVerifyWindow = windowChunks;
+    }
+
     private void invokeListenerDataTransferred(long nBytes) {
         if (listener != null) {
             listener.onDataTransferred(nBytes);
         }
     }
 
-    private boolean transferChunk() throws IOException {
+    private boolean transferChunk() throws IOException, InterruptedException {
         if (!readChunk()) {
             return false;
         }
@@ -89,31 +128,59 @@ public class FileTransferrer {
 
     private boolean readChunk() throws IOException {
         bufferOffset = 0;
-        bufferSize = inputStream.read(buffer);
+        long startNanos = probe.start(ChunkOperation.SOURCE_READ, inputPosition, buffer.length);
+        bufferSize = -1;
+        try {
+            bufferSize = inputStream.read(buffer);
+        } finally {
+            probe.finish(ChunkOperation.SOURCE_READ, inputPosition, Math.max(bufferSize, 0), startNanos);
+        }
         if (bufferSize < 0) {
             digest = digester.digest();
             return false;
         } else {
-            digester.update(buffer, bufferOffset, bufferSize);
+            startNanos = probe.start(ChunkOperation.SOURCE_DIGEST, inputPosition, bufferSize);
+            try {
+                digester.update(buffer, bufferOffset, bufferSize);
+            } finally {
+                probe.finish(ChunkOperation.SOURCE_DIGEST, inputPosition, bufferSize, startNanos);
+            }
             inputPosition += bufferSize;
             return true;
         }
     }
 
-    private void writeChunk() throws IOException {
-        outputStream.write(buffer, bufferOffset, bufferSize - bufferOffset);
+    private void writeChunk() throws IOException, InterruptedException {
+        long offset = inputPosition - bufferSize;
+        int length = bufferSize - bufferOffset;
+        probe.throttle(ChunkOperation.TARGET_WRITE, length);
+        long startNanos = probe.start(ChunkOperation.TARGET_WRITE, offset, length);
+        try {
+            ByteBuffer data = ByteBuffer.wrap(buffer, bufferOffset, length);
+            while (data.hasRemaining()) {
+                outputChannel.write(data);
+            }
+            WriteProfiler.syncAtBinEnd(outputChannel, syncIntervalBytes, offset, length, inputSize);
+        } finally {
+            probe.finish(ChunkOperation.TARGET_WRITE, offset, length, startNanos);
+        }
+        if (inlineVerifier != null) {
+            inlineVerifier.onChunkWritten(outputChannel, offset, buffer, bufferOffset, length);
+        }
     }
 
     private void initStreams() throws IOException {
         buffer = new byte[CHUNK_SIZE];
         inputPosition = 0;
-        outputStream = null;
         inputStream = null;
-        outputStream = new FileOutputStream(outputFile, false);
+        outputChannel = outputFile.openForWrite(!preallocated);
         inputStream = new FileInputStream(inputFile);
         inputSize = inputFile.length();
+        if (inlineVerifyWindow > 0) {
+            inlineVerifier = new InlineVerifier(outputFile, inlineVerifyWindow, probe);
+        }
         try {
-            digester = digestProvider.getMessageDigest();
+            digester = digestProvider.getContentHasher();
         } catch (NoSuchAlgorithmException ex) {
             throw new IOException("Fail to instantiate MD5 instance");
         }
@@ -121,9 +188,11 @@ public class FileTransferrer {
 
     private void release() {
         IOUtils.closeQuietly(inputStream);
-        IOUtils.closeQuietly(outputStream);
+        IOUtils.closeQuietly(outputChannel);
+        IOUtils.closeQuietly(inlineVerifier);
         inputStream = null;
-        outputStream = null;
+        inlineVerifier = null;
+        outputChannel = null;
         buffer = null;
     }
 }
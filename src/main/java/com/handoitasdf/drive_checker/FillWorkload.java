@@ -0,0 +1,175 @@
+package com.handoitasdf.drive_checker;
+
+import com.handoitasdf.drive_checker.storage.StorageFile;
+import com.handoitasdf.drive_checker.storage.StorageTarget;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Fills the drive with copies of the test file until only the reserve is left, then reads all of them back, so
+ * that the whole capacity of the drive is checked rather than the space of a single file.
+ *
+ * The copies are deleted at the end of the round, unless they are handed over to {@link RetainedFiles} for a
+ * later retention round; then they are kept until the next round or until the owner deletes them. Copies are
+ * written and read one at a time with the blocking engine.
+ */
+class FillWorkload implements RoundWorkload {
+    private static final Logger LOGGER = LoggerFactory.getLogger(FillWorkload.class);
+    private static final long BYTES_PER_MB = 1024 * 1024;
+    private final File testFile;
+    private final StorageTarget storageTarget;
+    private final MessageDigestProvider digestProvider;
+    private final long reserveBytes;
+    private final int maxFiles;
+    private final int inlineVerifyWindow;
+    private final RetainedFiles retainedFiles;
+    private volatile FileTransferrerListener listener;
+    private volatile ChunkIoListener chunkIoListener;
+    private volatile ChunkThrottle throttle;
+    private volatile Transferrer currentTransferrer;
+    private volatile Verifier currentVerifier;
+    private volatile boolean canceled = false;
+
+    /**
+     * @param retainedFiles If not null, the copies of the last round are kept in it instead of being deleted.
+     */
+    FillWorkload(@Nonnull File testFile,
+                 @Nonnull StorageTarget storageTarget,
+                 @Nonnull MessageDigestProvider digestProvider,
+                 @Nonnull CheckOptions options,
+                 @Nullable RetainedFiles retainedFiles) {
+        this.testFile = testFile;
+        this.storageTarget = storageTarget;
+        this.digestProvider = digestProvider;
+        this.reserveBytes = Math.max(0, options.getFillReserveMB()) * BYTES_PER_MB;
+        this.maxFiles = Math.max(0, options.getFillMaxFiles());
+        this.inlineVerifyWindow = Math.max(0, options.getInlineVerifyWindowChunks());
+        this.retainedFiles = retainedFiles;
+    }
+
+    @Override
+    public void run(int iteration) throws IOException, InterruptedException, CancellationException {
+        if (storageTarget.getUsableSpace() < 0 && maxFiles == 0) {
+            throw new IOException("The free space of " + storageTarget.getLocation()
+                    + " is unknown, so the number of copies to fill it with must be limited");
+        }
+        if (retainedFiles != null) {
+            // The copies of the last round make room for this round.
+            retainedFiles.deleteAll();
+        }
+        long length = testFile.length();
+        List<StorageFile> copies = new ArrayList<>();
+        boolean retained = false;
+        try {
+            byte[] digest = null;
+            while ((maxFiles == 0 || copies.size() < maxFiles)
+                    && hasRoomForCopy(length)) {
+                checkCanceled();
+                StorageFile copy = storageTarget.createFile(testFile.getName() + ".");
+                copies.add(copy);
+                long copiedBefore = (copies.size() - 1) * length;
+                FileTransferrer transferrer = new FileTransferrer(testFile, copy, digestProvider);
+                transferrer.setChunkIoListener(chunkIoListener);
+                transferrer.setThrottle(throttle);
+                transferrer.setInlineVerifyWindow(inlineVerifyWindow);
+                transferrer.setListener(numBytes -> {
+                    FileTransferrerListener currentListener = listener;
+                    if (currentListener != null) {
+                        currentListener.onDataTransferred(copiedBefore + numBytes);
+                    }
+                });
+                currentTransferrer = transferrer;
+                transferrer.transfer();
+                digest = transferrer.getDigest();
+            }
+            if (digest == null) {
+                throw new IOException(String.format("There is no room for a copy of %s on %s",
+                        testFile.getName(), storageTarget.getLocation()));
+            }
+            LOGGER.info("Filled {} with {} copies of {}", storageTarget.getLocation(), copies.size(),
+                    testFile.getName());
+            for (int i = 0; i < copies.size(); ++i) {
+                checkCanceled();
+                FileChecker checker = new FileChecker(copies.get(i), digestProvider);
+                checker.setChunkIoListener(chunkIoListener);
+                checker.setThrottle(throttle);
+                currentVerifier = checker;
+                if (!checker.check(digest)) {
+                    throw new IOException(String.format("Copy %d of %d (%s) is corrupted",
+                            i + 1, copies.size(), copies.get(i).getPath()));
+                }
+            }
+            if (retainedFiles != null) {
+                retainedFiles.retain(copies, digest);
+                retained = true;
+            }
+        } finally {
+            currentTransferrer = null;
+            currentVerifier = null;
+            if (!retained) {
+                deleteCopies(copies);
+            }
+        }
+    }
+
+    @Override
+    public void cancel() {
+        canceled = true;
+        Transferrer transferrer = currentTransferrer;
+        if (transferrer != null) {
+            transferrer.cancel();
+        }
+        Verifier verifier = currentVerifier;
+        if (verifier != null) {
+            verifier.cancel();
+        }
+    }
+
+    @Override
+    public void setListener(@Nullable FileTransferrerListener listener) {
+        this.listener = listener;
+    }
+
+    @Override
+    public void setChunkIoListener(@Nullable ChunkIoListener listener) {
+        this.chunkIoListener = listener;
+    }
+
+    @Override
+    public void setThrottle(@Nullable ChunkThrottle throttle) {
+        this.throttle = throttle;
+    }
+
+    @Override
+    public void close() {
+    }
+
+    private boolean hasRoomForCopy(long length) throws IOException {
+        long usableSpace = storageTarget.getUsableSpace();
+        return usableSpace < 0 || usableSpace - length >= reserveBytes;
+    }
+
+    private void checkCanceled() {
+        if (canceled) {
+            throw new CancellationException("Filling is canceled");
+        }
+    }
+
+    private static void deleteCopies(@Nonnull List<StorageFile> copies) {
+        for (StorageFile copy : copies) {
+            try {
+                copy.delete();
+            } catch (IOException ex) {
+                LOGGER.warn("Fail to delete {}", copy.getPath(), ex);
+            }
+        }
+    }
+}
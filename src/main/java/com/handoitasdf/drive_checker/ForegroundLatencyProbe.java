@@ -0,0 +1,82 @@
+package com.handoitasdf.drive_checker;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the latency a foreground workload would see, by periodically writing and syncing a small block to a
+ * file in a directory of its own, e.g. on the volume of a service sharing the disks with the check.
+ */
+public class ForegroundLatencyProbe implements Closeable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ForegroundLatencyProbe.class);
+    private static final long INTERVAL_MILLIS = 250;
+    private static final int BLOCK_SIZE = 4096;
+    private static final double SMOOTHING = 0.3;
+    private final File probeFile;
+    private final FileChannel channel;
+    private final ByteBuffer block = ByteBuffer.allocateDirect(BLOCK_SIZE);
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "foreground-latency-probe");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile long latencyNanos = 0;
+
+    public ForegroundLatencyProbe(@Nonnull File directory) throws IOException {
+        probeFile = File.createTempFile(".drive-checker-probe", ".tmp", directory);
+        channel = FileChannel.open(probeFile.toPath(), StandardOpenOption.WRITE);
+        scheduler.scheduleWithFixedDelay(this::probe, 0, INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+        LOGGER.info("Probing foreground latency with {}", probeFile.getPath());
+    }
+
+    /**
+     * @return Smoothed latency of a small synced write, or 0 until the first probe is done.
+     */
+    public long getLatencyNanos() {
+        return latencyNanos;
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+        try {
+            scheduler.awaitTermination(INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+            channel.close();
+            Files.deleteIfExists(probeFile.toPath());
+        } catch (IOException ex) {
+            LOGGER.warn("Fail to delete probe file {}", probeFile.getPath(), ex);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void probe() {
+        try {
+            block.clear();
+            long startNanos = System.nanoTime();
+            while (block.hasRemaining()) {
+                channel.write(block, block.position());
+            }
+            channel.force(false);
+            long sample = System.nanoTime() - startNanos;
+            long previous = latencyNanos;
+            latencyNanos = previous == 0 ? sample : (long) (previous + SMOOTHING * (sample - previous));
+        } catch (IOException ex) {
+            if (!scheduler.isShutdown()) {
+                LOGGER.warn("Foreground latency probe fails", ex);
+            }
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.handoitasdf.drive_checker;
+
+import com.handoitasdf.drive_checker.storage.StorageFile;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.util.concurrent.CancellationException;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Localizes the corruption of a target file by comparing it to the test file block by block.
+ *
+ * Every mismatched block is re-read several times: if any re-read returns the expected content the corruption
+ * is transient (e.g. a flaky read path), otherwise it is persistent. The re-reads go through a
+ * {@link DirectReader}, so that they reach the medium rather than the OS page cache; where direct I/O isn't
+ * available, a transient corruption on the medium itself may show up as persistent. A target longer than the
+ * test file has its extra tail recorded as corrupted.
+ */
+public class ForensicVerifier {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ForensicVerifier.class);
+    private static final int CHUNK_SIZE = 1024 * 1024;
+    private final File sourceFile;
+    private final StorageFile targetFile;
+    private final int blockSize;
+    private final int reReadCount;
+
+    /**
+     * @throws IllegalArgumentException If the block size isn't positive.
+     */
+    public ForensicVerifier(@Nonnull File sourceFile,
+                            @Nonnull StorageFile targetFile,
+                            int blockSize,
+                            int reReadCount) {
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException("Block size must be positive: " + blockSize);
+        }
+        this.sourceFile = sourceFile;
+        this.targetFile = targetFile;
+        this.blockSize = blockSize;
+        this.reReadCount = reReadCount;
+    }
+
+    /**
+     * Scan the target file and add the corrupted blocks to the error map. Scanning stops early once the error
+     * budget is exhausted.
+     */
+    public void scan(@Nonnull ErrorMap errorMap, int iteration, @Nonnull BooleanSupplier canceled)
+            throws IOException {
+        LOGGER.info("Localizing corruption of {} in iteration {}", targetFile.getPath(), iteration);
+        byte[] expected = new byte[CHUNK_SIZE];
+        byte[] actual = new byte[CHUNK_SIZE];
+        try (FileInputStream sourceStream = new FileInputStream(sourceFile);
+             SeekableByteChannel target = targetFile.openForRead();
+             DirectReader reReader = DirectReader.open(targetFile)) {
+            if (!reReader.isDirect()) {
+                LOGGER.warn("Cannot re-read {} with direct I/O, so a corruption on the medium may be classified as "
+                        + "persistent", targetFile.getPath());
+            }
+            long offset = 0;
+            long targetLength = target.size();
+            while (true) {
+                if (canceled.getAsBoolean()) {
+                    throw new CancellationException("Checking is canceled");
+                }
+                int nExpected = readFully(sourceStream, expected);
+                if (nExpected <= 0) {
+                    break;
+                }
+                target.position(offset);
+                int nActual = readFully(target, actual, nExpected);
+                for (int blockOffset = 0; blockOffset < nExpected; blockOffset += blockSize) {
+                    int length = Math.min(blockSize, nExpected - blockOffset);
+                    long blockBitFlips = countBitFlips(expected, actual, blockOffset, length, nActual);
+                    if (blockBitFlips == 0) {
+                        continue;
+                    }
+                    ErrorMap.Kind kind = classify(reReader, offset + blockOffset, expected, blockOffset, length);
+                    errorMap.addCorruptedBlock(iteration, offset + blockOffset, length, blockBitFlips, kind);
+                }
+                errorMap.addScannedBytes(nExpected);
+                offset += nExpected;
+                if (errorMap.isBudgetExhausted()) {
+                    LOGGER.warn("Error budget of {} is exhausted at offset {}", targetFile.getPath(), offset);
+                    return;
+                }
+            }
+            if (targetLength > offset) {
+                LOGGER.warn("{} is {} bytes longer than the test file", targetFile.getPath(), targetLength - offset);
+                errorMap.addExtraBytes(iteration, offset, targetLength - offset);
+            }
+        }
+    }
+
+    @Nonnull
+    private ErrorMap.Kind classify(@Nonnull DirectReader reReader,
+                                   long offset,
+                                   @Nonnull byte[] expected,
+                                   int expectedOffset,
+                                   int length) throws IOException {
+        for (int attempt = 0; attempt < reReadCount; ++attempt) {
+            ByteBuffer reRead = reReader.read(offset, length);
+            if (countBitFlips(expected, expectedOffset, reRead, length) == 0) {
+                return ErrorMap.Kind.TRANSIENT;
+            }
+        }
+        return ErrorMap.Kind.PERSISTENT;
+    }
+
+    /**
+     * Count the differing bits between the expected block and the same block of the actual buffer. Bytes beyond
+     * the end of the actual data count as fully flipped.
+     */
+    private static long countBitFlips(@Nonnull byte[] expected,
+                                      @Nonnull byte[] actual,
+                                      int offset,
+                                      int length,
+                                      int actualLength) {
+        long flips = 0;
+        for (int i = offset; i < offset + length; ++i) {
+            flips += i < actualLength ? Integer.bitCount((expected[i] ^ actual[i]) & 0xff) : Byte.SIZE;
+        }
+        return flips;
+    }
+
+    private static long countBitFlips(@Nonnull byte[] expected,
+                                      int expectedOffset,
+                                      @Nonnull ByteBuffer actual,
+                                      int length) {
+        long flips = 0;
+        for (int i = 0; i < length; ++i) {
+            flips += i < actual.remaining()
+                    ? Integer.bitCount((expected[expectedOffset + i] ^ actual.get(i)) & 0xff)
+                    : Byte.SIZE;
+        }
+        return flips;
+    }
+
+    private static int readFully(@Nonnull FileInputStream stream, @Nonnull byte[] buffer) throws IOException {
+        int total = 0;
+        while (total < buffer.length) {
+            int nRead = stream.read(buffer, total, buffer.length - total);
+            if (nRead < 0) {
+                break;
+            }
+            total += nRead;
+        }
+        return total;
+    }
+
+    private static int readFully(@Nonnull SeekableByteChannel channel, @Nonnull byte[] buffer, int length)
+            throws IOException {
+        ByteBuffer view = ByteBuffer.wrap(buffer, 0, length);
+        while (view.hasRemaining()) {
+            if (channel.read(view) < 0) {
+                break;
+            }
+        }
+        return view.position();
+    }
+}
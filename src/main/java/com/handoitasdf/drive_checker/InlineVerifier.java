@@ -0,0 +1,124 @@
+package com.handoitasdf.drive_checker;
+
+import com.handoitasdf.drive_checker.storage.StorageFile;
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+
+/**
+ * Reads back the chunks of a target file a bounded window behind the write head while it's being written, so
+ * that the first bad chunk fails the drive instead of the digest check at the end of the round.
+ *
+ * The written chunks are kept until the window is full; then the target is flushed to the drive and they are
+ * read back through a {@link DirectReader}, bypassing the OS page cache, and compared. If the file isn't on a
+ * local filesystem that supports direct I/O, the reads are served from the page cache, so only the errors on the
+ * write path are caught inline; the digest check at the end of the round is kept for both.
+ */
+final class InlineVerifier implements Closeable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(InlineVerifier.class);
+    private final StorageFile file;
+    private final ChunkIoProbe probe;
+    private final byte[][] chunks;
+    private final long[] offsets;
+    private final int[] lengths;
+    private int pendingCount = 0;
+    private DirectReader reader;
+
+    /**
+     * @param windowChunks How many written chunks are read back together.
+     */
+    InlineVerifier(@Nonnull StorageFile file, int windowChunks, @Nonnull ChunkIoProbe probe) {
+        this.file = file;
+        this.probe = probe;
+        int window = Math.max(1, windowChunks);
+        this.chunks = new byte[window][];
+        this.offsets = new long[window];
+        this.lengths = new int[window];
+    }
+
+    /**
+     * Keep a chunk just written through the given channel, and verify the window once it's full.
+     *
+     * @throws IOException If a chunk of the window reads back differently from what was written.
+     */
+    void onChunkWritten(@Nonnull SeekableByteChannel outputChannel,
+                        long offset,
+                        @Nonnull byte[] data,
+                        int dataOffset,
+                        int length) throws IOException, InterruptedException {
+        if (chunks[pendingCount] == null || chunks[pendingCount].length < length) {
+            chunks[pendingCount] = new byte[length];
+        }
+        System.arraycopy(data, dataOffset, chunks[pendingCount], 0, length);
+        offsets[pendingCount] = offset;
+        lengths[pendingCount] = length;
+        if (++pendingCount == chunks.length) {
+            verifyPending(outputChannel);
+        }
+    }
+
+    /**
+     * Verify the chunks left in the window once the target has been written.
+     */
+    void finish(@Nonnull SeekableByteChannel outputChannel) throws IOException, InterruptedException {
+        verifyPending(outputChannel);
+    }
+
+    @Override
+    public void close() {
+        IOUtils.closeQuietly(reader);
+        reader = null;
+    }
+
+    private void verifyPending(@Nonnull SeekableByteChannel outputChannel) throws IOException, InterruptedException {
+        if (pendingCount == 0) {
+            return;
+        }
+        if (outputChannel instanceof FileChannel) {
+            ((FileChannel) outputChannel).force(false);
+        }
+        if (reader == null) {
+            openInput();
+        }
+        for (int i = 0; i < pendingCount; ++i) {
+            verifyChunk(offsets[i], chunks[i], lengths[i]);
+        }
+        pendingCount = 0;
+    }
+
+    private void openInput() throws IOException {
+        reader = DirectReader.open(file);
+        if (!reader.isDirect()) {
+            LOGGER.warn("Cannot read {} back with direct I/O, so inline verification only catches errors on the "
+                    + "write path", file.getPath());
+        }
+    }
+
+    private void verifyChunk(long offset, @Nonnull byte[] expected, int length)
+            throws IOException, InterruptedException {
+        probe.throttle(ChunkOperation.TARGET_READ, length);
+        long startNanos = probe.start(ChunkOperation.TARGET_READ, offset, length);
+        ByteBuffer actual;
+        try {
+            actual = reader.read(offset, length);
+        } finally {
+            probe.finish(ChunkOperation.TARGET_READ, offset, length, startNanos);
+        }
+        if (actual.remaining() < length) {
+            throw new IOException(String.format("%s ends before the chunk at offset %d", file.getPath(), offset));
+        }
+        for (int i = 0; i < length; ++i) {
+            if (expected[i] != actual.get(i)) {
+                throw new IOException(String.format("Chunk at offset %d of %s differs from what was written at "
+                        + "byte %d", offset, file.getPath(), i));
+            }
+        }
+    }
+}
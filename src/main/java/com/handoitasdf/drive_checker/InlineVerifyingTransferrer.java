@@ -0,0 +1,13 @@
+package com.handoitasdf.drive_checker;
+
+/**
+ * A {@link Transferrer} which can read the target file back while it's being written.
+ */
+public interface InlineVerifyingTransferrer extends Transferrer {
+
+    /**
+     * @param windowChunks How many chunks behind the write head the target file is read back and compared while
+     *                     it's being written; 0 not to read it back.
+     */
+    void setInlineVerifyWindow(int windowChunks);
+}
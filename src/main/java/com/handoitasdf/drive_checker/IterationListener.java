@@ -0,0 +1,16 @@
+package com.handoitasdf.drive_checker;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Receives the start and the end of every iteration of a drive checker. When the iterations are pipelined, the
+ * next iteration starts before the last one finishes, on the same thread.
+ */
+public interface IterationListener {
+    void onIterationStarted(@Nonnull DriveChecker checker, int iteration);
+
+    /**
+     * @param passed False if the iteration has failed, or has been canceled.
+     */
+    void onIterationFinished(@Nonnull DriveChecker checker, int iteration, boolean passed);
+}
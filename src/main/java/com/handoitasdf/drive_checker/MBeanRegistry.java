@@ -0,0 +1,66 @@
+package com.handoitasdf.drive_checker;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Registers MBeans on the platform MBean server. Failures are logged, because monitoring must never break
+ * a check.
+ */
+public class MBeanRegistry {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MBeanRegistry.class);
+    public static final String DOMAIN = "com.handoitasdf.drive_checker";
+
+    @Nonnull
+    public static ObjectName driveCheckerName(@Nonnull DriveChecker checker) {
+        return objectName("type=DriveChecker,drive=" + ObjectName.quote(checker.getDrive().getPath()));
+    }
+
+    @Nonnull
+    public static ObjectName objectName(@Nonnull String keyProperties) {
+        try {
+            return new ObjectName(DOMAIN + ":" + keyProperties);
+        } catch (MalformedObjectNameException ex) {
+            throw new IllegalArgumentException("Invalid MBean name " + keyProperties, ex);
+        }
+    }
+
+    /**
+     * @return The name the MBean is registered with, or null if the registration fails.
+     */
+    @Nullable
+    public static ObjectName register(@Nonnull ObjectName name, @Nonnull Object mbean) {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(mbean, name);
+            return name;
+        } catch (Exception ex) {
+            LOGGER.warn("Fail to register MBean {}", name, ex);
+            return null;
+        }
+    }
+
+    public static void unregister(@Nullable ObjectName name) {
+        if (name == null) {
+            return;
+        }
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+        } catch (Exception ex) {
+            LOGGER.warn("Fail to unregister MBean {}", name, ex);
+        }
+    }
+}
@@ -8,8 +8,31 @@ import java.security.NoSuchAlgorithmException;
  * Created by icand on 2017/8/31.
  */
 public class MessageDigestProvider {
+    private static final String ALGORITHM = "MD5";
+    private final CheckOptions.HashMode hashMode;
+
+    public MessageDigestProvider() {
+        this(CheckOptions.HashMode.SEQUENTIAL);
+    }
+
+    public MessageDigestProvider(@Nonnull CheckOptions.HashMode hashMode) {
+        this.hashMode = hashMode;
+    }
+
     @Nonnull
     public MessageDigest getMessageDigest() throws NoSuchAlgorithmException {
-        return MessageDigest.getInstance("MD5");
+        return MessageDigest.getInstance(ALGORITHM);
+    }
+
+    /**
+     * @return A hasher of the content of a test file. The digests of hashers from the same provider are
+     *         comparable; the ones of different hash modes aren't.
+     */
+    @Nonnull
+    public ContentHasher getContentHasher() throws NoSuchAlgorithmException {
+        if (CheckOptions.HashMode.TREE.equals(hashMode)) {
+            return new TreeContentHasher(ALGORITHM);
+        }
+        return new SequentialContentHasher(getMessageDigest());
     }
 }
@@ -0,0 +1,141 @@
+package com.handoitasdf.drive_checker;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Base of the workloads whose rounds are split across a pool of worker threads of their own. A round is run in
+ * phases, and every phase waits for all workers; once a worker fails, the others stop at their next step.
+ */
+abstract class ParallelWorkload implements RoundWorkload {
+    private static final long PROGRESS_BYTES = 1024 * 1024;
+    private static final AtomicInteger NEXT_POOL_INDEX = new AtomicInteger();
+    protected final int workers;
+    protected final ChunkIoProbe probe = new ChunkIoProbe();
+    private final String name;
+    private final ExecutorService executor;
+    private final AtomicLong bytesWritten = new AtomicLong();
+    private volatile FileTransferrerListener listener;
+    private volatile boolean canceled = false;
+    private volatile boolean aborted = false;
+
+    /**
+     * @param name Name of the workload, for the threads and the messages.
+     */
+    ParallelWorkload(@Nonnull String name, int workers) {
+        this.name = name;
+        this.workers = Math.max(1, workers);
+        String poolName = name + "-" + NEXT_POOL_INDEX.incrementAndGet() + "-";
+        AtomicInteger nextThreadIndex = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(this.workers, runnable -> {
+            Thread thread = new Thread(runnable, poolName + nextThreadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public void cancel() {
+        canceled = true;
+    }
+
+    @Override
+    public void setListener(@Nullable FileTransferrerListener listener) {
+        this.listener = listener;
+    }
+
+    @Override
+    public void setChunkIoListener(@Nullable ChunkIoListener listener) {
+        probe.setListener(listener);
+    }
+
+    @Override
+    public void setThrottle(@Nullable ChunkThrottle throttle) {
+        probe.setThrottle(throttle);
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    protected void resetProgress() {
+        bytesWritten.set(0);
+    }
+
+    /**
+     * Count bytes written in the round, and tell the listener about every MB.
+     */
+    protected void addProgress(int length) {
+        long written = bytesWritten.addAndGet(length);
+        FileTransferrerListener currentListener = listener;
+        if (currentListener != null && (written - length) / PROGRESS_BYTES != written / PROGRESS_BYTES) {
+            currentListener.onDataTransferred(written);
+        }
+    }
+
+    /**
+     * @return False if another worker of the phase has failed.
+     * @throws CancellationException If the workload is canceled.
+     */
+    protected boolean checkRunning() {
+        if (canceled) {
+            throw new CancellationException(name + " is canceled");
+        }
+        return !aborted;
+    }
+
+    /**
+     * Run a phase on all workers and wait for them.
+     */
+    protected void runInParallel(@Nonnull Worker worker) throws IOException, InterruptedException {
+        aborted = false;
+        List<Future<Void>> futures = new ArrayList<>(workers);
+        for (int i = 0; i < workers; ++i) {
+            int workerIndex = i;
+            futures.add(executor.submit(() -> {
+                worker.run(workerIndex);
+                return null;
+            }));
+        }
+        Throwable failure = null;
+        try {
+            for (Future<Void> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException ex) {
+                    aborted = true;
+                    if (failure == null) {
+                        failure = ex.getCause();
+                    }
+                }
+            }
+        } catch (InterruptedException ex) {
+            aborted = true;
+            throw ex;
+        }
+        if (failure instanceof IOException) {
+            throw (IOException) failure;
+        } else if (failure instanceof InterruptedException) {
+            throw (InterruptedException) failure;
+        } else if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        } else if (failure != null) {
+            throw new IOException(failure);
+        }
+    }
+
+    protected interface Worker {
+        void run(int workerIndex) throws IOException, InterruptedException;
+    }
+}
@@ -0,0 +1,163 @@
+package com.handoitasdf.drive_checker;
+
+import com.handoitasdf.drive_checker.storage.StorageFile;
+import com.handoitasdf.drive_checker.storage.StorageTarget;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.util.Random;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Writes blocks at random offsets of a preallocated region in every round, then reads them back in another
+ * order and verifies them, to exercise the mapping of the drive rather than its sequential bandwidth.
+ *
+ * The blocks of a round are picked by stepping through the region with a step coprime to its number of
+ * blocks, so they are all distinct and the workers never write the same block. The content of a block is
+ * generated from its index and the round.
+ */
+class RandomBlockWorkload extends ParallelWorkload {
+    private static final Logger LOGGER = LoggerFactory.getLogger(RandomBlockWorkload.class);
+    private static final long BYTES_PER_MB = 1024 * 1024;
+    private final StorageTarget storageTarget;
+    private final int blockSize;
+    private final long blockCount;
+    private final long operationCount;
+    private final DataPattern pattern;
+    private StorageFile file;
+
+    RandomBlockWorkload(@Nonnull StorageTarget storageTarget, @Nonnull CheckOptions options) {
+        super("random-blocks", options.getRandomWorkers());
+        this.storageTarget = storageTarget;
+        this.blockSize = Math.max(1, options.getRandomBlockSize());
+        long regionBytes = Math.max(1, options.getRandomRegionMB()) * BYTES_PER_MB;
+
+        // Capped so that stepping through the blocks can't overflow.
+        this.blockCount = Math.max(1, Math.min(Integer.MAX_VALUE, regionBytes / blockSize));
+        this.operationCount = Math.max(1, Math.min(blockCount, options.getRandomOperations()));
+        this.pattern = options.getDataPattern() != null ? options.getDataPattern() : DataPattern.RANDOM;
+    }
+
+    @Override
+    public void run(int iteration) throws IOException, InterruptedException, CancellationException {
+        if (file == null) {
+            file = storageTarget.createFile(".drive-checker-random.");
+            LOGGER.debug("Preallocating {} blocks of {} bytes in {}", blockCount, blockSize, file.getPath());
+            file.preallocate(blockCount * blockSize);
+        }
+        Random random = new Random(iteration);
+        long step = coprimeStep(1 + (long) (random.nextDouble() * (blockCount - 1)));
+        long first = (long) (random.nextDouble() * blockCount);
+        resetProgress();
+        runInParallel(worker -> {
+            byte[] buffer = new byte[blockSize];
+            try (SeekableByteChannel channel = file.openForWrite(false)) {
+                for (long i = worker; i < operationCount && checkRunning(); i += workers) {
+                    writeBlock(channel, (first + i * step) % blockCount, iteration, buffer);
+                }
+                if (channel instanceof FileChannel) {
+                    ((FileChannel) channel).force(false);
+                }
+            }
+        });
+        runInParallel(worker -> {
+            byte[] expected = new byte[blockSize];
+            byte[] actual = new byte[blockSize];
+            try (SeekableByteChannel channel = file.openForRead()) {
+                for (long i = operationCount - 1 - worker; i >= 0 && checkRunning(); i -= workers) {
+                    verifyBlock(channel, (first + i * step) % blockCount, iteration, expected, actual);
+                }
+            }
+        });
+    }
+
+    @Override
+    public void close() {
+        super.close();
+        if (file == null) {
+            return;
+        }
+        try {
+            file.delete();
+        } catch (IOException ex) {
+            LOGGER.warn("Fail to delete {}", file.getPath(), ex);
+        }
+    }
+
+    private void writeBlock(@Nonnull SeekableByteChannel channel,
+                            long block,
+                            int iteration,
+                            @Nonnull byte[] buffer) throws IOException, InterruptedException {
+        long offset = block * blockSize;
+        pattern.fill(buffer, 0, blockSize, seedOf(iteration, block));
+        probe.throttle(ChunkOperation.TARGET_WRITE, blockSize);
+        long startNanos = probe.start(ChunkOperation.TARGET_WRITE, offset, blockSize);
+        try {
+            ByteBuffer data = ByteBuffer.wrap(buffer);
+            channel.position(offset);
+            while (data.hasRemaining()) {
+                channel.write(data);
+            }
+        } finally {
+            probe.finish(ChunkOperation.TARGET_WRITE, offset, blockSize, startNanos);
+        }
+        addProgress(blockSize);
+    }
+
+    private void verifyBlock(@Nonnull SeekableByteChannel channel,
+                             long block,
+                             int iteration,
+                             @Nonnull byte[] expected,
+                             @Nonnull byte[] actual) throws IOException, InterruptedException {
+        long offset = block * blockSize;
+        pattern.fill(expected, 0, blockSize, seedOf(iteration, block));
+        probe.throttle(ChunkOperation.TARGET_READ, blockSize);
+        long startNanos = probe.start(ChunkOperation.TARGET_READ, offset, blockSize);
+        try {
+            ByteBuffer data = ByteBuffer.wrap(actual);
+            channel.position(offset);
+            while (data.hasRemaining()) {
+                if (channel.read(data) < 0) {
+                    throw new IOException(String.format("%s ends before the block at offset %d",
+                            file.getPath(), offset));
+                }
+            }
+        } finally {
+            probe.finish(ChunkOperation.TARGET_READ, offset, blockSize, startNanos);
+        }
+        for (int i = 0; i < blockSize; ++i) {
+            if (expected[i] != actual[i]) {
+                throw new IOException(String.format("Block at offset %d of %s differs from what was written at "
+                        + "byte %d", offset, file.getPath(), i));
+            }
+        }
+    }
+
+    /**
+     * @return The first step from the given one which is coprime to the number of blocks.
+     */
+    private long coprimeStep(long step) {
+        while (gcd(step, blockCount) != 1) {
+            step = step % blockCount + 1;
+        }
+        return step;
+    }
+
+    private static long gcd(long a, long b) {
+        while (b != 0) {
+            long remainder = a % b;
+            a = b;
+            b = remainder;
+        }
+        return a;
+    }
+
+    private static long seedOf(int iteration, long block) {
+        return ((long) iteration << 40) ^ block;
+    }
+}
@@ -0,0 +1,57 @@
+package com.handoitasdf.drive_checker;
+
+import com.handoitasdf.drive_checker.storage.StorageFile;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Copies of the test file a fill round has left on a drive, with the digest they must still have, for a later
+ * {@link CheckOptions.Workload#RETENTION_VERIFY} round to verify, e.g. in the next phase of a test plan.
+ */
+public class RetainedFiles {
+    private static final Logger LOGGER = LoggerFactory.getLogger(RetainedFiles.class);
+
+    // Guarded by this.
+    private List<StorageFile> files = Collections.emptyList();
+    private byte[] digest = new byte[0];
+
+    synchronized void retain(@Nonnull List<StorageFile> files, @Nonnull byte[] digest) {
+        this.files = new ArrayList<>(files);
+        this.digest = digest.clone();
+    }
+
+    @Nonnull
+    synchronized List<StorageFile> getFiles() {
+        return Collections.unmodifiableList(files);
+    }
+
+    @Nonnull
+    synchronized byte[] getDigest() {
+        return digest.clone();
+    }
+
+    public synchronized boolean isEmpty() {
+        return files.isEmpty();
+    }
+
+    /**
+     * Delete the retained files. Files which can't be deleted are logged and forgotten.
+     */
+    public synchronized void deleteAll() {
+        for (StorageFile file : files) {
+            try {
+                file.delete();
+            } catch (IOException ex) {
+                LOGGER.warn("Fail to delete retained file {}", file.getPath(), ex);
+            }
+        }
+        files = Collections.emptyList();
+        digest = new byte[0];
+    }
+}
@@ -0,0 +1,88 @@
+package com.handoitasdf.drive_checker;
+
+import com.handoitasdf.drive_checker.storage.StorageFile;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Reads back the copies a fill round has left on the drive, without writing anything, to find out whether the
+ * drive keeps its data over time.
+ */
+class RetentionWorkload implements RoundWorkload {
+    private final RetainedFiles retainedFiles;
+    private final MessageDigestProvider digestProvider;
+    private volatile FileTransferrerListener listener;
+    private volatile ChunkIoListener chunkIoListener;
+    private volatile ChunkThrottle throttle;
+    private volatile Verifier currentVerifier;
+    private volatile boolean canceled = false;
+
+    RetentionWorkload(@Nonnull RetainedFiles retainedFiles, @Nonnull MessageDigestProvider digestProvider) {
+        this.retainedFiles = retainedFiles;
+        this.digestProvider = digestProvider;
+    }
+
+    @Override
+    public void run(int iteration) throws IOException, InterruptedException, CancellationException {
+        List<StorageFile> files = retainedFiles.getFiles();
+        if (files.isEmpty()) {
+            throw new IOException("No files have been retained by a fill round");
+        }
+        byte[] digest = retainedFiles.getDigest();
+        long verifiedBytes = 0;
+        try {
+            for (StorageFile file : files) {
+                if (canceled) {
+                    throw new CancellationException("Retention check is canceled");
+                }
+                FileChecker checker = new FileChecker(file, digestProvider);
+                checker.setChunkIoListener(chunkIoListener);
+                checker.setThrottle(throttle);
+                currentVerifier = checker;
+                if (!checker.check(digest)) {
+                    throw new IOException(String.format("Retained copy %s has changed since it was written",
+                            file.getPath()));
+                }
+                verifiedBytes += file.size();
+                FileTransferrerListener currentListener = listener;
+                if (currentListener != null) {
+                    currentListener.onDataTransferred(verifiedBytes);
+                }
+            }
+        } finally {
+            currentVerifier = null;
+        }
+    }
+
+    @Override
+    public void cancel() {
+        canceled = true;
+        Verifier verifier = currentVerifier;
+        if (verifier != null) {
+            verifier.cancel();
+        }
+    }
+
+    @Override
+    public void setListener(@Nullable FileTransferrerListener listener) {
+        this.listener = listener;
+    }
+
+    @Override
+    public void setChunkIoListener(@Nullable ChunkIoListener listener) {
+        this.chunkIoListener = listener;
+    }
+
+    @Override
+    public void setThrottle(@Nullable ChunkThrottle throttle) {
+        this.throttle = throttle;
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,32 @@
+package com.handoitasdf.drive_checker;
+
+import javax.annotation.Nullable;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.CancellationException;
+
+/**
+ * A workload a {@link DriveChecker} runs in every round instead of copying the test file to the drive and
+ * reading it back. A round passes if it returns, and fails with an exception.
+ */
+interface RoundWorkload extends Closeable {
+
+    void run(int iteration) throws IOException, InterruptedException, CancellationException;
+
+    void cancel();
+
+    /**
+     * @param listener Receives the bytes written so far in the round.
+     */
+    void setListener(@Nullable FileTransferrerListener listener);
+
+    void setChunkIoListener(@Nullable ChunkIoListener listener);
+
+    void setThrottle(@Nullable ChunkThrottle throttle);
+
+    /**
+     * Release the threads and files of the workload.
+     */
+    @Override
+    void close();
+}
@@ -0,0 +1,68 @@
+package com.handoitasdf.drive_checker;
+
+/**
+ * A fixed-size ring of samples backed by a primitive array. Once full, a new sample overwrites the oldest one.
+ *
+ * Adding and reading samples never allocates. It isn't thread safe; confine it to one thread.
+ */
+public class SampleRingBuffer {
+    private final double[] samples;
+    private int next = 0;
+    private int size = 0;
+
+    public SampleRingBuffer(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        samples = new double[capacity];
+    }
+
+    public void add(double sample) {
+        samples[next] = sample;
+        next = (next + 1) % samples.length;
+        if (size < samples.length) {
+            ++size;
+        }
+    }
+
+    /**
+     * @param index 0 for the oldest sample, up to {@link #size()} - 1 for the latest one.
+     */
+    public double get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " of " + size + " samples");
+        }
+        return samples[(next - size + index + samples.length) % samples.length];
+    }
+
+    /**
+     * @return The latest sample, or 0 if there isn't any.
+     */
+    public double getLatest() {
+        return size == 0 ? 0 : get(size - 1);
+    }
+
+    /**
+     * @return The largest sample, or 0 if there isn't any.
+     */
+    public double getMax() {
+        double max = 0;
+        for (int i = 0; i < size; ++i) {
+            max = Math.max(max, get(i));
+        }
+        return max;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return samples.length;
+    }
+
+    public void clear() {
+        next = 0;
+        size = 0;
+    }
+}
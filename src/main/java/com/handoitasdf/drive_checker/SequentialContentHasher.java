@@ -0,0 +1,26 @@
+package com.handoitasdf.drive_checker;
+
+import javax.annotation.Nonnull;
+import java.security.MessageDigest;
+
+/**
+ * Hashes the content with one message digest, on the calling thread.
+ */
+class SequentialContentHasher implements ContentHasher {
+    private final MessageDigest digester;
+
+    SequentialContentHasher(@Nonnull MessageDigest digester) {
+        this.digester = digester;
+    }
+
+    @Override
+    public void update(@Nonnull byte[] data, int offset, int length) {
+        digester.update(data, offset, length);
+    }
+
+    @Override
+    @Nonnull
+    public byte[] digest() {
+        return digester.digest();
+    }
+}
@@ -0,0 +1,79 @@
+package com.handoitasdf.drive_checker;
+
+import javax.annotation.Nonnull;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free counters and metadata latency of the small-file workload of a drive. The bytes and the latency of
+ * the writes and reads themselves are in {@link DriveCheckerMetrics}.
+ */
+public class SmallFileMetrics {
+    private final LongAdder filesWritten = new LongAdder();
+    private final LongAdder filesVerified = new LongAdder();
+    private final LongAdder filesDeleted = new LongAdder();
+    private final LongAdder activeNanos = new LongAdder();
+    private final LatencyHistogram createLatency = new LatencyHistogram();
+    private final LatencyHistogram syncLatency = new LatencyHistogram();
+    private final LatencyHistogram deleteLatency = new LatencyHistogram();
+
+    void onFileWritten(long createNanos, long syncNanos) {
+        createLatency.record(createNanos);
+        syncLatency.record(syncNanos);
+        filesWritten.increment();
+    }
+
+    void onFileVerified() {
+        filesVerified.increment();
+    }
+
+    void onFileDeleted(long deleteNanos) {
+        deleteLatency.record(deleteNanos);
+        filesDeleted.increment();
+    }
+
+    void addActiveNanos(long nanos) {
+        activeNanos.add(nanos);
+    }
+
+    public long getFilesWritten() {
+        return filesWritten.sum();
+    }
+
+    public long getFilesVerified() {
+        return filesVerified.sum();
+    }
+
+    public long getFilesDeleted() {
+        return filesDeleted.sum();
+    }
+
+    /**
+     * @return Files created, verified and deleted per second of the rounds.
+     */
+    public double getFilesPerSecond() {
+        long nanos = activeNanos.sum();
+        return nanos <= 0 ? 0 : getFilesDeleted() * (double) TimeUnit.SECONDS.toNanos(1) / nanos;
+    }
+
+    /**
+     * @return Latency of opening a new file.
+     */
+    @Nonnull
+    public LatencyHistogram getCreateLatency() {
+        return createLatency;
+    }
+
+    /**
+     * @return Latency of syncing a written file.
+     */
+    @Nonnull
+    public LatencyHistogram getSyncLatency() {
+        return syncLatency;
+    }
+
+    @Nonnull
+    public LatencyHistogram getDeleteLatency() {
+        return deleteLatency;
+    }
+}
@@ -0,0 +1,146 @@
+package com.handoitasdf.drive_checker;
+
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CancellationException;
+
+/**
+ * A metadata-heavy workload: every round, parallel workers create, write and sync many small files across a
+ * fan-out of directories, then read them back, verify them and delete them.
+ *
+ * The content of a file is generated from its index and the round, so it's verified without being kept. The
+ * writes and reads go through the chunk listener and throttle like the chunks of the test file, with the index
+ * of the file times its size as the offset; a write spans the create and the sync of the file.
+ */
+class SmallFileWorkload extends ParallelWorkload {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SmallFileWorkload.class);
+    private final File directory;
+    private final int fileCount;
+    private final int fileSize;
+    private final int fanOut;
+    private final DataPattern pattern;
+    private final SmallFileMetrics metrics;
+
+    SmallFileWorkload(@Nonnull File directory, @Nonnull CheckOptions options, @Nonnull SmallFileMetrics metrics) {
+        super("small-files", options.getSmallFileWorkers());
+        this.directory = directory;
+        this.fileCount = Math.max(1, options.getSmallFileCount());
+        this.fileSize = Math.max(0, options.getSmallFileSize());
+        this.fanOut = Math.max(1, options.getSmallFileFanOut());
+        this.pattern = options.getDataPattern() != null ? options.getDataPattern() : DataPattern.RANDOM;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Run a round of the workload. The files and directories of the round are deleted even if it fails.
+     *
+     * @throws IOException If a file can't be created, read or deleted, or if its content differs.
+     */
+    @Override
+    public void run(int iteration) throws IOException, InterruptedException, CancellationException {
+        long startNanos = System.nanoTime();
+        Path root = Files.createTempDirectory(directory.toPath(), ".drive-checker-small-files.");
+        LOGGER.debug("Writing {} files of {} bytes to {}", fileCount, fileSize, root);
+        try {
+            Path[] directories = new Path[fanOut];
+            for (int i = 0; i < fanOut; ++i) {
+                directories[i] = Files.createDirectory(root.resolve(String.format("%04d", i)));
+            }
+            resetProgress();
+            runInParallel(worker -> {
+                byte[] buffer = new byte[fileSize];
+                for (int index = worker; index < fileCount && checkRunning(); index += workers) {
+                    writeFile(directories[index % fanOut], iteration, index, buffer);
+                }
+            });
+            runInParallel(worker -> {
+                byte[] expected = new byte[fileSize];
+                byte[] actual = new byte[fileSize];
+                for (int index = worker; index < fileCount && checkRunning(); index += workers) {
+                    verifyAndDeleteFile(directories[index % fanOut], iteration, index, expected, actual);
+                }
+            });
+        } finally {
+            try {
+                FileUtils.deleteDirectory(root.toFile());
+            } catch (IOException ex) {
+                LOGGER.warn("Fail to delete {}", root, ex);
+            }
+            metrics.addActiveNanos(System.nanoTime() - startNanos);
+        }
+    }
+
+    private void writeFile(@Nonnull Path parent, int iteration, int index, @Nonnull byte[] buffer)
+            throws IOException, InterruptedException {
+        Path path = parent.resolve(String.format("%08d", index));
+        pattern.fill(buffer, 0, fileSize, seedOf(iteration, index));
+        long offset = (long) index * fileSize;
+        probe.throttle(ChunkOperation.TARGET_WRITE, fileSize);
+        long operationStartNanos = probe.start(ChunkOperation.TARGET_WRITE, offset, fileSize);
+        long createNanos;
+        long syncNanos;
+        long startNanos = System.nanoTime();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            createNanos = System.nanoTime() - startNanos;
+            ByteBuffer data = ByteBuffer.wrap(buffer);
+            while (data.hasRemaining()) {
+                channel.write(data);
+            }
+            startNanos = System.nanoTime();
+            channel.force(true);
+            syncNanos = System.nanoTime() - startNanos;
+        } finally {
+            probe.finish(ChunkOperation.TARGET_WRITE, offset, fileSize, operationStartNanos);
+        }
+        metrics.onFileWritten(createNanos, syncNanos);
+        addProgress(fileSize);
+    }
+
+    private void verifyAndDeleteFile(@Nonnull Path parent,
+                                     int iteration,
+                                     int index,
+                                     @Nonnull byte[] expected,
+                                     @Nonnull byte[] actual) throws IOException, InterruptedException {
+        Path path = parent.resolve(String.format("%08d", index));
+        pattern.fill(expected, 0, fileSize, seedOf(iteration, index));
+        long offset = (long) index * fileSize;
+        probe.throttle(ChunkOperation.TARGET_READ, fileSize);
+        long operationStartNanos = probe.start(ChunkOperation.TARGET_READ, offset, fileSize);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() != fileSize) {
+                throw new IOException(String.format("Size of %s is %d bytes instead of %d",
+                        path, channel.size(), fileSize));
+            }
+            ByteBuffer data = ByteBuffer.wrap(actual);
+            while (data.hasRemaining() && channel.read(data) >= 0) {
+                // Keep reading until the buffer is full.
+            }
+        } finally {
+            probe.finish(ChunkOperation.TARGET_READ, offset, fileSize, operationStartNanos);
+        }
+        for (int i = 0; i < fileSize; ++i) {
+            if (expected[i] != actual[i]) {
+                throw new IOException(String.format("Content of %s differs from what was written at byte %d",
+                        path, i));
+            }
+        }
+        metrics.onFileVerified();
+        long startNanos = System.nanoTime();
+        Files.delete(path);
+        metrics.onFileDeleted(System.nanoTime() - startNanos);
+    }
+
+    private static long seedOf(int iteration, int index) {
+        return ((long) iteration << 32) | (index & 0xffffffffL);
+    }
+}
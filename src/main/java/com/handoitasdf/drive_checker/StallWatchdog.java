@@ -0,0 +1,133 @@
+package com.handoitasdf.drive_checker;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.Closeable;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Timestamps the in-flight chunk operations of the watched drives, and flags a drive as
+ * {@link CheckingStatus#STALLED} once one of its operations exceeds the deadline.
+ *
+ * A hung write can't be interrupted, so the stalled checker's thread is abandoned; the watchdog only makes sure
+ * the drive is reported as failed and that nobody waits for it.
+ */
+public class StallWatchdog implements Closeable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(StallWatchdog.class);
+    private static final long MIN_SCAN_INTERVAL_MILLIS = 100;
+    private final long deadlineNanos;
+    private final StallListener listener;
+    private final List<Tracker> trackers = new CopyOnWriteArrayList<>();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "stall-watchdog");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public interface StallListener {
+        void onStalled(@Nonnull DriveChecker checker);
+    }
+
+    public StallWatchdog(long deadlineMillis, @Nullable StallListener listener) {
+        this.deadlineNanos = TimeUnit.MILLISECONDS.toNanos(deadlineMillis);
+        this.listener = listener;
+        long scanIntervalMillis = Math.max(MIN_SCAN_INTERVAL_MILLIS, deadlineMillis / 4);
+        scheduler.scheduleWithFixedDelay(this::scan, scanIntervalMillis, scanIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public void watch(@Nonnull DriveChecker checker) {
+        Tracker tracker = new Tracker(checker);
+        trackers.add(tracker);
+        checker.addChunkIoListener(tracker);
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+        for (Tracker tracker : trackers) {
+            tracker.checker.removeChunkIoListener(tracker);
+        }
+        trackers.clear();
+    }
+
+    private void scan() {
+        long now = System.nanoTime();
+        for (Tracker tracker : trackers) {
+            try {
+                tracker.scan(now);
+            } catch (RuntimeException ex) {
+                LOGGER.error("Fail to scan drive {} for stalls", tracker.checker.getDrive().getPath(), ex);
+            }
+        }
+    }
+
+    private class Tracker implements ChunkIoListener {
+        private final DriveChecker checker;
+
+        // Keyed by the start time, which is unique, so that every chunk in flight is tracked even if others have
+        // the same offset and operation.
+        private final Map<Long, InFlight> inFlight = new ConcurrentHashMap<>();
+
+        private Tracker(@Nonnull DriveChecker checker) {
+            this.checker = checker;
+        }
+
+        @Override
+        public void onChunkStarted(@Nonnull ChunkOperation operation, long offset, int length, long startNanos) {
+            if (!operation.isDigest()) {
+                inFlight.put(startNanos, new InFlight(operation, offset));
+            }
+        }
+
+        @Override
+        public void onChunkFinished(@Nonnull ChunkOperation operation,
+                                    long offset,
+                                    int length,
+                                    long startNanos,
+                                    long elapsedNanos) {
+            if (!operation.isDigest()) {
+                inFlight.remove(startNanos);
+            }
+        }
+
+        private void scan(long now) {
+            for (Map.Entry<Long, InFlight> entry : inFlight.entrySet()) {
+                long elapsedNanos = now - entry.getKey();
+                if (elapsedNanos < deadlineNanos) {
+                    continue;
+                }
+                InFlight stalled = entry.getValue();
+                if (checker.markStalled(stalled.operation, stalled.offset, elapsedNanos)) {
+                    LOGGER.error("Drive {} stalled: {} at offset {} has taken {} ms",
+                            checker.getDrive().getPath(), stalled.operation, stalled.offset,
+                            TimeUnit.NANOSECONDS.toMillis(elapsedNanos));
+                    trackers.remove(this);
+                    checker.removeChunkIoListener(this);
+                    if (listener != null) {
+                        listener.onStalled(checker);
+                    }
+                }
+                return;
+            }
+        }
+    }
+
+    private static final class InFlight {
+        private final ChunkOperation operation;
+        private final long offset;
+
+        private InFlight(@Nonnull ChunkOperation operation, long offset) {
+            this.operation = operation;
+            this.offset = offset;
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.handoitasdf.drive_checker;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A token bucket of bytes, refilled at a given rate up to a burst of a quarter of a second.
+ *
+ * Callers reserve bytes rather than wait for them: the bucket may go into debt, and every reservation is told
+ * how long to wait until its bytes have been refilled. Reservations are thus served in order, and waiting never
+ * holds the lock.
+ */
+public class TokenBucket {
+    private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+    private static final double BURST_SECONDS = 0.25;
+    private static final double MIN_BURST_BYTES = 1024 * 1024;
+
+    // Guarded by this.
+    private double bytesPerSecond;
+    private double capacity;
+    private double tokens;
+    private long refillNanos = System.nanoTime();
+
+    /**
+     * @param bytesPerSecond 0 for no limit.
+     */
+    public TokenBucket(double bytesPerSecond) {
+        setRate(bytesPerSecond);
+        tokens = capacity;
+    }
+
+    /**
+     * Change the rate. Bytes reserved before keep their wait time.
+     *
+     * @param bytesPerSecond 0 for no limit.
+     */
+    public synchronized void setRate(double bytesPerSecond) {
+        if (bytesPerSecond < 0) {
+            throw new IllegalArgumentException("Rate must not be negative: " + bytesPerSecond);
+        }
+        refill(System.nanoTime());
+        this.bytesPerSecond = bytesPerSecond;
+        capacity = Math.max(bytesPerSecond * BURST_SECONDS, MIN_BURST_BYTES);
+        tokens = Math.min(tokens, capacity);
+    }
+
+    /**
+     * @return Bytes per second, or 0 for no limit.
+     */
+    public synchronized double getRate() {
+        return bytesPerSecond;
+    }
+
+    /**
+     * @return How long the caller must wait before using the bytes, in nanoseconds.
+     */
+    public synchronized long reserve(long bytes) {
+        if (bytesPerSecond <= 0) {
+            return 0;
+        }
+        refill(System.nanoTime());
+        tokens -= bytes;
+        return tokens >= 0 ? 0 : (long) (-tokens / bytesPerSecond * NANOS_PER_SECOND);
+    }
+
+    private void refill(long now) {
+        if (bytesPerSecond > 0) {
+            tokens = Math.min(capacity, tokens + (now - refillNanos) * bytesPerSecond / NANOS_PER_SECOND);
+        }
+        refillNanos = now;
+    }
+}
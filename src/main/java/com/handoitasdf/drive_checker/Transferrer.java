@@ -0,0 +1,31 @@
+package com.handoitasdf.drive_checker;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Copies the test file to a target file and computes the digest of the copied content.
+ */
+public interface Transferrer {
+    void transfer() throws IOException, InterruptedException, CancellationException;
+    void cancel();
+    @Nonnull
+    byte[] getDigest();
+    void setListener(@Nullable FileTransferrerListener listener);
+    void setChunkIoListener(@Nullable ChunkIoListener listener);
+    void setThrottle(@Nullable ChunkThrottle throttle);
+
+    /**
+     * @param preallocated If true, the target file has been preallocated and is overwritten in place instead of
+     *                     being truncated.
+     */
+    void setPreallocated(boolean preallocated);
+
+    /**
+     * @param bytes How often the target file is synced to the drive while it's written, within the timed writes,
+     *              so that they are timed at the drive rather than at the page cache; 0 not to sync.
+     */
+    void setSyncIntervalBytes(long bytes);
+}
@@ -0,0 +1,172 @@
+package com.handoitasdf.drive_checker;
+
+import javax.annotation.Nonnull;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hashes the content as a Merkle tree: fixed-size leaves are hashed in parallel on a fork-join pool shared by all
+ * drives, and their digests are combined pairwise up to the root.
+ *
+ * Leaves are copied out of the caller's buffer, so hashing overlaps with the I/O of the next chunks. The number
+ * of leaves in flight on the pool is bounded per hasher; the leaves beyond it are queued and handed to the pool
+ * as the leaves in flight finish, and once the queue is full too, the caller hashes the leaf itself. So
+ * {@link #update} never waits, since it may run on the completion threads of the async engine, and the memory
+ * taken by the copies stays bounded.
+ *
+ * Leaves and inner nodes are hashed with distinct prefixes, so that no leaf can pass for a node.
+ */
+class TreeContentHasher implements ContentHasher {
+    static final int LEAF_SIZE = 1024 * 1024;
+    private static final byte LEAF_PREFIX = 0;
+    private static final byte NODE_PREFIX = 1;
+    private static final int PARALLELISM = Runtime.getRuntime().availableProcessors();
+    private static final int MAX_LEAVES_IN_FLIGHT = 2 * PARALLELISM;
+    private static final int MAX_QUEUED_LEAVES = 2 * PARALLELISM;
+    private static final ForkJoinPool POOL = new ForkJoinPool(PARALLELISM, pool -> {
+        ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+        thread.setName("tree-hasher-" + thread.getPoolIndex());
+        thread.setDaemon(true);
+        return thread;
+    }, null, false);
+    private static final BlockingQueue<byte[]> FREE_LEAVES = new ArrayBlockingQueue<>(MAX_LEAVES_IN_FLIGHT);
+    private final String algorithm;
+    private final List<CompletableFuture<byte[]>> leaves = new ArrayList<>();
+    private final Semaphore leafPermits = new Semaphore(MAX_LEAVES_IN_FLIGHT);
+    private final Queue<Runnable> queuedLeaves = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queuedLeafCount = new AtomicInteger();
+    private byte[] leaf;
+    private int leafLength = 0;
+
+    TreeContentHasher(@Nonnull String algorithm) throws NoSuchAlgorithmException {
+        MessageDigest.getInstance(algorithm);
+        this.algorithm = algorithm;
+    }
+
+    @Override
+    public void update(@Nonnull byte[] data, int offset, int length) {
+        while (length > 0) {
+            if (leaf == null) {
+                leaf = FREE_LEAVES.poll();
+                if (leaf == null) {
+                    leaf = new byte[LEAF_SIZE];
+                }
+                leafLength = 0;
+            }
+            int n = Math.min(length, LEAF_SIZE - leafLength);
+            System.arraycopy(data, offset, leaf, leafLength, n);
+            leafLength += n;
+            offset += n;
+            length -= n;
+            if (leafLength == LEAF_SIZE) {
+                submitLeaf();
+            }
+        }
+    }
+
+    @Override
+    @Nonnull
+    public byte[] digest() {
+        if (leaf == null && leaves.isEmpty()) {
+            leaf = new byte[0];
+        }
+        if (leaf != null) {
+            submitLeaf();
+        }
+        List<byte[]> level = new ArrayList<>(leaves.size());
+        for (CompletableFuture<byte[]> leafDigest : leaves) {
+            level.add(leafDigest.join());
+        }
+        leaves.clear();
+        MessageDigest digester = newDigest();
+        while (level.size() > 1) {
+            List<byte[]> parents = new ArrayList<>((level.size() + 1) / 2);
+            for (int i = 0; i < level.size(); i += 2) {
+                if (i + 1 == level.size()) {
+                    parents.add(level.get(i));
+                    break;
+                }
+                digester.update(NODE_PREFIX);
+                digester.update(level.get(i));
+                digester.update(level.get(i + 1));
+                parents.add(digester.digest());
+            }
+            level = parents;
+        }
+        return level.get(0);
+    }
+
+    private void submitLeaf() {
+        byte[] data = leaf;
+        int length = leafLength;
+        leaf = null;
+        leafLength = 0;
+        CompletableFuture<byte[]> leafDigest = new CompletableFuture<>();
+        leaves.add(leafDigest);
+        if (queuedLeafCount.get() >= MAX_QUEUED_LEAVES) {
+            hashLeaf(data, length, leafDigest);
+            return;
+        }
+        queuedLeafCount.incrementAndGet();
+        queuedLeaves.add(() -> {
+            try {
+                hashLeaf(data, length, leafDigest);
+            } finally {
+                leafPermits.release();
+                startQueuedLeaves();
+            }
+        });
+        startQueuedLeaves();
+    }
+
+    /**
+     * Hand the queued leaves to the pool while there are permits. It's called after every leaf is queued and
+     * after every permit is released, so no leaf stays queued while a permit is free.
+     */
+    private void startQueuedLeaves() {
+        while (!queuedLeaves.isEmpty() && leafPermits.tryAcquire()) {
+            Runnable task = queuedLeaves.poll();
+            if (task == null) {
+                leafPermits.release();
+                continue;
+            }
+            queuedLeafCount.decrementAndGet();
+            POOL.execute(task);
+        }
+    }
+
+    private void hashLeaf(@Nonnull byte[] data, int length, @Nonnull CompletableFuture<byte[]> leafDigest) {
+        try {
+            MessageDigest digester = newDigest();
+            digester.update(LEAF_PREFIX);
+            digester.update(data, 0, length);
+            leafDigest.complete(digester.digest());
+        } catch (RuntimeException ex) {
+            leafDigest.completeExceptionally(ex);
+        } finally {
+            if (data.length == LEAF_SIZE) {
+                FREE_LEAVES.offer(data);
+            }
+        }
+    }
+
+    @Nonnull
+    private MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("Message digest " + algorithm + " has disappeared", ex);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.handoitasdf.drive_checker;
+
+import javax.annotation.Nonnull;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free counters of the copies of a directory tree to a drive, in aggregate and by file size.
+ *
+ * The aggregate throughput is the bytes over the wall time of the copy and verification phases, with all workers
+ * running. The throughput of a size bucket is the bytes of its files over the time the workers spent on them,
+ * i.e. per worker, so the buckets compare how fast the drive takes files of each size.
+ */
+public class TreeCopyMetrics {
+    private static final double BYTES_PER_MB = 1024 * 1024;
+    private static final long[] BUCKET_LIMITS = {64 * 1024, 1024 * 1024, 16 * 1024 * 1024, 256 * 1024 * 1024};
+    private static final String[] BUCKET_LABELS = {"< 64 KB", "64 KB - 1 MB", "1 - 16 MB", "16 - 256 MB", ">= 256 MB"};
+    private final LongAdder[] filesCopied = newAdders();
+    private final LongAdder[] bytesCopied = newAdders();
+    private final LongAdder[] writeNanos = newAdders();
+    private final LongAdder[] filesVerified = newAdders();
+    private final LongAdder[] bytesVerified = newAdders();
+    private final LongAdder[] readNanos = newAdders();
+    private final LongAdder copyNanos = new LongAdder();
+    private final LongAdder verifyNanos = new LongAdder();
+
+    void onFileCopied(long size, long nanos) {
+        int bucket = bucketOf(size);
+        filesCopied[bucket].increment();
+        bytesCopied[bucket].add(size);
+        writeNanos[bucket].add(nanos);
+    }
+
+    void onFileVerified(long size, long nanos) {
+        int bucket = bucketOf(size);
+        filesVerified[bucket].increment();
+        bytesVerified[bucket].add(size);
+        readNanos[bucket].add(nanos);
+    }
+
+    void addCopyNanos(long nanos) {
+        copyNanos.add(nanos);
+    }
+
+    void addVerifyNanos(long nanos) {
+        verifyNanos.add(nanos);
+    }
+
+    public long getFilesCopied() {
+        return sum(filesCopied);
+    }
+
+    public long getFilesVerified() {
+        return sum(filesVerified);
+    }
+
+    /**
+     * @return Bytes copied per second of the copy phases, with all workers running.
+     */
+    public double getCopyMBps() {
+        return mbps(sum(bytesCopied), copyNanos.sum());
+    }
+
+    /**
+     * @return Bytes verified per second of the verification phases, with all workers running.
+     */
+    public double getVerifyMBps() {
+        return mbps(sum(bytesVerified), verifyNanos.sum());
+    }
+
+    public int getBucketCount() {
+        return BUCKET_LABELS.length;
+    }
+
+    /**
+     * @return Range of file sizes of the bucket, e.g. "1 - 16 MB".
+     */
+    @Nonnull
+    public String getBucketLabel(int bucket) {
+        return BUCKET_LABELS[bucket];
+    }
+
+    public long getFilesCopied(int bucket) {
+        return filesCopied[bucket].sum();
+    }
+
+    public long getBytesCopied(int bucket) {
+        return bytesCopied[bucket].sum();
+    }
+
+    /**
+     * @return Write throughput of a worker on the files of the bucket, including creating and syncing them.
+     */
+    public double getWriteMBps(int bucket) {
+        return mbps(bytesCopied[bucket].sum(), writeNanos[bucket].sum());
+    }
+
+    /**
+     * @return Read throughput of a worker on the files of the bucket, including opening them.
+     */
+    public double getReadMBps(int bucket) {
+        return mbps(bytesVerified[bucket].sum(), readNanos[bucket].sum());
+    }
+
+    private static int bucketOf(long size) {
+        int bucket = 0;
+        while (bucket < BUCKET_LIMITS.length && size >= BUCKET_LIMITS[bucket]) {
+            ++bucket;
+        }
+        return bucket;
+    }
+
+    private static double mbps(long bytes, long nanos) {
+        return nanos <= 0 ? 0 : bytes / BYTES_PER_MB / ((double) nanos / TimeUnit.SECONDS.toNanos(1));
+    }
+
+    private static long sum(@Nonnull LongAdder[] adders) {
+        long sum = 0;
+        for (LongAdder adder : adders) {
+            sum += adder.sum();
+        }
+        return sum;
+    }
+
+    @Nonnull
+    private static LongAdder[] newAdders() {
+        LongAdder[] adders = new LongAdder[BUCKET_LABELS.length];
+        for (int i = 0; i < adders.length; ++i) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+}
@@ -0,0 +1,279 @@
+package com.handoitasdf.drive_checker;
+
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Copies a directory tree to the drive every round, with a pool of workers taking the files one by one, and once
+ * all files are copied, reads them back in parallel and checks them against the digest of every source file.
+ *
+ * The files are taken largest first, so that a large file doesn't keep a worker busy after the others are done.
+ * They are laid end to end in that order for the offsets given to the chunk listener, and the last write of a
+ * file spans its sync.
+ */
+class TreeCopyWorkload extends ParallelWorkload {
+    private static final Logger LOGGER = LoggerFactory.getLogger(TreeCopyWorkload.class);
+    private static final int CHUNK_SIZE = 1024 * 1024;
+    private final Path source;
+    private final File directory;
+    private final MessageDigestProvider digestProvider;
+    private final TreeCopyMetrics metrics;
+    private final List<Path> directories = new ArrayList<>();
+    private final Path[] files;
+    private final long[] sizes;
+    private final long[] offsets;
+
+    /**
+     * @param source    The directory tree to copy; its files are listed once, so changing them during the check
+     *                  fails it.
+     * @param directory Where the copies are written, on the local filesystem of the drive.
+     */
+    TreeCopyWorkload(@Nonnull File source,
+                     @Nonnull File directory,
+                     @Nonnull MessageDigestProvider digestProvider,
+                     @Nonnull CheckOptions options,
+                     @Nonnull TreeCopyMetrics metrics) throws IOException {
+        super("tree-copy", options.getTreeWorkers());
+        this.source = source.toPath();
+        this.directory = directory;
+        this.digestProvider = digestProvider;
+        this.metrics = metrics;
+        List<Path> sourceFiles = listFiles();
+        if (sourceFiles.isEmpty()) {
+            throw new IOException("There are no files to copy in " + source.getPath());
+        }
+        sourceFiles.sort(Comparator.comparingLong((Path file) -> file.toFile().length()).reversed());
+        this.files = sourceFiles.toArray(new Path[0]);
+        this.sizes = new long[files.length];
+        this.offsets = new long[files.length];
+        for (int i = 0; i < files.length; ++i) {
+            sizes[i] = Files.size(files[i]);
+            offsets[i] = i == 0 ? 0 : offsets[i - 1] + sizes[i - 1];
+        }
+    }
+
+    /**
+     * Run a round of the workload. The copies are deleted even if it fails.
+     *
+     * @throws IOException If a file can't be copied or read back, or if a copy differs from its source.
+     */
+    @Override
+    public void run(int iteration) throws IOException, InterruptedException, CancellationException {
+        Path root = Files.createTempDirectory(directory.toPath(), ".drive-checker-tree.");
+        LOGGER.debug("Copying {} files of {} to {}", files.length, source, root);
+        try {
+            for (Path relativeDirectory : directories) {
+                Files.createDirectories(root.resolve(relativeDirectory.toString()));
+            }
+            byte[][] digests = new byte[files.length][];
+            resetProgress();
+            AtomicInteger nextFile = new AtomicInteger();
+            long startNanos = System.nanoTime();
+            runInParallel(worker -> {
+                byte[] buffer = new byte[CHUNK_SIZE];
+                MessageDigest digest = newMessageDigest();
+                for (int index = nextFile.getAndIncrement(); index < files.length && checkRunning();
+                     index = nextFile.getAndIncrement()) {
+                    digests[index] = copyFile(root, index, buffer, digest);
+                }
+            });
+            metrics.addCopyNanos(System.nanoTime() - startNanos);
+            nextFile.set(0);
+            startNanos = System.nanoTime();
+            runInParallel(worker -> {
+                byte[] buffer = new byte[CHUNK_SIZE];
+                MessageDigest digest = newMessageDigest();
+                for (int index = nextFile.getAndIncrement(); index < files.length && checkRunning();
+                     index = nextFile.getAndIncrement()) {
+                    verifyFile(root, index, digests[index], buffer, digest);
+                }
+            });
+            metrics.addVerifyNanos(System.nanoTime() - startNanos);
+        } finally {
+            try {
+                FileUtils.deleteDirectory(root.toFile());
+            } catch (IOException ex) {
+                LOGGER.warn("Fail to delete {}", root, ex);
+            }
+        }
+    }
+
+    @Nonnull
+    private List<Path> listFiles() throws IOException {
+        List<Path> sourceFiles = new ArrayList<>();
+        Files.walkFileTree(source, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                if (!dir.equals(source)) {
+                    directories.add(source.relativize(dir));
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (attrs.isRegularFile()) {
+                    sourceFiles.add(file);
+                } else {
+                    LOGGER.warn("Skipping {}, which isn't a regular file", file);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return sourceFiles;
+    }
+
+    @Nonnull
+    private byte[] copyFile(@Nonnull Path root, int index, @Nonnull byte[] buffer, @Nonnull MessageDigest digest)
+            throws IOException, InterruptedException {
+        Path target = targetOf(root, index);
+        long size = sizes[index];
+        long writeNanos = 0;
+        long position = 0;
+        digest.reset();
+        try (FileChannel input = FileChannel.open(files[index], StandardOpenOption.READ)) {
+            checkSourceSize(index, input.size());
+            long startNanos = System.nanoTime();
+            try (FileChannel output = FileChannel.open(target, StandardOpenOption.CREATE_NEW,
+                    StandardOpenOption.WRITE)) {
+                if (size == 0) {
+                    output.force(true);
+                }
+                writeNanos += System.nanoTime() - startNanos;
+                while (position < size && checkRunning()) {
+                    int length = (int) Math.min(buffer.length, size - position);
+                    int read = readChunk(input, buffer, length);
+                    if (read < length) {
+                        checkSourceSize(index, position + read);
+                    }
+                    digest.update(buffer, 0, length);
+                    long offset = offsets[index] + position;
+                    probe.throttle(ChunkOperation.TARGET_WRITE, length);
+                    long operationStartNanos = probe.start(ChunkOperation.TARGET_WRITE, offset, length);
+                    try {
+                        startNanos = System.nanoTime();
+                        ByteBuffer data = ByteBuffer.wrap(buffer, 0, length);
+                        while (data.hasRemaining()) {
+                            output.write(data);
+                        }
+                        if (position + length == size) {
+                            output.force(true);
+                        }
+                        writeNanos += System.nanoTime() - startNanos;
+                    } finally {
+                        probe.finish(ChunkOperation.TARGET_WRITE, offset, length, operationStartNanos);
+                    }
+                    position += length;
+                    addProgress(length);
+                }
+            }
+        }
+        if (position == size) {
+            metrics.onFileCopied(size, writeNanos);
+        }
+        return digest.digest();
+    }
+
+    private void verifyFile(@Nonnull Path root,
+                            int index,
+                            @Nonnull byte[] expected,
+                            @Nonnull byte[] buffer,
+                            @Nonnull MessageDigest digest) throws IOException, InterruptedException {
+        Path target = targetOf(root, index);
+        long size = sizes[index];
+        long readNanos = 0;
+        long position = 0;
+        digest.reset();
+        long startNanos = System.nanoTime();
+        try (FileChannel input = FileChannel.open(target, StandardOpenOption.READ)) {
+            readNanos += System.nanoTime() - startNanos;
+            if (input.size() != size) {
+                throw new IOException(String.format("Size of %s is %d bytes instead of %d",
+                        target, input.size(), size));
+            }
+            while (position < size && checkRunning()) {
+                int length = (int) Math.min(buffer.length, size - position);
+                long offset = offsets[index] + position;
+                probe.throttle(ChunkOperation.TARGET_READ, length);
+                long operationStartNanos = probe.start(ChunkOperation.TARGET_READ, offset, length);
+                int read;
+                try {
+                    startNanos = System.nanoTime();
+                    read = readChunk(input, buffer, length);
+                    readNanos += System.nanoTime() - startNanos;
+                } finally {
+                    probe.finish(ChunkOperation.TARGET_READ, offset, length, operationStartNanos);
+                }
+                if (read < length) {
+                    throw new IOException(String.format("%s ends at %d bytes instead of %d",
+                            target, position + read, size));
+                }
+                digest.update(buffer, 0, length);
+                position += length;
+            }
+        }
+        if (position < size) {
+            // Another worker has failed.
+            return;
+        }
+        if (!MessageDigest.isEqual(expected, digest.digest())) {
+            throw new IOException(String.format("Content of %s differs from %s", target, files[index]));
+        }
+        metrics.onFileVerified(size, readNanos);
+    }
+
+    @Nonnull
+    private Path targetOf(@Nonnull Path root, int index) {
+        return root.resolve(source.relativize(files[index]).toString());
+    }
+
+    @Nonnull
+    private MessageDigest newMessageDigest() throws IOException {
+        try {
+            return digestProvider.getMessageDigest();
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IOException(ex);
+        }
+    }
+
+    private void checkSourceSize(int index, long size) throws IOException {
+        if (size != sizes[index]) {
+            throw new IOException(String.format("Size of %s has changed from %d to %d bytes during the check",
+                    files[index], sizes[index], size));
+        }
+    }
+
+    /**
+     * @return Bytes read into the buffer, fewer than the given length only at the end of the file.
+     */
+    private static int readChunk(@Nonnull FileChannel channel, @Nonnull byte[] buffer, int length)
+            throws IOException {
+        ByteBuffer data = ByteBuffer.wrap(buffer, 0, length);
+        while (data.hasRemaining()) {
+            if (channel.read(data) < 0) {
+                break;
+            }
+        }
+        return data.position();
+    }
+}
@@ -0,0 +1,15 @@
+package com.handoitasdf.drive_checker;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Reads a target file back and compares its digest to the expected one.
+ */
+public interface Verifier {
+    boolean check(byte[] digest) throws IOException, InterruptedException, CancellationException;
+    void cancel();
+    void setChunkIoListener(@Nullable ChunkIoListener listener);
+    void setThrottle(@Nullable ChunkThrottle throttle);
+}
@@ -0,0 +1,105 @@
+package com.handoitasdf.drive_checker;
+
+import javax.annotation.Nonnull;
+import java.util.Arrays;
+
+/**
+ * The write throughput of one copy of the test file against the offset in it, and the change points found in
+ * it: the warm-up at the start, and the cliff where a write cache, e.g. the SLC cache of an SSD or a USB stick,
+ * is exhausted.
+ *
+ * The throughput is that of the chunk writes themselves, so it doesn't include reading and hashing the test
+ * file. On a filesystem it's also shaped by the page cache of the OS, which may show a cliff of its own when
+ * the dirty pages hit their limit.
+ */
+public final class WriteProfile {
+    private static final double BYTES_PER_MB = 1024.0 * 1024.0;
+    private final int iteration;
+    private final long binBytes;
+    private final double[] ratesMBps;
+    private final long warmUpBytes;
+    private final long burstBytes;
+    private final double burstMBps;
+    private final double sustainedMBps;
+
+    WriteProfile(int iteration,
+                 long binBytes,
+                 @Nonnull double[] ratesMBps,
+                 long warmUpBytes,
+                 long burstBytes,
+                 double burstMBps,
+                 double sustainedMBps) {
+        this.iteration = iteration;
+        this.binBytes = binBytes;
+        this.ratesMBps = ratesMBps;
+        this.warmUpBytes = warmUpBytes;
+        this.burstBytes = burstBytes;
+        this.burstMBps = burstMBps;
+        this.sustainedMBps = sustainedMBps;
+    }
+
+    public int getIteration() {
+        return iteration;
+    }
+
+    /**
+     * @return Bytes of the test file covered by every rate of {@link #getRatesMBps()}.
+     */
+    public long getBinBytes() {
+        return binBytes;
+    }
+
+    /**
+     * @return Write throughput of every {@link #getBinBytes()} of the test file, in order of offset; 0 for a
+     *         range which wasn't written.
+     */
+    @Nonnull
+    public double[] getRatesMBps() {
+        return Arrays.copyOf(ratesMBps, ratesMBps.length);
+    }
+
+    /**
+     * @return Bytes written before the throughput settles.
+     */
+    public long getWarmUpBytes() {
+        return warmUpBytes;
+    }
+
+    /**
+     * @return True if the throughput falls off a cliff after the burst.
+     */
+    public boolean hasCliff() {
+        return burstBytes > 0;
+    }
+
+    /**
+     * @return Offset where the throughput falls off the cliff; 0 if there's no cliff.
+     */
+    public long getBurstBytes() {
+        return burstBytes;
+    }
+
+    /**
+     * @return Throughput between the warm-up and the cliff, or to the end if there's no cliff.
+     */
+    public double getBurstMBps() {
+        return burstMBps;
+    }
+
+    /**
+     * @return Throughput after the cliff; the same as {@link #getBurstMBps()} if there's no cliff.
+     */
+    public double getSustainedMBps() {
+        return sustainedMBps;
+    }
+
+    @Override
+    public String toString() {
+        if (!hasCliff()) {
+            return String.format("steady %.1f MB/s, no cache cliff, %.0f MB warm-up",
+                    sustainedMBps, warmUpBytes / BYTES_PER_MB);
+        }
+        return String.format("burst %.0f MB at %.1f MB/s, then sustained %.1f MB/s, %.0f MB warm-up",
+                burstBytes / BYTES_PER_MB, burstMBps, sustainedMBps, warmUpBytes / BYTES_PER_MB);
+    }
+}
@@ -0,0 +1,205 @@
+package com.handoitasdf.drive_checker;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bins the chunk writes of a copy of the test file by offset, and finds the change points of their throughput
+ * once the copy is done.
+ *
+ * The cliff is the split of the bins into two segments of constant throughput which fits them best, kept if
+ * the second segment is much slower than the first. The warm-up is the run of slow bins at the start of the
+ * first segment.
+ *
+ * So that the bins time the drive rather than the page cache of the OS, the transferrers sync the target file
+ * at the end of every bin, within the timed write which ends it.
+ */
+final class WriteProfiler implements ChunkIoListener {
+    private static final int MAX_BINS = 256;
+    private static final long MIN_BIN_BYTES = 1024 * 1024;
+    private static final int MIN_SEGMENT_BINS = 2;
+    private static final double CLIFF_RATIO = 0.6;
+    private static final double WARM_UP_RATIO = 0.8;
+    private static final double NANOS_PER_SECOND = 1e9;
+    private static final double BYTES_PER_MB = 1024.0 * 1024.0;
+    private volatile Bins bins;
+
+    private static final class Bins {
+        final int iteration;
+        final long binBytes;
+        final AtomicLongArray bytes;
+        final AtomicLongArray nanos;
+
+        Bins(int iteration, long fileSize) {
+            this.iteration = iteration;
+            this.binBytes = getBinBytes(fileSize);
+            int length = (int) Math.max(1, (fileSize + binBytes - 1) / binBytes);
+            this.bytes = new AtomicLongArray(length);
+            this.nanos = new AtomicLongArray(length);
+        }
+    }
+
+    /**
+     * @return Size of the bins of a copy of the given size.
+     */
+    static long getBinBytes(long fileSize) {
+        long binCount = Math.max(1, Math.min(MAX_BINS, fileSize / MIN_BIN_BYTES));
+        return Math.max(MIN_BIN_BYTES, (fileSize + binCount - 1) / binCount);
+    }
+
+    /**
+     * Sync the target file to the drive if a chunk write ends a bin or the file. Call it before the write is
+     * finished on the probe, so that the time of the write includes flushing the bin from the page cache. Channels
+     * which aren't file channels, e.g. of simulated drives, have no page cache to flush.
+     *
+     * @param binBytes Size of the bins; 0 not to sync.
+     */
+    static void syncAtBinEnd(@Nonnull SeekableByteChannel channel,
+                             long binBytes,
+                             long offset,
+                             int length,
+                             long fileSize) throws IOException {
+        long end = offset + length;
+        if (binBytes > 0 && channel instanceof FileChannel
+                && (end / binBytes > offset / binBytes || end >= fileSize)) {
+            ((FileChannel) channel).force(false);
+        }
+    }
+
+    /**
+     * Start profiling a copy of the given size.
+     */
+    void start(int iteration, long fileSize) {
+        bins = new Bins(iteration, fileSize);
+    }
+
+    /**
+     * Stop profiling the copy.
+     *
+     * @return The profile of the copy, or null if nothing has been written.
+     */
+    @Nullable
+    WriteProfile finish() {
+        Bins finished = bins;
+        bins = null;
+        return finished == null ? null : analyze(finished);
+    }
+
+    @Override
+    public void onChunkStarted(@Nonnull ChunkOperation operation, long offset, int length, long startNanos) {
+    }
+
+    @Override
+    public void onChunkFinished(@Nonnull ChunkOperation operation,
+                                long offset,
+                                int length,
+                                long startNanos,
+                                long elapsedNanos) {
+        Bins current = bins;
+        if (current == null || !ChunkOperation.TARGET_WRITE.equals(operation)) {
+            return;
+        }
+        int index = (int) Math.min(current.bytes.length() - 1, offset / current.binBytes);
+        current.bytes.addAndGet(index, length);
+        current.nanos.addAndGet(index, Math.max(1, elapsedNanos));
+    }
+
+    @Nullable
+    private static WriteProfile analyze(@Nonnull Bins bins) {
+        int length = bins.bytes.length();
+        double[] rates = new double[length];
+
+        // Only the written bins are analyzed, e.g. if the copy was cut short.
+        int[] written = new int[length];
+        int n = 0;
+        for (int i = 0; i < length; ++i) {
+            long nanos = bins.nanos.get(i);
+            if (nanos > 0) {
+                rates[i] = bins.bytes.get(i) / BYTES_PER_MB / (nanos / NANOS_PER_SECOND);
+                written[n++] = i;
+            }
+        }
+        if (n == 0) {
+            return null;
+        }
+        int cliff = findCliff(bins, rates, written, n);
+        int end = cliff > 0 ? cliff : n;
+        int warmUp = findWarmUp(rates, written, end);
+        double burstMBps = segmentRate(bins, written, warmUp, end);
+        return new WriteProfile(
+                bins.iteration,
+                bins.binBytes,
+                rates,
+                warmUp > 0 ? written[warmUp] * bins.binBytes : 0,
+                cliff > 0 ? written[cliff] * bins.binBytes : 0,
+                burstMBps,
+                cliff > 0 ? segmentRate(bins, written, cliff, n) : burstMBps);
+    }
+
+    /**
+     * @return Index in the written bins where the cliff starts, or 0 if there's no cliff.
+     */
+    private static int findCliff(@Nonnull Bins bins, @Nonnull double[] rates, @Nonnull int[] written, int n) {
+        if (n < 2 * MIN_SEGMENT_BINS) {
+            return 0;
+        }
+        double[] sums = new double[n + 1];
+        double[] squareSums = new double[n + 1];
+        for (int i = 0; i < n; ++i) {
+            double rate = rates[written[i]];
+            sums[i + 1] = sums[i] + rate;
+            squareSums[i + 1] = squareSums[i] + rate * rate;
+        }
+        int best = 0;
+        double bestError = Double.MAX_VALUE;
+        for (int k = MIN_SEGMENT_BINS; k <= n - MIN_SEGMENT_BINS; ++k) {
+            double leftSum = sums[k];
+            double rightSum = sums[n] - sums[k];
+            double error = squareSums[k] - leftSum * leftSum / k
+                    + (squareSums[n] - squareSums[k]) - rightSum * rightSum / (n - k);
+            if (error < bestError) {
+                bestError = error;
+                best = k;
+            }
+        }
+        if (best == 0 || segmentRate(bins, written, best, n) > CLIFF_RATIO * segmentRate(bins, written, 0, best)) {
+            return 0;
+        }
+        return best;
+    }
+
+    /**
+     * @return Index in the written bins where the warm-up ends.
+     */
+    private static int findWarmUp(@Nonnull double[] rates, @Nonnull int[] written, int end) {
+        double[] sorted = new double[end];
+        for (int i = 0; i < end; ++i) {
+            sorted[i] = rates[written[i]];
+        }
+        Arrays.sort(sorted);
+        double median = sorted[end / 2];
+        int warmUp = 0;
+        while (warmUp < end - 1 && rates[written[warmUp]] < WARM_UP_RATIO * median) {
+            ++warmUp;
+        }
+        return warmUp;
+    }
+
+    /**
+     * @return Throughput of the written bins from {@code from} to {@code to}, weighted by their time.
+     */
+    private static double segmentRate(@Nonnull Bins bins, @Nonnull int[] written, int from, int to) {
+        long bytes = 0;
+        long nanos = 0;
+        for (int i = from; i < to; ++i) {
+            bytes += bins.bytes.get(written[i]);
+            nanos += bins.nanos.get(written[i]);
+        }
+        return nanos == 0 ? 0 : bytes / BYTES_PER_MB / (nanos / NANOS_PER_SECOND);
+    }
+}
@@ -0,0 +1,335 @@
+package com.handoitasdf.drive_checker.api;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * A small HTTP API to observe and control the station, on the HTTP server of the JDK.
+ *
+ * <pre>
+ * GET    /api/drives                                   drives and their progress
+ * GET    /api/status                                   whether a run is in progress, and the drives
+ * POST   /api/runs?drive=E:\&amp;testFile=F&amp;iterations=N  start a run
+ * POST   /api/runs?drive=E:\&amp;plan=P[&amp;testFile=F]     start a run of a test plan
+ * DELETE /api/runs                                     cancel the run
+ * GET    /api/report                                   report of the last run
+ * GET    /api/events                                   server-sent status events
+ * </pre>
+ *
+ * Status events are rendered once per interval and offered to a bounded queue per client. A client that
+ * doesn't keep up loses its oldest events rather than slowing down the sampler or the other clients.
+ *
+ * A browser sends the requests of any page it shows, so the requests that start or cancel a run are refused if
+ * they come from a page of another origin than the API.
+ */
+public class ControlApiServer implements Closeable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ControlApiServer.class);
+    private static final long EVENT_INTERVAL_MILLIS = 500;
+    private static final long KEEP_ALIVE_MILLIS = 15000;
+    private static final int CLIENT_QUEUE_CAPACITY = 16;
+    private static final int MAX_EVENT_CLIENTS = 16;
+    private static final String JSON_TYPE = "application/json; charset=utf-8";
+    private final StationController controller;
+    private final HttpServer server;
+    private final ExecutorService executorService = Executors.newCachedThreadPool(daemonThreads("control-api"));
+    private final ScheduledExecutorService eventExecutor =
+            Executors.newSingleThreadScheduledExecutor(daemonThreads("control-api-events"));
+    private final Set<EventClient> eventClients = ConcurrentHashMap.newKeySet();
+    private final Semaphore eventClientPermits = new Semaphore(MAX_EVENT_CLIENTS);
+    private volatile boolean closed = false;
+
+    public ControlApiServer(@Nonnull StationController controller, @Nonnull InetSocketAddress address)
+            throws IOException {
+        this.controller = controller;
+        server = HttpServer.create(address, 0);
+        server.setExecutor(executorService);
+        server.createContext("/api/drives", exchange -> handle(exchange, this::handleDrives));
+        server.createContext("/api/status", exchange -> handle(exchange, this::handleStatus));
+        server.createContext("/api/runs", exchange -> handle(exchange, this::handleRuns));
+        server.createContext("/api/report", exchange -> handle(exchange, this::handleReport));
+        server.createContext("/api/events", exchange -> handle(exchange, this::handleEvents));
+    }
+
+    public void start() {
+        server.start();
+        eventExecutor.scheduleWithFixedDelay(this::publishStatus, 0, EVENT_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+        LOGGER.info("Control API is listening on {}", server.getAddress());
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        eventExecutor.shutdownNow();
+        server.stop(0);
+        executorService.shutdownNow();
+    }
+
+    private interface Handler {
+        void handle(@Nonnull HttpExchange exchange) throws IOException;
+    }
+
+    private void handle(@Nonnull HttpExchange exchange, @Nonnull Handler handler) throws IOException {
+        try {
+            handler.handle(exchange);
+        } catch (RuntimeException ex) {
+            LOGGER.error("Fail to handle {} {}", exchange.getRequestMethod(), exchange.getRequestURI(), ex);
+            sendJson(exchange, 500, JsonWriter.error(String.valueOf(ex.getMessage())));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void handleDrives(@Nonnull HttpExchange exchange) throws IOException {
+        if (!requireMethod(exchange, "GET")) {
+            return;
+        }
+        sendJson(exchange, 200, JsonWriter.drives(controller.getDrives()));
+    }
+
+    private void handleStatus(@Nonnull HttpExchange exchange) throws IOException {
+        if (!requireMethod(exchange, "GET")) {
+            return;
+        }
+        sendJson(exchange, 200, JsonWriter.status(controller.isRunning(), controller.getDrives()));
+    }
+
+    private void handleRuns(@Nonnull HttpExchange exchange) throws IOException {
+        String method = exchange.getRequestMethod();
+        if (isCrossOrigin(exchange)) {
+            sendJson(exchange, 403, JsonWriter.error("Cross-origin requests can't start or cancel runs"));
+            return;
+        }
+        if ("DELETE".equals(method)) {
+            if (controller.cancelRun()) {
+                sendJson(exchange, 202, JsonWriter.status(controller.isRunning(), controller.getDrives()));
+            } else {
+                sendJson(exchange, 409, JsonWriter.error("No run is in progress"));
+            }
+            return;
+        }
+        if (!requireMethod(exchange, "POST")) {
+            return;
+        }
+        Map<String, List<String>> parameters = parseQuery(exchange.getRequestURI().getRawQuery());
+        List<File> drives = parameters.getOrDefault("drive", Collections.emptyList()).stream()
+                .map(File::new)
+                .collect(Collectors.toList());
+        String testFile = getFirst(parameters, "testFile");
+        String iterations = getFirst(parameters, "iterations");
+        String plan = getFirst(parameters, "plan");
+        try {
+            if (plan != null) {
+                controller.startPlan(drives, new File(plan), testFile == null ? null : new File(testFile));
+            } else if (testFile == null || iterations == null) {
+                throw new IllegalArgumentException("testFile and iterations, or plan are required");
+            } else {
+                controller.startRun(drives, new File(testFile), Integer.parseInt(iterations));
+            }
+        } catch (IllegalStateException ex) {
+            sendJson(exchange, 409, JsonWriter.error(String.valueOf(ex.getMessage())));
+            return;
+        } catch (IllegalArgumentException ex) {
+            sendJson(exchange, 400, JsonWriter.error(String.valueOf(ex.getMessage())));
+            return;
+        }
+        sendJson(exchange, 202, JsonWriter.status(controller.isRunning(), controller.getDrives()));
+    }
+
+    private void handleReport(@Nonnull HttpExchange exchange) throws IOException {
+        if (!requireMethod(exchange, "GET")) {
+            return;
+        }
+        String report = controller.getReport();
+        if (report == null) {
+            sendJson(exchange, 404, JsonWriter.error("No run has finished"));
+            return;
+        }
+        send(exchange, 200, "text/plain; charset=utf-8", report);
+    }
+
+    private void handleEvents(@Nonnull HttpExchange exchange) throws IOException {
+        if (!requireMethod(exchange, "GET")) {
+            return;
+        }
+        if (!eventClientPermits.tryAcquire()) {
+            sendJson(exchange, 503, JsonWriter.error("Too many event clients"));
+            return;
+        }
+        try {
+            streamEvents(exchange);
+        } finally {
+            eventClientPermits.release();
+        }
+    }
+
+    private void streamEvents(@Nonnull HttpExchange exchange) throws IOException {
+        EventClient client = new EventClient();
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream; charset=utf-8");
+        exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+        exchange.sendResponseHeaders(200, 0);
+        eventClients.add(client);
+        LOGGER.debug("Event client {} connected", exchange.getRemoteAddress());
+        try (OutputStream out = exchange.getResponseBody()) {
+
+            // Send the current status at once, rather than waiting for the next interval.
+            client.offer(renderStatusEvent());
+            while (!closed) {
+                String event = client.queue.poll(KEEP_ALIVE_MILLIS, TimeUnit.MILLISECONDS);
+                int dropped = client.dropped.getAndSet(0);
+                if (dropped > 0) {
+                    out.write((": dropped " + dropped + " events\n\n").getBytes(StandardCharsets.UTF_8));
+                }
+                out.write((event != null ? event : ": keep-alive\n\n").getBytes(StandardCharsets.UTF_8));
+                out.flush();
+            }
+        } catch (IOException ex) {
+            LOGGER.debug("Event client {} disconnected", exchange.getRemoteAddress());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } finally {
+            eventClients.remove(client);
+        }
+    }
+
+    private void publishStatus() {
+        if (eventClients.isEmpty()) {
+            return;
+        }
+        try {
+            String event = renderStatusEvent();
+            for (EventClient client : eventClients) {
+                client.offer(event);
+            }
+        } catch (RuntimeException ex) {
+            LOGGER.warn("Fail to publish status event", ex);
+        }
+    }
+
+    @Nonnull
+    private String renderStatusEvent() {
+        return "event: status\ndata: " + JsonWriter.status(controller.isRunning(), controller.getDrives()) + "\n\n";
+    }
+
+    /**
+     * @return True if the request comes from a page of another origin than the API. Requests without an Origin
+     *         header, such as those of scripts, aren't from a page.
+     */
+    private static boolean isCrossOrigin(@Nonnull HttpExchange exchange) {
+        String origin = exchange.getRequestHeaders().getFirst("Origin");
+        if (origin == null) {
+            return false;
+        }
+        String host = exchange.getRequestHeaders().getFirst("Host");
+        try {
+            String authority = URI.create(origin.trim()).getRawAuthority();
+            return host == null || authority == null
+                    || !authority.toLowerCase(Locale.ROOT).equals(host.trim().toLowerCase(Locale.ROOT));
+        } catch (IllegalArgumentException ex) {
+            return true;
+        }
+    }
+
+    private static boolean requireMethod(@Nonnull HttpExchange exchange, @Nonnull String method) throws IOException {
+        if (method.equals(exchange.getRequestMethod())) {
+            return true;
+        }
+        exchange.getResponseHeaders().set("Allow", method);
+        sendJson(exchange, 405, JsonWriter.error("Method " + exchange.getRequestMethod() + " isn't allowed"));
+        return false;
+    }
+
+    private static void sendJson(@Nonnull HttpExchange exchange, int code, @Nonnull String json) throws IOException {
+        send(exchange, code, JSON_TYPE, json);
+    }
+
+    private static void send(@Nonnull HttpExchange exchange, int code, @Nonnull String contentType,
+                             @Nonnull String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(code, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    @Nonnull
+    private static Map<String, List<String>> parseQuery(String rawQuery) throws UnsupportedEncodingException {
+        Map<String, List<String>> parameters = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return parameters;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int separator = pair.indexOf('=');
+            String name = URLDecoder.decode(separator < 0 ? pair : pair.substring(0, separator), "UTF-8");
+            String value = separator < 0 ? "" : URLDecoder.decode(pair.substring(separator + 1), "UTF-8");
+            parameters.computeIfAbsent(name, key -> new ArrayList<>()).add(value);
+        }
+        return parameters;
+    }
+
+    private static String getFirst(@Nonnull Map<String, List<String>> parameters, @Nonnull String name) {
+        List<String> values = parameters.get(name);
+        return values == null || values.isEmpty() ? null : values.get(0);
+    }
+
+    @Nonnull
+    private static ThreadFactory daemonThreads(@Nonnull String name) {
+        AtomicInteger threadIndex = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private static final class EventClient {
+        private final BlockingQueue<String> queue = new ArrayBlockingQueue<>(CLIENT_QUEUE_CAPACITY);
+        private final AtomicInteger dropped = new AtomicInteger();
+
+        /**
+         * Never blocks: when the queue is full, the oldest event is dropped.
+         */
+        private void offer(@Nonnull String event) {
+            while (!queue.offer(event)) {
+                if (queue.poll() != null) {
+                    dropped.incrementAndGet();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.handoitasdf.drive_checker.api;
+
+import com.handoitasdf.drive_checker.CheckingStatus;
+
+import javax.annotation.Nonnull;
+
+/**
+ * A snapshot of a drive, taken from the same counters the window shows.
+ */
+public class DriveState {
+    private final String path;
+    private final boolean selected;
+    private final CheckingStatus status;
+    private final int checkedCount;
+    private final long bytesWritten;
+    private final long bytesVerified;
+    private final double currentMBps;
+
+    public DriveState(@Nonnull String path,
+                      boolean selected,
+                      @Nonnull CheckingStatus status,
+                      int checkedCount,
+                      long bytesWritten,
+                      long bytesVerified,
+                      double currentMBps) {
+        this.path = path;
+        this.selected = selected;
+        this.status = status;
+        this.checkedCount = checkedCount;
+        this.bytesWritten = bytesWritten;
+        this.bytesVerified = bytesVerified;
+        this.currentMBps = currentMBps;
+    }
+
+    @Nonnull
+    public String getPath() {
+        return path;
+    }
+
+    public boolean isSelected() {
+        return selected;
+    }
+
+    @Nonnull
+    public CheckingStatus getStatus() {
+        return status;
+    }
+
+    public int getCheckedCount() {
+        return checkedCount;
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    public long getBytesVerified() {
+        return bytesVerified;
+    }
+
+    public double getCurrentMBps() {
+        return currentMBps;
+    }
+}
@@ -0,0 +1,88 @@
+package com.handoitasdf.drive_checker.api;
+
+import javax.annotation.Nonnull;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Renders the few JSON documents of the API; there are too few of them to pull in a JSON library.
+ */
+final class JsonWriter {
+
+    private JsonWriter() {
+    }
+
+    @Nonnull
+    static String status(boolean running, @Nonnull List<DriveState> drives) {
+        StringBuilder builder = new StringBuilder();
+        builder.append("{\"running\":").append(running).append(",\"drives\":");
+        appendDrives(builder, drives);
+        return builder.append('}').toString();
+    }
+
+    @Nonnull
+    static String drives(@Nonnull List<DriveState> drives) {
+        StringBuilder builder = new StringBuilder();
+        appendDrives(builder, drives);
+        return builder.toString();
+    }
+
+    @Nonnull
+    static String error(@Nonnull String message) {
+        StringBuilder builder = new StringBuilder("{\"error\":");
+        appendString(builder, message);
+        return builder.append('}').toString();
+    }
+
+    private static void appendDrives(@Nonnull StringBuilder builder, @Nonnull List<DriveState> drives) {
+        builder.append('[');
+        for (int i = 0; i < drives.size(); ++i) {
+            DriveState drive = drives.get(i);
+            if (i > 0) {
+                builder.append(',');
+            }
+            builder.append("{\"path\":");
+            appendString(builder, drive.getPath());
+            builder.append(",\"selected\":").append(drive.isSelected())
+                    .append(",\"status\":\"").append(drive.getStatus().name()).append('"')
+                    .append(",\"checkedCount\":").append(drive.getCheckedCount())
+                    .append(",\"bytesWritten\":").append(drive.getBytesWritten())
+                    .append(",\"bytesVerified\":").append(drive.getBytesVerified())
+                    .append(",\"currentMBps\":").append(String.format(Locale.ROOT, "%.2f", drive.getCurrentMBps()))
+                    .append('}');
+        }
+        builder.append(']');
+    }
+
+    private static void appendString(@Nonnull StringBuilder builder, @Nonnull String value) {
+        builder.append('"');
+        for (int i = 0; i < value.length(); ++i) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    builder.append("\\\"");
+                    break;
+                case '\\':
+                    builder.append("\\\\");
+                    break;
+                case '\n':
+                    builder.append("\\n");
+                    break;
+                case '\r':
+                    builder.append("\\r");
+                    break;
+                case '\t':
+                    builder.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        builder.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        builder.append(c);
+                    }
+                    break;
+            }
+        }
+        builder.append('"');
+    }
+}
@@ -0,0 +1,48 @@
+package com.handoitasdf.drive_checker.api;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.File;
+import java.util.List;
+
+/**
+ * What the control API can do with the station. Called on the threads of the HTTP server.
+ */
+public interface StationController {
+
+    /**
+     * @return The drives of the station, with the progress of the current or last run.
+     */
+    @Nonnull
+    List<DriveState> getDrives();
+
+    boolean isRunning();
+
+    /**
+     * Start a run.
+     *
+     * @throws IllegalStateException If a run is in progress.
+     * @throws IllegalArgumentException If the drives or the test file are invalid.
+     */
+    void startRun(@Nonnull List<File> drives, @Nonnull File testFile, int iterationCount);
+
+    /**
+     * Start a run of a test plan.
+     *
+     * @param testFile The file copied by the phases without a data pattern, or null if no phase copies it.
+     * @throws IllegalStateException If a run is in progress.
+     * @throws IllegalArgumentException If the drives, the plan or the test file are invalid.
+     */
+    void startPlan(@Nonnull List<File> drives, @Nonnull File planFile, @Nullable File testFile);
+
+    /**
+     * @return False if no run is in progress.
+     */
+    boolean cancelRun();
+
+    /**
+     * @return The report of the last finished run, or null if there isn't any.
+     */
+    @Nullable
+    String getReport();
+}
@@ -0,0 +1,146 @@
+package com.handoitasdf.drive_checker.bench;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+/**
+ * The metrics of a previous run of a benchmark suite, stored as a properties file keyed by scenario and metric,
+ * e.g. {@code tmpfs.4d.64mb.mbps = 812.5}, so that it can be versioned beside the suite and compared with every
+ * new run.
+ */
+public class BenchmarkBaseline {
+    private static final Logger LOGGER = LoggerFactory.getLogger(BenchmarkBaseline.class);
+    private final Properties values;
+
+    private BenchmarkBaseline(@Nonnull Properties values) {
+        this.values = values;
+    }
+
+    @Nonnull
+    public static BenchmarkBaseline load(@Nonnull File file) throws IOException {
+        Properties properties = new Properties();
+        try (Reader reader = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+        return new BenchmarkBaseline(properties);
+    }
+
+    /**
+     * Write the results as the new baseline, sorted so that the changes between releases are easy to review.
+     */
+    public static void save(@Nonnull File file, @Nonnull String suiteName, @Nonnull List<BenchmarkResult> results)
+            throws IOException {
+        Map<String, String> sorted = new TreeMap<>();
+        for (BenchmarkResult result : results) {
+            for (BenchmarkMetric metric : BenchmarkMetric.values()) {
+                double value = result.get(metric);
+                if (value >= 0) {
+                    sorted.put(key(result.getScenarioKey(), metric), String.format(Locale.ROOT, "%.3f", value));
+                }
+            }
+        }
+        List<String> lines = new ArrayList<>();
+        lines.add("# Baseline of benchmark suite " + suiteName);
+        for (Map.Entry<String, String> entry : sorted.entrySet()) {
+            lines.add(entry.getKey() + " = " + entry.getValue());
+        }
+        Files.write(file.toPath(), lines, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return The baseline value of the metric of the scenario, or null if the baseline doesn't have it.
+     * @throws IllegalArgumentException If the value is invalid.
+     */
+    @Nullable
+    public Double get(@Nonnull String scenarioKey, @Nonnull BenchmarkMetric metric) {
+        String key = key(scenarioKey, metric);
+        String value = values.getProperty(key);
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Double.parseDouble(value.trim());
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("Invalid value of " + key + " in the baseline: " + value);
+        }
+    }
+
+    /**
+     * @param tolerancePercents How much worse than the baseline, in percent of it, every metric may be.
+     * @return Why the result regresses from the baseline; empty if it doesn't. A failed scenario and a scenario
+     *         missing from the baseline always regress. A metric missing from the baseline of a scenario it has
+     *         is only warned about, since a platform may not measure it; an unmeasured metric doesn't regress.
+     */
+    @Nonnull
+    public List<String> compare(@Nonnull BenchmarkResult result,
+                                @Nonnull Map<BenchmarkMetric, Double> tolerancePercents) {
+        List<String> regressions = new ArrayList<>();
+        if (!result.isPassed()) {
+            regressions.add("the check failed");
+        }
+        if (!contains(result.getScenarioKey())) {
+            regressions.add("the scenario is not in the baseline");
+            return regressions;
+        }
+        for (BenchmarkMetric metric : BenchmarkMetric.values()) {
+            Double baseline = get(result.getScenarioKey(), metric);
+            double value = result.get(metric);
+            if (baseline == null && value >= 0) {
+                LOGGER.warn("Metric {} of scenario {} is not in the baseline", metric.getKey(),
+                        result.getScenarioKey());
+            }
+            if (baseline == null || baseline < 0 || value < 0) {
+                continue;
+            }
+            double tolerance = tolerancePercents.getOrDefault(metric, 0.0) / 100;
+            boolean regressed = metric.isHigherBetter()
+                    ? value < baseline * (1 - tolerance)
+                    : value > baseline * (1 + tolerance);
+            if (regressed) {
+                regressions.add(String.format(Locale.ROOT, "%s is %.2f, baseline %.2f (%+.1f%%, tolerance %.1f%%)",
+                        metric.getKey(), value, baseline, change(value, baseline), tolerance * 100));
+            }
+        }
+        return regressions;
+    }
+
+    /**
+     * @return True if the baseline has any metric of the scenario.
+     */
+    public boolean contains(@Nonnull String scenarioKey) {
+        for (BenchmarkMetric metric : BenchmarkMetric.values()) {
+            if (values.getProperty(key(scenarioKey, metric)) != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return Change of the value from the baseline in percent, or 0 if the baseline is 0.
+     */
+    public static double change(double value, double baseline) {
+        return baseline == 0 ? 0 : (value - baseline) / baseline * 100;
+    }
+
+    @Nonnull
+    private static String key(@Nonnull String scenarioKey, @Nonnull BenchmarkMetric metric) {
+        return scenarioKey + "." + metric.getKey();
+    }
+}
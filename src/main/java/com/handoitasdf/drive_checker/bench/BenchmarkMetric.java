@@ -0,0 +1,53 @@
+package com.handoitasdf.drive_checker.bench;
+
+import javax.annotation.Nonnull;
+
+/**
+ * What is measured of every run of a benchmark scenario, and which way is worse.
+ */
+public enum BenchmarkMetric {
+    /**
+     * Bytes written and verified by all drives per second of the run, in MB/s.
+     */
+    THROUGHPUT("mbps", true),
+
+    /**
+     * CPU time of the process during the run, in seconds.
+     */
+    CPU_SECONDS("cpu_s", false),
+
+    /**
+     * Peak resident set size of the process during the run, in MB.
+     */
+    PEAK_RSS_MB("peak_rss_mb", false),
+
+    /**
+     * Peak count of live threads of the process during the run.
+     */
+    PEAK_THREADS("peak_threads", false),
+
+    /**
+     * Progress and status events sent to the UI listeners per second of the run.
+     */
+    UI_EVENT_RATE("ui_events_per_s", false);
+
+    private final String key;
+    private final boolean higherIsBetter;
+
+    BenchmarkMetric(@Nonnull String key, boolean higherIsBetter) {
+        this.key = key;
+        this.higherIsBetter = higherIsBetter;
+    }
+
+    /**
+     * @return Name of the metric in the baseline and suite files.
+     */
+    @Nonnull
+    public String getKey() {
+        return key;
+    }
+
+    public boolean isHigherBetter() {
+        return higherIsBetter;
+    }
+}
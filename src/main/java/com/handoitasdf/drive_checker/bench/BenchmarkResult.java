@@ -0,0 +1,67 @@
+package com.handoitasdf.drive_checker.bench;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The metrics of a benchmark scenario. A metric is negative if it couldn't be measured on this platform.
+ */
+public class BenchmarkResult {
+    private final String scenarioKey;
+    private final boolean passed;
+    private final Map<BenchmarkMetric, Double> values;
+
+    public BenchmarkResult(@Nonnull String scenarioKey, boolean passed, @Nonnull Map<BenchmarkMetric, Double> values) {
+        this.scenarioKey = scenarioKey;
+        this.passed = passed;
+        this.values = Collections.unmodifiableMap(new EnumMap<>(values));
+    }
+
+    @Nonnull
+    public String getScenarioKey() {
+        return scenarioKey;
+    }
+
+    /**
+     * @return True if all drives passed their check in every run of the scenario.
+     */
+    public boolean isPassed() {
+        return passed;
+    }
+
+    public double get(@Nonnull BenchmarkMetric metric) {
+        return values.getOrDefault(metric, -1.0);
+    }
+
+    /**
+     * @return The median of every metric over the runs of a scenario, so that an outlier run doesn't decide
+     *         the comparison with the baseline.
+     */
+    @Nonnull
+    public static BenchmarkResult median(@Nonnull List<BenchmarkResult> runs) {
+        if (runs.isEmpty()) {
+            throw new IllegalArgumentException("There are no runs");
+        }
+        boolean passed = true;
+        for (BenchmarkResult run : runs) {
+            passed &= run.isPassed();
+        }
+        Map<BenchmarkMetric, Double> values = new EnumMap<>(BenchmarkMetric.class);
+        for (BenchmarkMetric metric : BenchmarkMetric.values()) {
+            List<Double> samples = new ArrayList<>();
+            for (BenchmarkResult run : runs) {
+                samples.add(run.get(metric));
+            }
+            Collections.sort(samples);
+            int middle = samples.size() / 2;
+            values.put(metric, samples.size() % 2 == 1
+                    ? samples.get(middle)
+                    : (samples.get(middle - 1) + samples.get(middle)) / 2);
+        }
+        return new BenchmarkResult(runs.get(0).getScenarioKey(), passed, values);
+    }
+}
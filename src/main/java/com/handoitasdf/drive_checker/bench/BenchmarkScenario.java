@@ -0,0 +1,74 @@
+package com.handoitasdf.drive_checker.bench;
+
+import javax.annotation.Nonnull;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A run of a benchmark suite: a number of drives of one target, checked with test files of one size.
+ */
+public class BenchmarkScenario {
+    static final String DRIVE_INDEX = "{n}";
+    private final String targetName;
+    private final String driveTemplate;
+    private final int driveCount;
+    private final long fileSizeMB;
+    private final Map<String, String> options;
+
+    BenchmarkScenario(@Nonnull String targetName,
+                      @Nonnull String driveTemplate,
+                      int driveCount,
+                      long fileSizeMB,
+                      @Nonnull Map<String, String> options) {
+        this.targetName = targetName;
+        this.driveTemplate = driveTemplate;
+        this.driveCount = driveCount;
+        this.fileSizeMB = fileSizeMB;
+        this.options = Collections.unmodifiableMap(options);
+    }
+
+    /**
+     * @return Name of the scenario in the baseline, e.g. "tmpfs.4d.64mb".
+     */
+    @Nonnull
+    public String getKey() {
+        return String.format("%s.%dd.%dmb", targetName, driveCount, fileSizeMB);
+    }
+
+    @Nonnull
+    public String getTargetName() {
+        return targetName;
+    }
+
+    public int getDriveCount() {
+        return driveCount;
+    }
+
+    public long getFileSizeMB() {
+        return fileSizeMB;
+    }
+
+    /**
+     * @return The drives of the scenario, numbered from 1 in place of {@value #DRIVE_INDEX} in the drive path
+     *         of the target.
+     */
+    @Nonnull
+    public List<File> getDrives() {
+        List<File> drives = new ArrayList<>();
+        for (int i = 1; i <= driveCount; ++i) {
+            drives.add(new File(driveTemplate.replace(DRIVE_INDEX, String.valueOf(i))));
+        }
+        return drives;
+    }
+
+    /**
+     * @return The check options of the scenario, keyed as in the user properties.
+     */
+    @Nonnull
+    public Map<String, String> getOptions() {
+        return options;
+    }
+}
@@ -0,0 +1,277 @@
+package com.handoitasdf.drive_checker.bench;
+
+import org.apache.commons.lang3.StringUtils;
+
+import javax.annotation.Nonnull;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Whole-run benchmarks of the checker, loaded from a properties file so that they run the same between
+ * releases. Every target is checked with every drive count and every file size:
+ *
+ * <pre>
+ * bench.name = release
+ * bench.targets = tmpfs, image, throttled
+ * bench.drive_counts = 1, 4
+ * bench.file_sizes_mb = 64, 512
+ * bench.iterations = 2                # rounds of every run
+ * bench.repetitions = 3               # runs of every scenario, whose median is kept
+ * bench.tolerance_pct = 10            # how much worse than the baseline a metric may be
+ * bench.tolerance_pct.cpu_s = 25      # tolerance of a metric
+ * bench.check.engine = async          # options of all targets
+ *
+ * target.tmpfs.drive = /dev/shm/drive-checker-bench/{n}
+ * target.image.drive = /mnt/bench-loop{n}
+ * target.throttled.drive = fault:/var/tmp/drive-checker-bench/{n}?bandwidth_mbps=100
+ * target.throttled.check.pipeline_iterations = true
+ * </pre>
+ *
+ * The drives of a target are numbered from 1 in place of {n}. As in a test plan, only the suite sets the check
+ * options.
+ */
+public class BenchmarkSuite {
+    private static final String PROP_NAME = "bench.name";
+    private static final String PROP_TARGETS = "bench.targets";
+    private static final String PROP_DRIVE_COUNTS = "bench.drive_counts";
+    private static final String PROP_FILE_SIZES_MB = "bench.file_sizes_mb";
+    private static final String PROP_ITERATIONS = "bench.iterations";
+    private static final String PROP_REPETITIONS = "bench.repetitions";
+    private static final String PROP_TOLERANCE_PERCENT = "bench.tolerance_pct";
+    private static final String SUITE_PREFIX = "bench.";
+    private static final String TARGET_PREFIX = "target.";
+    private static final String OPTION_PREFIX = "check.";
+    private static final String TARGET_DRIVE = "drive";
+    private static final Pattern TARGET_NAME_PATTERN = Pattern.compile("[A-Za-z0-9_-]+");
+    private static final double DEFAULT_TOLERANCE_PERCENT = 10;
+    private static final Set<String> SUITE_KEYS = new HashSet<>(Arrays.asList(
+            PROP_NAME, PROP_TARGETS, PROP_DRIVE_COUNTS, PROP_FILE_SIZES_MB, PROP_ITERATIONS, PROP_REPETITIONS,
+            PROP_TOLERANCE_PERCENT));
+    private final String name;
+    private final List<BenchmarkScenario> scenarios;
+    private final int iterationCount;
+    private final int repetitionCount;
+    private final Map<BenchmarkMetric, Double> tolerancePercents;
+
+    public BenchmarkSuite(@Nonnull String name,
+                          @Nonnull List<BenchmarkScenario> scenarios,
+                          int iterationCount,
+                          int repetitionCount,
+                          @Nonnull Map<BenchmarkMetric, Double> tolerancePercents) {
+        this.name = name;
+        this.scenarios = Collections.unmodifiableList(scenarios);
+        this.iterationCount = iterationCount;
+        this.repetitionCount = repetitionCount;
+        this.tolerancePercents = Collections.unmodifiableMap(tolerancePercents);
+    }
+
+    @Nonnull
+    public String getName() {
+        return name;
+    }
+
+    @Nonnull
+    public List<BenchmarkScenario> getScenarios() {
+        return scenarios;
+    }
+
+    public int getIterationCount() {
+        return iterationCount;
+    }
+
+    public int getRepetitionCount() {
+        return repetitionCount;
+    }
+
+    /**
+     * @return How much worse than the baseline, in percent of it, every metric may be.
+     */
+    @Nonnull
+    public Map<BenchmarkMetric, Double> getTolerancePercents() {
+        return tolerancePercents;
+    }
+
+    /**
+     * @throws IllegalArgumentException If the suite is invalid.
+     */
+    @Nonnull
+    public static BenchmarkSuite load(@Nonnull File file) throws IOException {
+        Properties properties = new Properties();
+        try (Reader reader = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+        try {
+            return parse(properties, file.getName());
+        } catch (IllegalArgumentException ex) {
+            throw new IllegalArgumentException("Invalid benchmark suite " + file.getPath() + ": " + ex.getMessage(),
+                    ex);
+        }
+    }
+
+    /**
+     * @param defaultName Name of the suite if it doesn't have one.
+     * @throws IllegalArgumentException If the suite is invalid.
+     */
+    @Nonnull
+    public static BenchmarkSuite parse(@Nonnull Properties properties, @Nonnull String defaultName) {
+        List<String> targetNames = splitList(properties.getProperty(PROP_TARGETS, ""));
+        if (targetNames.isEmpty()) {
+            throw new IllegalArgumentException(PROP_TARGETS + " is required");
+        }
+        List<Integer> driveCounts = parseList(properties, PROP_DRIVE_COUNTS, "1").stream()
+                .map(Long::intValue)
+                .collect(Collectors.toList());
+        List<Long> fileSizesMB = parseList(properties, PROP_FILE_SIZES_MB, "64");
+        int iterationCount = (int) parsePositive(PROP_ITERATIONS, properties.getProperty(PROP_ITERATIONS, "1"));
+        int repetitionCount = (int) parsePositive(PROP_REPETITIONS, properties.getProperty(PROP_REPETITIONS, "1"));
+        Map<BenchmarkMetric, Double> tolerancePercents = new EnumMap<>(BenchmarkMetric.class);
+        double defaultTolerance = parseTolerance(PROP_TOLERANCE_PERCENT,
+                properties.getProperty(PROP_TOLERANCE_PERCENT, String.valueOf(DEFAULT_TOLERANCE_PERCENT)));
+        for (BenchmarkMetric metric : BenchmarkMetric.values()) {
+            String key = PROP_TOLERANCE_PERCENT + "." + metric.getKey();
+            String value = properties.getProperty(key);
+            tolerancePercents.put(metric, value == null ? defaultTolerance : parseTolerance(key, value));
+        }
+
+        Map<String, String> suiteOptions = new HashMap<>();
+        Map<String, Map<String, String>> targetProperties = new LinkedHashMap<>();
+        for (String targetName : targetNames) {
+            if (!TARGET_NAME_PATTERN.matcher(targetName).matches()) {
+                throw new IllegalArgumentException("Name of target " + targetName
+                        + " may only contain letters, digits, - and _");
+            }
+            if (targetProperties.put(targetName, new HashMap<>()) != null) {
+                throw new IllegalArgumentException("Target " + targetName + " is listed twice");
+            }
+        }
+        for (String key : properties.stringPropertyNames()) {
+            String value = properties.getProperty(key).trim();
+            if (key.startsWith(SUITE_PREFIX + OPTION_PREFIX)) {
+                suiteOptions.put(key.substring(SUITE_PREFIX.length()), value);
+            } else if (key.startsWith(TARGET_PREFIX)) {
+                String targetKey = key.substring(TARGET_PREFIX.length());
+                Map<String, String> target = targetProperties.get(StringUtils.substringBefore(targetKey, "."));
+                if (target == null) {
+                    throw new IllegalArgumentException(key + " belongs to a target missing from " + PROP_TARGETS);
+                }
+                target.put(StringUtils.substringAfter(targetKey, "."), value);
+            } else if (!SUITE_KEYS.contains(key) && !isToleranceKey(key)) {
+                throw new IllegalArgumentException("Unknown key " + key);
+            }
+        }
+
+        List<BenchmarkScenario> scenarios = new ArrayList<>();
+        int maxDriveCount = Collections.max(driveCounts);
+        for (Map.Entry<String, Map<String, String>> entry : targetProperties.entrySet()) {
+            String targetName = entry.getKey();
+            Map<String, String> options = new HashMap<>(suiteOptions);
+            String driveTemplate = null;
+            for (Map.Entry<String, String> property : entry.getValue().entrySet()) {
+                if (property.getKey().startsWith(OPTION_PREFIX)) {
+                    options.put(property.getKey(), property.getValue());
+                } else if (TARGET_DRIVE.equals(property.getKey())) {
+                    driveTemplate = property.getValue();
+                } else {
+                    throw new IllegalArgumentException("Unknown key " + property.getKey() + " of target "
+                            + targetName);
+                }
+            }
+            if (StringUtils.isEmpty(driveTemplate)) {
+                throw new IllegalArgumentException("Drive of target " + targetName + " is required");
+            }
+            if (maxDriveCount > 1 && !driveTemplate.contains(BenchmarkScenario.DRIVE_INDEX)) {
+                throw new IllegalArgumentException("Drive of target " + targetName + " must contain "
+                        + BenchmarkScenario.DRIVE_INDEX + " to number its drives");
+            }
+            for (int driveCount : driveCounts) {
+                for (long fileSizeMB : fileSizesMB) {
+                    scenarios.add(new BenchmarkScenario(targetName, driveTemplate, driveCount, fileSizeMB,
+                            options));
+                }
+            }
+        }
+        return new BenchmarkSuite(
+                properties.getProperty(PROP_NAME, defaultName).trim(),
+                scenarios,
+                iterationCount,
+                repetitionCount,
+                tolerancePercents);
+    }
+
+    private static boolean isToleranceKey(@Nonnull String key) {
+        for (BenchmarkMetric metric : BenchmarkMetric.values()) {
+            if (key.equals(PROP_TOLERANCE_PERCENT + "." + metric.getKey())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Nonnull
+    private static List<Long> parseList(@Nonnull Properties properties,
+                                        @Nonnull String key,
+                                        @Nonnull String defaultValue) {
+        List<Long> values = new ArrayList<>();
+        for (String value : splitList(properties.getProperty(key, defaultValue))) {
+            values.add(parsePositive(key, value));
+        }
+        if (values.isEmpty()) {
+            throw new IllegalArgumentException(key + " is empty");
+        }
+        return values;
+    }
+
+    private static long parsePositive(@Nonnull String key, @Nonnull String value) {
+        long parsed;
+        try {
+            parsed = Long.parseLong(value.trim());
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("Invalid value of " + key + ": " + value);
+        }
+        if (parsed <= 0) {
+            throw new IllegalArgumentException(key + " must be positive");
+        }
+        return parsed;
+    }
+
+    private static double parseTolerance(@Nonnull String key, @Nonnull String value) {
+        double parsed;
+        try {
+            parsed = Double.parseDouble(value.trim());
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("Invalid value of " + key + ": " + value);
+        }
+        if (parsed < 0) {
+            throw new IllegalArgumentException(key + " must not be negative");
+        }
+        return parsed;
+    }
+
+    @Nonnull
+    private static List<String> splitList(@Nonnull String value) {
+        List<String> items = new ArrayList<>();
+        for (String item : value.split(",")) {
+            if (!item.trim().isEmpty()) {
+                items.add(item.trim());
+            }
+        }
+        return items;
+    }
+}
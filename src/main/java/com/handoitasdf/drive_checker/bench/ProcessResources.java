@@ -0,0 +1,83 @@
+package com.handoitasdf.drive_checker.bench;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+
+/**
+ * Reads the resources used by the process during a benchmark run. The peaks are reset at the start of the run;
+ * the peak RSS is read from /proc on Linux, and is the peak of the whole process if the kernel can't reset it.
+ */
+public class ProcessResources {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ProcessResources.class);
+    private static final Path STATUS_PATH = Paths.get("/proc/self/status");
+    private static final Path CLEAR_REFS_PATH = Paths.get("/proc/self/clear_refs");
+    private static final String PEAK_RSS_FIELD = "VmHWM:";
+    private static final String RESET_PEAK_RSS = "5";
+    private static final double KB_PER_MB = 1024;
+    private final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+    private boolean peakRssResettable = true;
+
+    /**
+     * Reset the peaks, at the start of a run.
+     */
+    public void resetPeaks() {
+        threadBean.resetPeakThreadCount();
+        if (!peakRssResettable) {
+            return;
+        }
+        try {
+            Files.write(CLEAR_REFS_PATH, Collections.singletonList(RESET_PEAK_RSS), StandardCharsets.US_ASCII);
+        } catch (IOException | UnsupportedOperationException | SecurityException ex) {
+            LOGGER.warn("Cannot reset the peak RSS, so it's the peak of the whole process", ex);
+            peakRssResettable = false;
+        }
+    }
+
+    /**
+     * @return CPU time of the process in nanoseconds, or -1 if the JVM doesn't report it.
+     */
+    public long getCpuNanos() {
+        OperatingSystemMXBean osBean = ManagementFactory.getOperatingSystemMXBean();
+        if (osBean instanceof com.sun.management.OperatingSystemMXBean) {
+            return ((com.sun.management.OperatingSystemMXBean) osBean).getProcessCpuTime();
+        }
+        return -1;
+    }
+
+    /**
+     * @return Peak resident set size of the process in MB since the peaks were reset, or -1 if it's unknown.
+     */
+    public double getPeakRssMB() {
+        if (!Files.isReadable(STATUS_PATH)) {
+            return -1;
+        }
+        try {
+            for (String line : Files.readAllLines(STATUS_PATH, StandardCharsets.US_ASCII)) {
+                if (line.startsWith(PEAK_RSS_FIELD)) {
+                    String kilobytes = line.substring(PEAK_RSS_FIELD.length()).replace("kB", "").trim();
+                    return Long.parseLong(kilobytes) / KB_PER_MB;
+                }
+            }
+        } catch (IOException | NumberFormatException ex) {
+            LOGGER.warn("Cannot read the peak RSS from {}", STATUS_PATH, ex);
+        }
+        return -1;
+    }
+
+    /**
+     * @return Peak count of live threads since the peaks were reset.
+     */
+    public int getPeakThreadCount() {
+        return threadBean.getPeakThreadCount();
+    }
+}
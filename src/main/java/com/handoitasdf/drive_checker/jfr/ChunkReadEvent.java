@@ -0,0 +1,39 @@
+package com.handoitasdf.drive_checker.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * A chunk read from the test file or from a target drive.
+ */
+@Name("com.handoitasdf.drive_checker.ChunkRead")
+@Label("Chunk Read")
+@Category({"Drive Checker", "Chunk I/O"})
+@Description("A chunk read from the test file or from a target drive")
+@StackTrace(false)
+class ChunkReadEvent extends Event {
+    @Label("Drive")
+    String drive;
+
+    @Label("Offset")
+    @DataAmount
+    long offset;
+
+    @Label("Bytes")
+    @DataAmount
+    int bytes;
+
+    @Label("Elapsed")
+    @Timespan
+    long elapsed;
+
+    @Label("Source")
+    @Description("True if the chunk is read from the test file; false if it is read back from the drive")
+    boolean source;
+}
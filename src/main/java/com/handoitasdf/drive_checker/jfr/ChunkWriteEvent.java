@@ -0,0 +1,35 @@
+package com.handoitasdf.drive_checker.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * A chunk written to a target drive.
+ */
+@Name("com.handoitasdf.drive_checker.ChunkWrite")
+@Label("Chunk Write")
+@Category({"Drive Checker", "Chunk I/O"})
+@Description("A chunk written to a target drive")
+@StackTrace(false)
+class ChunkWriteEvent extends Event {
+    @Label("Drive")
+    String drive;
+
+    @Label("Offset")
+    @DataAmount
+    long offset;
+
+    @Label("Bytes")
+    @DataAmount
+    int bytes;
+
+    @Label("Elapsed")
+    @Timespan
+    long elapsed;
+}
@@ -0,0 +1,36 @@
+package com.handoitasdf.drive_checker.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * An iteration of a drive checker has ended. The event spans the whole iteration.
+ */
+@Name("com.handoitasdf.drive_checker.IterationEnd")
+@Label("Iteration End")
+@Category({"Drive Checker", "Iteration"})
+@Description("An iteration of a drive checker has ended; the event spans the whole iteration")
+@StackTrace(false)
+class IterationEndEvent extends Event {
+    @Label("Drive")
+    String drive;
+
+    @Label("Iteration")
+    int iteration;
+
+    @Label("Passed")
+    boolean passed;
+
+    @Label("Bytes Written")
+    @DataAmount
+    long bytesWritten;
+
+    @Label("Bytes Verified")
+    @DataAmount
+    long bytesVerified;
+}
@@ -0,0 +1,24 @@
+package com.handoitasdf.drive_checker.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * An iteration of a drive checker has started.
+ */
+@Name("com.handoitasdf.drive_checker.IterationStart")
+@Label("Iteration Start")
+@Category({"Drive Checker", "Iteration"})
+@Description("An iteration of a drive checker has started")
+@StackTrace(false)
+class IterationStartEvent extends Event {
+    @Label("Drive")
+    String drive;
+
+    @Label("Iteration")
+    int iteration;
+}
@@ -0,0 +1,138 @@
+package com.handoitasdf.drive_checker.jfr;
+
+import com.handoitasdf.drive_checker.ChunkIoListener;
+import com.handoitasdf.drive_checker.ChunkOperation;
+import com.handoitasdf.drive_checker.DriveChecker;
+import com.handoitasdf.drive_checker.DriveCheckerMetrics;
+import com.handoitasdf.drive_checker.IterationListener;
+import jdk.jfr.Event;
+
+import javax.annotation.Nonnull;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Emits the Flight Recorder events of a drive. Every callback checks whether its event type is enabled before
+ * filling the event in, so the listener costs next to nothing when no recording is running. The chunk events
+ * are begun when their operation starts and ended when it finishes, so they have a duration on the timeline.
+ *
+ * The end event of an iteration counts the bytes moved on the drive while it ran, which include those of the
+ * overlapping iteration when the iterations are pipelined.
+ */
+public class JfrEventListener implements ChunkIoListener, IterationListener {
+    private final String drive;
+    private final DriveCheckerMetrics metrics;
+
+    // The events of the chunk operations in flight, begun when they start, by their unique start time. An
+    // operation may finish on another thread than the one it started on, with the async engine.
+    private final Map<Long, Event> inFlightEvents = new ConcurrentHashMap<>();
+    private final Map<Integer, IterationRecord> iterations = new ConcurrentHashMap<>();
+
+    private static final class IterationRecord {
+        final IterationEndEvent event;
+        final long startBytesWritten;
+        final long startBytesVerified;
+
+        IterationRecord(@Nonnull IterationEndEvent event, long startBytesWritten, long startBytesVerified) {
+            this.event = event;
+            this.startBytesWritten = startBytesWritten;
+            this.startBytesVerified = startBytesVerified;
+        }
+    }
+
+    public JfrEventListener(@Nonnull DriveChecker checker) {
+        this.drive = checker.getDrive().getPath();
+        this.metrics = checker.getMetrics();
+    }
+
+    @Override
+    public void onChunkStarted(@Nonnull ChunkOperation operation, long offset, int length, long startNanos) {
+        Event event = newChunkEvent(operation);
+        if (event.isEnabled()) {
+            event.begin();
+            inFlightEvents.put(startNanos, event);
+        }
+    }
+
+    @Override
+    public void onChunkFinished(@Nonnull ChunkOperation operation,
+                                long offset,
+                                int length,
+                                long startNanos,
+                                long elapsedNanos) {
+        Event event = inFlightEvents.remove(startNanos);
+        if (event == null) {
+            return;
+        }
+        event.end();
+        if (event instanceof ChunkReadEvent) {
+            ChunkReadEvent readEvent = (ChunkReadEvent) event;
+            readEvent.drive = drive;
+            readEvent.offset = offset;
+            readEvent.bytes = length;
+            readEvent.elapsed = elapsedNanos;
+            readEvent.source = operation.isSource();
+        } else if (event instanceof ChunkWriteEvent) {
+            ChunkWriteEvent writeEvent = (ChunkWriteEvent) event;
+            writeEvent.drive = drive;
+            writeEvent.offset = offset;
+            writeEvent.bytes = length;
+            writeEvent.elapsed = elapsedNanos;
+        } else {
+            DigestUpdateEvent digestEvent = (DigestUpdateEvent) event;
+            digestEvent.drive = drive;
+            digestEvent.offset = offset;
+            digestEvent.bytes = length;
+            digestEvent.elapsed = elapsedNanos;
+            digestEvent.source = operation.isSource();
+        }
+        event.commit();
+    }
+
+    @Nonnull
+    private static Event newChunkEvent(@Nonnull ChunkOperation operation) {
+        switch (operation) {
+            case SOURCE_READ:
+            case TARGET_READ:
+                return new ChunkReadEvent();
+            case TARGET_WRITE:
+                return new ChunkWriteEvent();
+            default:
+                return new DigestUpdateEvent();
+        }
+    }
+
+    @Override
+    public void onIterationStarted(@Nonnull DriveChecker checker, int iteration) {
+        IterationStartEvent startEvent = new IterationStartEvent();
+        if (startEvent.isEnabled()) {
+            startEvent.drive = drive;
+            startEvent.iteration = iteration;
+            startEvent.commit();
+        }
+        IterationEndEvent endEvent = new IterationEndEvent();
+        if (endEvent.isEnabled()) {
+            endEvent.begin();
+            iterations.put(iteration, new IterationRecord(endEvent, metrics.getBytesWritten(),
+                    metrics.getBytesVerified()));
+        } else {
+            iterations.remove(iteration);
+        }
+    }
+
+    @Override
+    public void onIterationFinished(@Nonnull DriveChecker checker, int iteration, boolean passed) {
+        IterationRecord record = iterations.remove(iteration);
+        if (record == null) {
+            return;
+        }
+        IterationEndEvent event = record.event;
+        event.end();
+        event.drive = drive;
+        event.iteration = iteration;
+        event.passed = passed;
+        event.bytesWritten = metrics.getBytesWritten() - record.startBytesWritten;
+        event.bytesVerified = metrics.getBytesVerified() - record.startBytesVerified;
+        event.commit();
+    }
+}
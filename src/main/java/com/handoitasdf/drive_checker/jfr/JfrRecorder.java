@@ -0,0 +1,61 @@
+package com.handoitasdf.drive_checker.jfr;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import java.io.File;
+
+/**
+ * Records a run with Flight Recorder and saves the recording to a file. Failures are logged, because profiling
+ * must never break a check.
+ */
+public class JfrRecorder {
+    private static final Logger LOGGER = LoggerFactory.getLogger(JfrRecorder.class);
+    private static final String CONFIGURATION_NAME = "profile";
+    private final File destination;
+    private Recording recording;
+
+    public JfrRecorder(@Nonnull File destination) {
+        this.destination = destination;
+    }
+
+    public synchronized void start() {
+        if (!JfrSupport.isAvailable() || recording != null) {
+            return;
+        }
+        try {
+            recording = new Recording(Configuration.getConfiguration(CONFIGURATION_NAME));
+            recording.setName("Drive checker run");
+            recording.setToDisk(true);
+            recording.enable(ChunkReadEvent.class).withoutThreshold();
+            recording.enable(ChunkWriteEvent.class).withoutThreshold();
+            recording.enable(DigestUpdateEvent.class).withoutThreshold();
+            recording.enable(IterationStartEvent.class).withoutThreshold();
+            recording.enable(IterationEndEvent.class).withoutThreshold();
+            recording.start();
+            LOGGER.info("Flight recording started, it will be saved to {}", destination.getPath());
+        } catch (Exception ex) {
+            LOGGER.error("Fail to start flight recording", ex);
+            recording = null;
+        }
+    }
+
+    public synchronized void stop() {
+        if (recording == null) {
+            return;
+        }
+        try {
+            recording.stop();
+            recording.dump(destination.toPath());
+            LOGGER.info("Flight recording saved to {}", destination.getPath());
+        } catch (Exception ex) {
+            LOGGER.error("Fail to save flight recording to {}", destination.getPath(), ex);
+        } finally {
+            recording.close();
+            recording = null;
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.handoitasdf.drive_checker.jfr;
+
+import com.handoitasdf.drive_checker.DriveChecker;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Guards the Flight Recorder classes, which don't exist on a runtime linked without the jdk.jfr module.
+ */
+public class JfrSupport {
+    private static final Logger LOGGER = LoggerFactory.getLogger(JfrSupport.class);
+    private static final boolean AVAILABLE = detect();
+
+    public static boolean isAvailable() {
+        return AVAILABLE;
+    }
+
+    /**
+     * Emit the Flight Recorder events of the checker, if Flight Recorder is available.
+     */
+    public static void instrument(@Nonnull DriveChecker checker) {
+        if (!AVAILABLE) {
+            return;
+        }
+        JfrEventListener listener = new JfrEventListener(checker);
+        checker.addChunkIoListener(listener);
+        checker.addIterationListener(listener);
+    }
+
+    private static boolean detect() {
+        try {
+            Class.forName("jdk.jfr.FlightRecorder");
+            return jdk.jfr.FlightRecorder.isAvailable();
+        } catch (ClassNotFoundException | LinkageError ex) {
+            LOGGER.info("Flight Recorder isn't available, drive checker events are disabled");
+            return false;
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.handoitasdf.drive_checker.plan;
+
+import com.handoitasdf.drive_checker.DriveChecker;
+import com.handoitasdf.drive_checker.DriveCheckerMetrics;
+import com.handoitasdf.drive_checker.DriveCheckerSnapshot;
+import com.handoitasdf.drive_checker.WriteProfile;
+
+import javax.annotation.Nonnull;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * What a drive must achieve in a phase of a test plan, besides passing all its rounds. A threshold of 0 (or -1
+ * for counts) isn't checked.
+ */
+public class PhaseThresholds {
+    private static final double BYTES_PER_MB = 1024 * 1024;
+    private final double minMBps;
+    private final long maxWriteP99Millis;
+    private final long maxReadP99Millis;
+    private final int maxCorruptedRounds;
+    private final double minFilesPerSecond;
+    private final double minSustainedMBps;
+
+    public PhaseThresholds(double minMBps,
+                           long maxWriteP99Millis,
+                           long maxReadP99Millis,
+                           int maxCorruptedRounds,
+                           double minFilesPerSecond,
+                           double minSustainedMBps) {
+        this.minMBps = minMBps;
+        this.maxWriteP99Millis = maxWriteP99Millis;
+        this.maxReadP99Millis = maxReadP99Millis;
+        this.maxCorruptedRounds = maxCorruptedRounds;
+        this.minFilesPerSecond = minFilesPerSecond;
+        this.minSustainedMBps = minSustainedMBps;
+    }
+
+    /**
+     * @return Average throughput of writes and reads the drive must reach in MB/s.
+     */
+    public double getMinMBps() {
+        return minMBps;
+    }
+
+    public long getMaxWriteP99Millis() {
+        return maxWriteP99Millis;
+    }
+
+    public long getMaxReadP99Millis() {
+        return maxReadP99Millis;
+    }
+
+    /**
+     * @return Most rounds that may be corrupted in forensic mode, or -1 for no limit.
+     */
+    public int getMaxCorruptedRounds() {
+        return maxCorruptedRounds;
+    }
+
+    public double getMinFilesPerSecond() {
+        return minFilesPerSecond;
+    }
+
+    /**
+     * @return Write throughput the drive must sustain after its write cache is exhausted, in every copy of the
+     *         test file.
+     */
+    public double getMinSustainedMBps() {
+        return minSustainedMBps;
+    }
+
+    /**
+     * @param checker A checker which is done.
+     * @return Why the drive misses the thresholds; empty if it meets them.
+     */
+    @Nonnull
+    public List<String> evaluate(@Nonnull DriveChecker checker) {
+        List<String> failures = new ArrayList<>();
+        DriveCheckerMetrics metrics = checker.getMetrics();
+        DriveCheckerSnapshot snapshot = checker.getSnapshot();
+        Instant startTime = snapshot.getStartTime();
+        Instant doneTime = snapshot.getDoneTime();
+        if (minMBps > 0 && startTime != null && doneTime != null) {
+            double seconds = Duration.between(startTime, doneTime).toMillis() / 1000.0;
+            double mbps = seconds <= 0
+                    ? 0
+                    : (metrics.getBytesWritten() + metrics.getBytesVerified()) / BYTES_PER_MB / seconds;
+            if (mbps < minMBps) {
+                failures.add(String.format("throughput %.1f MB/s is below %.1f MB/s", mbps, minMBps));
+            }
+        }
+        checkLatency(failures, "write", metrics.getWriteLatency().getPercentileMicros(99), maxWriteP99Millis);
+        checkLatency(failures, "read", metrics.getReadLatency().getPercentileMicros(99), maxReadP99Millis);
+        if (maxCorruptedRounds >= 0 && snapshot.getCorruptedCount() > maxCorruptedRounds) {
+            failures.add(String.format("%d corrupted rounds exceed %d",
+                    snapshot.getCorruptedCount(), maxCorruptedRounds));
+        }
+        double filesPerSecond = checker.getSmallFileMetrics().getFilesPerSecond();
+        if (minFilesPerSecond > 0 && filesPerSecond < minFilesPerSecond) {
+            failures.add(String.format("%.0f files/s is below %.0f files/s", filesPerSecond, minFilesPerSecond));
+        }
+        WriteProfile slowest = checker.getSlowestWriteProfile();
+        if (minSustainedMBps > 0 && slowest != null && slowest.getSustainedMBps() < minSustainedMBps) {
+            failures.add(String.format("sustained write %.1f MB/s in iteration %d is below %.1f MB/s",
+                    slowest.getSustainedMBps(), slowest.getIteration(), minSustainedMBps));
+        }
+        return failures;
+    }
+
+    private static void checkLatency(@Nonnull List<String> failures,
+                                     @Nonnull String operation,
+                                     long p99Micros,
+                                     long maxMillis) {
+        if (maxMillis > 0 && p99Micros > maxMillis * 1000) {
+            failures.add(String.format("p99 %s latency %.1f ms exceeds %d ms", operation, p99Micros / 1000.0,
+                    maxMillis));
+        }
+    }
+}
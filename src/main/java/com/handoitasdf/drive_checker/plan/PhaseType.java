@@ -0,0 +1,50 @@
+package com.handoitasdf.drive_checker.plan;
+
+import com.handoitasdf.drive_checker.CheckOptions;
+
+import javax.annotation.Nullable;
+
+/**
+ * What a phase of a test plan does to the drives.
+ */
+public enum PhaseType {
+    /**
+     * Fill the drives with copies of the test file and read them back. The copies are kept for the retention
+     * phases of the plan.
+     */
+    FILL(CheckOptions.Workload.FILL),
+
+    /**
+     * Copy the test file to the drives and read it back.
+     */
+    SEQUENTIAL(CheckOptions.Workload.LARGE_FILE),
+
+    /**
+     * Write blocks at random offsets and read them back.
+     */
+    RANDOM(CheckOptions.Workload.RANDOM_BLOCKS),
+
+    /**
+     * Repeat a workload, the sequential one by default, for a duration.
+     */
+    SOAK(null),
+
+    /**
+     * Read back the copies kept by the last fill phase, after a wait.
+     */
+    RETENTION_VERIFY(CheckOptions.Workload.RETENTION_VERIFY);
+
+    private final CheckOptions.Workload workload;
+
+    PhaseType(@Nullable CheckOptions.Workload workload) {
+        this.workload = workload;
+    }
+
+    /**
+     * @return The workload of the phase, or null if the phase may choose it.
+     */
+    @Nullable
+    public CheckOptions.Workload getWorkload() {
+        return workload;
+    }
+}
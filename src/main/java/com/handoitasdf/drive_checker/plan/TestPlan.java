@@ -0,0 +1,291 @@
+package com.handoitasdf.drive_checker.plan;
+
+import com.handoitasdf.drive_checker.CheckOptions;
+import org.apache.commons.lang3.StringUtils;
+
+import javax.annotation.Nonnull;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * An ordered sequence of phases to run on the drives unattended, loaded from a properties file so that a
+ * qualification run can be versioned and reproduced on every station:
+ *
+ * <pre>
+ * plan.name = SD qualification
+ * plan.phases = fill, seq, retention
+ * plan.check.engine = async                  # options of all phases
+ *
+ * phase.fill.type = fill
+ * phase.seq.type = sequential
+ * phase.seq.iterations = 3
+ * phase.seq.drives = E:\, F:\                # wildcards of the drives to run on, all by default
+ * phase.seq.min_mbps = 20                    # thresholds
+ * phase.seq.check.preallocate_target = true  # options of the phase
+ * phase.retention.type = retention_verify
+ * phase.retention.wait_min = 30
+ * </pre>
+ *
+ * The options of a phase are the check options of the user properties. Only the plan and the phase set them,
+ * so that a plan runs the same whatever the user properties of the station are.
+ */
+public class TestPlan {
+    private static final String PROP_NAME = "plan.name";
+    private static final String PROP_PHASES = "plan.phases";
+    private static final String PROP_STOP_ON_FAILURE = "plan.stop_on_failure";
+    private static final String PLAN_PREFIX = "plan.";
+    private static final String PHASE_PREFIX = "phase.";
+    private static final String OPTION_PREFIX = "check.";
+    private static final String OPTION_WORKLOAD = "check.workload";
+    private static final String OPTION_DURATION_MILLIS = "check.duration_ms";
+    private static final String OPTION_WRITE_PROFILING = "check.write_profile.enabled";
+    private static final String PHASE_TYPE = "type";
+    private static final String PHASE_ITERATIONS = "iterations";
+    private static final String PHASE_DURATION_MINUTES = "duration_min";
+    private static final String PHASE_WAIT_MINUTES = "wait_min";
+    private static final String PHASE_DRIVES = "drives";
+    private static final String PHASE_MIN_MBPS = "min_mbps";
+    private static final String PHASE_MAX_WRITE_P99_MILLIS = "max_write_p99_ms";
+    private static final String PHASE_MAX_READ_P99_MILLIS = "max_read_p99_ms";
+    private static final String PHASE_MAX_CORRUPTED_ROUNDS = "max_corrupted_rounds";
+    private static final String PHASE_MIN_FILES_PER_SECOND = "min_files_per_s";
+    private static final String PHASE_MIN_SUSTAINED_MBPS = "min_sustained_mbps";
+    private static final Set<String> PHASE_KEYS = new HashSet<>(Arrays.asList(
+            PHASE_TYPE, PHASE_ITERATIONS, PHASE_DURATION_MINUTES, PHASE_WAIT_MINUTES, PHASE_DRIVES,
+            PHASE_MIN_MBPS, PHASE_MAX_WRITE_P99_MILLIS, PHASE_MAX_READ_P99_MILLIS, PHASE_MAX_CORRUPTED_ROUNDS,
+            PHASE_MIN_FILES_PER_SECOND, PHASE_MIN_SUSTAINED_MBPS));
+    private final String name;
+    private final List<TestPlanPhase> phases;
+    private final boolean stopOnFailure;
+
+    public TestPlan(@Nonnull String name, @Nonnull List<TestPlanPhase> phases, boolean stopOnFailure) {
+        this.name = name;
+        this.phases = Collections.unmodifiableList(phases);
+        this.stopOnFailure = stopOnFailure;
+    }
+
+    @Nonnull
+    public String getName() {
+        return name;
+    }
+
+    @Nonnull
+    public List<TestPlanPhase> getPhases() {
+        return phases;
+    }
+
+    /**
+     * @return True if a drive which fails a phase skips the following phases.
+     */
+    public boolean isStopOnFailure() {
+        return stopOnFailure;
+    }
+
+    /**
+     * @throws IllegalArgumentException If the plan is invalid.
+     */
+    @Nonnull
+    public static TestPlan load(@Nonnull File file) throws IOException {
+        Properties properties = new Properties();
+        try (Reader reader = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+        try {
+            return parse(properties, file.getName());
+        } catch (IllegalArgumentException ex) {
+            throw new IllegalArgumentException("Invalid test plan " + file.getPath() + ": " + ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * @param defaultName Name of the plan if it doesn't have one.
+     * @throws IllegalArgumentException If the plan is invalid.
+     */
+    @Nonnull
+    public static TestPlan parse(@Nonnull Properties properties, @Nonnull String defaultName) {
+        List<String> phaseNames = splitList(properties.getProperty(PROP_PHASES, ""));
+        if (phaseNames.isEmpty()) {
+            throw new IllegalArgumentException(PROP_PHASES + " is required");
+        }
+        Map<String, String> planOptions = new HashMap<>();
+        Map<String, Map<String, String>> phaseProperties = new LinkedHashMap<>();
+        for (String phaseName : phaseNames) {
+            if (phaseProperties.put(phaseName, new HashMap<>()) != null) {
+                throw new IllegalArgumentException("Phase " + phaseName + " is listed twice");
+            }
+        }
+        for (String key : properties.stringPropertyNames()) {
+            String value = properties.getProperty(key).trim();
+            if (key.startsWith(PLAN_PREFIX + OPTION_PREFIX)) {
+                planOptions.put(key.substring(PLAN_PREFIX.length()), value);
+            } else if (key.startsWith(PHASE_PREFIX)) {
+                String phaseKey = key.substring(PHASE_PREFIX.length());
+                String phaseName = StringUtils.substringBefore(phaseKey, ".");
+                Map<String, String> phase = phaseProperties.get(phaseName);
+                if (phase == null) {
+                    throw new IllegalArgumentException(key + " belongs to a phase missing from " + PROP_PHASES);
+                }
+                phase.put(StringUtils.substringAfter(phaseKey, "."), value);
+            } else if (!PROP_NAME.equals(key) && !PROP_PHASES.equals(key) && !PROP_STOP_ON_FAILURE.equals(key)) {
+                throw new IllegalArgumentException("Unknown key " + key);
+            }
+        }
+        if (planOptions.containsKey(OPTION_WORKLOAD)) {
+            throw new IllegalArgumentException(OPTION_WORKLOAD + " is set by the type of every phase");
+        }
+        List<TestPlanPhase> phases = new ArrayList<>();
+        boolean filled = false;
+        for (Map.Entry<String, Map<String, String>> entry : phaseProperties.entrySet()) {
+            TestPlanPhase phase = parsePhase(entry.getKey(), entry.getValue(), planOptions);
+            if (PhaseType.FILL.equals(phase.getType())) {
+                filled = true;
+            } else if (PhaseType.RETENTION_VERIFY.equals(phase.getType()) && !filled) {
+                throw new IllegalArgumentException("Retention phase " + phase.getName()
+                        + " must follow a fill phase");
+            }
+            phases.add(phase);
+        }
+        return new TestPlan(
+                properties.getProperty(PROP_NAME, defaultName).trim(),
+                phases,
+                Boolean.parseBoolean(properties.getProperty(PROP_STOP_ON_FAILURE, "true").trim()));
+    }
+
+    @Nonnull
+    private static TestPlanPhase parsePhase(@Nonnull String name,
+                                           @Nonnull Map<String, String> properties,
+                                           @Nonnull Map<String, String> planOptions) {
+        Map<String, String> options = new HashMap<>(planOptions);
+        for (Map.Entry<String, String> entry : properties.entrySet()) {
+            String key = entry.getKey();
+            if (key.startsWith(OPTION_PREFIX)) {
+                options.put(key, entry.getValue());
+            } else if (!PHASE_KEYS.contains(key)) {
+                throw new IllegalArgumentException("Unknown key " + key + " of phase " + name);
+            }
+        }
+        String typeName = properties.get(PHASE_TYPE);
+        if (typeName == null) {
+            throw new IllegalArgumentException("Type of phase " + name + " is required");
+        }
+        PhaseType type;
+        try {
+            type = PhaseType.valueOf(typeName.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException ex) {
+            throw new IllegalArgumentException("Unknown type " + typeName + " of phase " + name);
+        }
+        if (type.getWorkload() != null) {
+            if (properties.containsKey(OPTION_WORKLOAD)) {
+                throw new IllegalArgumentException(OPTION_WORKLOAD + " of phase " + name + " is set by its type");
+            }
+            options.put(OPTION_WORKLOAD, type.getWorkload().name().toLowerCase(Locale.ROOT));
+        } else if (CheckOptions.Workload.RETENTION_VERIFY.name()
+                .equalsIgnoreCase(options.getOrDefault(OPTION_WORKLOAD, ""))) {
+            throw new IllegalArgumentException("Phase " + name + " can't soak the retention check");
+        }
+        double durationMinutes = parseDouble(name, properties, PHASE_DURATION_MINUTES, 0);
+        if (durationMinutes > 0) {
+            if (options.containsKey(OPTION_DURATION_MILLIS)) {
+                throw new IllegalArgumentException("Both " + PHASE_DURATION_MINUTES + " and "
+                        + OPTION_DURATION_MILLIS + " of phase " + name + " are set");
+            }
+            options.put(OPTION_DURATION_MILLIS, String.valueOf(toMillis(durationMinutes)));
+        }
+        int iterationCount = parseInt(name, properties, PHASE_ITERATIONS, PhaseType.SOAK.equals(type) ? 0 : 1);
+        if (iterationCount == 0 && durationMinutes <= 0) {
+            throw new IllegalArgumentException("Phase " + name + " needs " + PHASE_DURATION_MINUTES
+                    + " to run without a number of " + PHASE_ITERATIONS);
+        }
+        List<String> driveSelectors = splitList(properties.getOrDefault(PHASE_DRIVES, "*"));
+        if (driveSelectors.isEmpty()) {
+            throw new IllegalArgumentException("Phase " + name + " selects no drive");
+        }
+        double minSustainedMBps = parseDouble(name, properties, PHASE_MIN_SUSTAINED_MBPS, 0);
+        if (minSustainedMBps > 0) {
+            // The sustained throughput is only known if the writes are profiled.
+            options.put(OPTION_WRITE_PROFILING, "true");
+        }
+        PhaseThresholds thresholds = new PhaseThresholds(
+                parseDouble(name, properties, PHASE_MIN_MBPS, 0),
+                (long) parseDouble(name, properties, PHASE_MAX_WRITE_P99_MILLIS, 0),
+                (long) parseDouble(name, properties, PHASE_MAX_READ_P99_MILLIS, 0),
+                parseInt(name, properties, PHASE_MAX_CORRUPTED_ROUNDS, -1),
+                parseDouble(name, properties, PHASE_MIN_FILES_PER_SECOND, 0),
+                minSustainedMBps);
+        return new TestPlanPhase(
+                name,
+                type,
+                iterationCount,
+                toMillis(parseDouble(name, properties, PHASE_WAIT_MINUTES, 0)),
+                driveSelectors,
+                options,
+                thresholds);
+    }
+
+    private static double parseDouble(@Nonnull String phaseName,
+                                      @Nonnull Map<String, String> properties,
+                                      @Nonnull String key,
+                                      double defaultValue) {
+        String value = properties.get(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            double number = Double.parseDouble(value);
+            if (number < 0 && number != defaultValue) {
+                throw new NumberFormatException();
+            }
+            return number;
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("Invalid value " + value + " of " + key + " of phase " + phaseName);
+        }
+    }
+
+    private static int parseInt(@Nonnull String phaseName,
+                                @Nonnull Map<String, String> properties,
+                                @Nonnull String key,
+                                int defaultValue) {
+        String value = properties.get(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            int number = Integer.parseInt(value);
+            if (number < 0 && number != defaultValue) {
+                throw new NumberFormatException();
+            }
+            return number;
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("Invalid value " + value + " of " + key + " of phase " + phaseName);
+        }
+    }
+
+    private static long toMillis(double minutes) {
+        return (long) (minutes * TimeUnit.MINUTES.toMillis(1));
+    }
+
+    @Nonnull
+    private static List<String> splitList(@Nonnull String value) {
+        return Arrays.stream(value.split(","))
+                .map(String::trim)
+                .filter(item -> !item.isEmpty())
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,94 @@
+package com.handoitasdf.drive_checker.plan;
+
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.IOCase;
+
+import javax.annotation.Nonnull;
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A phase of a {@link TestPlan}: a workload run on some of the drives with options of its own.
+ */
+public class TestPlanPhase {
+    private final String name;
+    private final PhaseType type;
+    private final int iterationCount;
+    private final long waitMillis;
+    private final List<String> driveSelectors;
+    private final Map<String, String> options;
+    private final PhaseThresholds thresholds;
+
+    public TestPlanPhase(@Nonnull String name,
+                         @Nonnull PhaseType type,
+                         int iterationCount,
+                         long waitMillis,
+                         @Nonnull List<String> driveSelectors,
+                         @Nonnull Map<String, String> options,
+                         @Nonnull PhaseThresholds thresholds) {
+        this.name = name;
+        this.type = type;
+        this.iterationCount = iterationCount;
+        this.waitMillis = waitMillis;
+        this.driveSelectors = Collections.unmodifiableList(driveSelectors);
+        this.options = Collections.unmodifiableMap(options);
+        this.thresholds = thresholds;
+    }
+
+    @Nonnull
+    public String getName() {
+        return name;
+    }
+
+    @Nonnull
+    public PhaseType getType() {
+        return type;
+    }
+
+    /**
+     * @return Rounds to run on every drive; 0 to run until the duration of the phase has passed.
+     */
+    public int getIterationCount() {
+        return iterationCount;
+    }
+
+    /**
+     * @return How long to wait before the phase starts, e.g. to let the data of a fill phase age.
+     */
+    public long getWaitMillis() {
+        return waitMillis;
+    }
+
+    /**
+     * @return Wildcard patterns of the paths of the drives the phase runs on.
+     */
+    @Nonnull
+    public List<String> getDriveSelectors() {
+        return driveSelectors;
+    }
+
+    /**
+     * @return The check options of the phase, in the keys of the user properties, including the workload of
+     *         the type of the phase.
+     */
+    @Nonnull
+    public Map<String, String> getOptions() {
+        return options;
+    }
+
+    @Nonnull
+    public PhaseThresholds getThresholds() {
+        return thresholds;
+    }
+
+    public boolean selects(@Nonnull File drive) {
+        for (String selector : driveSelectors) {
+            if (FilenameUtils.wildcardMatch(drive.getPath(), selector, IOCase.INSENSITIVE)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,87 @@
+package com.handoitasdf.drive_checker.remote;
+
+import javax.annotation.Nonnull;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Identifies an agent and its run. Drives are referred to by their index in this list in the other frames.
+ */
+public class AgentHello {
+    private final String agentId;
+    private final long runId;
+    private final String testFile;
+    private final int iterationCount;
+    private final List<String> drives;
+
+    /**
+     * @param runId Distinguishes the runs of the same agent, so results of an old run aren't mixed into a new one.
+     */
+    public AgentHello(@Nonnull String agentId,
+                      long runId,
+                      @Nonnull String testFile,
+                      int iterationCount,
+                      @Nonnull List<String> drives) {
+        this.agentId = agentId;
+        this.runId = runId;
+        this.testFile = testFile;
+        this.iterationCount = iterationCount;
+        this.drives = Collections.unmodifiableList(new ArrayList<>(drives));
+    }
+
+    @Nonnull
+    public String getAgentId() {
+        return agentId;
+    }
+
+    public long getRunId() {
+        return runId;
+    }
+
+    @Nonnull
+    public String getTestFile() {
+        return testFile;
+    }
+
+    public int getIterationCount() {
+        return iterationCount;
+    }
+
+    @Nonnull
+    public List<String> getDrives() {
+        return drives;
+    }
+
+    void write(@Nonnull DataOutput out) throws IOException {
+        out.writeInt(FrameCodec.MAGIC);
+        FrameCodec.writeString(out, agentId);
+        out.writeLong(runId);
+        FrameCodec.writeString(out, testFile);
+        out.writeInt(iterationCount);
+        out.writeShort(drives.size());
+        for (String drive : drives) {
+            FrameCodec.writeString(out, drive);
+        }
+    }
+
+    @Nonnull
+    static AgentHello read(@Nonnull DataInput in) throws IOException {
+        if (in.readInt() != FrameCodec.MAGIC) {
+            throw new IOException("Peer doesn't speak the drive checker protocol");
+        }
+        String agentId = FrameCodec.readString(in);
+        long runId = in.readLong();
+        String testFile = FrameCodec.readString(in);
+        int iterationCount = in.readInt();
+        int driveCount = in.readUnsignedShort();
+        List<String> drives = new ArrayList<>(driveCount);
+        for (int i = 0; i < driveCount; ++i) {
+            drives.add(FrameCodec.readString(in));
+        }
+        return new AgentHello(agentId, runId, testFile, iterationCount, drives);
+    }
+}
@@ -0,0 +1,333 @@
+package com.handoitasdf.drive_checker.remote;
+
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The connection of an agent to the coordinator.
+ *
+ * Progress is sent only while connected. Results are kept in an outbox until the coordinator acknowledges them;
+ * whenever the connection is lost, the link reconnects with a growing backoff and resends the outbox, so no
+ * result is lost. The coordinator drops the duplicates by their sequence numbers. While connected, the link sends
+ * a heartbeat every {@link #HEARTBEAT_INTERVAL_MILLIS} and treats a coordinator that doesn't answer within the
+ * read timeout as lost.
+ *
+ * The frames are written by a writer thread of the connection, so that no caller blocks on a coordinator which
+ * stops reading. A write which doesn't complete within the read timeout loses the connection as well.
+ */
+public class AgentLink implements Closeable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(AgentLink.class);
+    private static final int CONNECT_TIMEOUT_MILLIS = 5000;
+    private static final long MIN_BACKOFF_MILLIS = 500;
+    private static final long MAX_BACKOFF_MILLIS = 10000;
+    private static final long HEARTBEAT_INTERVAL_MILLIS = Coordinator.READ_TIMEOUT_MILLIS / 3;
+
+    // Progress is dropped rather than queued beyond this, e.g. while a write is stalled.
+    private static final int MAX_QUEUED_FRAMES = 1024;
+    private final String host;
+    private final int port;
+    private final AgentHello hello;
+    private final Thread connectionThread;
+    private final Thread heartbeatThread;
+
+    // Encoded RESULT and DONE payloads by sequence number, in sending order. Guarded by this.
+    private final Map<Long, Outgoing> outbox = new LinkedHashMap<>();
+    private long nextSequence = 1;
+
+    // The current connection, or null if disconnected. Guarded by this; no frame is written while holding it.
+    private Connection connection;
+    private volatile boolean closed = false;
+
+    public AgentLink(@Nonnull String host, int port, @Nonnull AgentHello hello) {
+        this.host = host;
+        this.port = port;
+        this.hello = hello;
+        connectionThread = new Thread(this::runConnection, "agent-link");
+        connectionThread.setDaemon(true);
+        heartbeatThread = new Thread(this::runHeartbeat, "agent-link-heartbeat");
+        heartbeatThread.setDaemon(true);
+    }
+
+    public void start() {
+        connectionThread.start();
+        heartbeatThread.start();
+    }
+
+    public synchronized boolean isConnected() {
+        return connection != null;
+    }
+
+    /**
+     * Send the progress of a drive if connected; otherwise it's dropped.
+     */
+    public void sendProgress(@Nonnull DriveProgress progress) {
+        byte[] payload;
+        try {
+            payload = FrameCodec.encode(progress::write);
+        } catch (IOException ex) {
+            throw new IllegalStateException("Fail to encode frame " + FrameType.PROGRESS, ex);
+        }
+        Connection current = getConnection();
+        if (current != null && !current.offer(new Outgoing(FrameType.PROGRESS, payload))) {
+            LOGGER.debug("Write queue to coordinator is full, dropping progress");
+        }
+    }
+
+    /**
+     * Send the result of a drive. It's resent on every reconnection until the coordinator acknowledges it.
+     */
+    public void sendResult(@Nonnull DriveResult result) {
+        sendReliably(FrameType.RESULT, result::write);
+    }
+
+    /**
+     * Tell the coordinator that the run is over. Like results, it's resent until acknowledged.
+     */
+    public void sendDone() {
+        sendReliably(FrameType.DONE, out -> {
+        });
+    }
+
+    /**
+     * Wait for the coordinator to acknowledge all results.
+     *
+     * @return False on timeout.
+     */
+    public synchronized boolean awaitAcknowledged(long timeout, @Nonnull TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (!outbox.isEmpty()) {
+            long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (remainingMillis <= 0) {
+                return false;
+            }
+            wait(remainingMillis);
+        }
+        return true;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        connectionThread.interrupt();
+        heartbeatThread.interrupt();
+        Connection current = getConnection();
+        if (current != null) {
+            current.close();
+        }
+    }
+
+    private void sendReliably(@Nonnull FrameType type, @Nonnull FrameCodec.PayloadWriter body) {
+        Outgoing outgoing;
+        Connection current;
+        synchronized (this) {
+            long sequence = nextSequence++;
+            try {
+                outgoing = new Outgoing(type, FrameCodec.encode(payload -> {
+                    payload.writeLong(sequence);
+                    body.write(payload);
+                }));
+            } catch (IOException ex) {
+                throw new IllegalStateException("Fail to encode frame " + type, ex);
+            }
+            outbox.put(sequence, outgoing);
+            current = connection;
+        }
+        // The frame stays in the outbox, so a full queue only delays it to the next connection.
+        if (current != null && !current.offer(outgoing)) {
+            disconnect(current, new IOException("Write queue to coordinator is full"));
+        }
+    }
+
+    private synchronized Connection getConnection() {
+        return connection;
+    }
+
+    private void runConnection() {
+        long backoffMillis = MIN_BACKOFF_MILLIS;
+        while (!closed) {
+            Socket newSocket = new Socket();
+            Connection newConnection = null;
+            try {
+                newSocket.connect(new InetSocketAddress(host, port), CONNECT_TIMEOUT_MILLIS);
+                newSocket.setTcpNoDelay(true);
+                newSocket.setSoTimeout(Coordinator.READ_TIMEOUT_MILLIS);
+                DataInputStream in = new DataInputStream(new BufferedInputStream(newSocket.getInputStream()));
+                newConnection = handshake(newSocket);
+                LOGGER.info("Connected to coordinator {}:{}", host, port);
+                backoffMillis = MIN_BACKOFF_MILLIS;
+                readAcks(in);
+            } catch (IOException ex) {
+                if (!closed) {
+                    LOGGER.warn("Connection to coordinator {}:{} is lost: {}", host, port, ex.toString());
+                }
+            } finally {
+                if (newConnection != null) {
+                    disconnect(newConnection, null);
+                }
+                IOUtils.closeQuietly(newSocket);
+            }
+            try {
+                Thread.sleep(backoffMillis);
+            } catch (InterruptedException ex) {
+                break;
+            }
+            backoffMillis = Math.min(backoffMillis * 2, MAX_BACKOFF_MILLIS);
+        }
+    }
+
+    private void runHeartbeat() {
+        while (!closed) {
+            try {
+                Thread.sleep(HEARTBEAT_INTERVAL_MILLIS);
+            } catch (InterruptedException ex) {
+                break;
+            }
+            Connection current = getConnection();
+            if (current == null) {
+                continue;
+            }
+            if (current.isWriteStalled()) {
+                disconnect(current, new IOException("Write to coordinator is stalled"));
+            } else {
+                current.offer(new Outgoing(FrameType.HEARTBEAT, new byte[0]));
+            }
+        }
+    }
+
+    /**
+     * Queue the HELLO and the outbox on a new connection, and make it current.
+     */
+    @Nonnull
+    private Connection handshake(@Nonnull Socket newSocket) throws IOException {
+        Connection newConnection = new Connection(newSocket);
+        int pendingCount;
+        synchronized (this) {
+            newConnection.queue.add(new Outgoing(FrameType.HELLO, FrameCodec.encode(hello::write)));
+            newConnection.queue.addAll(outbox.values());
+            pendingCount = outbox.size();
+            connection = newConnection;
+        }
+        if (pendingCount > 0) {
+            LOGGER.info("Resending {} unacknowledged frames", pendingCount);
+        }
+        newConnection.start();
+        return newConnection;
+    }
+
+    private void readAcks(@Nonnull DataInputStream in) throws IOException {
+        while (!closed) {
+            FrameCodec.Frame frame = FrameCodec.readFrame(in);
+            if (FrameType.HEARTBEAT.equals(frame.getType())) {
+                continue;
+            }
+            if (!FrameType.ACK.equals(frame.getType())) {
+                throw new IOException("Unexpected frame " + frame.getType() + " from coordinator");
+            }
+            long sequence = frame.getPayload().readLong();
+            synchronized (this) {
+                outbox.remove(sequence);
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Close a connection; the connection thread then reconnects.
+     *
+     * @param cause Why, or null if the connection is already lost.
+     */
+    private void disconnect(@Nonnull Connection lost, @Nullable IOException cause) {
+        if (cause != null) {
+            LOGGER.debug("Fail to write to coordinator, reconnecting", cause);
+        }
+        synchronized (this) {
+            if (connection == lost) {
+                connection = null;
+            }
+        }
+        lost.close();
+    }
+
+    /**
+     * A socket to the coordinator with the queue of frames its writer thread writes.
+     */
+    private final class Connection {
+        private final Socket socket;
+        private final BlockingQueue<Outgoing> queue = new LinkedBlockingQueue<>();
+        private final Thread writerThread;
+
+        // When the write in progress started, or 0 if the writer is waiting for a frame.
+        private volatile long writeStartNanos = 0;
+
+        private Connection(@Nonnull Socket socket) {
+            this.socket = socket;
+            writerThread = new Thread(this::runWriter, "agent-link-writer");
+            writerThread.setDaemon(true);
+        }
+
+        private void start() {
+            writerThread.start();
+        }
+
+        /**
+         * @return False if the queue is full.
+         */
+        private boolean offer(@Nonnull Outgoing outgoing) {
+            return queue.size() < MAX_QUEUED_FRAMES && queue.offer(outgoing);
+        }
+
+        private boolean isWriteStalled() {
+            long startNanos = writeStartNanos;
+            return startNanos != 0 && System.nanoTime() - startNanos
+                    > TimeUnit.MILLISECONDS.toNanos(Coordinator.READ_TIMEOUT_MILLIS);
+        }
+
+        private void close() {
+            writerThread.interrupt();
+            IOUtils.closeQuietly(socket);
+        }
+
+        private void runWriter() {
+            try {
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+                while (true) {
+                    Outgoing outgoing = queue.take();
+                    writeStartNanos = System.nanoTime();
+                    FrameCodec.writeFrame(out, outgoing.type, outgoing.payload);
+                    writeStartNanos = 0;
+                }
+            } catch (InterruptedException ex) {
+                // The connection is closed.
+            } catch (IOException ex) {
+                disconnect(this, ex);
+            }
+        }
+    }
+
+    private static final class Outgoing {
+        private final FrameType type;
+        private final byte[] payload;
+
+        private Outgoing(@Nonnull FrameType type, @Nonnull byte[] payload) {
+            this.type = type;
+            this.payload = payload;
+        }
+    }
+}
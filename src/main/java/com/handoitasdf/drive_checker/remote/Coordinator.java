@@ -0,0 +1,205 @@
+package com.handoitasdf.drive_checker.remote;
+
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Accepts the connections of the agents and aggregates their progress and results.
+ *
+ * An agent reconnecting with the same run keeps its state; the resent results are acknowledged again but
+ * applied only once. An agent connecting with a new run replaces its previous run. A connection the agent has
+ * heard nothing on for {@link #READ_TIMEOUT_MILLIS}, not even a heartbeat, is closed as lost.
+ */
+public class Coordinator implements Closeable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(Coordinator.class);
+    static final int READ_TIMEOUT_MILLIS = 15000;
+    private final ServerSocket serverSocket;
+    private final Thread acceptThread;
+
+    // Agents by id, in the order they first connected. Guarded by itself.
+    private final Map<String, RemoteAgent> agents = new LinkedHashMap<>();
+    private final Set<Socket> sockets = ConcurrentHashMap.newKeySet();
+    private volatile CoordinatorListener listener;
+    private volatile boolean closed = false;
+
+    /**
+     * @param address Address to listen on; port 0 to pick a free port.
+     */
+    public Coordinator(@Nonnull InetSocketAddress address) throws IOException {
+        serverSocket = new ServerSocket();
+        try {
+            serverSocket.bind(address);
+        } catch (IOException ex) {
+            IOUtils.closeQuietly(serverSocket);
+            throw ex;
+        }
+        acceptThread = new Thread(this::runAccept, "coordinator-accept");
+        acceptThread.setDaemon(true);
+    }
+
+    public void start() {
+        LOGGER.info("Coordinator is listening on {}", serverSocket.getLocalSocketAddress());
+        acceptThread.start();
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    public void setListener(@Nullable CoordinatorListener listener) {
+        this.listener = listener;
+    }
+
+    @Nonnull
+    public List<RemoteAgent> getAgents() {
+        synchronized (agents) {
+            return new ArrayList<>(agents.values());
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        IOUtils.closeQuietly(serverSocket);
+        for (Socket socket : sockets) {
+            IOUtils.closeQuietly(socket);
+        }
+    }
+
+    private void runAccept() {
+        while (!closed) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                socket.setSoTimeout(READ_TIMEOUT_MILLIS);
+                sockets.add(socket);
+                Thread thread = new Thread(() -> serve(socket), "coordinator-" + socket.getRemoteSocketAddress());
+                thread.setDaemon(true);
+                thread.start();
+            } catch (SocketException ex) {
+                if (!closed) {
+                    LOGGER.error("Coordinator socket fails", ex);
+                }
+                return;
+            } catch (IOException ex) {
+                LOGGER.warn("Fail to accept agent connection", ex);
+            }
+        }
+    }
+
+    private void serve(@Nonnull Socket socket) {
+        RemoteAgent agent = null;
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            FrameCodec.Frame helloFrame = FrameCodec.readFrame(in);
+            if (!FrameType.HELLO.equals(helloFrame.getType())) {
+                throw new IOException("Expect HELLO, but get " + helloFrame.getType());
+            }
+            agent = register(AgentHello.read(helloFrame.getPayload()));
+            Socket staleSocket = agent.connect(socket);
+            if (staleSocket != null) {
+                // The agent gave up on it, so don't wait for its read timeout.
+                IOUtils.closeQuietly(staleSocket);
+            }
+            LOGGER.info("Agent {} connected from {}", agent.getAgentId(), socket.getRemoteSocketAddress());
+            CoordinatorListener currentListener = listener;
+            if (currentListener != null) {
+                currentListener.onAgentConnected(agent);
+            }
+            while (!closed) {
+                handleFrame(agent, FrameCodec.readFrame(in), out);
+            }
+        } catch (IOException | IllegalArgumentException ex) {
+            if (!closed) {
+                LOGGER.warn("Connection of agent {} is lost: {}",
+                        agent == null ? socket.getRemoteSocketAddress() : agent.getAgentId(), ex.toString());
+            }
+        } finally {
+            sockets.remove(socket);
+            IOUtils.closeQuietly(socket);
+            if (agent != null && agent.disconnect(socket)) {
+                CoordinatorListener currentListener = listener;
+                if (currentListener != null) {
+                    currentListener.onAgentDisconnected(agent);
+                }
+            }
+        }
+    }
+
+    @Nonnull
+    private RemoteAgent register(@Nonnull AgentHello hello) {
+        synchronized (agents) {
+            RemoteAgent agent = agents.get(hello.getAgentId());
+            if (agent == null || agent.getRunId() != hello.getRunId()) {
+                if (agent != null) {
+                    LOGGER.info("Agent {} started a new run, dropping the previous one", hello.getAgentId());
+                }
+                agent = new RemoteAgent(hello);
+                agents.put(hello.getAgentId(), agent);
+            }
+            return agent;
+        }
+    }
+
+    private void handleFrame(@Nonnull RemoteAgent agent,
+                             @Nonnull FrameCodec.Frame frame,
+                             @Nonnull DataOutputStream out) throws IOException {
+        DataInputStream payload = frame.getPayload();
+        CoordinatorListener currentListener = listener;
+        switch (frame.getType()) {
+            case PROGRESS:
+                agent.applyProgress(DriveProgress.read(payload));
+                break;
+            case RESULT: {
+                long sequence = payload.readLong();
+                DriveResult result = DriveResult.read(payload);
+                if (agent.applyResult(sequence, result) && currentListener != null) {
+                    currentListener.onDriveResult(agent, result);
+                }
+                acknowledge(out, sequence);
+                break;
+            }
+            case DONE: {
+                long sequence = payload.readLong();
+                if (agent.applyDone(sequence)) {
+                    LOGGER.info("Agent {} is done", agent.getAgentId());
+                    if (currentListener != null) {
+                        currentListener.onAgentDone(agent);
+                    }
+                }
+                acknowledge(out, sequence);
+                break;
+            }
+            case HEARTBEAT:
+                FrameCodec.writeFrame(out, FrameType.HEARTBEAT, new byte[0]);
+                break;
+            default:
+                throw new IOException("Unexpected frame " + frame.getType() + " from agent " + agent.getAgentId());
+        }
+    }
+
+    private static void acknowledge(@Nonnull DataOutputStream out, long sequence) throws IOException {
+        FrameCodec.writeFrame(out, FrameType.ACK, FrameCodec.encode(payload -> payload.writeLong(sequence)));
+    }
+}
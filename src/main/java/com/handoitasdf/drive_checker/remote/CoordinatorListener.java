@@ -0,0 +1,13 @@
+package com.handoitasdf.drive_checker.remote;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Called on the connection threads of the coordinator.
+ */
+public interface CoordinatorListener {
+    void onAgentConnected(@Nonnull RemoteAgent agent);
+    void onAgentDisconnected(@Nonnull RemoteAgent agent);
+    void onDriveResult(@Nonnull RemoteAgent agent, @Nonnull DriveResult result);
+    void onAgentDone(@Nonnull RemoteAgent agent);
+}
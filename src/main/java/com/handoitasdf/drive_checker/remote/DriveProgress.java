@@ -0,0 +1,80 @@
+package com.handoitasdf.drive_checker.remote;
+
+import com.handoitasdf.drive_checker.CheckingStatus;
+
+import javax.annotation.Nonnull;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Progress of a drive of an agent; 19 bytes on the wire.
+ */
+public class DriveProgress {
+    private final int driveIndex;
+    private final CheckingStatus status;
+    private final int iteration;
+    private final long copiedBytes;
+    private final float mbps;
+
+    public DriveProgress(int driveIndex,
+                         @Nonnull CheckingStatus status,
+                         int iteration,
+                         long copiedBytes,
+                         double mbps) {
+        this.driveIndex = driveIndex;
+        this.status = status;
+        this.iteration = iteration;
+        this.copiedBytes = copiedBytes;
+        this.mbps = (float) mbps;
+    }
+
+    public int getDriveIndex() {
+        return driveIndex;
+    }
+
+    @Nonnull
+    public CheckingStatus getStatus() {
+        return status;
+    }
+
+    public int getIteration() {
+        return iteration;
+    }
+
+    public long getCopiedBytes() {
+        return copiedBytes;
+    }
+
+    public double getMBps() {
+        return mbps;
+    }
+
+    void write(@Nonnull DataOutput out) throws IOException {
+        out.writeShort(driveIndex);
+        out.writeByte(status.ordinal());
+        out.writeInt(iteration);
+        out.writeLong(copiedBytes);
+        out.writeFloat(mbps);
+    }
+
+    @Nonnull
+    static DriveProgress read(@Nonnull DataInput in) throws IOException {
+        int driveIndex = in.readUnsignedShort();
+        CheckingStatus status = readStatus(in);
+        int iteration = in.readInt();
+        long copiedBytes = in.readLong();
+        float mbps = in.readFloat();
+        return new DriveProgress(driveIndex, status, iteration, copiedBytes, mbps);
+    }
+
+    @Nonnull
+    static CheckingStatus readStatus(@Nonnull DataInput in) throws IOException {
+        int ordinal = in.readUnsignedByte();
+        CheckingStatus[] statuses = CheckingStatus.values();
+        if (ordinal >= statuses.length) {
+            throw new IOException("Unknown checking status " + ordinal);
+        }
+        return statuses[ordinal];
+    }
+}
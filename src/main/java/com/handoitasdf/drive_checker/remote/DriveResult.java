@@ -0,0 +1,59 @@
+package com.handoitasdf.drive_checker.remote;
+
+import com.handoitasdf.drive_checker.CheckingStatus;
+
+import javax.annotation.Nonnull;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Final result of a drive of an agent, with the drive section of the report rendered by the agent.
+ */
+public class DriveResult {
+    private final int driveIndex;
+    private final CheckingStatus status;
+    private final int checkedCount;
+    private final String report;
+
+    public DriveResult(int driveIndex, @Nonnull CheckingStatus status, int checkedCount, @Nonnull String report) {
+        this.driveIndex = driveIndex;
+        this.status = status;
+        this.checkedCount = checkedCount;
+        this.report = report;
+    }
+
+    public int getDriveIndex() {
+        return driveIndex;
+    }
+
+    @Nonnull
+    public CheckingStatus getStatus() {
+        return status;
+    }
+
+    public int getCheckedCount() {
+        return checkedCount;
+    }
+
+    @Nonnull
+    public String getReport() {
+        return report;
+    }
+
+    void write(@Nonnull DataOutput out) throws IOException {
+        out.writeShort(driveIndex);
+        out.writeByte(status.ordinal());
+        out.writeInt(checkedCount);
+        FrameCodec.writeString(out, report);
+    }
+
+    @Nonnull
+    static DriveResult read(@Nonnull DataInput in) throws IOException {
+        int driveIndex = in.readUnsignedShort();
+        CheckingStatus status = DriveProgress.readStatus(in);
+        int checkedCount = in.readInt();
+        String report = FrameCodec.readString(in);
+        return new DriveResult(driveIndex, status, checkedCount, report);
+    }
+}
@@ -0,0 +1,95 @@
+package com.handoitasdf.drive_checker.remote;
+
+import javax.annotation.Nonnull;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Frames are a big-endian int length, a type byte and the payload; the length counts the type and the payload.
+ */
+final class FrameCodec {
+    static final int MAGIC = 0x44434b31;
+    private static final int MAX_FRAME_LENGTH = 16 * 1024 * 1024;
+
+    private FrameCodec() {
+    }
+
+    static void writeFrame(@Nonnull DataOutputStream out, @Nonnull FrameType type, @Nonnull byte[] payload)
+            throws IOException {
+        out.writeInt(payload.length + 1);
+        out.writeByte(type.getCode());
+        out.write(payload);
+        out.flush();
+    }
+
+    @Nonnull
+    static Frame readFrame(@Nonnull DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 1 || length > MAX_FRAME_LENGTH) {
+            throw new IOException("Invalid frame length " + length);
+        }
+        FrameType type = FrameType.fromCode(in.readByte());
+        byte[] payload = new byte[length - 1];
+        in.readFully(payload);
+        return new Frame(type, payload);
+    }
+
+    /**
+     * Strings are written as an int length and UTF-8 bytes, because reports may exceed the limit of writeUTF.
+     */
+    static void writeString(@Nonnull DataOutput out, @Nonnull String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    @Nonnull
+    static String readString(@Nonnull DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > MAX_FRAME_LENGTH) {
+            throw new IOException("Invalid string length " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    interface PayloadWriter {
+        void write(@Nonnull DataOutputStream out) throws IOException;
+    }
+
+    @Nonnull
+    static byte[] encode(@Nonnull PayloadWriter writer) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        writer.write(out);
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    static final class Frame {
+        private final FrameType type;
+        private final byte[] payload;
+
+        private Frame(@Nonnull FrameType type, @Nonnull byte[] payload) {
+            this.type = type;
+            this.payload = payload;
+        }
+
+        @Nonnull
+        FrameType getType() {
+            return type;
+        }
+
+        @Nonnull
+        DataInputStream getPayload() {
+            return new DataInputStream(new ByteArrayInputStream(payload));
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.handoitasdf.drive_checker.remote;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+
+/**
+ * Types of the frames exchanged between agents and the coordinator.
+ */
+public enum FrameType {
+
+    /**
+     * Agent to coordinator, first frame of every connection: who the agent is and what it checks.
+     */
+    HELLO(1),
+
+    /**
+     * Agent to coordinator: latest progress of a drive. Best effort; lost progress is superseded by the next one.
+     */
+    PROGRESS(2),
+
+    /**
+     * Agent to coordinator: final result of a drive. Resent until acknowledged.
+     */
+    RESULT(3),
+
+    /**
+     * Agent to coordinator: the run of the agent is over. Resent until acknowledged.
+     */
+    DONE(4),
+
+    /**
+     * Coordinator to agent: acknowledges a {@link #RESULT} or {@link #DONE} frame by its sequence number.
+     */
+    ACK(5),
+
+    /**
+     * Both ways, empty: sent by the agent while connected and echoed by the coordinator, so that either side can
+     * tell a silent connection from a dead one.
+     */
+    HEARTBEAT(6);
+
+    private final byte code;
+
+    FrameType(int code) {
+        this.code = (byte) code;
+    }
+
+    public byte getCode() {
+        return code;
+    }
+
+    @Nonnull
+    public static FrameType fromCode(byte code) throws IOException {
+        for (FrameType type : values()) {
+            if (type.code == code) {
+                return type;
+            }
+        }
+        throw new IOException("Unknown frame type " + code);
+    }
+}
@@ -0,0 +1,149 @@
+package com.handoitasdf.drive_checker.remote;
+
+import com.handoitasdf.drive_checker.CheckingStatus;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.net.Socket;
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * What the coordinator knows about the current run of an agent. All methods are thread safe.
+ */
+public class RemoteAgent {
+    private final AgentHello hello;
+    private final Instant firstSeenTime = Instant.now();
+    private final DriveProgress[] progresses;
+    private final DriveResult[] results;
+
+    // Sequence numbers of the reliable frames already applied, so that resent frames are dropped.
+    private final Set<Long> appliedSequences = new HashSet<>();
+    private Socket connection;
+    private Instant doneTime;
+
+    RemoteAgent(@Nonnull AgentHello hello) {
+        this.hello = hello;
+        this.progresses = new DriveProgress[hello.getDrives().size()];
+        this.results = new DriveResult[hello.getDrives().size()];
+    }
+
+    @Nonnull
+    public String getAgentId() {
+        return hello.getAgentId();
+    }
+
+    public long getRunId() {
+        return hello.getRunId();
+    }
+
+    @Nonnull
+    public String getTestFile() {
+        return hello.getTestFile();
+    }
+
+    public int getIterationCount() {
+        return hello.getIterationCount();
+    }
+
+    @Nonnull
+    public List<String> getDrives() {
+        return hello.getDrives();
+    }
+
+    @Nonnull
+    public Instant getFirstSeenTime() {
+        return firstSeenTime;
+    }
+
+    public synchronized boolean isConnected() {
+        return connection != null;
+    }
+
+    public synchronized boolean isDone() {
+        return doneTime != null;
+    }
+
+    @Nullable
+    public synchronized Instant getDoneTime() {
+        return doneTime;
+    }
+
+    @Nullable
+    public synchronized DriveProgress getProgress(int driveIndex) {
+        return progresses[driveIndex];
+    }
+
+    @Nullable
+    public synchronized DriveResult getResult(int driveIndex) {
+        return results[driveIndex];
+    }
+
+    /**
+     * @return The status of a drive, from its result if there is one, or else from its latest progress.
+     */
+    @Nonnull
+    public synchronized CheckingStatus getStatus(int driveIndex) {
+        if (results[driveIndex] != null) {
+            return results[driveIndex].getStatus();
+        }
+        return progresses[driveIndex] != null ? progresses[driveIndex].getStatus() : CheckingStatus.PENDING;
+    }
+
+    /**
+     * @return The previous connection of the agent, which is stale now, or null if there is none.
+     */
+    @Nullable
+    synchronized Socket connect(@Nonnull Socket socket) {
+        Socket previous = connection;
+        connection = socket;
+        return previous;
+    }
+
+    /**
+     * @return False if the agent has reconnected on another socket since, so it's still connected.
+     */
+    synchronized boolean disconnect(@Nonnull Socket socket) {
+        if (connection != socket) {
+            return false;
+        }
+        connection = null;
+        return true;
+    }
+
+    synchronized void applyProgress(@Nonnull DriveProgress progress) {
+        checkDriveIndex(progress.getDriveIndex());
+        progresses[progress.getDriveIndex()] = progress;
+    }
+
+    /**
+     * @return False if the frame has been applied before.
+     */
+    synchronized boolean applyResult(long sequence, @Nonnull DriveResult result) {
+        checkDriveIndex(result.getDriveIndex());
+        if (!appliedSequences.add(sequence)) {
+            return false;
+        }
+        results[result.getDriveIndex()] = result;
+        return true;
+    }
+
+    /**
+     * @return False if the frame has been applied before.
+     */
+    synchronized boolean applyDone(long sequence) {
+        if (!appliedSequences.add(sequence)) {
+            return false;
+        }
+        doneTime = Instant.now();
+        return true;
+    }
+
+    private void checkDriveIndex(int driveIndex) {
+        if (driveIndex < 0 || driveIndex >= progresses.length) {
+            throw new IllegalArgumentException("Agent " + getAgentId() + " has no drive " + driveIndex);
+        }
+    }
+}
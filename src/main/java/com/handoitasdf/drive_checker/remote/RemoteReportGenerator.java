@@ -0,0 +1,88 @@
+package com.handoitasdf.drive_checker.remote;
+
+import com.handoitasdf.drive_checker.CheckingStatus;
+
+import javax.annotation.Nonnull;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+/**
+ * Generates one report of all agents, made of the drive reports rendered by the agents.
+ */
+public class RemoteReportGenerator {
+
+    @Nonnull
+    public String generateReport(@Nonnull List<RemoteAgent> agents) {
+        StringBuilder builder = new StringBuilder();
+        int passed = 0;
+        int total = 0;
+        for (RemoteAgent agent : agents) {
+            for (int i = 0; i < agent.getDrives().size(); ++i) {
+                DriveResult result = agent.getResult(i);
+                if (result != null && CheckingStatus.SUCCESS.equals(result.getStatus())) {
+                    ++passed;
+                }
+                ++total;
+            }
+        }
+        builder.append("Agents: ")
+                .append(agents.size())
+                .append(System.lineSeparator())
+                .append("Passed drives: ")
+                .append(passed)
+                .append(" / ")
+                .append(total)
+                .append(System.lineSeparator());
+        for (RemoteAgent agent : agents) {
+            builder.append(generateAgentReport(agent));
+        }
+        return builder.toString();
+    }
+
+    @Nonnull
+    private String generateAgentReport(@Nonnull RemoteAgent agent) {
+        StringBuilder builder = new StringBuilder();
+        Instant doneTime = agent.getDoneTime();
+        builder.append(System.lineSeparator())
+                .append("## Agent ")
+                .append(agent.getAgentId())
+                .append(System.lineSeparator())
+                .append("Test file: ")
+                .append(agent.getTestFile())
+                .append(System.lineSeparator())
+                .append("Rounds: ")
+                .append(agent.getIterationCount())
+                .append(System.lineSeparator())
+                .append("Done time: ")
+                .append(doneTime == null ? "Not done" : formatInstant(doneTime))
+                .append(System.lineSeparator());
+        List<String> drives = agent.getDrives();
+        for (int i = 0; i < drives.size(); ++i) {
+            DriveResult result = agent.getResult(i);
+            if (result != null) {
+                builder.append(result.getReport());
+            } else {
+                builder.append(System.lineSeparator())
+                        .append("# Drive ")
+                        .append(drives.get(i))
+                        .append(System.lineSeparator())
+                        .append("Result: No result yet (last status ")
+                        .append(agent.getStatus(i))
+                        .append(')')
+                        .append(System.lineSeparator());
+            }
+        }
+        return builder.toString();
+    }
+
+    @Nonnull
+    private String formatInstant(@Nonnull Instant instant) {
+        return ZonedDateTime.ofInstant(
+                instant,
+                ZoneId.systemDefault())
+                .format(DateTimeFormatter.ISO_OFFSET_DATE_TIME);
+    }
+}
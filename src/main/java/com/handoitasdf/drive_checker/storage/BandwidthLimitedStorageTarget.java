@@ -0,0 +1,53 @@
+package com.handoitasdf.drive_checker.storage;
+
+import com.handoitasdf.drive_checker.TokenBucket;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caps the bandwidth of another target, shared by the reads and writes of all its files like the bus of a drive.
+ */
+public class BandwidthLimitedStorageTarget extends ForwardingStorageTarget {
+    private final TokenBucket bucket;
+
+    public BandwidthLimitedStorageTarget(@Nonnull StorageTarget delegate, double bytesPerSecond) {
+        super(delegate);
+        this.bucket = new TokenBucket(bytesPerSecond);
+    }
+
+    @Override
+    @Nonnull
+    protected SeekableByteChannel decorate(@Nonnull SeekableByteChannel channel) {
+        return new ForwardingByteChannel(channel) {
+            @Override
+            public int read(ByteBuffer destination) throws IOException {
+                acquire(destination.remaining());
+                return super.read(destination);
+            }
+
+            @Override
+            public int write(ByteBuffer source) throws IOException {
+                acquire(source.remaining());
+                return super.write(source);
+            }
+        };
+    }
+
+    private void acquire(int bytes) throws InterruptedIOException {
+        long waitNanos = bucket.reserve(bytes);
+        if (waitNanos <= 0) {
+            return;
+        }
+        try {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while limiting bandwidth");
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.handoitasdf.drive_checker.storage;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.util.Random;
+
+/**
+ * Flips random bits of the data of another target, at a given rate per bit.
+ *
+ * Flips on read corrupt only the data returned, like a flaky read path, so re-reads may be right. Flips on write
+ * corrupt the stored data, like bad media.
+ */
+public class BitFlippingStorageTarget extends ForwardingStorageTarget {
+
+    public enum Mode {
+        READ,
+        WRITE
+    }
+
+    private final double flipRatePerBit;
+    private final Mode mode;
+    private final Random random;
+
+    // Guarded by random.
+    private long bitsUntilFlip;
+
+    public BitFlippingStorageTarget(@Nonnull StorageTarget delegate, double flipRatePerBit, @Nonnull Mode mode,
+                                    long seed) {
+        super(delegate);
+        if (flipRatePerBit <= 0 || flipRatePerBit >= 1) {
+            throw new IllegalArgumentException("Flip rate must be between 0 and 1: " + flipRatePerBit);
+        }
+        this.flipRatePerBit = flipRatePerBit;
+        this.mode = mode;
+        this.random = new Random(seed);
+        this.bitsUntilFlip = nextGap();
+    }
+
+    @Override
+    @Nonnull
+    protected SeekableByteChannel decorate(@Nonnull SeekableByteChannel channel) {
+        return new ForwardingByteChannel(channel) {
+            @Override
+            public int read(ByteBuffer destination) throws IOException {
+                int start = destination.position();
+                int nRead = super.read(destination);
+                if (Mode.READ.equals(mode) && nRead > 0) {
+                    flip(destination, start, nRead);
+                }
+                return nRead;
+            }
+
+            @Override
+            public int write(ByteBuffer source) throws IOException {
+                if (!Mode.WRITE.equals(mode)) {
+                    return super.write(source);
+                }
+
+                // Don't corrupt the caller's buffer, which may be written to other drives too.
+                ByteBuffer copy = ByteBuffer.allocate(source.remaining());
+                copy.put(source.duplicate()).flip();
+                flip(copy, 0, copy.remaining());
+                int nWritten = super.write(copy);
+                source.position(source.position() + nWritten);
+                return nWritten;
+            }
+        };
+    }
+
+    private void flip(@Nonnull ByteBuffer buffer, int start, int length) {
+        synchronized (random) {
+            long bits = (long) length * Byte.SIZE;
+            long bit = bitsUntilFlip;
+            while (bit < bits) {
+                int index = start + (int) (bit / Byte.SIZE);
+                buffer.put(index, (byte) (buffer.get(index) ^ (1 << (bit % Byte.SIZE))));
+                bit += 1 + nextGap();
+            }
+            bitsUntilFlip = bit - bits;
+        }
+    }
+
+    /**
+     * @return Number of intact bits before the next flip, which is geometrically distributed.
+     */
+    private long nextGap() {
+        double gap = Math.log(1 - random.nextDouble()) / Math.log1p(-flipRatePerBit);
+        return (long) Math.min(gap, Long.MAX_VALUE / 2);
+    }
+}
@@ -0,0 +1,100 @@
+package com.handoitasdf.drive_checker.storage;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Target files in a directory of the local filesystem, usually the root of a drive.
+ */
+public class FileSystemStorageTarget implements StorageTarget {
+    private final File directory;
+
+    public FileSystemStorageTarget(@Nonnull File directory) {
+        this.directory = directory;
+    }
+
+    @Override
+    @Nonnull
+    public String getLocation() {
+        return directory.getPath();
+    }
+
+    @Override
+    @Nonnull
+    public StorageFile createFile(@Nonnull String prefix) throws IOException {
+        return new FileSystemStorageFile(File.createTempFile(prefix, ".tmp", directory));
+    }
+
+    @Override
+    @Nonnull
+    public File getDirectory() {
+        return directory;
+    }
+
+    @Override
+    public long getUsableSpace() {
+        return directory.getUsableSpace();
+    }
+
+    private static class FileSystemStorageFile implements StorageFile {
+        private final File file;
+
+        private FileSystemStorageFile(@Nonnull File file) {
+            this.file = file;
+        }
+
+        @Override
+        @Nonnull
+        public String getPath() {
+            return file.getPath();
+        }
+
+        @Override
+        @Nonnull
+        public SeekableByteChannel openForWrite(boolean truncate) throws IOException {
+            if (truncate) {
+                return FileChannel.open(file.toPath(),
+                        StandardOpenOption.WRITE,
+                        StandardOpenOption.CREATE,
+                        StandardOpenOption.TRUNCATE_EXISTING);
+            }
+            return FileChannel.open(file.toPath(), StandardOpenOption.WRITE);
+        }
+
+        @Override
+        @Nonnull
+        public SeekableByteChannel openForRead() throws IOException {
+            return FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        }
+
+        @Override
+        public long size() {
+            return file.length();
+        }
+
+        @Override
+        public void preallocate(long size) throws IOException {
+            try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+                randomAccessFile.setLength(size);
+            }
+        }
+
+        @Override
+        public boolean delete() throws IOException {
+            return Files.deleteIfExists(file.toPath());
+        }
+
+        @Override
+        @Nullable
+        public File toFile() {
+            return file;
+        }
+    }
+}
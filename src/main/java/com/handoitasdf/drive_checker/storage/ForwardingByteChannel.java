@@ -0,0 +1,59 @@
+package com.handoitasdf.drive_checker.storage;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+
+/**
+ * A channel which forwards all calls to another channel, for decorators to override some of them.
+ */
+class ForwardingByteChannel implements SeekableByteChannel {
+    protected final SeekableByteChannel delegate;
+
+    ForwardingByteChannel(@Nonnull SeekableByteChannel delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public int read(ByteBuffer destination) throws IOException {
+        return delegate.read(destination);
+    }
+
+    @Override
+    public int write(ByteBuffer source) throws IOException {
+        return delegate.write(source);
+    }
+
+    @Override
+    public long position() throws IOException {
+        return delegate.position();
+    }
+
+    @Override
+    public SeekableByteChannel position(long newPosition) throws IOException {
+        delegate.position(newPosition);
+        return this;
+    }
+
+    @Override
+    public long size() throws IOException {
+        return delegate.size();
+    }
+
+    @Override
+    public SeekableByteChannel truncate(long size) throws IOException {
+        delegate.truncate(size);
+        return this;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return delegate.isOpen();
+    }
+
+    @Override
+    public void close() throws IOException {
+        delegate.close();
+    }
+}
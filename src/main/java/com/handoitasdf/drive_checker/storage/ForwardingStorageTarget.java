@@ -0,0 +1,97 @@
+package com.handoitasdf.drive_checker.storage;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.SeekableByteChannel;
+
+/**
+ * A target which decorates the channels of the files of another target.
+ */
+public abstract class ForwardingStorageTarget implements StorageTarget {
+    private final StorageTarget delegate;
+
+    protected ForwardingStorageTarget(@Nonnull StorageTarget delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    @Nonnull
+    public String getLocation() {
+        return delegate.getLocation();
+    }
+
+    @Override
+    @Nonnull
+    public StorageFile createFile(@Nonnull String prefix) throws IOException {
+        return new ForwardingFile(delegate.createFile(prefix));
+    }
+
+    /**
+     * @return Null, since files created in the directory would bypass the decoration.
+     */
+    @Override
+    @Nullable
+    public File getDirectory() {
+        return null;
+    }
+
+    @Override
+    public long getUsableSpace() throws IOException {
+        return delegate.getUsableSpace();
+    }
+
+    @Nonnull
+    protected abstract SeekableByteChannel decorate(@Nonnull SeekableByteChannel channel);
+
+    private class ForwardingFile implements StorageFile {
+        private final StorageFile file;
+
+        private ForwardingFile(@Nonnull StorageFile file) {
+            this.file = file;
+        }
+
+        @Override
+        @Nonnull
+        public String getPath() {
+            return file.getPath();
+        }
+
+        @Override
+        @Nonnull
+        public SeekableByteChannel openForWrite(boolean truncate) throws IOException {
+            return decorate(file.openForWrite(truncate));
+        }
+
+        @Override
+        @Nonnull
+        public SeekableByteChannel openForRead() throws IOException {
+            return decorate(file.openForRead());
+        }
+
+        @Override
+        public long size() throws IOException {
+            return file.size();
+        }
+
+        @Override
+        public void preallocate(long size) throws IOException {
+            file.preallocate(size);
+        }
+
+        @Override
+        public boolean delete() throws IOException {
+            return file.delete();
+        }
+
+        /**
+         * Always null, so that nothing bypasses the decorated channels.
+         */
+        @Override
+        @Nullable
+        public File toFile() {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.handoitasdf.drive_checker.storage;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.util.Random;
+
+/**
+ * Fails random reads and writes of another target with an I/O error, at a given rate per operation.
+ */
+public class IoErrorInjectingStorageTarget extends ForwardingStorageTarget {
+    private final double errorRate;
+    private final Random random;
+
+    public IoErrorInjectingStorageTarget(@Nonnull StorageTarget delegate, double errorRate, long seed) {
+        super(delegate);
+        this.errorRate = errorRate;
+        this.random = new Random(seed);
+    }
+
+    @Override
+    @Nonnull
+    protected SeekableByteChannel decorate(@Nonnull SeekableByteChannel channel) {
+        return new ForwardingByteChannel(channel) {
+            @Override
+            public int read(ByteBuffer destination) throws IOException {
+                maybeFail("read");
+                return super.read(destination);
+            }
+
+            @Override
+            public int write(ByteBuffer source) throws IOException {
+                maybeFail("write");
+                return super.write(source);
+            }
+        };
+    }
+
+    private void maybeFail(@Nonnull String operation) throws IOException {
+        if (random.nextDouble() < errorRate) {
+            throw new IOException("Injected " + operation + " error on " + getLocation());
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.handoitasdf.drive_checker.storage;
+
+import javax.annotation.Nonnull;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A distribution of the latency of an I/O operation.
+ */
+public abstract class LatencyDistribution {
+    private static final double NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+    /**
+     * @return A latency in nanoseconds.
+     */
+    public abstract long sampleNanos(@Nonnull Random random);
+
+    @Nonnull
+    public static LatencyDistribution fixed(double millis) {
+        long nanos = (long) (millis * NANOS_PER_MILLI);
+        return new LatencyDistribution() {
+            @Override
+            public long sampleNanos(@Nonnull Random random) {
+                return nanos;
+            }
+        };
+    }
+
+    @Nonnull
+    public static LatencyDistribution uniform(double minMillis, double maxMillis) {
+        return new LatencyDistribution() {
+            @Override
+            public long sampleNanos(@Nonnull Random random) {
+                return (long) ((minMillis + random.nextDouble() * (maxMillis - minMillis)) * NANOS_PER_MILLI);
+            }
+        };
+    }
+
+    @Nonnull
+    public static LatencyDistribution exponential(double meanMillis) {
+        return new LatencyDistribution() {
+            @Override
+            public long sampleNanos(@Nonnull Random random) {
+                return (long) (-Math.log(1 - random.nextDouble()) * meanMillis * NANOS_PER_MILLI);
+            }
+        };
+    }
+
+    /**
+     * A log-normal distribution, whose long tail resembles the latency of real drives.
+     */
+    @Nonnull
+    public static LatencyDistribution logNormal(double medianMillis, double sigma) {
+        return new LatencyDistribution() {
+            @Override
+            public long sampleNanos(@Nonnull Random random) {
+                return (long) (medianMillis * Math.exp(sigma * random.nextGaussian()) * NANOS_PER_MILLI);
+            }
+        };
+    }
+
+    /**
+     * Parse {@code fixed:MS}, {@code uniform:MIN_MS:MAX_MS}, {@code exponential:MEAN_MS} or
+     * {@code lognormal:MEDIAN_MS:SIGMA}.
+     */
+    @Nonnull
+    public static LatencyDistribution parse(@Nonnull String spec) {
+        String[] parts = spec.split(":");
+        try {
+            switch (parts[0].toLowerCase(Locale.ROOT)) {
+                case "fixed":
+                    if (parts.length == 2) {
+                        return fixed(Double.parseDouble(parts[1]));
+                    }
+                    break;
+                case "uniform":
+                    if (parts.length == 3) {
+                        return uniform(Double.parseDouble(parts[1]), Double.parseDouble(parts[2]));
+                    }
+                    break;
+                case "exponential":
+                    if (parts.length == 2) {
+                        return exponential(Double.parseDouble(parts[1]));
+                    }
+                    break;
+                case "lognormal":
+                    if (parts.length == 3) {
+                        return logNormal(Double.parseDouble(parts[1]), Double.parseDouble(parts[2]));
+                    }
+                    break;
+                default:
+                    break;
+            }
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("Invalid latency distribution " + spec, ex);
+        }
+        throw new IllegalArgumentException("Invalid latency distribution " + spec);
+    }
+}
@@ -0,0 +1,56 @@
+package com.handoitasdf.drive_checker.storage;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Delays every read and write of another target by a latency drawn from a distribution.
+ */
+public class LatencyInjectingStorageTarget extends ForwardingStorageTarget {
+    private final LatencyDistribution distribution;
+    private final Random random;
+
+    public LatencyInjectingStorageTarget(@Nonnull StorageTarget delegate,
+                                         @Nonnull LatencyDistribution distribution,
+                                         long seed) {
+        super(delegate);
+        this.distribution = distribution;
+        this.random = new Random(seed);
+    }
+
+    @Override
+    @Nonnull
+    protected SeekableByteChannel decorate(@Nonnull SeekableByteChannel channel) {
+        return new ForwardingByteChannel(channel) {
+            @Override
+            public int read(ByteBuffer destination) throws IOException {
+                delay();
+                return super.read(destination);
+            }
+
+            @Override
+            public int write(ByteBuffer source) throws IOException {
+                delay();
+                return super.write(source);
+            }
+        };
+    }
+
+    private void delay() throws InterruptedIOException {
+        long nanos = distribution.sampleNanos(random);
+        if (nanos <= 0) {
+            return;
+        }
+        try {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while injecting latency");
+        }
+    }
+}
@@ -0,0 +1,308 @@
+package com.handoitasdf.drive_checker.storage;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.NoSuchFileException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Target files kept in memory, to run checks without drives, e.g. to benchmark a station with hundreds of
+ * simulated drives.
+ *
+ * Files are stored in pages which are allocated on first write, so a preallocated file takes no memory until
+ * it's written.
+ */
+public class MemoryStorageTarget implements StorageTarget {
+    private static final int PAGE_SIZE = 1024 * 1024;
+    private final String name;
+    private final Map<String, MemoryFile> files = new ConcurrentHashMap<>();
+    private final AtomicLong nextFileIndex = new AtomicLong();
+
+    public MemoryStorageTarget(@Nonnull String name) {
+        this.name = name;
+    }
+
+    @Override
+    @Nonnull
+    public String getLocation() {
+        return "mem:" + name;
+    }
+
+    @Override
+    @Nonnull
+    public StorageFile createFile(@Nonnull String prefix) {
+        String path = getLocation() + "/" + prefix + nextFileIndex.incrementAndGet() + ".tmp";
+        MemoryFile file = new MemoryFile(path);
+        files.put(path, file);
+        return file;
+    }
+
+    @Override
+    @Nullable
+    public File getDirectory() {
+        return null;
+    }
+
+    /**
+     * @return -1, since the memory isn't limited but by the heap.
+     */
+    @Override
+    public long getUsableSpace() {
+        return -1;
+    }
+
+    /**
+     * @return Bytes held by the files of the target.
+     */
+    public long getAllocatedBytes() {
+        long bytes = 0;
+        for (MemoryFile file : files.values()) {
+            bytes += file.getAllocatedBytes();
+        }
+        return bytes;
+    }
+
+    private class MemoryFile implements StorageFile {
+        private final String path;
+
+        // Guarded by this. A null page reads as zeros.
+        private final List<byte[]> pages = new ArrayList<>();
+        private long size = 0;
+        private boolean deleted = false;
+
+        private MemoryFile(@Nonnull String path) {
+            this.path = path;
+        }
+
+        @Override
+        @Nonnull
+        public String getPath() {
+            return path;
+        }
+
+        @Override
+        @Nonnull
+        public SeekableByteChannel openForWrite(boolean truncate) throws IOException {
+            synchronized (this) {
+                checkExists();
+                if (truncate) {
+                    truncate(0);
+                }
+            }
+            return new MemoryChannel(this, true);
+        }
+
+        @Override
+        @Nonnull
+        public SeekableByteChannel openForRead() throws IOException {
+            synchronized (this) {
+                checkExists();
+            }
+            return new MemoryChannel(this, false);
+        }
+
+        @Override
+        public synchronized long size() {
+            return size;
+        }
+
+        @Override
+        public synchronized void preallocate(long newSize) throws IOException {
+            checkExists();
+            if (newSize > size) {
+                size = newSize;
+            }
+        }
+
+        @Override
+        public synchronized boolean delete() {
+            if (deleted) {
+                return false;
+            }
+            deleted = true;
+            pages.clear();
+            size = 0;
+            files.remove(path);
+            return true;
+        }
+
+        @Override
+        @Nullable
+        public File toFile() {
+            return null;
+        }
+
+        private synchronized long getAllocatedBytes() {
+            long bytes = 0;
+            for (byte[] page : pages) {
+                if (page != null) {
+                    bytes += page.length;
+                }
+            }
+            return bytes;
+        }
+
+        private void checkExists() throws IOException {
+            if (deleted) {
+                throw new NoSuchFileException(path);
+            }
+        }
+
+        private synchronized int read(@Nonnull ByteBuffer destination, long position) throws IOException {
+            checkExists();
+            if (position >= size) {
+                return -1;
+            }
+            int length = (int) Math.min(destination.remaining(), size - position);
+            int remaining = length;
+            while (remaining > 0) {
+                int pageIndex = (int) (position / PAGE_SIZE);
+                int pageOffset = (int) (position % PAGE_SIZE);
+                int n = Math.min(remaining, PAGE_SIZE - pageOffset);
+                byte[] page = pageIndex < pages.size() ? pages.get(pageIndex) : null;
+                if (page != null) {
+                    destination.put(page, pageOffset, n);
+                } else {
+                    for (int i = 0; i < n; ++i) {
+                        destination.put((byte) 0);
+                    }
+                }
+                position += n;
+                remaining -= n;
+            }
+            return length;
+        }
+
+        private synchronized int write(@Nonnull ByteBuffer source, long position) throws IOException {
+            checkExists();
+            int length = source.remaining();
+            while (source.hasRemaining()) {
+                int pageIndex = (int) (position / PAGE_SIZE);
+                int pageOffset = (int) (position % PAGE_SIZE);
+                int n = Math.min(source.remaining(), PAGE_SIZE - pageOffset);
+                while (pages.size() <= pageIndex) {
+                    pages.add(null);
+                }
+                byte[] page = pages.get(pageIndex);
+                if (page == null) {
+                    page = new byte[PAGE_SIZE];
+                    pages.set(pageIndex, page);
+                }
+                source.get(page, pageOffset, n);
+                position += n;
+            }
+            size = Math.max(size, position);
+            return length;
+        }
+
+        private synchronized void truncate(long newSize) {
+            if (newSize >= size) {
+                return;
+            }
+            size = newSize;
+            int keptPages = (int) ((newSize + PAGE_SIZE - 1) / PAGE_SIZE);
+            while (pages.size() > keptPages) {
+                pages.remove(pages.size() - 1);
+            }
+            int tailOffset = (int) (newSize % PAGE_SIZE);
+            if (tailOffset > 0 && pages.size() == keptPages && pages.get(keptPages - 1) != null) {
+                byte[] tail = pages.get(keptPages - 1);
+                for (int i = tailOffset; i < PAGE_SIZE; ++i) {
+                    tail[i] = 0;
+                }
+            }
+        }
+    }
+
+    private static class MemoryChannel implements SeekableByteChannel {
+        private final MemoryFile file;
+        private final boolean writable;
+        private long position = 0;
+        private volatile boolean open = true;
+
+        private MemoryChannel(@Nonnull MemoryFile file, boolean writable) {
+            this.file = file;
+            this.writable = writable;
+        }
+
+        @Override
+        public int read(ByteBuffer destination) throws IOException {
+            checkOpen();
+            int nRead = file.read(destination, position);
+            if (nRead > 0) {
+                position += nRead;
+            }
+            return nRead;
+        }
+
+        @Override
+        public int write(ByteBuffer source) throws IOException {
+            checkOpen();
+            if (!writable) {
+                throw new NonWritableChannelException();
+            }
+            int nWritten = file.write(source, position);
+            position += nWritten;
+            return nWritten;
+        }
+
+        @Override
+        public long position() throws IOException {
+            checkOpen();
+            return position;
+        }
+
+        @Override
+        public SeekableByteChannel position(long newPosition) throws IOException {
+            checkOpen();
+            if (newPosition < 0) {
+                throw new IllegalArgumentException("Negative position " + newPosition);
+            }
+            position = newPosition;
+            return this;
+        }
+
+        @Override
+        public long size() throws IOException {
+            checkOpen();
+            return file.size();
+        }
+
+        @Override
+        public SeekableByteChannel truncate(long size) throws IOException {
+            checkOpen();
+            if (!writable) {
+                throw new NonWritableChannelException();
+            }
+            file.truncate(size);
+            position = Math.min(position, size);
+            return this;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return open;
+        }
+
+        @Override
+        public void close() {
+            open = false;
+        }
+
+        private void checkOpen() throws ClosedChannelException {
+            if (!open) {
+                throw new ClosedChannelException();
+            }
+        }
+    }
+}
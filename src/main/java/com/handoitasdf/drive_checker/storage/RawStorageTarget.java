@@ -0,0 +1,419 @@
+package com.handoitasdf.drive_checker.storage;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Target files laid out as regions of a raw surface: a block device, or a large container file standing in for
+ * one. The drive is tested without a filesystem, up to its whole capacity, at offsets known in advance.
+ *
+ * A new file starts where the last live file ends, aligned to 1 MB, and may grow until the start of the next
+ * live file or the end of the surface, so the first file starts at offset 0 and a fill covers the surface in
+ * order. Deleting a file only frees its region.
+ *
+ * Writing to a device destroys its data, so the device is checked before the first file is created: it must
+ * not be mounted, used as swap, or held by another device such as a RAID or LVM volume. Writes are synced, so
+ * they reach the surface; reads may still be served from the page cache of the OS for the data written last.
+ */
+public class RawStorageTarget implements StorageTarget {
+    private static final Logger LOGGER = LoggerFactory.getLogger(RawStorageTarget.class);
+    private static final long ALIGNMENT = 1024 * 1024;
+    private static final long SECTOR_SIZE = 512;
+    private final File path;
+    private final boolean device;
+    private final long sizeLimit;
+
+    // Guarded by this. The live regions by their start.
+    private final TreeMap<Long, Region> regions = new TreeMap<>();
+    private long capacity = -1;
+
+    /**
+     * @param device    True for a block device, false for a container file, which is created if it doesn't
+     *                  exist.
+     * @param sizeLimit Bytes of the surface to use from its start; 0 for all of it. A new container needs it.
+     */
+    public RawStorageTarget(@Nonnull File path, boolean device, long sizeLimit) {
+        this.path = path;
+        this.device = device;
+        this.sizeLimit = sizeLimit;
+    }
+
+    @Override
+    @Nonnull
+    public String getLocation() {
+        return (device ? "raw:" : "container:") + path.getPath();
+    }
+
+    @Override
+    @Nonnull
+    public synchronized StorageFile createFile(@Nonnull String prefix) throws IOException {
+        long start = getFreeStart();
+        if (start >= open()) {
+            throw new IOException("No space left on " + getLocation());
+        }
+        Region region = new Region(prefix, start);
+        regions.put(start, region);
+        return region;
+    }
+
+    /**
+     * @return Null, since the target has no filesystem.
+     */
+    @Override
+    @Nullable
+    public File getDirectory() {
+        return null;
+    }
+
+    @Override
+    public synchronized long getUsableSpace() throws IOException {
+        return Math.max(0, open() - getFreeStart());
+    }
+
+    /**
+     * Check the surface and find its capacity, once.
+     *
+     * @return Bytes of the surface used by the target.
+     */
+    private long open() throws IOException {
+        if (capacity >= 0) {
+            return capacity;
+        }
+        long size;
+        if (device) {
+            Path realPath = path.toPath().toRealPath();
+            checkNotInUse(realPath);
+            size = getDeviceSize(realPath);
+            if (size < 0 && sizeLimit <= 0) {
+                throw new IOException("The size of " + path.getPath() + " is unknown, so it must be given");
+            }
+        } else if (!path.exists()) {
+            if (sizeLimit <= 0) {
+                throw new IOException("Container " + path.getPath() + " doesn't exist, so its size must be given");
+            }
+            LOGGER.info("Creating container {} of {} bytes", path.getPath(), sizeLimit);
+            try (RandomAccessFile file = new RandomAccessFile(path, "rw")) {
+                file.setLength(sizeLimit);
+            }
+            size = sizeLimit;
+        } else {
+            size = path.length();
+            if (sizeLimit > size) {
+                try (RandomAccessFile file = new RandomAccessFile(path, "rw")) {
+                    file.setLength(sizeLimit);
+                }
+                size = sizeLimit;
+            }
+        }
+        capacity = sizeLimit > 0 && (size < 0 || sizeLimit < size) ? sizeLimit : size;
+        LOGGER.info("Using {} bytes of {}", capacity, getLocation());
+        return capacity;
+    }
+
+    /**
+     * @return Where a new region starts: the aligned end of the last live region.
+     */
+    private long getFreeStart() {
+        Map.Entry<Long, Region> last = regions.lastEntry();
+        if (last == null) {
+            return 0;
+        }
+        // An empty region still takes its first block, so that the next one starts after it.
+        long end = last.getKey() + Math.max(1, last.getValue().size);
+        return (end + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+    }
+
+    /**
+     * @return Where the region starting at the given offset must end.
+     */
+    private synchronized long getLimit(long start) {
+        Long next = regions.higherKey(start);
+        return next != null ? next : capacity;
+    }
+
+    /**
+     * @throws IOException If the device, or a partition of it, is mounted, used as swap or held by another
+     *                     device.
+     */
+    private static void checkNotInUse(@Nonnull Path device) throws IOException {
+        String name = device.toString();
+        for (String table : new String[]{"/proc/mounts", "/proc/swaps"}) {
+            Path tablePath = Paths.get(table);
+            if (!Files.isReadable(tablePath)) {
+                LOGGER.warn("Cannot read {} to check that {} isn't in use", table, name);
+                continue;
+            }
+            List<String> lines = Files.readAllLines(tablePath, StandardCharsets.UTF_8);
+            for (String line : lines) {
+                String source = line.split("\\s+", 2)[0];
+                if (!source.startsWith("/dev/")) {
+                    continue;
+                }
+                String sourcePath;
+                try {
+                    sourcePath = Paths.get(source).toRealPath().toString();
+                } catch (IOException ex) {
+                    sourcePath = source;
+                }
+                if (sourcePath.startsWith(name)) {
+                    throw new IOException(String.format("%s is in use: %s is listed in %s", name, source, table));
+                }
+            }
+        }
+        String deviceName = device.getFileName().toString();
+        File deviceDirectory = new File("/sys/class/block", deviceName);
+        checkNotHeld(name, deviceDirectory);
+        File[] partitions = deviceDirectory.listFiles((directory, fileName) -> fileName.startsWith(deviceName));
+        if (partitions != null) {
+            for (File partition : partitions) {
+                checkNotHeld(name, partition);
+            }
+        }
+    }
+
+    private static void checkNotHeld(@Nonnull String name, @Nonnull File blockDirectory) throws IOException {
+        String[] holders = new File(blockDirectory, "holders").list();
+        if (holders != null && holders.length > 0) {
+            throw new IOException(String.format("%s is in use: %s is held by %s", name, blockDirectory.getName(),
+                    String.join(", ", holders)));
+        }
+    }
+
+    /**
+     * @return Size of the device in bytes, or -1 if it's unknown.
+     */
+    private static long getDeviceSize(@Nonnull Path device) throws IOException {
+        Path sectors = Paths.get("/sys/class/block", device.getFileName().toString(), "size");
+        try {
+            return Long.parseLong(new String(Files.readAllBytes(sectors), StandardCharsets.UTF_8).trim())
+                    * SECTOR_SIZE;
+        } catch (NoSuchFileException | NumberFormatException ex) {
+            LOGGER.warn("Cannot read the size of {} from {}", device, sectors);
+            return -1;
+        }
+    }
+
+    private class Region implements StorageFile {
+        private final String regionPath;
+        private final long start;
+
+        // Guarded by the target.
+        private long size = 0;
+        private boolean deleted = false;
+
+        private Region(@Nonnull String prefix, long start) {
+            this.regionPath = getLocation() + "@" + start + "/" + prefix + "tmp";
+            this.start = start;
+        }
+
+        @Override
+        @Nonnull
+        public String getPath() {
+            return regionPath;
+        }
+
+        @Override
+        @Nonnull
+        public SeekableByteChannel openForWrite(boolean truncate) throws IOException {
+            checkNotDeleted();
+            if (truncate) {
+                synchronized (RawStorageTarget.this) {
+                    size = 0;
+                }
+            }
+            return new RegionChannel(this, FileChannel.open(path.toPath(), StandardOpenOption.READ,
+                    StandardOpenOption.WRITE, StandardOpenOption.DSYNC), true);
+        }
+
+        @Override
+        @Nonnull
+        public SeekableByteChannel openForRead() throws IOException {
+            checkNotDeleted();
+            return new RegionChannel(this, FileChannel.open(path.toPath(), StandardOpenOption.READ), false);
+        }
+
+        @Override
+        public long size() {
+            synchronized (RawStorageTarget.this) {
+                return size;
+            }
+        }
+
+        @Override
+        public void preallocate(long newSize) throws IOException {
+            synchronized (RawStorageTarget.this) {
+                checkRoom(0, newSize);
+                size = Math.max(size, newSize);
+            }
+        }
+
+        @Override
+        public boolean delete() {
+            synchronized (RawStorageTarget.this) {
+                if (deleted) {
+                    return false;
+                }
+                deleted = true;
+                regions.remove(start);
+                return true;
+            }
+        }
+
+        /**
+         * @return Null, since the region must only be accessed at its offset in the surface.
+         */
+        @Override
+        @Nullable
+        public File toFile() {
+            return null;
+        }
+
+        private void checkNotDeleted() throws NoSuchFileException {
+            synchronized (RawStorageTarget.this) {
+                if (deleted) {
+                    throw new NoSuchFileException(regionPath);
+                }
+            }
+        }
+
+        /**
+         * @throws IOException If writing the given bytes at the given position would overrun the next region or
+         *                     the end of the surface.
+         */
+        private void checkRoom(long position, long length) throws IOException {
+            if (start + position + length > getLimit(start)) {
+                throw new IOException(String.format("No space left on %s for %d bytes at offset %d of %s",
+                        getLocation(), length, position, regionPath));
+            }
+        }
+
+        private void onWritten(long end) {
+            synchronized (RawStorageTarget.this) {
+                size = Math.max(size, end);
+            }
+        }
+
+        private void truncate(long newSize) {
+            synchronized (RawStorageTarget.this) {
+                size = Math.min(size, newSize);
+            }
+        }
+    }
+
+    /**
+     * A channel of a region, translating its positions to offsets of the surface.
+     */
+    private static class RegionChannel implements SeekableByteChannel {
+        private final Region region;
+        private final FileChannel channel;
+        private final boolean writable;
+        private long position = 0;
+
+        private RegionChannel(@Nonnull Region region, @Nonnull FileChannel channel, boolean writable) {
+            this.region = region;
+            this.channel = channel;
+            this.writable = writable;
+        }
+
+        @Override
+        public int read(ByteBuffer destination) throws IOException {
+            checkOpen();
+            long remaining = region.size() - position;
+            if (remaining <= 0) {
+                return -1;
+            }
+            ByteBuffer limited = destination.duplicate();
+            if (limited.remaining() > remaining) {
+                limited.limit(limited.position() + (int) remaining);
+            }
+            int read = channel.read(limited, region.start + position);
+            if (read > 0) {
+                destination.position(destination.position() + read);
+                position += read;
+            }
+            return read;
+        }
+
+        @Override
+        public int write(ByteBuffer source) throws IOException {
+            checkOpen();
+            if (!writable) {
+                throw new NonWritableChannelException();
+            }
+            region.checkRoom(position, source.remaining());
+            int written = channel.write(source, region.start + position);
+            position += written;
+            region.onWritten(position);
+            return written;
+        }
+
+        @Override
+        public long position() throws IOException {
+            checkOpen();
+            return position;
+        }
+
+        @Override
+        public SeekableByteChannel position(long newPosition) throws IOException {
+            checkOpen();
+            if (newPosition < 0) {
+                throw new IllegalArgumentException("Negative position " + newPosition);
+            }
+            position = newPosition;
+            return this;
+        }
+
+        @Override
+        public long size() throws IOException {
+            checkOpen();
+            return region.size();
+        }
+
+        @Override
+        public SeekableByteChannel truncate(long size) throws IOException {
+            checkOpen();
+            if (!writable) {
+                throw new NonWritableChannelException();
+            }
+            region.truncate(size);
+            position = Math.min(position, size);
+            return this;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return channel.isOpen();
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+
+        private void checkOpen() throws ClosedChannelException {
+            if (!channel.isOpen()) {
+                throw new ClosedChannelException();
+            }
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.handoitasdf.drive_checker.storage;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.SeekableByteChannel;
+
+/**
+ * A file of a {@link StorageTarget}.
+ */
+public interface StorageFile {
+
+    /**
+     * @return Path of the file, for logging.
+     */
+    @Nonnull
+    String getPath();
+
+    /**
+     * @param truncate If true, the file is emptied first; otherwise it's overwritten in place.
+     */
+    @Nonnull
+    SeekableByteChannel openForWrite(boolean truncate) throws IOException;
+
+    @Nonnull
+    SeekableByteChannel openForRead() throws IOException;
+
+    long size() throws IOException;
+
+    /**
+     * Grow the file to the given size, so that the writes overwrite it in place.
+     */
+    void preallocate(long size) throws IOException;
+
+    /**
+     * @return False if the file doesn't exist.
+     */
+    boolean delete() throws IOException;
+
+    /**
+     * @return The file on the local filesystem, or null if there is none or if the file must only be accessed
+     *         through its channels, e.g. because a decorator injects faults into them.
+     */
+    @Nullable
+    File toFile();
+}
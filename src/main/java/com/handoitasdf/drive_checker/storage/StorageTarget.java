@@ -0,0 +1,37 @@
+package com.handoitasdf.drive_checker.storage;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Where the target files of a drive are written to and read back from: a directory of a real drive, memory, or
+ * a decorator injecting latency or faults into another target.
+ */
+public interface StorageTarget {
+
+    /**
+     * @return Where the target is, for logging.
+     */
+    @Nonnull
+    String getLocation();
+
+    /**
+     * Create a new empty file with a unique name.
+     */
+    @Nonnull
+    StorageFile createFile(@Nonnull String prefix) throws IOException;
+
+    /**
+     * @return The directory of the target on the local filesystem, for workloads working on directories rather
+     *         than on a file; null if the target isn't a plain local directory.
+     */
+    @Nullable
+    File getDirectory();
+
+    /**
+     * @return Bytes which can still be written to new files, or -1 if it's unknown.
+     */
+    long getUsableSpace() throws IOException;
+}
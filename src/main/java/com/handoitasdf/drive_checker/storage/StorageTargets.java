@@ -0,0 +1,175 @@
+package com.handoitasdf.drive_checker.storage;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.File;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Creates the storage target of a drive from its path, which may also describe a simulated drive:
+ *
+ * <pre>
+ * mem:NAME[?OPTIONS]         a drive in memory
+ * fault:PATH?OPTIONS         a directory of the local filesystem, with injected latency or faults
+ * raw:DEVICE?OPTIONS         a block device, written from its start without a filesystem
+ * container:PATH[?OPTIONS]   a container file standing in for a block device
+ * PATH                       a directory of the local filesystem
+ * </pre>
+ *
+ * A device or a container is overwritten, so its file name must be repeated in the {@code confirm} option, e.g.
+ * {@code raw:/dev/sdc?confirm=sdc}. The options are {@code &}-separated:
+ *
+ * <pre>
+ * confirm=NAME             file name of the device or container to overwrite
+ * size_mb=N                MB of the device or container to use from its start; all of it by default, and
+ *                          the size of a new container
+ * latency=DISTRIBUTION     latency of every read and write, see {@link LatencyDistribution#parse}
+ * bandwidth_mbps=N         bandwidth of the drive in MB/s
+ * bitflip_rate=P           probability of every bit to be flipped
+ * bitflip_on=read|write    whether bits flip on the way back or in the stored data; read by default
+ * ioerror_rate=P           probability of every read and write to fail
+ * seed=N                   seed of the random faults, for reproducible runs; 0 by default
+ * </pre>
+ */
+public class StorageTargets {
+    private static final String MEMORY_PREFIX = "mem:";
+    private static final String FAULT_PREFIX = "fault:";
+    private static final String RAW_PREFIX = "raw:";
+    private static final String CONTAINER_PREFIX = "container:";
+    private static final double BYTES_PER_MB = 1024 * 1024;
+
+    private StorageTargets() {
+    }
+
+    /**
+     * @return True if the drive is simulated, and thus isn't expected to exist on the filesystem.
+     */
+    public static boolean isSimulated(@Nonnull File drive) {
+        String path = drive.getPath();
+        return path.startsWith(MEMORY_PREFIX) || path.startsWith(FAULT_PREFIX);
+    }
+
+    /**
+     * @return True if the drive is a block device or a container, which has no filesystem.
+     */
+    public static boolean isRaw(@Nonnull File drive) {
+        String path = drive.getPath();
+        return path.startsWith(RAW_PREFIX) || path.startsWith(CONTAINER_PREFIX);
+    }
+
+    /**
+     * @return The directory of the local filesystem the drive writes to, or null if it has none, e.g. for a
+     *         drive in memory or a device.
+     */
+    @Nullable
+    public static File getLocalDirectory(@Nonnull File drive) {
+        String path = drive.getPath();
+        if (path.startsWith(FAULT_PREFIX)) {
+            int optionsStart = path.indexOf('?');
+            return new File(path.substring(FAULT_PREFIX.length(), optionsStart < 0 ? path.length() : optionsStart));
+        }
+        return isSimulated(drive) || isRaw(drive) ? null : drive;
+    }
+
+    /**
+     * @throws IllegalArgumentException If the options are invalid, or if a device or container would be
+     *                                  overwritten without confirmation.
+     */
+    @Nonnull
+    public static StorageTarget forDrive(@Nonnull File drive) {
+        String path = drive.getPath();
+        if (!isSimulated(drive) && !isRaw(drive)) {
+            return new FileSystemStorageTarget(drive);
+        }
+        int optionsStart = path.indexOf('?');
+        String location = optionsStart < 0 ? path : path.substring(0, optionsStart);
+        Map<String, String> options = parseOptions(optionsStart < 0 ? "" : path.substring(optionsStart + 1));
+        StorageTarget target;
+        if (location.startsWith(MEMORY_PREFIX)) {
+            target = new MemoryStorageTarget(location.substring(MEMORY_PREFIX.length()));
+        } else if (location.startsWith(FAULT_PREFIX)) {
+            target = new FileSystemStorageTarget(new File(location.substring(FAULT_PREFIX.length())));
+        } else {
+            target = createRawTarget(location, options, path);
+        }
+        return decorate(target, options, path);
+    }
+
+    /**
+     * Create the target of a device or container, and remove its options.
+     */
+    @Nonnull
+    private static StorageTarget createRawTarget(@Nonnull String location,
+                                                 @Nonnull Map<String, String> options,
+                                                 @Nonnull String path) {
+        boolean device = location.startsWith(RAW_PREFIX);
+        File file = new File(location.substring(device ? RAW_PREFIX.length() : CONTAINER_PREFIX.length()));
+        String confirm = options.remove("confirm");
+        String sizeMB = options.remove("size_mb");
+        if (!file.getName().equals(confirm)) {
+            throw new IllegalArgumentException(String.format("%s would be overwritten, confirm it with confirm=%s",
+                    path, file.getName()));
+        }
+        try {
+            long sizeLimit = sizeMB == null ? 0 : (long) (Double.parseDouble(sizeMB) * BYTES_PER_MB);
+            return new RawStorageTarget(file, device, sizeLimit);
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("Invalid options of drive " + path, ex);
+        }
+    }
+
+    @Nonnull
+    private static StorageTarget decorate(@Nonnull StorageTarget target,
+                                          @Nonnull Map<String, String> options,
+                                          @Nonnull String path) {
+        Map<String, String> remaining = new HashMap<>(options);
+        try {
+            long seed = Long.parseLong(remaining.getOrDefault("seed", "0"));
+            remaining.remove("seed");
+            String ioErrorRate = remaining.remove("ioerror_rate");
+            if (ioErrorRate != null) {
+                target = new IoErrorInjectingStorageTarget(target, Double.parseDouble(ioErrorRate), seed);
+            }
+            String bitFlipRate = remaining.remove("bitflip_rate");
+            String bitFlipOn = remaining.remove("bitflip_on");
+            if (bitFlipRate != null) {
+                BitFlippingStorageTarget.Mode mode = bitFlipOn == null
+                        ? BitFlippingStorageTarget.Mode.READ
+                        : BitFlippingStorageTarget.Mode.valueOf(bitFlipOn.toUpperCase(Locale.ROOT));
+                target = new BitFlippingStorageTarget(target, Double.parseDouble(bitFlipRate), mode, seed);
+            }
+            String bandwidth = remaining.remove("bandwidth_mbps");
+            if (bandwidth != null) {
+                target = new BandwidthLimitedStorageTarget(target, Double.parseDouble(bandwidth) * BYTES_PER_MB);
+            }
+            String latency = remaining.remove("latency");
+            if (latency != null) {
+                target = new LatencyInjectingStorageTarget(target, LatencyDistribution.parse(latency), seed);
+            }
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("Invalid options of drive " + path, ex);
+        }
+        if (!remaining.isEmpty()) {
+            throw new IllegalArgumentException("Unknown options " + remaining.keySet() + " of drive " + path);
+        }
+        return target;
+    }
+
+    @Nonnull
+    private static Map<String, String> parseOptions(@Nonnull String query) {
+        Map<String, String> options = new HashMap<>();
+        for (String pair : query.split("&")) {
+            if (pair.isEmpty()) {
+                continue;
+            }
+            int separator = pair.indexOf('=');
+            if (separator < 0) {
+                throw new IllegalArgumentException("Option " + pair + " has no value");
+            }
+            options.put(pair.substring(0, separator).toLowerCase(Locale.ROOT), pair.substring(separator + 1));
+        }
+        return options;
+    }
+}
@@ -0,0 +1,142 @@
+package com.handoitasdf.drive_checker.ui;
+
+import com.handoitasdf.drive_checker.CheckOptions;
+import com.handoitasdf.drive_checker.CheckingStatus;
+import com.handoitasdf.drive_checker.DriveChecker;
+import com.handoitasdf.drive_checker.DriveCheckerSnapshot;
+import com.handoitasdf.drive_checker.remote.AgentHello;
+import com.handoitasdf.drive_checker.remote.AgentLink;
+import com.handoitasdf.drive_checker.remote.DriveProgress;
+import com.handoitasdf.drive_checker.remote.DriveResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Runs the checkers of the local drives without a window, and streams their progress and results to a
+ * coordinator through an {@link AgentLink}.
+ */
+class AgentRunner {
+    private static final Logger LOGGER = LoggerFactory.getLogger(AgentRunner.class);
+    private static final long PROGRESS_INTERVAL_MILLIS = 500;
+    private static final long ACK_LOG_INTERVAL_MINUTES = 1;
+    private final String agentId;
+    private final String coordinatorHost;
+    private final int coordinatorPort;
+    private final List<File> drives;
+    private final File testFile;
+    private final int iterationCount;
+    private final CheckOptions options;
+
+    AgentRunner(@Nonnull String agentId,
+                @Nonnull String coordinatorHost,
+                int coordinatorPort,
+                @Nonnull List<File> drives,
+                @Nonnull File testFile,
+                int iterationCount,
+                @Nonnull CheckOptions options) {
+        this.agentId = agentId;
+        this.coordinatorHost = coordinatorHost;
+        this.coordinatorPort = coordinatorPort;
+        this.drives = drives;
+        this.testFile = testFile;
+        this.iterationCount = iterationCount;
+        this.options = options;
+    }
+
+    /**
+     * Run the checkers, and wait for the coordinator to acknowledge all results.
+     *
+     * @return True if all drives pass.
+     */
+    boolean run() throws InterruptedException {
+        DrivesCheckWorker worker = new DrivesCheckWorker(drives, testFile, iterationCount, options);
+        List<DriveChecker> checkers = worker.getCheckers();
+        AgentHello hello = new AgentHello(
+                agentId,
+                System.currentTimeMillis(),
+                testFile.getPath(),
+                iterationCount,
+                drives.stream().map(File::getPath).collect(Collectors.toList()));
+        CountDownLatch stopped = new CountDownLatch(1);
+        ScheduledExecutorService progressExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "agent-progress");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try (AgentLink link = new AgentLink(coordinatorHost, coordinatorPort, hello)) {
+            link.start();
+            worker.setListener(new DrivesCheckListener() {
+                @Override
+                public void onStart() {
+                    LOGGER.info("Agent {} started checking {} drives", agentId, drives.size());
+                }
+
+                @Override
+                public void onStop() {
+                    stopped.countDown();
+                }
+
+                @Override
+                public void onDriveStatusChanged(@Nonnull File drive, @Nonnull CheckingStatus checkStatus) {
+                    LOGGER.info("Drive {} is {}", drive.getPath(), checkStatus);
+                }
+            });
+            progressExecutor.scheduleWithFixedDelay(() -> sendProgress(link, checkers),
+                    0, PROGRESS_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+            worker.execute();
+            stopped.await();
+            progressExecutor.shutdown();
+            sendProgress(link, checkers);
+
+            DriveCheckReportGenerator reportGenerator = new DriveCheckReportGenerator();
+            boolean passed = true;
+            for (int i = 0; i < checkers.size(); ++i) {
+                DriveChecker checker = checkers.get(i);
+                DriveCheckerSnapshot snapshot = checker.getSnapshot();
+                passed &= CheckingStatus.SUCCESS.equals(snapshot.getStatus());
+                link.sendResult(new DriveResult(
+                        i,
+                        snapshot.getStatus(),
+                        snapshot.getCheckedCount(),
+                        reportGenerator.generateDriveReport(checker)));
+            }
+            link.sendDone();
+            new DriveCheckReportExporter(reportGenerator.generateReport(worker)).run();
+
+            // Results must not be lost, so keep trying until the coordinator has them.
+            while (!link.awaitAcknowledged(ACK_LOG_INTERVAL_MINUTES, TimeUnit.MINUTES)) {
+                LOGGER.warn("Waiting for coordinator {}:{} to acknowledge the results",
+                        coordinatorHost, coordinatorPort);
+            }
+            LOGGER.info("All results are acknowledged by the coordinator");
+            return passed;
+        } finally {
+            progressExecutor.shutdownNow();
+        }
+    }
+
+    private void sendProgress(@Nonnull AgentLink link, @Nonnull List<DriveChecker> checkers) {
+        if (!link.isConnected()) {
+            return;
+        }
+        for (int i = 0; i < checkers.size(); ++i) {
+            DriveChecker checker = checkers.get(i);
+            DriveCheckerSnapshot snapshot = checker.getSnapshot();
+            link.sendProgress(new DriveProgress(
+                    i,
+                    snapshot.getStatus(),
+                    snapshot.getIteration(),
+                    snapshot.getCopiedBytes(),
+                    checker.getMetrics().getCurrentMBps()));
+        }
+    }
+}
@@ -2,23 +2,30 @@ package com.handoitasdf.drive_checker.ui;
 
 import com.handoitasdf.drive_checker.CheckingStatus;
 import com.handoitasdf.drive_checker.DriveChecker;
+import com.handoitasdf.drive_checker.api.ControlApiServer;
+import com.handoitasdf.drive_checker.plan.TestPlan;
+import com.handoitasdf.drive_checker.plan.TestPlanPhase;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import javax.swing.JFrame;
 import javax.swing.JOptionPane;
+import javax.swing.SwingUtilities;
 import javax.swing.WindowConstants;
 import java.awt.BorderLayout;
 import java.awt.Container;
 import java.awt.FlowLayout;
 import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
-import java.util.stream.Collectors;
 
 /**
  * Application entry point.
@@ -29,25 +36,69 @@ public class App {
     private static final int DEFAULT_HEIGHT = 600;
     private static final String PROP_TEST_COUNT = "test.repeat_count";
     private static final String PROP_TEST_FILE_PATH = "test.input_file_path";
+    private static final String PROP_TEST_PLAN_PATH = "test.plan_path";
     private static final String PROP_DRIVE_SELECTED_FORMAT = "drives.%s.selected";
     private static final Pattern PROP_DRIVE_SELECTED_PATTERN = Pattern.compile("drives.([^.]*).selected");
+    private static final String PROP_DRIVES_VIEW = "ui.drives_view";
+    private static final String DRIVES_VIEW_TABLE = "table";
+    private static final String PROP_API_PORT = "api.port";
+    private static final String PROP_API_BIND_ADDRESS = "api.bind_address";
+    private static final String DEFAULT_API_BIND_ADDRESS = "127.0.0.1";
     private static final String PROPERTY_FILE_PATH = "user.properties";
     private final JFrame frame = new JFrame("Drive Checker");
-    private final DrivesPane drivesPane = new DrivesPane();
+    private final DrivesView drivesView;
     private final ControlPane controlPane = new ControlPane(frame);
     private final TrailerPane trailerPane = new TrailerPane();
-    private DrivesCheckWorker drivesCheckWorker = null;
+    private volatile DrivesCheckWorker drivesCheckWorker = null;
+    private TestPlanRunner testPlanRunner = null;
     private final PropertiesProvider propertiesProvider;
     private final ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
         Thread thread = new Thread(runnable);
         thread.setDaemon(true);
         return thread;
     });
+    private boolean interactive = false;
 
     public App() {
         propertiesProvider = new PropertiesProvider(new File(PROPERTY_FILE_PATH));
+        drivesView = createDrivesView();
         initFrame();
-        drivesPane.refresh();
+        LOGGER.info("Window shown {} ms after JVM start", getUptimeMillis());
+        drivesView.refresh();
+        startControlApi();
+    }
+
+    private void startControlApi() {
+        int port;
+        try {
+            port = propertiesProvider.getProperty(PROP_API_PORT).map(Integer::parseInt).orElse(0);
+        } catch (NumberFormatException ex) {
+            LOGGER.error("Invalid value of property {}, control API is disabled", PROP_API_PORT, ex);
+            return;
+        }
+        if (port <= 0) {
+            return;
+        }
+        String bindAddress = propertiesProvider.getProperty(PROP_API_BIND_ADDRESS).orElse(DEFAULT_API_BIND_ADDRESS);
+        try {
+            new ControlApiServer(
+                    new AppStationController(controlPane, drivesView, () -> drivesCheckWorker),
+                    new InetSocketAddress(bindAddress, port)).start();
+        } catch (IOException ex) {
+            LOGGER.error("Fail to start control API on {}:{}", bindAddress, port, ex);
+        }
+    }
+
+    @Nonnull
+    private DrivesView createDrivesView() {
+        boolean table = propertiesProvider.getProperty(PROP_DRIVES_VIEW)
+                .map(DRIVES_VIEW_TABLE::equalsIgnoreCase)
+                .orElse(false);
+        return table ? new DrivesTablePane() : new DrivesPane(new DriveIconLoader());
+    }
+
+    private static long getUptimeMillis() {
+        return ManagementFactory.getRuntimeMXBean().getUptime();
     }
 
     private void initFrame() {
@@ -78,7 +129,7 @@ public class App {
 
     private void initDrivesPane() {
 
-        drivesPane.setListener(new DrivesPaneListener() {
+        drivesView.setListener(new DrivesPaneListener() {
             @Override
             public void onDriveSelectionChanged(@Nonnull File drive, boolean selected) {
                 propertiesProvider.setProperty(
@@ -90,11 +141,15 @@ public class App {
             public void onRefreshDone() {
                 LOGGER.debug("DrivesPane refresh done");
                 refreshDrivesPaneProperties();
+                if (!interactive) {
+                    interactive = true;
+                    LOGGER.info("Drives listed, interactive {} ms after JVM start", getUptimeMillis());
+                }
             }
         });
 
         Container contentPane = frame.getContentPane();
-        contentPane.add(drivesPane, BorderLayout.CENTER);
+        contentPane.add(drivesView.getComponent(), BorderLayout.CENTER);
     }
 
     private void refreshDrivesPaneProperties() {
@@ -105,7 +160,7 @@ public class App {
             }
             boolean selected = Boolean.parseBoolean(value);
             String drive = matcher.group(1);
-            drivesPane.getDrivePane(new File(drive)).ifPresent(drivePane -> drivePane.setSelected(selected));
+            drivesView.setDriveSelected(new File(drive), selected);
         });
     }
 
@@ -130,6 +185,15 @@ public class App {
             public void onRepeatCountChanged(int newValue) {
                 propertiesProvider.setProperty(PROP_TEST_COUNT, String.valueOf(newValue));
             }
+
+            @Override
+            public void onPlanChanged(@Nullable File planFile) {
+                if (planFile == null) {
+                    propertiesProvider.removeProperty(PROP_TEST_PLAN_PATH);
+                } else {
+                    propertiesProvider.setProperty(PROP_TEST_PLAN_PATH, planFile.getAbsolutePath());
+                }
+            }
         });
         initControlPaneProperties();
         frame.getContentPane().add(controlPane, BorderLayout.PAGE_START);
@@ -140,22 +204,21 @@ public class App {
                 .ifPresent(prop -> controlPane.setTestCount(Integer.parseInt(prop)));
         propertiesProvider.getProperty(PROP_TEST_FILE_PATH)
                 .ifPresent(prop -> controlPane.setTestFile(new File(prop)));
+        propertiesProvider.getProperty(PROP_TEST_PLAN_PATH).ifPresent(prop -> {
+            File planFile = new File(prop);
+            try {
+                controlPane.setPlan(planFile, TestPlan.load(planFile));
+            } catch (IOException | IllegalArgumentException ex) {
+                LOGGER.warn("Fail to load test plan {}", planFile, ex);
+            }
+        });
     }
 
     private void checkDrives() {
         cancelDrivesChecking();
-        List<DrivePane> drivePanes = drivesPane.getDrivePanes();
+        drivesView.resetCheckStatus();
 
-        for (DrivePane drivePane : drivePanes) {
-            drivePane.setCheckStatus(CheckingStatus.PENDING);
-            drivePane.clearCopiedSize();
-            drivePane.clearIterationCount();
-        }
-
-        List<File> selectedDrives = drivePanes.stream()
-                .filter(DrivePane::isSelected)
-                .map(DrivePane::getDrive)
-                .collect(Collectors.toList());
+        List<File> selectedDrives = drivesView.getSelectedDrives();
 
         if (selectedDrives.size() == 0) {
             JOptionPane.showMessageDialog(
@@ -165,28 +228,86 @@ public class App {
             return;
         }
 
+        TestPlan plan = controlPane.getPlan();
+        if (plan != null) {
+            runPlan(plan, selectedDrives);
+            return;
+        }
+
         drivesCheckWorker = new DrivesCheckWorker(
                 selectedDrives,
                 controlPane.getTestFile(),
-                controlPane.getIterationCount());
+                controlPane.getIterationCount(),
+                new CheckOptionsProperties(propertiesProvider).load());
         drivesCheckWorker.setListener(new AppDrivesCheckListener(
                 controlPane,
-                drivesPane,
+                drivesView,
                 drivesCheckWorker,
                 executor));
         for (DriveChecker checker : drivesCheckWorker.getCheckers()) {
-            checker.setListener((iteration, copiedBytes) -> {
-                File drive = checker.getDrive();
-                drivesPane.getDrivePaneByDrive(drive).ifPresent(d -> {
-                    d.setCopiedSize(copiedBytes);
-                    d.setIterationCount(iteration);
-                });
-            });
+            checker.setListener((iteration, copiedBytes) ->
+                    drivesView.setProgress(checker.getDrive(), iteration, copiedBytes));
         }
+        drivesView.setWorker(drivesCheckWorker);
         executor.execute(drivesCheckWorker);
     }
 
+    private void runPlan(@Nonnull TestPlan plan, @Nonnull List<File> selectedDrives) {
+        File testFile = controlPane.getTestFile();
+        TestPlanRunner runner;
+        try {
+            runner = new TestPlanRunner(plan, selectedDrives, testFile.exists() ? testFile : null);
+        } catch (IllegalArgumentException ex) {
+            JOptionPane.showMessageDialog(frame, ex.getMessage());
+            controlPane.stop();
+            return;
+        }
+        runner.setListener(new TestPlanListener() {
+            @Override
+            public void onPhaseStarted(@Nonnull TestPlanPhase phase, @Nonnull DrivesCheckWorker worker) {
+                drivesCheckWorker = worker;
+                for (DriveChecker checker : worker.getCheckers()) {
+                    checker.setListener((iteration, copiedBytes) ->
+                            drivesView.setProgress(checker.getDrive(), iteration, copiedBytes));
+                }
+                SwingUtilities.invokeLater(() -> {
+                    drivesView.resetCheckStatus();
+                    drivesView.setWorker(worker);
+                });
+            }
+
+            @Override
+            public void onDriveStatusChanged(@Nonnull File drive, @Nonnull CheckingStatus status) {
+                drivesView.setCheckStatus(drive, status);
+            }
+        });
+        testPlanRunner = runner;
+        controlPane.start();
+        drivesView.setEnabled(false);
+        controlPane.setReportEnabled(false);
+        executor.execute(() -> {
+            try {
+                runner.run();
+            } catch (InterruptedException ex) {
+                LOGGER.warn("Interrupted while running test plan {}", plan.getName(), ex);
+            }
+            String report = runner.getReport();
+            executor.execute(new DriveCheckReportExporter(report));
+            SwingUtilities.invokeLater(() -> {
+                testPlanRunner = null;
+                controlPane.stop();
+                drivesView.setEnabled(true);
+                controlPane.setReport(report);
+                controlPane.setReportEnabled(true);
+            });
+        });
+    }
+
     private void cancelDrivesChecking() {
+        if (testPlanRunner != null) {
+            testPlanRunner.cancel();
+            return;
+        }
         if (drivesCheckWorker == null) {
             return;
         }
@@ -194,7 +315,15 @@ public class App {
     }
 
     public static void main( String[] args ) throws Throwable {
-        new App();
+        if (args.length > 0) {
+            CommandLine commandLine = new CommandLine(
+                    new PropertiesProvider(new File(PROPERTY_FILE_PATH)),
+                    System.err);
+            System.exit(commandLine.run(args));
+        }
+
+        // Build the window on the event dispatch thread; drives and their icons are loaded in the background.
+        SwingUtilities.invokeLater(App::new);
     }
 
 }
@@ -12,18 +12,18 @@ import java.util.concurrent.Executor;
 class AppDrivesCheckListener implements DrivesCheckListener {
 
     private final ControlPane controlPane;
-    private final DrivesPane drivesPane;
+    private final DrivesView drivesView;
     private DrivesCheckWorker worker;
     private final Executor executor;
     private final DriveCheckReportGenerator reportGenerator = new DriveCheckReportGenerator();
 
     public AppDrivesCheckListener(
             @Nonnull ControlPane controlPane,
-            @Nonnull DrivesPane drivesPane,
+            @Nonnull DrivesView drivesView,
             @Nonnull DrivesCheckWorker worker,
             @Nonnull Executor executor) {
         this.controlPane = controlPane;
-        this.drivesPane = drivesPane;
+        this.drivesView = drivesView;
         this.worker = worker;
         this.executor = executor;
     }
@@ -31,14 +31,14 @@ class AppDrivesCheckListener implements DrivesCheckListener {
     @Override
     public void onStart() {
         controlPane.start();
-        drivesPane.setEnabled(false);
+        drivesView.setEnabled(false);
         controlPane.setReportEnabled(false);
     }
 
     @Override
     public void onStop() {
         controlPane.stop();
-        drivesPane.setEnabled(true);
+        drivesView.setEnabled(true);
         String report = reportGenerator.generateReport(worker);
         executor.execute(new DriveCheckReportExporter(report));
         controlPane.setReport(report);
@@ -47,6 +47,6 @@ class AppDrivesCheckListener implements DrivesCheckListener {
 
     @Override
     public void onDriveStatusChanged(@Nonnull File drive, @Nonnull CheckingStatus checkStatus) {
-        drivesPane.getDrivePaneByDrive(drive).ifPresent(d -> d.setCheckStatus(checkStatus));
+        drivesView.setCheckStatus(drive, checkStatus);
     }
 }
@@ -0,0 +1,191 @@
+package com.handoitasdf.drive_checker.ui;
+
+import com.handoitasdf.drive_checker.CheckingStatus;
+import com.handoitasdf.drive_checker.DriveChecker;
+import com.handoitasdf.drive_checker.DriveCheckerMetrics;
+import com.handoitasdf.drive_checker.DriveCheckerSnapshot;
+import com.handoitasdf.drive_checker.api.DriveState;
+import com.handoitasdf.drive_checker.api.StationController;
+import com.handoitasdf.drive_checker.plan.TestPlan;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.swing.SwingUtilities;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.function.Supplier;
+
+/**
+ * Lets the control API operate the window as the buttons do, so the window always shows what the API does.
+ * Everything is done on the event dispatch thread.
+ */
+class AppStationController implements StationController {
+    private final ControlPane controlPane;
+    private final DrivesView drivesView;
+    private final Supplier<DrivesCheckWorker> workerSupplier;
+
+    AppStationController(@Nonnull ControlPane controlPane,
+                         @Nonnull DrivesView drivesView,
+                         @Nonnull Supplier<DrivesCheckWorker> workerSupplier) {
+        this.controlPane = controlPane;
+        this.drivesView = drivesView;
+        this.workerSupplier = workerSupplier;
+    }
+
+    @Override
+    @Nonnull
+    public List<DriveState> getDrives() {
+        return callOnEdt(() -> {
+            Map<File, DriveChecker> checkers = new HashMap<>();
+            DrivesCheckWorker worker = workerSupplier.get();
+            if (worker != null) {
+                for (DriveChecker checker : worker.getCheckers()) {
+                    checkers.put(checker.getDrive(), checker);
+                }
+            }
+            List<File> selectedDrives = drivesView.getSelectedDrives();
+            List<DriveState> states = new ArrayList<>();
+            for (File drive : drivesView.getDrives()) {
+                DriveChecker checker = checkers.get(drive);
+                if (checker == null) {
+                    states.add(new DriveState(drive.getPath(), selectedDrives.contains(drive),
+                            CheckingStatus.PENDING, 0, 0, 0, 0));
+                    continue;
+                }
+                DriveCheckerMetrics metrics = checker.getMetrics();
+                DriveCheckerSnapshot snapshot = checker.getSnapshot();
+                states.add(new DriveState(
+                        drive.getPath(),
+                        selectedDrives.contains(drive),
+                        snapshot.getStatus(),
+                        snapshot.getCheckedCount(),
+                        metrics.getBytesWritten(),
+                        metrics.getBytesVerified(),
+                        metrics.getCurrentMBps()));
+            }
+            return states;
+        });
+    }
+
+    @Override
+    public boolean isRunning() {
+        return callOnEdt(() -> !ControlPane.Status.STOPPED.equals(controlPane.getStatus()));
+    }
+
+    @Override
+    public void startRun(@Nonnull List<File> drives, @Nonnull File testFile, int iterationCount) {
+        callOnEdt(() -> {
+            if (!ControlPane.Status.STOPPED.equals(controlPane.getStatus())) {
+                throw new IllegalStateException("A run is in progress");
+            }
+            if (!testFile.isFile() && !testFile.isDirectory()) {
+                throw new IllegalArgumentException("\"" + testFile.getAbsolutePath()
+                        + "\" isn't a file or a directory");
+            }
+            if (iterationCount < 0) {
+                throw new IllegalArgumentException("Invalid iteration count " + iterationCount);
+            }
+            selectDrives(drives);
+            controlPane.setPlan(null, null);
+            controlPane.setTestFile(testFile);
+            controlPane.setTestCount(iterationCount);
+            controlPane.requestStart();
+            return null;
+        });
+    }
+
+    @Override
+    public void startPlan(@Nonnull List<File> drives, @Nonnull File planFile, @Nullable File testFile) {
+        TestPlan plan;
+        try {
+            plan = TestPlan.load(planFile);
+        } catch (IOException ex) {
+            throw new IllegalArgumentException("Fail to read " + planFile.getAbsolutePath() + ": " + ex.getMessage(),
+                    ex);
+        }
+        // Validates the options of the phases before anything is started.
+        new TestPlanRunner(plan, drives, testFile);
+        callOnEdt(() -> {
+            if (!ControlPane.Status.STOPPED.equals(controlPane.getStatus())) {
+                throw new IllegalStateException("A run is in progress");
+            }
+            selectDrives(drives);
+            controlPane.setPlan(planFile, plan);
+            if (testFile != null) {
+                controlPane.setTestFile(testFile);
+            }
+            controlPane.requestStart();
+            return null;
+        });
+    }
+
+    private void selectDrives(@Nonnull List<File> drives) {
+        List<File> knownDrives = drivesView.getDrives();
+        if (drives.isEmpty()) {
+            throw new IllegalArgumentException("No drive is given");
+        }
+        for (File drive : drives) {
+            if (!knownDrives.contains(drive)) {
+                throw new IllegalArgumentException("Unknown drive " + drive.getPath());
+            }
+        }
+        for (File drive : knownDrives) {
+            drivesView.setDriveSelected(drive, drives.contains(drive));
+        }
+    }
+
+    @Override
+    public boolean cancelRun() {
+        return callOnEdt(() -> {
+            if (ControlPane.Status.STOPPED.equals(controlPane.getStatus())) {
+                return false;
+            }
+            controlPane.requestStop();
+            return true;
+        });
+    }
+
+    @Override
+    @Nullable
+    public String getReport() {
+        return callOnEdt(() -> {
+            String report = controlPane.getReport();
+            return report.isEmpty() ? null : report;
+        });
+    }
+
+    private static <T> T callOnEdt(@Nonnull Callable<T> callable) {
+        if (SwingUtilities.isEventDispatchThread()) {
+            return call(callable);
+        }
+        List<T> result = new ArrayList<>(1);
+        try {
+            SwingUtilities.invokeAndWait(() -> result.add(call(callable)));
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the window", ex);
+        } catch (InvocationTargetException ex) {
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            throw new IllegalStateException(ex.getCause());
+        }
+        return result.get(0);
+    }
+
+    private static <T> T call(@Nonnull Callable<T> callable) {
+        try {
+            return callable.call();
+        } catch (RuntimeException ex) {
+            throw ex;
+        } catch (Exception ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+}
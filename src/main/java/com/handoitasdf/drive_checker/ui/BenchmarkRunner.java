@@ -0,0 +1,270 @@
+package com.handoitasdf.drive_checker.ui;
+
+import com.handoitasdf.drive_checker.CheckOptions;
+import com.handoitasdf.drive_checker.CheckingStatus;
+import com.handoitasdf.drive_checker.DriveChecker;
+import com.handoitasdf.drive_checker.DriveCheckerMetrics;
+import com.handoitasdf.drive_checker.bench.BenchmarkBaseline;
+import com.handoitasdf.drive_checker.bench.BenchmarkMetric;
+import com.handoitasdf.drive_checker.bench.BenchmarkResult;
+import com.handoitasdf.drive_checker.bench.BenchmarkScenario;
+import com.handoitasdf.drive_checker.bench.BenchmarkSuite;
+import com.handoitasdf.drive_checker.bench.ProcessResources;
+import com.handoitasdf.drive_checker.storage.StorageTargets;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs the scenarios of a {@link BenchmarkSuite} one after another, each with a {@link DrivesCheckWorker} of its
+ * own as in a run in the window, and compares their metrics with a baseline.
+ *
+ * The test files are generated from a fixed seed for every size, so that every run copies the same data. The
+ * UI events are counted at the listeners the window would receive them on.
+ */
+class BenchmarkRunner {
+    private static final Logger LOGGER = LoggerFactory.getLogger(BenchmarkRunner.class);
+    private static final int CHUNK_SIZE = 1024 * 1024;
+    private static final double BYTES_PER_MB = 1024 * 1024;
+    private static final double NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+    private final BenchmarkSuite suite;
+    private final BenchmarkBaseline baseline;
+    private final ProcessResources resources = new ProcessResources();
+    private final List<BenchmarkResult> results = new ArrayList<>();
+    private final Map<String, List<String>> regressions = new LinkedHashMap<>();
+    private volatile String report = "";
+
+    /**
+     * @param baseline The metrics to compare with, or null to only measure the scenarios.
+     */
+    BenchmarkRunner(@Nonnull BenchmarkSuite suite, @Nullable BenchmarkBaseline baseline) {
+        this.suite = suite;
+        this.baseline = baseline;
+    }
+
+    /**
+     * @return The median metrics of every scenario, complete once {@link #run} has returned.
+     */
+    @Nonnull
+    List<BenchmarkResult> getResults() {
+        return Collections.unmodifiableList(results);
+    }
+
+    /**
+     * @return The report of the suite, complete once {@link #run} has returned.
+     */
+    @Nonnull
+    String getReport() {
+        return report;
+    }
+
+    /**
+     * Run the suite and wait for it.
+     *
+     * @return True if all scenarios pass, and none regresses from the baseline.
+     * @throws IllegalArgumentException If the options of a scenario are invalid.
+     */
+    boolean run() throws IOException, InterruptedException {
+        Instant startTime = Instant.now();
+        LOGGER.info("Running benchmark suite {}: {} scenarios, {} runs each", suite.getName(),
+                suite.getScenarios().size(), suite.getRepetitionCount());
+        Map<Long, File> testFiles = new TreeMap<>();
+        try {
+            for (BenchmarkScenario scenario : suite.getScenarios()) {
+                File testFile = testFiles.get(scenario.getFileSizeMB());
+                if (testFile == null) {
+                    testFile = createTestFile(scenario.getFileSizeMB());
+                    testFiles.put(scenario.getFileSizeMB(), testFile);
+                }
+                List<BenchmarkResult> runs = new ArrayList<>();
+                for (int i = 0; i < suite.getRepetitionCount(); ++i) {
+                    runs.add(runScenario(scenario, testFile));
+                }
+                BenchmarkResult result = BenchmarkResult.median(runs);
+                results.add(result);
+                List<String> missed = baseline != null
+                        ? baseline.compare(result, suite.getTolerancePercents())
+                        : result.isPassed() ? Collections.emptyList() : Collections.singletonList("the check failed");
+                if (!missed.isEmpty()) {
+                    LOGGER.warn("Scenario {} regresses: {}", result.getScenarioKey(), String.join("; ", missed));
+                    regressions.put(result.getScenarioKey(), missed);
+                }
+            }
+        } finally {
+            for (File testFile : testFiles.values()) {
+                if (!testFile.delete()) {
+                    LOGGER.warn("Fail to delete test file {}", testFile);
+                }
+            }
+        }
+        report = generateReport(startTime, Instant.now());
+        LOGGER.info("Benchmark suite {} is done: {} scenarios regress", suite.getName(), regressions.size());
+        return regressions.isEmpty();
+    }
+
+    @Nonnull
+    private BenchmarkResult runScenario(@Nonnull BenchmarkScenario scenario, @Nonnull File testFile)
+            throws IOException, InterruptedException {
+        CheckOptions options;
+        try {
+            options = new CheckOptionsProperties(scenario.getOptions()).load();
+        } catch (IllegalArgumentException ex) {
+            throw new IllegalArgumentException("Target " + scenario.getTargetName() + ": " + ex.getMessage(), ex);
+        }
+        List<File> drives = scenario.getDrives();
+        for (File drive : drives) {
+            File directory = StorageTargets.getLocalDirectory(drive);
+            if (directory != null && !directory.isDirectory() && !directory.mkdirs()) {
+                throw new IOException("Fail to create directory " + directory.getPath());
+            }
+        }
+        LOGGER.info("Running scenario {}", scenario.getKey());
+        DrivesCheckWorker worker = new DrivesCheckWorker(drives, testFile, suite.getIterationCount(), options);
+        LongAdder uiEvents = new LongAdder();
+        CountDownLatch stopped = new CountDownLatch(1);
+        worker.setListener(new DrivesCheckListener() {
+            @Override
+            public void onStart() {
+            }
+
+            @Override
+            public void onStop() {
+                stopped.countDown();
+            }
+
+            @Override
+            public void onDriveStatusChanged(@Nonnull File drive, @Nonnull CheckingStatus checkStatus) {
+                uiEvents.increment();
+            }
+        });
+        for (DriveChecker checker : worker.getCheckers()) {
+            checker.setListener((iteration, copiedBytes) -> uiEvents.increment());
+        }
+
+        // Don't charge the garbage of the last run to this one.
+        System.gc();
+        resources.resetPeaks();
+        long startCpuNanos = resources.getCpuNanos();
+        long startNanos = System.nanoTime();
+        worker.execute();
+        stopped.await();
+        long elapsedNanos = System.nanoTime() - startNanos;
+        long cpuNanos = resources.getCpuNanos();
+
+        long bytes = 0;
+        boolean passed = true;
+        for (DriveChecker checker : worker.getCheckers()) {
+            DriveCheckerMetrics metrics = checker.getMetrics();
+            bytes += metrics.getBytesWritten() + metrics.getBytesVerified();
+            if (!CheckingStatus.SUCCESS.equals(checker.getStatus())) {
+                LOGGER.warn("Drive {} of scenario {} is {}", checker.getDrive().getPath(), scenario.getKey(),
+                        checker.getStatus(), checker.getFailedReason());
+                passed = false;
+            }
+        }
+        double seconds = Math.max(1, elapsedNanos) / NANOS_PER_SECOND;
+        Map<BenchmarkMetric, Double> values = new EnumMap<>(BenchmarkMetric.class);
+        values.put(BenchmarkMetric.THROUGHPUT, bytes / BYTES_PER_MB / seconds);
+        values.put(BenchmarkMetric.CPU_SECONDS, startCpuNanos < 0 ? -1 : (cpuNanos - startCpuNanos) / NANOS_PER_SECOND);
+        values.put(BenchmarkMetric.PEAK_RSS_MB, resources.getPeakRssMB());
+        values.put(BenchmarkMetric.PEAK_THREADS, (double) resources.getPeakThreadCount());
+        values.put(BenchmarkMetric.UI_EVENT_RATE, uiEvents.sum() / seconds);
+        return new BenchmarkResult(scenario.getKey(), passed, values);
+    }
+
+    /**
+     * @return A file of random data of the given size, the same for every run.
+     */
+    @Nonnull
+    private static File createTestFile(long sizeMB) throws IOException {
+        File file = File.createTempFile("drive-checker-bench-" + sizeMB + "mb-", ".bin");
+        LOGGER.info("Generating test file {} of {} MB", file, sizeMB);
+        Random random = new Random(sizeMB);
+        byte[] chunk = new byte[CHUNK_SIZE];
+        try (OutputStream output = new FileOutputStream(file)) {
+            for (long i = 0; i < sizeMB; ++i) {
+                random.nextBytes(chunk);
+                output.write(chunk);
+            }
+        } catch (IOException ex) {
+            if (!file.delete()) {
+                LOGGER.warn("Fail to delete test file {}", file);
+            }
+            throw ex;
+        }
+        return file;
+    }
+
+    @Nonnull
+    private String generateReport(@Nonnull Instant startTime, @Nonnull Instant doneTime) {
+        String lineSeparator = System.lineSeparator();
+        StringBuilder builder = new StringBuilder();
+        builder.append("Benchmark suite: ").append(suite.getName()).append(lineSeparator)
+                .append("Start time: ").append(DriveCheckReportGenerator.formatInstant(startTime))
+                .append(lineSeparator)
+                .append("Done time: ").append(DriveCheckReportGenerator.formatInstant(doneTime))
+                .append(lineSeparator)
+                .append("Elapsed time: ").append(DriveCheckReportGenerator.formatElapsedTime(startTime, doneTime))
+                .append(lineSeparator)
+                .append("Iterations: ").append(suite.getIterationCount())
+                .append(", runs per scenario: ").append(suite.getRepetitionCount())
+                .append(lineSeparator)
+                .append("Result: ")
+                .append(regressions.isEmpty() ? "Passed" : regressions.size() + " scenarios regress")
+                .append(baseline == null ? " (no baseline)" : "")
+                .append(lineSeparator)
+                .append(lineSeparator)
+                .append(String.format(Locale.ROOT, "%-32s %10s %10s %10s %10s %12s",
+                        "Scenario", "MB/s", "CPU s", "RSS MB", "Threads", "UI events/s"))
+                .append(lineSeparator);
+        for (BenchmarkResult result : results) {
+            builder.append(String.format(Locale.ROOT, "%-32s", result.getScenarioKey()));
+            for (BenchmarkMetric metric : BenchmarkMetric.values()) {
+                double value = result.get(metric);
+                builder.append(String.format(Locale.ROOT, metric == BenchmarkMetric.UI_EVENT_RATE ? " %12s" : " %10s",
+                        value < 0 ? "n/a" : String.format(Locale.ROOT,
+                                metric == BenchmarkMetric.CPU_SECONDS ? "%.2f" : "%.1f", value)));
+            }
+            builder.append(lineSeparator);
+            if (baseline != null) {
+                builder.append(String.format(Locale.ROOT, "%-32s", "  vs baseline"));
+                for (BenchmarkMetric metric : BenchmarkMetric.values()) {
+                    Double baselineValue = baseline.get(result.getScenarioKey(), metric);
+                    double value = result.get(metric);
+                    String change = baselineValue == null || baselineValue < 0 || value < 0
+                            ? "n/a"
+                            : String.format(Locale.ROOT, "%+.1f%%", BenchmarkBaseline.change(value, baselineValue));
+                    builder.append(String.format(Locale.ROOT,
+                            metric == BenchmarkMetric.UI_EVENT_RATE ? " %12s" : " %10s", change));
+                }
+                builder.append(lineSeparator);
+            }
+            List<String> missed = regressions.get(result.getScenarioKey());
+            if (missed != null) {
+                for (String regression : missed) {
+                    builder.append("  regressed: ").append(regression).append(lineSeparator);
+                }
+            }
+        }
+        return builder.toString();
+    }
+}
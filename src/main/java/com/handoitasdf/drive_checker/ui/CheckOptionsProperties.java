@@ -0,0 +1,162 @@
+package com.handoitasdf.drive_checker.ui;
+
+import com.handoitasdf.drive_checker.CheckOptions;
+import com.handoitasdf.drive_checker.DataPattern;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Reads the {@link CheckOptions} of a run from the user properties.
+ */
+public class CheckOptionsProperties {
+    private static final Logger LOGGER = LoggerFactory.getLogger(CheckOptionsProperties.class);
+    private static final String PROP_TRANSFER_MODE = "check.transfer_mode";
+    private static final String PROP_BROADCAST_MAX_LAG_CHUNKS = "check.broadcast.max_lag_chunks";
+    private static final String PROP_BROADCAST_DETACH_TIMEOUT_MILLIS = "check.broadcast.detach_timeout_ms";
+    private static final String PROP_BROADCAST_GATHER_TIMEOUT_MILLIS = "check.broadcast.gather_timeout_ms";
+
+    private static final String PROP_ENGINE = "check.engine";
+    private static final String PROP_ASYNC_QUEUE_DEPTH = "check.async.queue_depth";
+    private static final String PROP_ASYNC_THREAD_COUNT = "check.async.thread_count";
+    private static final String PROP_STALL_DEADLINE_MILLIS = "check.stall_deadline_ms";
+    private static final String PROP_FLIGHT_RECORDING = "diagnostics.flight_recording";
+    private static final String PROP_FORENSIC_MODE = "check.forensic.enabled";
+    private static final String PROP_FORENSIC_BLOCK_SIZE = "check.forensic.block_size";
+    private static final String PROP_FORENSIC_RE_READ_COUNT = "check.forensic.re_read_count";
+    private static final String PROP_FORENSIC_MAX_ERROR_BLOCKS = "check.forensic.max_error_blocks";
+    private static final String PROP_PREALLOCATE_TARGET = "check.preallocate_target";
+    private static final String PROP_WRITE_PROFILING = "check.write_profile.enabled";
+    private static final String PROP_INLINE_VERIFY_WINDOW_CHUNKS = "check.inline_verify.window_chunks";
+    private static final String PROP_PIPELINE_ITERATIONS = "check.pipeline_iterations";
+    private static final String PROP_HASH_MODE = "check.hash_mode";
+    private static final String PROP_THROTTLE_DRIVE_MBPS = "check.throttle.drive_mbps";
+    private static final String PROP_THROTTLE_GLOBAL_MBPS = "check.throttle.global_mbps";
+    private static final String PROP_THROTTLE_LATENCY_TARGET_MILLIS = "check.throttle.latency_target_ms";
+    private static final String PROP_THROTTLE_PROBE_DIRECTORY = "check.throttle.probe_dir";
+    private static final String PROP_WORKLOAD = "check.workload";
+    private static final String PROP_SMALL_FILE_COUNT = "check.small_files.count";
+    private static final String PROP_SMALL_FILE_SIZE = "check.small_files.size";
+    private static final String PROP_SMALL_FILE_FAN_OUT = "check.small_files.fan_out";
+    private static final String PROP_SMALL_FILE_WORKERS = "check.small_files.workers";
+    private static final String PROP_DATA_PATTERN = "check.data_pattern";
+    private static final String PROP_DATA_PATTERN_SIZE_MB = "check.data_pattern.size_mb";
+    private static final String PROP_DURATION_MILLIS = "check.duration_ms";
+    private static final String PROP_FILL_RESERVE_MB = "check.fill.reserve_mb";
+    private static final String PROP_FILL_MAX_FILES = "check.fill.max_files";
+    private static final String PROP_RANDOM_REGION_MB = "check.random.region_mb";
+    private static final String PROP_RANDOM_BLOCK_SIZE = "check.random.block_size";
+    private static final String PROP_RANDOM_OPERATIONS = "check.random.ops";
+    private static final String PROP_RANDOM_WORKERS = "check.random.workers";
+    private static final String PROP_TREE_WORKERS = "check.tree.workers";
+
+    private final Function<String, Optional<String>> lookup;
+    private final Map<String, String> strictProperties;
+    private final Set<String> knownKeys = new HashSet<>();
+
+    public CheckOptionsProperties(@Nonnull PropertiesProvider propertiesProvider) {
+        this.lookup = propertiesProvider::getProperty;
+        this.strictProperties = null;
+    }
+
+    /**
+     * Read the options from given properties, e.g. those of a test plan. Unlike the user properties, an invalid
+     * value or an unknown key fails the loading with an {@link IllegalArgumentException}.
+     */
+    CheckOptionsProperties(@Nonnull Map<String, String> properties) {
+        this.lookup = key -> Optional.ofNullable(properties.get(key));
+        this.strictProperties = properties;
+    }
+
+    @Nonnull
+    public CheckOptions load() {
+        CheckOptions options = new CheckOptions();
+        read(PROP_TRANSFER_MODE,
+                value -> CheckOptions.TransferMode.valueOf(value.toUpperCase(Locale.ROOT)),
+                options::setTransferMode);
+        read(PROP_BROADCAST_MAX_LAG_CHUNKS, Integer::parseInt, options::setBroadcastMaxLagChunks);
+        read(PROP_BROADCAST_DETACH_TIMEOUT_MILLIS, Long::parseLong, options::setBroadcastDetachTimeoutMillis);
+        read(PROP_BROADCAST_GATHER_TIMEOUT_MILLIS, Long::parseLong, options::setBroadcastGatherTimeoutMillis);
+        read(PROP_ENGINE,
+                value -> CheckOptions.Engine.valueOf(value.toUpperCase(Locale.ROOT)),
+                options::setEngine);
+        read(PROP_ASYNC_QUEUE_DEPTH, Integer::parseInt, options::setAsyncQueueDepth);
+        read(PROP_ASYNC_THREAD_COUNT, Integer::parseInt, options::setAsyncThreadCount);
+        read(PROP_STALL_DEADLINE_MILLIS, Long::parseLong, options::setStallDeadlineMillis);
+        read(PROP_FLIGHT_RECORDING, Boolean::parseBoolean, options::setFlightRecording);
+        read(PROP_FORENSIC_MODE, Boolean::parseBoolean, options::setForensicMode);
+        read(PROP_FORENSIC_BLOCK_SIZE, CheckOptionsProperties::parsePositiveInt, options::setForensicBlockSize);
+        read(PROP_FORENSIC_RE_READ_COUNT, Integer::parseInt, options::setForensicReReadCount);
+        read(PROP_FORENSIC_MAX_ERROR_BLOCKS, Long::parseLong, options::setForensicMaxErrorBlocks);
+        read(PROP_PREALLOCATE_TARGET, Boolean::parseBoolean, options::setPreallocateTarget);
+        read(PROP_WRITE_PROFILING, Boolean::parseBoolean, options::setWriteProfiling);
+        read(PROP_INLINE_VERIFY_WINDOW_CHUNKS, Integer::parseInt, options::setInlineVerifyWindowChunks);
+        read(PROP_PIPELINE_ITERATIONS, Boolean::parseBoolean, options::setPipelineIterations);
+        read(PROP_HASH_MODE,
+                value -> CheckOptions.HashMode.valueOf(value.toUpperCase(Locale.ROOT)),
+                options::setHashMode);
+        read(PROP_THROTTLE_DRIVE_MBPS, Double::parseDouble, options::setThrottleDriveMBps);
+        read(PROP_THROTTLE_GLOBAL_MBPS, Double::parseDouble, options::setThrottleGlobalMBps);
+        read(PROP_THROTTLE_LATENCY_TARGET_MILLIS, Long::parseLong, options::setThrottleLatencyTargetMillis);
+        read(PROP_THROTTLE_PROBE_DIRECTORY, value -> value, options::setThrottleProbeDirectory);
+        read(PROP_WORKLOAD,
+                value -> CheckOptions.Workload.valueOf(value.toUpperCase(Locale.ROOT)),
+                options::setWorkload);
+        read(PROP_SMALL_FILE_COUNT, Integer::parseInt, options::setSmallFileCount);
+        read(PROP_SMALL_FILE_SIZE, Integer::parseInt, options::setSmallFileSize);
+        read(PROP_SMALL_FILE_FAN_OUT, Integer::parseInt, options::setSmallFileFanOut);
+        read(PROP_SMALL_FILE_WORKERS, Integer::parseInt, options::setSmallFileWorkers);
+        read(PROP_DATA_PATTERN,
+                value -> DataPattern.valueOf(value.toUpperCase(Locale.ROOT)),
+                options::setDataPattern);
+        read(PROP_DATA_PATTERN_SIZE_MB, Long::parseLong, options::setDataPatternSizeMB);
+        read(PROP_DURATION_MILLIS, Long::parseLong, options::setDurationMillis);
+        read(PROP_FILL_RESERVE_MB, Long::parseLong, options::setFillReserveMB);
+        read(PROP_FILL_MAX_FILES, Integer::parseInt, options::setFillMaxFiles);
+        read(PROP_RANDOM_REGION_MB, Long::parseLong, options::setRandomRegionMB);
+        read(PROP_RANDOM_BLOCK_SIZE, Integer::parseInt, options::setRandomBlockSize);
+        read(PROP_RANDOM_OPERATIONS, Long::parseLong, options::setRandomOperations);
+        read(PROP_RANDOM_WORKERS, Integer::parseInt, options::setRandomWorkers);
+        read(PROP_TREE_WORKERS, Integer::parseInt, options::setTreeWorkers);
+        if (strictProperties != null) {
+            for (String key : strictProperties.keySet()) {
+                if (!knownKeys.contains(key)) {
+                    throw new IllegalArgumentException("Unknown option " + key);
+                }
+            }
+        }
+        return options;
+    }
+
+    private static int parsePositiveInt(@Nonnull String value) {
+        int parsed = Integer.parseInt(value);
+        if (parsed <= 0) {
+            throw new IllegalArgumentException("Value must be positive: " + value);
+        }
+        return parsed;
+    }
+
+    private <T> void read(@Nonnull String propertyName,
+                          @Nonnull Function<String, T> parser,
+                          @Nonnull Consumer<T> setter) {
+        knownKeys.add(propertyName);
+        lookup.apply(propertyName).ifPresent(value -> {
+            try {
+                setter.accept(parser.apply(value.trim()));
+            } catch (IllegalArgumentException ex) {
+                if (strictProperties != null) {
+                    throw new IllegalArgumentException("Invalid value " + value + " of option " + propertyName, ex);
+                }
+                LOGGER.error("Invalid value {} of property {}, ignore it", value, propertyName, ex);
+            }
+        });
+    }
+}
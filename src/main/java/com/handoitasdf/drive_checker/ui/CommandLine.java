@@ -0,0 +1,238 @@
+package com.handoitasdf.drive_checker.ui;
+
+import com.handoitasdf.drive_checker.bench.BenchmarkBaseline;
+import com.handoitasdf.drive_checker.bench.BenchmarkResult;
+import com.handoitasdf.drive_checker.bench.BenchmarkSuite;
+import com.handoitasdf.drive_checker.plan.TestPlan;
+import org.apache.commons.lang3.StringUtils;
+
+import javax.annotation.Nonnull;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs the headless modes selected by the command line arguments:
+ *
+ * <pre>
+ * --agent HOST:PORT --test-file FILE --iterations N --drive PATH [--drive PATH ...] [--id NAME]
+ * --coordinator PORT [--expect N]
+ * --plan FILE --drive PATH [--drive PATH ...] [--test-file FILE]
+ * --benchmark FILE [--baseline FILE] [--save-baseline FILE]
+ * </pre>
+ *
+ * A plan run writes its report to report.txt, as a run in the window does, and so does a benchmark run, which
+ * fails if a scenario regresses from the baseline.
+ */
+class CommandLine {
+    static final int EXIT_PASSED = 0;
+    static final int EXIT_FAILED = 1;
+    static final int EXIT_USAGE = 2;
+    private static final String PROP_COORDINATOR_BIND_ADDRESS = "coordinator.bind_address";
+    private static final String DEFAULT_COORDINATOR_BIND_ADDRESS = "127.0.0.1";
+    private static final String USAGE = "Usage:" + System.lineSeparator()
+            + "  --agent HOST:PORT --test-file FILE --iterations N --drive PATH [--drive PATH ...] [--id NAME]"
+            + System.lineSeparator()
+            + "  --coordinator PORT [--expect N]"
+            + System.lineSeparator()
+            + "  --plan FILE --drive PATH [--drive PATH ...] [--test-file FILE]"
+            + System.lineSeparator()
+            + "  --benchmark FILE [--baseline FILE] [--save-baseline FILE]";
+    private final PropertiesProvider propertiesProvider;
+    private final PrintStream err;
+    private String agentAddress;
+    private String coordinatorPort;
+    private String planFile;
+    private String benchmarkFile;
+    private String baselineFile;
+    private String savedBaselineFile;
+    private String testFile;
+    private String iterationCount;
+    private String agentId;
+    private String expectedAgentCount = "0";
+    private final List<File> drives = new ArrayList<>();
+
+    CommandLine(@Nonnull PropertiesProvider propertiesProvider, @Nonnull PrintStream err) {
+        this.propertiesProvider = propertiesProvider;
+        this.err = err;
+    }
+
+    /**
+     * @return The exit code.
+     */
+    int run(@Nonnull String[] args) throws Exception {
+        try {
+            parse(args);
+            if (agentAddress != null) {
+                return runAgent() ? EXIT_PASSED : EXIT_FAILED;
+            }
+            if (coordinatorPort != null) {
+                return runCoordinator() ? EXIT_PASSED : EXIT_FAILED;
+            }
+            if (planFile != null) {
+                return runPlan() ? EXIT_PASSED : EXIT_FAILED;
+            }
+            if (benchmarkFile != null) {
+                return runBenchmark() ? EXIT_PASSED : EXIT_FAILED;
+            }
+            throw new IllegalArgumentException("Either --agent, --coordinator, --plan or --benchmark is required");
+        } catch (IllegalArgumentException ex) {
+            err.println(ex.getMessage());
+            err.println(USAGE);
+            return EXIT_USAGE;
+        }
+    }
+
+    private void parse(@Nonnull String[] args) {
+        for (int i = 0; i < args.length; ++i) {
+            String option = args[i];
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("Missing value of " + option);
+            }
+            String value = args[++i];
+            switch (option) {
+                case "--agent":
+                    agentAddress = value;
+                    break;
+                case "--coordinator":
+                    coordinatorPort = value;
+                    break;
+                case "--plan":
+                    planFile = value;
+                    break;
+                case "--benchmark":
+                    benchmarkFile = value;
+                    break;
+                case "--baseline":
+                    baselineFile = value;
+                    break;
+                case "--save-baseline":
+                    savedBaselineFile = value;
+                    break;
+                case "--test-file":
+                    testFile = value;
+                    break;
+                case "--iterations":
+                    iterationCount = value;
+                    break;
+                case "--drive":
+                    drives.add(new File(value));
+                    break;
+                case "--id":
+                    agentId = value;
+                    break;
+                case "--expect":
+                    expectedAgentCount = value;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + option);
+            }
+        }
+    }
+
+    private boolean runAgent() throws Exception {
+        String host = StringUtils.substringBeforeLast(agentAddress, ":");
+        int port = parseInt("--agent port", StringUtils.substringAfterLast(agentAddress, ":"));
+        if (StringUtils.isEmpty(testFile) || !new File(testFile).exists()) {
+            throw new IllegalArgumentException("--test-file must be an existing file or directory");
+        }
+        if (drives.isEmpty()) {
+            throw new IllegalArgumentException("At least one --drive is required");
+        }
+        if (iterationCount == null) {
+            throw new IllegalArgumentException("--iterations is required");
+        }
+        return new AgentRunner(
+                agentId != null ? agentId : getHostName(),
+                host,
+                port,
+                drives,
+                new File(testFile),
+                parseInt("--iterations", iterationCount),
+                new CheckOptionsProperties(propertiesProvider).load()).run();
+    }
+
+    private boolean runCoordinator() throws Exception {
+        String bindAddress = propertiesProvider.getProperty(PROP_COORDINATOR_BIND_ADDRESS)
+                .orElse(DEFAULT_COORDINATOR_BIND_ADDRESS);
+        return new CoordinatorRunner(
+                new InetSocketAddress(bindAddress, parseInt("--coordinator", coordinatorPort)),
+                parseInt("--expect", expectedAgentCount)).run();
+    }
+
+    private boolean runPlan() throws InterruptedException {
+        if (drives.isEmpty()) {
+            throw new IllegalArgumentException("At least one --drive is required");
+        }
+        TestPlan plan;
+        try {
+            plan = TestPlan.load(new File(planFile));
+        } catch (IOException ex) {
+            throw new IllegalArgumentException("Fail to read " + planFile + ": " + ex.getMessage());
+        }
+        TestPlanRunner runner = new TestPlanRunner(plan, drives, testFile == null ? null : new File(testFile));
+        boolean passed = runner.run();
+        new DriveCheckReportExporter(runner.getReport()).run();
+        return passed;
+    }
+
+    private boolean runBenchmark() throws IOException, InterruptedException {
+        BenchmarkSuite suite;
+        try {
+            suite = BenchmarkSuite.load(new File(benchmarkFile));
+        } catch (IOException ex) {
+            throw new IllegalArgumentException("Fail to read " + benchmarkFile + ": " + ex.getMessage());
+        }
+        BenchmarkBaseline baseline = null;
+        if (baselineFile != null) {
+            try {
+                baseline = BenchmarkBaseline.load(new File(baselineFile));
+            } catch (IOException ex) {
+                throw new IllegalArgumentException("Fail to read " + baselineFile + ": " + ex.getMessage());
+            }
+        }
+        BenchmarkRunner runner = new BenchmarkRunner(suite, baseline);
+        boolean passed = runner.run();
+        new DriveCheckReportExporter(runner.getReport()).run();
+        if (savedBaselineFile != null) {
+            saveBaseline(suite, runner.getResults());
+        }
+        return passed;
+    }
+
+    /**
+     * Save the results as the new baseline, unless a check has failed, since its metrics mean nothing.
+     */
+    private void saveBaseline(@Nonnull BenchmarkSuite suite, @Nonnull List<BenchmarkResult> results)
+            throws IOException {
+        for (BenchmarkResult result : results) {
+            if (!result.isPassed()) {
+                err.println("Scenario " + result.getScenarioKey() + " failed, so the baseline isn't saved");
+                return;
+            }
+        }
+        BenchmarkBaseline.save(new File(savedBaselineFile), suite.getName(), results);
+    }
+
+    private static int parseInt(@Nonnull String name, @Nonnull String value) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("Invalid value of " + name + ": " + value);
+        }
+    }
+
+    @Nonnull
+    private static String getHostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException ex) {
+            return "agent";
+        }
+    }
+}
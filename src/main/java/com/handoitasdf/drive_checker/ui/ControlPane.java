@@ -1,6 +1,9 @@
 package com.handoitasdf.drive_checker.ui;
 
+import com.handoitasdf.drive_checker.plan.TestPlan;
+
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import javax.swing.JButton;
 import javax.swing.JFileChooser;
 import javax.swing.JLabel;
@@ -19,6 +22,7 @@ import java.awt.Point;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.io.File;
+import java.io.IOException;
 
 /**
  * Created by icand on 2017/8/31.
@@ -43,14 +47,23 @@ public class ControlPane extends JPanel {
     private final JPanel testFilePanel = new JPanel();
     private final JPanel optionsPanel = new JPanel();
     private final JButton reportBtn = new JButton("Show report");
+    private final JFileChooser planChooser = new JFileChooser();
+    private final JLabel planLabel = new JLabel();
+    private final JButton loadPlanBtn = new JButton("Load plan");
+    private final JButton clearPlanBtn = new JButton("Clear");
     private ControlPaneListener listener;
     private final Component parent;
     private Status status = Status.STOPPED;
     private String report = "";
+    private File planFile;
+    private TestPlan plan;
 
     public ControlPane(@Nonnull Component parent) {
         super(new GridBagLayout());
         this.parent = parent;
+
+        // A directory is copied as a tree of files.
+        fileChooser.setFileSelectionMode(JFileChooser.FILES_AND_DIRECTORIES);
         initTestFilePanel();
         initOptionsPanel();
     }
@@ -95,6 +108,7 @@ public class ControlPane extends JPanel {
         initTestCountSpinner();
         initTestCountTrainingLabel();
         initReportButton();
+        initPlanControls();
 
         GridBagConstraints constraints = new GridBagConstraints();
         constraints.gridx = 0;
@@ -116,6 +130,59 @@ public class ControlPane extends JPanel {
         optionsPanel.add(reportBtn);
     }
 
+    private void initPlanControls() {
+        optionsPanel.add(new JLabel("Plan: "));
+        optionsPanel.add(planLabel);
+        loadPlanBtn.addActionListener(e -> {
+            int state = planChooser.showOpenDialog(parent);
+            if (state != JFileChooser.APPROVE_OPTION) {
+                return;
+            }
+            File selectedFile = planChooser.getSelectedFile();
+            try {
+                setPlan(selectedFile, TestPlan.load(selectedFile));
+            } catch (IOException | IllegalArgumentException ex) {
+                JOptionPane.showMessageDialog(parent, "Fail to load the plan: " + ex.getMessage());
+                return;
+            }
+            if (listener != null) {
+                listener.onPlanChanged(selectedFile);
+            }
+        });
+        clearPlanBtn.addActionListener(e -> {
+            setPlan(null, null);
+            if (listener != null) {
+                listener.onPlanChanged(null);
+            }
+        });
+        optionsPanel.add(loadPlanBtn);
+        optionsPanel.add(clearPlanBtn);
+        setPlan(null, null);
+    }
+
+    /**
+     * Run the given test plan instead of repeating the test file, or go back to repeating it if the plan is null.
+     */
+    public void setPlan(@Nullable File planFile, @Nullable TestPlan plan) {
+        this.planFile = plan != null ? planFile : null;
+        this.plan = plan;
+        planLabel.setText(plan != null ? plan.getName() : "(none)");
+        planLabel.setToolTipText(this.planFile != null ? this.planFile.getAbsolutePath() : null);
+        boolean stopped = Status.STOPPED.equals(status);
+        clearPlanBtn.setEnabled(stopped && plan != null);
+        testCountSpinner.setEnabled(stopped && plan == null);
+    }
+
+    @Nullable
+    public TestPlan getPlan() {
+        return plan;
+    }
+
+    @Nullable
+    public File getPlanFile() {
+        return planFile;
+    }
+
     private void initTestCountSpinner() {
 
         SpinnerModel model =
@@ -170,6 +237,8 @@ public class ControlPane extends JPanel {
         selectFileBtn.setEnabled(false);
         testFilePathField.setEnabled(false);
         testCountSpinner.setEnabled(false);
+        loadPlanBtn.setEnabled(false);
+        clearPlanBtn.setEnabled(false);
     }
 
     public void stop() {
@@ -178,13 +247,25 @@ public class ControlPane extends JPanel {
         status = Status.STOPPED;
         selectFileBtn.setEnabled(true);
         testFilePathField.setEnabled(true);
-        testCountSpinner.setEnabled(true);
+        testCountSpinner.setEnabled(plan == null);
+        loadPlanBtn.setEnabled(true);
+        clearPlanBtn.setEnabled(plan != null);
     }
 
     public int getIterationCount() {
         return (Integer) testCountSpinner.getValue();
     }
 
+    @Nonnull
+    public Status getStatus() {
+        return status;
+    }
+
+    @Nonnull
+    public String getReport() {
+        return report;
+    }
+
     public void setReport(@Nonnull String newReport) {
         this.report = newReport;
     }
@@ -194,6 +275,11 @@ public class ControlPane extends JPanel {
     }
 
     private void pendingToStart() {
+        if (plan != null) {
+            // The plan runner knows whether its phases need the test file.
+            requestStart();
+            return;
+        }
         String path = testFilePathField.getText();
         if (path.isEmpty()) {
             JOptionPane.showMessageDialog(
@@ -202,12 +288,19 @@ public class ControlPane extends JPanel {
             return;
         }
         File testFile = getTestFile();
-        if (!testFile.isFile()) {
+        if (!testFile.isFile() && !testFile.isDirectory()) {
             JOptionPane.showMessageDialog(
                     parent,
-                    "\"" + testFile.getAbsolutePath() + "\" isn't a file");
+                    "\"" + testFile.getAbsolutePath() + "\" isn't a file or a directory");
             return;
         }
+        requestStart();
+    }
+
+    /**
+     * Start with the current settings, as if the run button is clicked, but without validating the settings.
+     */
+    public void requestStart() {
         runBtn.setText(STOPPED_BTN_TEXT);
         runBtn.setEnabled(false);
         selectFileBtn.setEnabled(false);
@@ -217,6 +310,15 @@ public class ControlPane extends JPanel {
         }
     }
 
+    /**
+     * Stop the running check, as if the stop button is clicked.
+     */
+    public void requestStop() {
+        if (Status.RUNNING.equals(status)) {
+            pendingToStop();
+        }
+    }
+
     @Nonnull
     public File getTestFile() {
         return new File(testFilePathField.getText());
@@ -1,6 +1,7 @@
 package com.handoitasdf.drive_checker.ui;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import java.io.File;
 
 /**
@@ -11,4 +12,5 @@ public interface ControlPaneListener {
     void onPendingStop();
     void onTestFileChanged(@Nonnull File file);
     void onRepeatCountChanged(int newValue);
+    void onPlanChanged(@Nullable File planFile);
 }
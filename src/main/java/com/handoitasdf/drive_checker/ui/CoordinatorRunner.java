@@ -0,0 +1,113 @@
+package com.handoitasdf.drive_checker.ui;
+
+import com.handoitasdf.drive_checker.CheckingStatus;
+import com.handoitasdf.drive_checker.remote.Coordinator;
+import com.handoitasdf.drive_checker.remote.CoordinatorListener;
+import com.handoitasdf.drive_checker.remote.DriveProgress;
+import com.handoitasdf.drive_checker.remote.DriveResult;
+import com.handoitasdf.drive_checker.remote.RemoteAgent;
+import com.handoitasdf.drive_checker.remote.RemoteReportGenerator;
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs a coordinator without a window. The aggregated progress of all agents is logged periodically, and the
+ * report of all agents is exported whenever an agent is done.
+ */
+class CoordinatorRunner {
+    private static final Logger LOGGER = LoggerFactory.getLogger(CoordinatorRunner.class);
+    private static final long SUMMARY_INTERVAL_SECONDS = 5;
+    private final InetSocketAddress address;
+    private final int expectedAgentCount;
+    private final RemoteReportGenerator reportGenerator = new RemoteReportGenerator();
+    private final Semaphore agentsDone = new Semaphore(0);
+
+    /**
+     * @param expectedAgentCount Return once this many agents are done; 0 to run until the process is killed.
+     */
+    CoordinatorRunner(@Nonnull InetSocketAddress address, int expectedAgentCount) {
+        this.address = address;
+        this.expectedAgentCount = expectedAgentCount;
+    }
+
+    /**
+     * @return True if all drives of all agents pass.
+     */
+    boolean run() throws IOException, InterruptedException {
+        try (Coordinator coordinator = new Coordinator(address)) {
+            coordinator.setListener(new CoordinatorListener() {
+                @Override
+                public void onAgentConnected(@Nonnull RemoteAgent agent) {
+                }
+
+                @Override
+                public void onAgentDisconnected(@Nonnull RemoteAgent agent) {
+                }
+
+                @Override
+                public void onDriveResult(@Nonnull RemoteAgent agent, @Nonnull DriveResult result) {
+                    LOGGER.info("Agent {} drive {}: {}", agent.getAgentId(),
+                            agent.getDrives().get(result.getDriveIndex()), result.getStatus());
+                }
+
+                @Override
+                public void onAgentDone(@Nonnull RemoteAgent agent) {
+                    new DriveCheckReportExporter(reportGenerator.generateReport(coordinator.getAgents())).run();
+                    agentsDone.release();
+                }
+            });
+            coordinator.start();
+            while (expectedAgentCount <= 0 || !agentsDone.tryAcquire(expectedAgentCount,
+                    SUMMARY_INTERVAL_SECONDS, TimeUnit.SECONDS)) {
+                if (expectedAgentCount <= 0) {
+                    Thread.sleep(TimeUnit.SECONDS.toMillis(SUMMARY_INTERVAL_SECONDS));
+                }
+                logSummary(coordinator.getAgents());
+            }
+            logSummary(coordinator.getAgents());
+            return allPassed(coordinator.getAgents());
+        }
+    }
+
+    private static void logSummary(@Nonnull List<RemoteAgent> agents) {
+        for (RemoteAgent agent : agents) {
+            StringBuilder builder = new StringBuilder();
+            for (int i = 0; i < agent.getDrives().size(); ++i) {
+                DriveProgress progress = agent.getProgress(i);
+                builder.append(' ')
+                        .append(agent.getDrives().get(i))
+                        .append('=')
+                        .append(agent.getStatus(i));
+                if (progress != null && CheckingStatus.RUNNING.equals(agent.getStatus(i))) {
+                    builder.append(String.format("(round %d, %s, %.1f MB/s)",
+                            progress.getIteration(),
+                            FileUtils.byteCountToDisplaySize(progress.getCopiedBytes()),
+                            progress.getMBps()));
+                }
+            }
+            LOGGER.info("Agent {}{}{}:{}", agent.getAgentId(),
+                    agent.isConnected() ? "" : " (disconnected)",
+                    agent.isDone() ? " (done)" : "",
+                    builder);
+        }
+    }
+
+    private static boolean allPassed(@Nonnull List<RemoteAgent> agents) {
+        for (RemoteAgent agent : agents) {
+            for (int i = 0; i < agent.getDrives().size(); ++i) {
+                if (!CheckingStatus.SUCCESS.equals(agent.getStatus(i))) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+}
@@ -16,6 +16,7 @@ import java.nio.charset.StandardCharsets;
 public class DriveCheckReportExporter implements Runnable {
     private static final Logger LOGGER = LoggerFactory.getLogger(DriveCheckReportExporter.class);
     private static final String DEFAULT_REPOTRT_PATH = "report.txt";
+    public static final String DEFAULT_RECORDING_PATH = "report.jfr";
     private final String report;
 
     public DriveCheckReportExporter(@Nonnull String report) {
@@ -1,6 +1,15 @@
 package com.handoitasdf.drive_checker.ui;
 
 import com.handoitasdf.drive_checker.DriveChecker;
+import com.handoitasdf.drive_checker.DriveCheckerMetrics;
+import com.handoitasdf.drive_checker.DriveCheckerSnapshot;
+import com.handoitasdf.drive_checker.DriveThrottle;
+import com.handoitasdf.drive_checker.ErrorMap;
+import com.handoitasdf.drive_checker.LatencyHistogram;
+import com.handoitasdf.drive_checker.SmallFileMetrics;
+import com.handoitasdf.drive_checker.TokenBucket;
+import com.handoitasdf.drive_checker.TreeCopyMetrics;
+import com.handoitasdf.drive_checker.WriteProfile;
 import org.apache.commons.lang3.Validate;
 
 import javax.annotation.Nonnull;
@@ -14,6 +23,7 @@ import java.util.concurrent.TimeUnit;
  * Created by icand on 2017/9/6.
  */
 public class DriveCheckReportGenerator {
+    private static final double BYTES_PER_MB = 1024 * 1024;
 
     @Nonnull
     public String generateReport(@Nonnull DrivesCheckWorker drivesChecker) {
@@ -32,23 +42,39 @@ public class DriveCheckReportGenerator {
                 .append("Elapsed time: ")
                 .append(formatElapsedTime(startTime, doneTime))
                 .append(System.lineSeparator());
+        TokenBucket globalThrottle = drivesChecker.getGlobalThrottle();
+        if (globalThrottle != null) {
+            long totalBytes = 0;
+            for (DriveChecker checker : drivesChecker.getCheckers()) {
+                DriveCheckerMetrics metrics = checker.getMetrics();
+                totalBytes += metrics.getBytesWritten() + metrics.getBytesVerified();
+            }
+            builder.append(String.format("Throughput: %.1f MB/s (global target %.1f MB/s)",
+                    getMBps(totalBytes, startTime, doneTime), globalThrottle.getRate() / BYTES_PER_MB))
+                    .append(System.lineSeparator());
+        }
         for (DriveChecker checker : drivesChecker.getCheckers()) {
             builder.append(generateDriveReport(checker));
         }
         return builder.toString();
     }
 
-    private String generateDriveReport(@Nonnull DriveChecker driveChecker) {
+    @Nonnull
+    String generateDriveReport(@Nonnull DriveChecker driveChecker) {
         StringBuilder builder = new StringBuilder();
-        Instant startTime = driveChecker.getStartTime();
-        Instant doneTime = driveChecker.getDoneTime();
-        Validate.notNull(startTime);
-        Validate.notNull(doneTime);
+        DriveCheckerSnapshot snapshot = driveChecker.getSnapshot();
+        Instant startTime = snapshot.getStartTime();
+        Instant doneTime = snapshot.getDoneTime();
         builder.append(System.lineSeparator())
                 .append("# Drive ")
                 .append(driveChecker.getDrive().getPath())
-                .append(System.lineSeparator())
-                .append("Start time: ")
+                .append(System.lineSeparator());
+        if (startTime == null || doneTime == null) {
+            return builder.append("Result: Not started")
+                    .append(System.lineSeparator())
+                    .toString();
+        }
+        builder.append("Start time: ")
                 .append(formatInstant(startTime))
                 .append(System.lineSeparator())
                 .append("Done time: ")
@@ -58,35 +84,183 @@ public class DriveCheckReportGenerator {
                 .append(formatElapsedTime(startTime, doneTime))
                 .append(System.lineSeparator())
                 .append("Success count: ")
-                .append(driveChecker.getCheckedCount())
+                .append(snapshot.getCheckedCount() - snapshot.getCorruptedCount())
                 .append(System.lineSeparator())
                 .append("Result: ");
-        switch (driveChecker.getStatus()) {
+        switch (snapshot.getStatus()) {
             case SUCCESS:
                 builder.append("Success");
                 break;
             case CANCELED:
                 builder.append("Canceled");
                 break;
+            case STALLED:
+                builder.append("Stalled after ")
+                        .append(TimeUnit.NANOSECONDS.toMillis(snapshot.getStallNanos()))
+                        .append(" ms (Reason: ")
+                        .append(snapshot.getFailedReason())
+                        .append(')');
+                break;
             default:
                 builder.append("Failed (Reason: ")
-                        .append(driveChecker.getFailedReason())
+                        .append(snapshot.getFailedReason())
                         .append(')');
                 break;
         }
         builder.append(System.lineSeparator());
+        builder.append(generateThrottleReport(driveChecker, startTime, doneTime));
+        builder.append(generateSmallFileReport(driveChecker, startTime, doneTime));
+        builder.append(generateTreeCopyReport(driveChecker));
+        builder.append(generateWriteProfileReport(driveChecker));
+        builder.append(generateErrorMapReport(driveChecker.getErrorMap()));
+        return builder.toString();
+    }
+
+    @Nonnull
+    private String generateThrottleReport(@Nonnull DriveChecker driveChecker,
+                                          @Nonnull Instant startTime,
+                                          @Nonnull Instant doneTime) {
+        DriveThrottle throttle = driveChecker.getThrottle();
+        if (throttle == null) {
+            return "";
+        }
+        DriveCheckerMetrics metrics = driveChecker.getMetrics();
+        double actualMBps = getMBps(metrics.getBytesWritten() + metrics.getBytesVerified(), startTime, doneTime);
+        StringBuilder builder = new StringBuilder();
+        builder.append(String.format("Throughput: %.1f MB/s (target %s, held back for %s)",
+                actualMBps,
+                throttle.getTargetMBps() > 0 ? String.format("%.1f MB/s", throttle.getTargetMBps()) : "unlimited",
+                formatElapsedTime(Instant.EPOCH,
+                        Instant.EPOCH.plusMillis(TimeUnit.NANOSECONDS.toMillis(throttle.getThrottledNanos())))))
+                .append(System.lineSeparator());
+        if (throttle.isAdaptive()) {
+            builder.append(String.format("Adaptive throttle: latency target %d ms, %d backoffs",
+                    TimeUnit.NANOSECONDS.toMillis(throttle.getLatencyTargetNanos()),
+                    throttle.getBackoffCount()));
+            if (throttle.getBackoffCount() > 0) {
+                builder.append(String.format(", lowest limit %.1f MB/s", throttle.getLowestLimitMBps()));
+            }
+            builder.append(System.lineSeparator());
+        }
+        return builder.toString();
+    }
+
+    @Nonnull
+    private String generateSmallFileReport(@Nonnull DriveChecker driveChecker,
+                                           @Nonnull Instant startTime,
+                                           @Nonnull Instant doneTime) {
+        SmallFileMetrics smallFileMetrics = driveChecker.getSmallFileMetrics();
+        if (smallFileMetrics.getFilesWritten() == 0) {
+            return "";
+        }
+        DriveCheckerMetrics metrics = driveChecker.getMetrics();
+        return String.format("Small files: %d written, %d verified, %.0f files/s, %.1f MB/s",
+                smallFileMetrics.getFilesWritten(),
+                smallFileMetrics.getFilesVerified(),
+                smallFileMetrics.getFilesPerSecond(),
+                getMBps(metrics.getBytesWritten() + metrics.getBytesVerified(), startTime, doneTime))
+                + System.lineSeparator()
+                + "Metadata latency (p50/p99): create " + formatPercentiles(smallFileMetrics.getCreateLatency())
+                + ", sync " + formatPercentiles(smallFileMetrics.getSyncLatency())
+                + ", delete " + formatPercentiles(smallFileMetrics.getDeleteLatency())
+                + System.lineSeparator();
+    }
+
+    @Nonnull
+    private String generateTreeCopyReport(@Nonnull DriveChecker driveChecker) {
+        TreeCopyMetrics treeCopyMetrics = driveChecker.getTreeCopyMetrics();
+        if (treeCopyMetrics.getFilesCopied() == 0) {
+            return "";
+        }
+        StringBuilder builder = new StringBuilder();
+        builder.append(String.format("Directory tree: %d files copied at %.1f MB/s, %d verified at %.1f MB/s",
+                treeCopyMetrics.getFilesCopied(),
+                treeCopyMetrics.getCopyMBps(),
+                treeCopyMetrics.getFilesVerified(),
+                treeCopyMetrics.getVerifyMBps()))
+                .append(System.lineSeparator());
+        for (int bucket = 0; bucket < treeCopyMetrics.getBucketCount(); ++bucket) {
+            if (treeCopyMetrics.getFilesCopied(bucket) == 0) {
+                continue;
+            }
+            builder.append(String.format("  %s: %d files, %.1f MB, write %.1f MB/s, read %.1f MB/s per worker",
+                    treeCopyMetrics.getBucketLabel(bucket),
+                    treeCopyMetrics.getFilesCopied(bucket),
+                    treeCopyMetrics.getBytesCopied(bucket) / BYTES_PER_MB,
+                    treeCopyMetrics.getWriteMBps(bucket),
+                    treeCopyMetrics.getReadMBps(bucket)))
+                    .append(System.lineSeparator());
+        }
+        return builder.toString();
+    }
+
+    @Nonnull
+    private String generateWriteProfileReport(@Nonnull DriveChecker driveChecker) {
+        WriteProfile first = driveChecker.getFirstWriteProfile();
+        WriteProfile slowest = driveChecker.getSlowestWriteProfile();
+        if (first == null) {
+            return "";
+        }
+        StringBuilder builder = new StringBuilder();
+        builder.append("Write profile: ")
+                .append(first)
+                .append(System.lineSeparator());
+        if (slowest != null && slowest != first) {
+            builder.append("Slowest write profile (iteration ")
+                    .append(slowest.getIteration())
+                    .append("): ")
+                    .append(slowest)
+                    .append(System.lineSeparator());
+        }
+        return builder.toString();
+    }
+
+    @Nonnull
+    private static String formatPercentiles(@Nonnull LatencyHistogram histogram) {
+        return String.format("%.2f/%.2f ms",
+                histogram.getPercentileMicros(50) / 1000.0,
+                histogram.getPercentileMicros(99) / 1000.0);
+    }
+
+    private static double getMBps(long bytes, @Nonnull Instant startTime, @Nonnull Instant doneTime) {
+        long elapsedMillis = doneTime.toEpochMilli() - startTime.toEpochMilli();
+        return elapsedMillis <= 0 ? 0 : bytes / BYTES_PER_MB / (elapsedMillis / 1000.0);
+    }
+
+    @Nonnull
+    private String generateErrorMapReport(@Nonnull ErrorMap errorMap) {
+        if (errorMap.isEmpty()) {
+            return "";
+        }
+        StringBuilder builder = new StringBuilder();
+        builder.append("Corruption: ")
+                .append(errorMap.summarize())
+                .append(System.lineSeparator());
+        for (ErrorMap.Range range : errorMap.getRanges()) {
+            builder.append(String.format("  round %d, offset 0x%x-0x%x (%d bytes), %d bit flips, %s",
+                    range.getIteration(),
+                    range.getOffset(),
+                    range.getOffset() + range.getLength() - 1,
+                    range.getLength(),
+                    range.getBitFlips(),
+                    range.getKind().name().toLowerCase()))
+                    .append(System.lineSeparator());
+        }
+        if (errorMap.isTruncated()) {
+            builder.append("  (more ranges omitted)").append(System.lineSeparator());
+        }
         return builder.toString();
     }
 
     @Nonnull
-    private String formatInstant(@Nonnull Instant instant) {
+    static String formatInstant(@Nonnull Instant instant) {
         return ZonedDateTime.ofInstant(
                 instant,
                 ZoneId.systemDefault())
                 .format(DateTimeFormatter.ISO_OFFSET_DATE_TIME);
     }
 
-    private static String formatElapsedTime(@Nonnull Instant start, @Nonnull Instant end) {
+    static String formatElapsedTime(@Nonnull Instant start, @Nonnull Instant end) {
         long elapsedMillis = end.toEpochMilli() - start.toEpochMilli();
         long substracted = 0;
         long hr = TimeUnit.MILLISECONDS.toHours(elapsedMillis);
@@ -0,0 +1,219 @@
+package com.handoitasdf.drive_checker.ui;
+
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.imageio.ImageIO;
+import javax.swing.Icon;
+import javax.swing.ImageIcon;
+import javax.swing.SwingUtilities;
+import javax.swing.filechooser.FileSystemView;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Resolves the icons of drives on a single background thread.
+ *
+ * Icons are keyed by the drive type, so drives of the same type share one icon and only one of them is
+ * loaded. The scaled icons are cached in memory and as PNG files on disk, so that later starts don't have to
+ * ask the system for the icons and scale them again.
+ */
+public class DriveIconLoader {
+    private static final Logger LOGGER = LoggerFactory.getLogger(DriveIconLoader.class);
+    public static final int ICON_WIDTH = 50;
+    public static final int ICON_HEIGHT = 50;
+    private static final String DEFAULT_CACHE_DIRECTORY = "icon-cache";
+    private static final String UNKNOWN_TYPE = "drive";
+    private static final Icon PLACEHOLDER_ICON = createPlaceholderIcon();
+    private final File cacheDirectory;
+    private final Map<String, Icon> icons = new ConcurrentHashMap<>();
+    private final Map<String, String> driveTypes = new ConcurrentHashMap<>();
+
+    // Callbacks waiting for an icon being loaded, keyed by drive path. Guarded by itself.
+    private final Map<String, List<Consumer<Icon>>> pendingCallbacks = new HashMap<>();
+    private final ExecutorService executorService = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "drive-icon-loader");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+
+    public DriveIconLoader() {
+        this(new File(DEFAULT_CACHE_DIRECTORY));
+    }
+
+    public DriveIconLoader(@Nonnull File cacheDirectory) {
+        this.cacheDirectory = cacheDirectory;
+    }
+
+    /**
+     * @return The icon shown until the icon of a drive is resolved.
+     */
+    @Nonnull
+    public static Icon getPlaceholderIcon() {
+        return PLACEHOLDER_ICON;
+    }
+
+    /**
+     * Resolve the icon of a drive. The callback is invoked on the event dispatch thread, and only if an icon
+     * other than the placeholder is found. Requests of a drive already being loaded are merged.
+     */
+    public void load(@Nonnull File drive, @Nonnull Consumer<Icon> callback) {
+        String driveType = driveTypes.get(drive.getPath());
+        Icon cachedIcon = driveType == null ? null : icons.get(driveType);
+        if (cachedIcon != null) {
+            SwingUtilities.invokeLater(() -> callback.accept(cachedIcon));
+            return;
+        }
+        synchronized (pendingCallbacks) {
+            List<Consumer<Icon>> callbacks = pendingCallbacks.get(drive.getPath());
+            if (callbacks != null) {
+                callbacks.add(callback);
+                return;
+            }
+            callbacks = new ArrayList<>();
+            callbacks.add(callback);
+            pendingCallbacks.put(drive.getPath(), callbacks);
+        }
+        executorService.execute(() -> resolve(drive));
+    }
+
+    private void resolve(@Nonnull File drive) {
+        Icon icon = null;
+        try {
+            icon = resolveIcon(drive);
+        } catch (Exception ex) {
+            LOGGER.warn("Fail to load icon of drive {}", drive.getPath(), ex);
+        }
+        List<Consumer<Icon>> callbacks;
+        synchronized (pendingCallbacks) {
+            callbacks = pendingCallbacks.remove(drive.getPath());
+        }
+        if (icon == null || callbacks == null) {
+            return;
+        }
+        Icon resolvedIcon = icon;
+        SwingUtilities.invokeLater(() -> callbacks.forEach(callback -> callback.accept(resolvedIcon)));
+    }
+
+    @Nullable
+    private Icon resolveIcon(@Nonnull File drive) throws IOException {
+        long startNanos = System.nanoTime();
+        String driveType = getDriveType(drive);
+        driveTypes.put(drive.getPath(), driveType);
+        Icon icon = icons.get(driveType);
+        if (icon != null) {
+            return icon;
+        }
+        File cacheFile = getCacheFile(driveType);
+        if (cacheFile.isFile()) {
+            BufferedImage image = ImageIO.read(cacheFile);
+            if (image != null) {
+                icon = new ImageIcon(image);
+                icons.put(driveType, icon);
+                LOGGER.debug("Icon of drive type {} loaded from cache in {} ms",
+                        driveType, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+                return icon;
+            }
+            LOGGER.warn("Cached icon {} is unreadable, reloading it", cacheFile.getPath());
+        }
+        Icon systemIcon = FileSystemView.getFileSystemView().getSystemIcon(drive);
+        if (systemIcon == null || systemIcon.getIconWidth() <= 0 || systemIcon.getIconHeight() <= 0) {
+            LOGGER.debug("No system icon for drive {}", drive.getPath());
+            return null;
+        }
+        BufferedImage image = scale(systemIcon);
+        icon = new ImageIcon(image);
+        icons.put(driveType, icon);
+        LOGGER.debug("Icon of drive type {} loaded from system in {} ms",
+                driveType, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+        storeCache(image, cacheFile);
+        return icon;
+    }
+
+    @Nonnull
+    private static String getDriveType(@Nonnull File drive) {
+        String description = FileSystemView.getFileSystemView().getSystemTypeDescription(drive);
+        return StringUtils.isBlank(description) ? UNKNOWN_TYPE : description;
+    }
+
+    @Nonnull
+    private File getCacheFile(@Nonnull String driveType) {
+
+        // Type descriptions are localized, so the hash keeps names of non-ASCII descriptions apart.
+        String fileName = driveType.toLowerCase().replaceAll("[^a-z0-9]+", "_")
+                + "-" + Integer.toHexString(driveType.hashCode());
+        return new File(cacheDirectory, String.format("%s-%dx%d.png", fileName, ICON_WIDTH, ICON_HEIGHT));
+    }
+
+    private void storeCache(@Nonnull BufferedImage image, @Nonnull File cacheFile) {
+        try {
+            Files.createDirectories(cacheDirectory.toPath());
+            File tempFile = File.createTempFile(cacheFile.getName() + ".", ".tmp", cacheDirectory);
+            try {
+                ImageIO.write(image, "png", tempFile);
+                Files.move(tempFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(tempFile.toPath());
+            }
+        } catch (IOException ex) {
+            LOGGER.warn("Fail to cache icon to {}", cacheFile.getPath(), ex);
+        }
+    }
+
+    @Nonnull
+    private static BufferedImage scale(@Nonnull Icon icon) {
+        BufferedImage source = new BufferedImage(icon.getIconWidth(), icon.getIconHeight(),
+                BufferedImage.TYPE_INT_ARGB);
+        Graphics2D sourceGraphics = source.createGraphics();
+        try {
+            icon.paintIcon(null, sourceGraphics, 0, 0);
+        } finally {
+            sourceGraphics.dispose();
+        }
+        BufferedImage scaled = new BufferedImage(ICON_WIDTH, ICON_HEIGHT, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D graphics = scaled.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.drawImage(source, 0, 0, ICON_WIDTH, ICON_HEIGHT, null);
+        } finally {
+            graphics.dispose();
+        }
+        return scaled;
+    }
+
+    @Nonnull
+    private static Icon createPlaceholderIcon() {
+        BufferedImage image = new BufferedImage(ICON_WIDTH, ICON_HEIGHT, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D graphics = image.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            graphics.setColor(Color.LIGHT_GRAY);
+            graphics.fillRoundRect(4, 12, ICON_WIDTH - 8, ICON_HEIGHT - 24, 8, 8);
+            graphics.setColor(Color.GRAY);
+            graphics.drawRoundRect(4, 12, ICON_WIDTH - 9, ICON_HEIGHT - 25, 8, 8);
+        } finally {
+            graphics.dispose();
+        }
+        return new ImageIcon(image);
+    }
+}
@@ -27,17 +27,21 @@ public class DrivePane extends JPanel {
     private JLabel statusLabel = new JLabel();
     private JLabel iterationCountLabel = new JLabel();
     private JLabel copiedSizeLabel = new JLabel();
+    private ThroughputSparkline throughputSparkline = new ThroughputSparkline();
     private final File drive;
+    private final DriveIconLoader iconLoader;
     private DrivePaneListener listener;
 
-    public DrivePane(@Nonnull File drive) {
+    public DrivePane(@Nonnull File drive, @Nonnull DriveIconLoader iconLoader) {
         this.drive = drive;
+        this.iconLoader = iconLoader;
         setLayout(new GridBagLayout());
         setupCheckBox();
         setupDriveLabel();
         setupStatusLabel();
         setupCopiedSizeLabel();
         setupIterationCountLabel();
+        setupThroughputSparkline();
         addMouseListener(new MouseAdapter() {
             @Override
             public void mouseClicked(MouseEvent e) {
@@ -71,7 +75,7 @@ public class DrivePane extends JPanel {
         GridBagConstraints constraints = new GridBagConstraints();
         constraints.gridx = 1;
         constraints.gridy = 0;
-        DriveLabel driveLabel = new DriveLabel(drive);
+        DriveLabel driveLabel = new DriveLabel(drive, iconLoader);
         add(driveLabel, constraints);
     }
 
@@ -105,27 +109,48 @@ public class DrivePane extends JPanel {
         add(copiedSizeLabel, constraints);
     }
 
+    private void setupThroughputSparkline() {
+        GridBagConstraints constraints = new GridBagConstraints();
+        constraints.gridx = 0;
+        constraints.gridy = 4;
+        constraints.gridwidth = 2;
+        constraints.anchor = GridBagConstraints.CENTER;
+        add(throughputSparkline, constraints);
+    }
+
     public void setCheckStatus(@Nonnull CheckingStatus status) {
+        statusLabel.setText(getStatusText(status));
+        statusLabel.setForeground(getStatusColor(status));
+    }
+
+    @Nonnull
+    static String getStatusText(@Nonnull CheckingStatus status) {
         switch (status) {
             case SUCCESS:
-                statusLabel.setText("Success");
-                statusLabel.setForeground(new Color(0, 200, 0));
-                break;
+                return "Success";
             case FAILED:
-                statusLabel.setText("Failed");
-                statusLabel.setForeground(Color.RED);
-                break;
+                return "Failed";
+            case STALLED:
+                return "Stalled";
             case RUNNING:
-                statusLabel.setText("Running");
-                statusLabel.setForeground(Color.GRAY);
-                break;
+                return "Running";
             case CANCELED:
-                statusLabel.setText("Canceled");
-                statusLabel.setForeground(Color.GRAY);
-                break;
+                return "Canceled";
             default:
-                statusLabel.setText(EMPTY_TEXT);
-                break;
+                return EMPTY_TEXT;
+        }
+    }
+
+    @Nonnull
+    static Color getStatusColor(@Nonnull CheckingStatus status) {
+        switch (status) {
+            case SUCCESS:
+                return new Color(0, 200, 0);
+            case FAILED:
+            case STALLED:
+                return Color.RED;
+            default:
+                return Color.GRAY;
         }
     }
 
@@ -145,6 +170,14 @@ public class DrivePane extends JPanel {
         iterationCountLabel.setText(EMPTY_TEXT);
     }
 
+    public void addThroughputSample(double mbps) {
+        throughputSparkline.addSample(mbps);
+    }
+
+    public void clearThroughput() {
+        throughputSparkline.clear();
+    }
+
     @Override
     public void setEnabled(boolean enabled) {
         checkBox.setEnabled(enabled);
@@ -1,23 +1,46 @@
 package com.handoitasdf.drive_checker.ui;
 
+import com.handoitasdf.drive_checker.AsyncIoEngine;
+import com.handoitasdf.drive_checker.BroadcastSource;
+import com.handoitasdf.drive_checker.CheckOptions;
 import com.handoitasdf.drive_checker.CheckingStatus;
 import com.handoitasdf.drive_checker.DriveChecker;
+import com.handoitasdf.drive_checker.DriveCheckerMonitor;
+import com.handoitasdf.drive_checker.DriveThrottle;
+import com.handoitasdf.drive_checker.ForegroundLatencyProbe;
+import com.handoitasdf.drive_checker.MBeanRegistry;
+import com.handoitasdf.drive_checker.MessageDigestProvider;
+import com.handoitasdf.drive_checker.StallWatchdog;
+import com.handoitasdf.drive_checker.TokenBucket;
+import com.handoitasdf.drive_checker.jfr.JfrRecorder;
+import com.handoitasdf.drive_checker.jfr.JfrSupport;
+import com.handoitasdf.drive_checker.storage.StorageTargets;
+import org.apache.commons.io.FileUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import javax.management.ObjectName;
 import javax.swing.SwingWorker;
 import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
 import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Created by icand on 2017/9/2.
@@ -25,24 +48,48 @@ import java.util.concurrent.TimeUnit;
 public class DrivesCheckWorker extends SwingWorker<Void, Runnable> {
 
     private final static Logger LOGGER = LoggerFactory.getLogger(DrivesCheckWorker.class);
+    private static final double BYTES_PER_MB = 1024 * 1024;
 
     private final List<File> drives;
     private final List<DriveChecker> driveCheckers = new ArrayList<>();
-    private final List<Future> checkerFutures = new ArrayList<>();
+    private final List<Future<?>> checkerFutures = new ArrayList<>();
+    private final List<Worker> workers = new ArrayList<>();
     private final File testFile;
+    private File patternFile;
     private final int iterationCount;
+    private final CheckOptions options;
+    private BroadcastSource broadcastSource;
+    private AsyncIoEngine asyncIoEngine;
+    private StallWatchdog stallWatchdog;
+    private TokenBucket globalThrottle;
+    private ForegroundLatencyProbe latencyProbe;
+    private ObjectName mbeanName;
+    private JfrRecorder jfrRecorder;
     private DrivesCheckListener listener;
     private Instant startTime;
     private Instant doneTime;
-    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private volatile long testBytes = -1;
+
+    // Runs the checks: a thread per drive on the blocking engine, and a fixed pool on the async engine, which only
+    // runs the steps between the chunk I/O of the drives on it.
+    private final ExecutorService executor;
 
     public DrivesCheckWorker(
             @Nonnull List<File> drives,
             @Nonnull File testFile,
             int iterationCount) {
+        this(drives, testFile, iterationCount, new CheckOptions());
+    }
+
+    public DrivesCheckWorker(
+            @Nonnull List<File> drives,
+            @Nonnull File testFile,
+            int iterationCount,
+            @Nonnull CheckOptions options) {
         this.drives = drives;
         this.testFile = testFile;
         this.iterationCount = iterationCount;
+        this.options = options;
         addPropertyChangeListener(event -> {
             String propName = event.getPropertyName();
             if (!"state".equals(propName)) {
@@ -54,6 +101,7 @@ public class DrivesCheckWorker extends SwingWorker<Void, Runnable> {
             }
         });
         init();
+        executor = createExecutor();
     }
 
     public void setListener(@Nonnull DrivesCheckListener listener) {
@@ -65,6 +113,31 @@ public class DrivesCheckWorker extends SwingWorker<Void, Runnable> {
         return Collections.unmodifiableList(driveCheckers);
     }
 
+    @Nonnull
+    public File getTestFile() {
+        return testFile;
+    }
+
+    public int getIterationCount() {
+        return iterationCount;
+    }
+
+    /**
+     * @return Size of the test file, or of all files of the test directory; -1 until the worker has measured it
+     *         in the background.
+     */
+    public long getTestBytes() {
+        return testBytes;
+    }
+
+    /**
+     * @return The rate limit shared by all drives, or null if there is none.
+     */
+    @Nullable
+    public TokenBucket getGlobalThrottle() {
+        return globalThrottle;
+    }
+
     @Nullable
     public Instant getStartTime() {
         return startTime;
@@ -95,6 +168,12 @@ public class DrivesCheckWorker extends SwingWorker<Void, Runnable> {
 
     private void onWorkerStarted() {
         startTime = Instant.now();
+        mbeanName = MBeanRegistry.register(
+                MBeanRegistry.objectName("type=DrivesCheckWorker"),
+                new DrivesCheckWorkerMonitor(this));
+        if (jfrRecorder != null) {
+            jfrRecorder.start();
+        }
         invokeListenerOnStart();
     }
 
@@ -113,21 +192,46 @@ public class DrivesCheckWorker extends SwingWorker<Void, Runnable> {
                     driveChecker.cancel();
                 }
                 synchronized (checkerFutures) {
-                    for (Future future : checkerFutures) {
+                    for (int i = 0; i < checkerFutures.size(); ++i) {
 
                         // Notice that once we have called "cancel", calling "get" on the future just
                         // directly get CancellationException.
-                        future.cancel(true);
+                        if (checkerFutures.get(i).cancel(true) && !workers.get(i).isStarted()) {
+                            // It will never run, so nothing else finishes it.
+                            workers.get(i).finish();
+                        }
                     }
                 }
+                awaitWorkers();
                 executor.shutdown();
-                executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+                if (stallWatchdog != null) {
+                    stallWatchdog.close();
+                }
+                if (broadcastSource != null) {
+                    broadcastSource.close();
+                }
+                if (asyncIoEngine != null) {
+                    asyncIoEngine.close();
+                }
+                if (latencyProbe != null) {
+                    latencyProbe.close();
+                }
+                if (patternFile != null && !patternFile.delete() && patternFile.exists()) {
+                    LOGGER.warn("Fail to delete data pattern file {}", patternFile.getPath());
+                }
+                for (DriveChecker driveChecker : driveCheckers) {
+                    MBeanRegistry.unregister(MBeanRegistry.driveCheckerName(driveChecker));
+                }
+                if (jfrRecorder != null) {
+                    jfrRecorder.stop();
+                }
                 return null;
             }
 
             @Override
             protected void done() {
                 doneTime = Instant.now();
+                MBeanRegistry.unregister(mbeanName);
                 invokeListenerOnStop();
             }
         }.execute();
@@ -136,17 +240,100 @@ public class DrivesCheckWorker extends SwingWorker<Void, Runnable> {
 
     private void init() {
         driveCheckers.clear();
+        File sourceFile = testFile;
+        if (options.getDataPattern() != null && copiesSourceFile(options.getWorkload())) {
+            // Written in the background before the drives start.
+            patternFile = new File(System.getProperty("java.io.tmpdir"),
+                    "drive-checker-" + options.getDataPattern().name().toLowerCase(Locale.ROOT) + "-"
+                            + UUID.randomUUID() + ".bin");
+            sourceFile = patternFile;
+        }
+        if (CheckOptions.TransferMode.BROADCAST.equals(options.getTransferMode())
+                && CheckOptions.Workload.LARGE_FILE.equals(options.getWorkload())
+                && !sourceFile.isDirectory()) {
+            broadcastSource = new BroadcastSource(
+                    sourceFile, new MessageDigestProvider(options.getHashMode()), options);
+        }
+        if (CheckOptions.Engine.ASYNC.equals(options.getEngine())) {
+            if (options.getInlineVerifyWindowChunks() > 0) {
+                LOGGER.info("Inline verification runs on the blocking engine, ignoring the async engine");
+            } else {
+                asyncIoEngine = new AsyncIoEngine(options);
+            }
+        }
+        if (options.isFlightRecording()) {
+            jfrRecorder = new JfrRecorder(new File(DriveCheckReportExporter.DEFAULT_RECORDING_PATH));
+        }
+        if (options.getStallDeadlineMillis() > 0) {
+            stallWatchdog = new StallWatchdog(options.getStallDeadlineMillis(), this::onDriveStalled);
+        }
+        if (options.getThrottleGlobalMBps() > 0) {
+            globalThrottle = new TokenBucket(options.getThrottleGlobalMBps() * BYTES_PER_MB);
+        }
+        if (options.getThrottleLatencyTargetMillis() > 0 && options.getThrottleProbeDirectory() != null) {
+            try {
+                latencyProbe = new ForegroundLatencyProbe(new File(options.getThrottleProbeDirectory()));
+            } catch (IOException ex) {
+                LOGGER.error("Fail to probe foreground latency in {}, adapting to the latency of the drives",
+                        options.getThrottleProbeDirectory(), ex);
+            }
+        }
+        boolean throttled = options.getThrottleDriveMBps() > 0
+                || globalThrottle != null
+                || options.getThrottleLatencyTargetMillis() > 0;
         for (File drive : drives) {
             DriveChecker driveChecker = new DriveChecker(
                     drive,
-                    testFile);
+                    sourceFile,
+                    options);
+            driveChecker.setStorageTarget(StorageTargets.forDrive(drive));
+            driveChecker.setBroadcastSource(broadcastSource);
+            driveChecker.setAsyncIoEngine(asyncIoEngine);
+            if (throttled) {
+                driveChecker.setThrottle(new DriveThrottle(
+                        drive.getPath(),
+                        Math.max(options.getThrottleDriveMBps(), 0) * BYTES_PER_MB,
+                        globalThrottle,
+                        TimeUnit.MILLISECONDS.toNanos(options.getThrottleLatencyTargetMillis()),
+                        latencyProbe));
+            }
+            JfrSupport.instrument(driveChecker);
+            if (stallWatchdog != null) {
+                stallWatchdog.watch(driveChecker);
+            }
             driveCheckers.add(driveChecker);
         }
     }
 
+    @Nonnull
+    private ExecutorService createExecutor() {
+        // Daemon threads, because the thread of a stalled drive may never return.
+        AtomicInteger threadIndex = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, "drive-checker-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        if (asyncIoEngine != null) {
+            return Executors.newFixedThreadPool(asyncIoEngine.getThreadCount(), threadFactory);
+        }
+        return Executors.newCachedThreadPool(threadFactory);
+    }
+
+    private static boolean copiesSourceFile(@Nonnull CheckOptions.Workload workload) {
+        return CheckOptions.Workload.LARGE_FILE.equals(workload) || CheckOptions.Workload.FILL.equals(workload);
+    }
+
     @Override
     protected Void doInBackground() throws Exception {
         try {
+            measureTestFile();
+            if (patternFile != null) {
+                LOGGER.info("Writing {} MB of {} data to {}", options.getDataPatternSizeMB(),
+                        options.getDataPattern(), patternFile.getPath());
+                options.getDataPattern().writeFile(patternFile,
+                        Math.max(1, options.getDataPatternSizeMB()) * (long) BYTES_PER_MB, 0);
+            }
             for (int i = 0; i < drives.size(); ++i) {
                 synchronized (checkerFutures) {
                     if (isCancelled()) {
@@ -154,14 +341,61 @@ public class DrivesCheckWorker extends SwingWorker<Void, Runnable> {
                     }
                     File drive = drives.get(i);
                     DriveChecker driveChecker = driveCheckers.get(i);
-                    Future checkerFuture = executor.submit(new Worker(driveChecker, drive));
+                    Worker worker = new Worker(driveChecker, drive);
+                    Future<?> checkerFuture = executor.submit(worker);
                     checkerFutures.add(checkerFuture);
+                    workers.add(worker);
                 }
             }
             return null;
         } finally {
+            // The async checks run their steps on the executor until they are finished.
+            awaitWorkers();
             executor.shutdown();
-            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Measure the test file here rather than on the event dispatch thread, because a directory may hold many files.
+     * The remaining time is only estimated if it's known.
+     */
+    private void measureTestFile() {
+        try {
+            testBytes = testFile.isDirectory() ? FileUtils.sizeOfDirectory(testFile) : testFile.length();
+        } catch (UncheckedIOException | IllegalArgumentException ex) {
+            LOGGER.warn("Fail to measure test file {}", testFile.getPath(), ex);
+        }
+    }
+
+    /**
+     * Wait for the workers to finish, except the ones whose drive has stalled, because a stalled drive may block
+     * its thread forever. A worker is finished when its check returns, when its drive stalls, or when it's
+     * canceled before it starts.
+     */
+    private void awaitWorkers() throws InterruptedException {
+        List<CompletableFuture<Void>> finished = new ArrayList<>();
+        synchronized (checkerFutures) {
+            for (Worker worker : workers) {
+                finished.add(worker.finished);
+            }
+        }
+        try {
+            CompletableFuture.allOf(finished.toArray(new CompletableFuture<?>[0])).get();
+        } catch (ExecutionException ex) {
+            // The workers are only ever finished normally.
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private void onDriveStalled(@Nonnull DriveChecker checker) {
+        publish(() -> invokeListenerOnDriveStatusChanged(checker.getDrive(), CheckingStatus.STALLED));
+        synchronized (checkerFutures) {
+            for (Worker worker : workers) {
+                if (worker.driveChecker == checker) {
+                    LOGGER.warn("Drive {} has stalled, don't wait for it", worker.drive.getPath());
+                    worker.finish();
+                }
+            }
         }
     }
 
@@ -176,26 +410,67 @@ public class DrivesCheckWorker extends SwingWorker<Void, Runnable> {
 
         private final DriveChecker driveChecker;
         private final File drive;
+        private final CompletableFuture<Void> finished = new CompletableFuture<>();
+        private volatile boolean started = false;
 
         public Worker(@Nonnull DriveChecker driveChecker, @Nonnull File drive) {
             this.driveChecker = driveChecker;
             this.drive = drive;
         }
 
+        public boolean isStarted() {
+            return started;
+        }
+
+        public void finish() {
+            finished.complete(null);
+        }
+
         @Override
         public void run() {
+            started = true;
+            ObjectName checkerMBeanName = MBeanRegistry.register(
+                    MBeanRegistry.driveCheckerName(driveChecker),
+                    new DriveCheckerMonitor(driveChecker));
             publish(() -> invokeListenerOnDriveStatusChanged(drive, CheckingStatus.RUNNING));
             LOGGER.info("Running check for drive {} for {} times", drive.getPath(), iterationCount);
+            if (asyncIoEngine == null) {
+                Throwable failure = null;
+                try {
+                    driveChecker.check(iterationCount);
+                } catch (Exception | Error ex) {
+                    failure = ex;
+                }
+                onChecked(failure, checkerMBeanName);
+                return;
+            }
+            try {
+                driveChecker.checkAsync(iterationCount, executor)
+                        .whenComplete((result, failure) -> onChecked(failure, checkerMBeanName));
+            } catch (RuntimeException ex) {
+                onChecked(ex, checkerMBeanName);
+            }
+        }
+
+        private void onChecked(@Nullable Throwable failure, @Nullable ObjectName checkerMBeanName) {
             try {
-                driveChecker.check(iterationCount);
-                publish(() -> invokeListenerOnDriveStatusChanged(drive, CheckingStatus.SUCCESS));
-                LOGGER.info("Drive {} checking passed!", drive.getPath());
-            } catch (InterruptedException | CancellationException ex) {
-                publish(() -> invokeListenerOnDriveStatusChanged(drive, CheckingStatus.CANCELED));
-                LOGGER.info("Checking of drive {} is canceled", drive.getPath(), ex);
-            } catch (Exception ex) {
-                publish(() -> invokeListenerOnDriveStatusChanged(drive, CheckingStatus.FAILED));
-                LOGGER.error("Fail to check drive {}", drive.getPath(), ex);
+                if (failure == null) {
+                    publish(() -> invokeListenerOnDriveStatusChanged(drive, CheckingStatus.SUCCESS));
+                    LOGGER.info("Drive {} checking passed!", drive.getPath());
+                } else if (failure instanceof InterruptedException || failure instanceof CancellationException) {
+                    if (CheckingStatus.STALLED.equals(driveChecker.getStatus())) {
+                        LOGGER.info("Stalled operation of drive {} has returned", drive.getPath(), failure);
+                    } else {
+                        publish(() -> invokeListenerOnDriveStatusChanged(drive, CheckingStatus.CANCELED));
+                        LOGGER.info("Checking of drive {} is canceled", drive.getPath(), failure);
+                    }
+                } else {
+                    publish(() -> invokeListenerOnDriveStatusChanged(drive, CheckingStatus.FAILED));
+                    LOGGER.error("Fail to check drive {}", drive.getPath(), failure);
+                }
+            } finally {
+                MBeanRegistry.unregister(checkerMBeanName);
+                finish();
             }
         }
     }
@@ -0,0 +1,18 @@
+package com.handoitasdf.drive_checker.ui;
+
+/**
+ * Live progress of a whole run, exposed through JMX.
+ */
+public interface DrivesCheckWorkerMXBean {
+    String getTestFile();
+    int getIterationCount();
+    int getDriveCount();
+    int getRunningDriveCount();
+    int getSucceededDriveCount();
+    int getFailedDriveCount();
+    long getBytesWritten();
+    long getBytesVerified();
+    double getCurrentMBps();
+    double getAverageMBps();
+    long getElapsedSeconds();
+}
@@ -0,0 +1,90 @@
+package com.handoitasdf.drive_checker.ui;
+
+import com.handoitasdf.drive_checker.CheckingStatus;
+import com.handoitasdf.drive_checker.DriveChecker;
+
+import javax.annotation.Nonnull;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.function.Predicate;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Exposes the progress of a {@link DrivesCheckWorker} as a {@link DrivesCheckWorkerMXBean}.
+ */
+public class DrivesCheckWorkerMonitor implements DrivesCheckWorkerMXBean {
+    private final DrivesCheckWorker worker;
+
+    public DrivesCheckWorkerMonitor(@Nonnull DrivesCheckWorker worker) {
+        this.worker = worker;
+    }
+
+    @Override
+    public String getTestFile() {
+        return worker.getTestFile().getPath();
+    }
+
+    @Override
+    public int getIterationCount() {
+        return worker.getIterationCount();
+    }
+
+    @Override
+    public int getDriveCount() {
+        return worker.getCheckers().size();
+    }
+
+    @Override
+    public int getRunningDriveCount() {
+        return countDrives(checker -> CheckingStatus.RUNNING.equals(checker.getStatus()));
+    }
+
+    @Override
+    public int getSucceededDriveCount() {
+        return countDrives(checker -> CheckingStatus.SUCCESS.equals(checker.getStatus()));
+    }
+
+    @Override
+    public int getFailedDriveCount() {
+        return countDrives(checker -> CheckingStatus.FAILED.equals(checker.getStatus())
+                || CheckingStatus.STALLED.equals(checker.getStatus()));
+    }
+
+    @Override
+    public long getBytesWritten() {
+        return (long) sum(checker -> checker.getMetrics().getBytesWritten());
+    }
+
+    @Override
+    public long getBytesVerified() {
+        return (long) sum(checker -> checker.getMetrics().getBytesVerified());
+    }
+
+    @Override
+    public double getCurrentMBps() {
+        return sum(checker -> checker.getMetrics().getCurrentMBps());
+    }
+
+    @Override
+    public double getAverageMBps() {
+        return sum(checker -> checker.getMetrics().getAverageMBps());
+    }
+
+    @Override
+    public long getElapsedSeconds() {
+        Instant startTime = worker.getStartTime();
+        if (startTime == null) {
+            return 0;
+        }
+        Instant doneTime = worker.getDoneTime();
+        return Duration.between(startTime, doneTime != null ? doneTime : Instant.now()).getSeconds();
+    }
+
+    private int countDrives(@Nonnull Predicate<DriveChecker> predicate) {
+        return (int) worker.getCheckers().stream().filter(predicate).count();
+    }
+
+    private double sum(@Nonnull ToDoubleFunction<DriveChecker> value) {
+        return worker.getCheckers().stream().mapToDouble(value).sum();
+    }
+}
@@ -1,13 +1,17 @@
 package com.handoitasdf.drive_checker.ui;
 
+import com.handoitasdf.drive_checker.CheckingStatus;
+import com.handoitasdf.drive_checker.DriveChecker;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import javax.swing.JButton;
+import javax.swing.JComponent;
 import javax.swing.JPanel;
 import javax.swing.SwingWorker;
+import javax.swing.Timer;
 import javax.swing.filechooser.FileSystemView;
 import java.awt.FlowLayout;
 import java.awt.GridBagConstraints;
@@ -18,61 +22,76 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 /**
  * Created by icand on 2017/9/1.
  */
-public class DrivesPane extends JPanel {
+public class DrivesPane extends JPanel implements DrivesView {
 
+    private static final long serialVersionUID = 1L;
     private static final Logger LOGGER = LoggerFactory.getLogger(DrivesPane.class);
+
+    // Matches the rate window of the drive metrics; it also caps the frame rate of the sparklines.
+    private static final int THROUGHPUT_SAMPLE_INTERVAL_MILLIS = 1000;
     private final List<DrivePane> drivePanes = new ArrayList<>();
     private final JPanel drivesPanel = new JPanel();
     private final JButton refreshBtn = new JButton("Refresh");
+    private final DriveIconLoader iconLoader;
+    private final Timer throughputTimer = new Timer(THROUGHPUT_SAMPLE_INTERVAL_MILLIS, e -> sampleThroughput());
+    private List<DriveChecker> checkers = Collections.emptyList();
     private DrivesPaneListener listener;
 
-    public DrivesPane() {
+    public DrivesPane(@Nonnull DriveIconLoader iconLoader) {
+        this.iconLoader = iconLoader;
         initLayout();
     }
 
+    @Override
+    @Nonnull
+    public JComponent getComponent() {
+        return this;
+    }
+
+    @Override
     public void setListener(@Nullable DrivesPaneListener listener) {
         this.listener = listener;
     }
 
+    @Override
     public void refresh() {
 
         refreshBtn.setEnabled(false);
-        new SwingWorker<Void, Void>() {
+        new SwingWorker<List<File>, Void>() {
             @Override
-            protected Void doInBackground() throws Exception {
+            protected List<File> doInBackground() throws Exception {
                 LOGGER.debug("Refreshing...");
-                File[] drives = File.listRoots();
+                return listDrives();
+            }
 
-                FileSystemView fileSystemView = FileSystemView.getFileSystemView();
+            @Override
+            protected void done() {
+                LOGGER.debug("Refresh finished");
+                refreshBtn.setEnabled(true);
+                List<File> drives;
+                try {
+                    drives = get();
+                } catch (Exception ex) {
+                    LOGGER.error("Fail to list drives", ex);
+                    drives = Collections.emptyList();
+                }
 
+                // The panes are built here on the event dispatch thread; their icons are resolved later.
                 synchronized (drivePanes) {
                     List<DrivePane> oldDrivePanes = new ArrayList<>(drivePanes);
                     clearDrivePaneListeners();
                     drivePanes.clear();
                     for (File drive : drives) {
-                        if (!fileSystemView.isDrive(drive)) {
-                            LOGGER.debug("Root {} isn't drive, skip it", drive);
-                        }
-                        if (!drive.canWrite()) {
-                            LOGGER.debug("Drive {} isn't writable, skip it", drive);
-                            continue;
-                        }
                         DrivePane drivePane = createDrivePaneIfNotExists(drive, oldDrivePanes);
                         drivePanes.add(drivePane);
                         drivePane.setListener(new ReportDrivePaneListener(drivePane));
                     }
                 }
-                return null;
-            }
-
-            @Override
-            protected void done() {
-                LOGGER.debug("Refresh finished");
-                refreshBtn.setEnabled(true);
                 drivesPanel.removeAll();
                 for (DrivePane drivePane : drivePanes) {
                     drivesPanel.add(drivePane);
@@ -87,6 +106,29 @@ public class DrivesPane extends JPanel {
 
     }
 
+    /**
+     * List the writable drives. It may be slow, so don't call it on the event dispatch thread.
+     */
+    @Nonnull
+    static List<File> listDrives() {
+        File[] roots = File.listRoots();
+
+        FileSystemView fileSystemView = FileSystemView.getFileSystemView();
+
+        List<File> drives = new ArrayList<>();
+        for (File drive : roots) {
+            if (!fileSystemView.isDrive(drive)) {
+                LOGGER.debug("Root {} isn't drive, skip it", drive);
+            }
+            if (!drive.canWrite()) {
+                LOGGER.debug("Drive {} isn't writable, skip it", drive);
+                continue;
+            }
+            drives.add(drive);
+        }
+        return drives;
+    }
+
     private void clearDrivePaneListeners() {
         for (DrivePane drivePane : drivePanes) {
             drivePane.setListener(null);
@@ -118,6 +160,81 @@ public class DrivesPane extends JPanel {
         return Optional.empty();
     }
 
+    @Override
+    @Nonnull
+    public List<File> getDrives() {
+        return drivePanes.stream()
+                .map(DrivePane::getDrive)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    @Nonnull
+    public List<File> getSelectedDrives() {
+        return drivePanes.stream()
+                .filter(DrivePane::isSelected)
+                .map(DrivePane::getDrive)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public void setDriveSelected(@Nonnull File drive, boolean selected) {
+        getDrivePane(drive).ifPresent(drivePane -> drivePane.setSelected(selected));
+    }
+
+    @Override
+    public void resetCheckStatus() {
+        for (DrivePane drivePane : drivePanes) {
+            drivePane.setCheckStatus(CheckingStatus.PENDING);
+            drivePane.clearCopiedSize();
+            drivePane.clearIterationCount();
+            drivePane.clearThroughput();
+        }
+    }
+
+    @Override
+    public void setCheckStatus(@Nonnull File drive, @Nonnull CheckingStatus status) {
+        getDrivePaneByDrive(drive).ifPresent(drivePane -> drivePane.setCheckStatus(status));
+    }
+
+    @Override
+    public void setProgress(@Nonnull File drive, int iteration, long copiedBytes) {
+        getDrivePaneByDrive(drive).ifPresent(drivePane -> {
+            drivePane.setCopiedSize(copiedBytes);
+            drivePane.setIterationCount(iteration);
+        });
+    }
+
+    @Override
+    public void setWorker(@Nullable DrivesCheckWorker worker) {
+        checkers = worker == null ? Collections.emptyList() : worker.getCheckers();
+        if (checkers.isEmpty()) {
+            throughputTimer.stop();
+        } else {
+            throughputTimer.start();
+        }
+    }
+
+    private void sampleThroughput() {
+        boolean active = false;
+        for (DriveChecker checker : checkers) {
+            CheckingStatus status = checker.getStatus();
+            if (CheckingStatus.PENDING.equals(status)) {
+                active = true;
+            } else if (CheckingStatus.RUNNING.equals(status) || CheckingStatus.STALLED.equals(status)) {
+
+                // The rate of a drive falls to 0 once no chunk has finished for a window, so a stalled drive is
+                // drawn at 0 instead of at its last rate; it doesn't keep the timer running though.
+                active |= CheckingStatus.RUNNING.equals(status);
+                double mbps = checker.getMetrics().getCurrentMBps();
+                getDrivePaneByDrive(checker.getDrive()).ifPresent(drivePane -> drivePane.addThroughputSample(mbps));
+            }
+        }
+        if (!active) {
+            throughputTimer.stop();
+        }
+    }
+
     private void initLayout() {
         setLayout(new GridBagLayout());
         initControlPane();
@@ -161,7 +278,7 @@ public class DrivesPane extends JPanel {
                 return oldDrivePane;
             }
         }
-        return new DrivePane(drive);
+        return new DrivePane(drive, iconLoader);
     }
 
     @Override
@@ -0,0 +1,268 @@
+package com.handoitasdf.drive_checker.ui;
+
+import com.handoitasdf.drive_checker.CheckingStatus;
+import com.handoitasdf.drive_checker.DriveChecker;
+import com.handoitasdf.drive_checker.DriveCheckerMetrics;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.swing.table.AbstractTableModel;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Rows of the drives table.
+ *
+ * Progress may be reported from any thread; it only marks the model dirty, and the changes are published to the
+ * table in one batch on each {@link #tick()} on the event dispatch thread.
+ */
+class DrivesTableModel extends AbstractTableModel {
+    private static final long serialVersionUID = 1L;
+    static final int COLUMN_SELECTED = 0;
+    static final int COLUMN_DRIVE = 1;
+    static final int COLUMN_STATUS = 2;
+    static final int COLUMN_ITERATION = 3;
+    static final int COLUMN_COPIED_BYTES = 4;
+    static final int COLUMN_MBPS = 5;
+    static final int COLUMN_ETA = 6;
+    private static final String[] COLUMN_NAMES = {"", "Drive", "Status", "Round", "Copied", "MB/s", "ETA"};
+    private static final Class<?>[] COLUMN_CLASSES = {
+            Boolean.class, String.class, CheckingStatus.class, Integer.class, Long.class, Double.class, Long.class};
+    private static final double BYTES_PER_MB = 1024 * 1024;
+
+    private volatile List<Row> rows = Collections.emptyList();
+    private final Map<File, Row> rowsByDrive = new ConcurrentHashMap<>();
+    private final AtomicBoolean dirty = new AtomicBoolean();
+    private DrivesPaneListener listener;
+    private DrivesCheckWorker worker;
+    private boolean enabled = true;
+
+    public void setListener(@Nullable DrivesPaneListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Replace the drives, keeping the rows of the drives which are still there.
+     */
+    public void setDrives(@Nonnull List<File> drives) {
+        List<Row> newRows = new ArrayList<>(drives.size());
+        for (File drive : drives) {
+            Row row = rowsByDrive.get(drive);
+            newRows.add(row != null ? row : new Row(drive));
+        }
+        rowsByDrive.clear();
+        for (Row row : newRows) {
+            rowsByDrive.put(row.drive, row);
+        }
+        rows = Collections.unmodifiableList(newRows);
+        fireTableDataChanged();
+    }
+
+    @Nonnull
+    public List<File> getDrives() {
+        List<File> drives = new ArrayList<>();
+        for (Row row : rows) {
+            drives.add(row.drive);
+        }
+        return drives;
+    }
+
+    @Nonnull
+    public List<File> getSelectedDrives() {
+        List<File> drives = new ArrayList<>();
+        for (Row row : rows) {
+            if (row.selected) {
+                drives.add(row.drive);
+            }
+        }
+        return drives;
+    }
+
+    public void setSelected(@Nonnull File drive, boolean selected) {
+        Row row = rowsByDrive.get(drive);
+        if (row != null && row.selected != selected) {
+            row.selected = selected;
+            dirty.set(true);
+        }
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public void resetCheckStatus() {
+        for (Row row : rows) {
+            row.status = CheckingStatus.PENDING;
+            row.iteration = 0;
+            row.copiedBytes = -1;
+            row.mbps = -1;
+            row.etaSeconds = -1;
+        }
+        dirty.set(true);
+    }
+
+    public void setCheckStatus(@Nonnull File drive, @Nonnull CheckingStatus status) {
+        Row row = rowsByDrive.get(drive);
+        if (row != null) {
+            row.status = status;
+            dirty.set(true);
+        }
+    }
+
+    public void setProgress(@Nonnull File drive, int iteration, long copiedBytes) {
+        Row row = rowsByDrive.get(drive);
+        if (row != null) {
+            row.iteration = iteration;
+            row.copiedBytes = copiedBytes;
+            dirty.set(true);
+        }
+    }
+
+    /**
+     * Bind the rows to the checkers of a run, so that the throughput and the remaining time can be shown.
+     */
+    public void setWorker(@Nullable DrivesCheckWorker worker) {
+        this.worker = worker;
+        for (Row row : rows) {
+            row.checker = null;
+        }
+        if (worker == null) {
+            return;
+        }
+        for (DriveChecker checker : worker.getCheckers()) {
+            Row row = rowsByDrive.get(checker.getDrive());
+            if (row != null) {
+                row.checker = checker;
+            }
+        }
+        dirty.set(true);
+    }
+
+    /**
+     * @return Bytes every drive copies and verifies in the run, or 0 if it's unknown. Every round writes the test
+     *         file, or all files of the directory, once and reads it back once.
+     */
+    private long getRunBytesPerDrive() {
+        DrivesCheckWorker currentWorker = worker;
+        if (currentWorker == null || currentWorker.getIterationCount() <= 0 || currentWorker.getTestBytes() < 0) {
+            return 0;
+        }
+        return 2L * currentWorker.getIterationCount() * currentWorker.getTestBytes();
+    }
+
+    /**
+     * Sample the throughput of the running drives, and publish all changes since the last tick at once. A stalled
+     * drive is sampled too, so that its rate falls to 0 instead of staying at its last value.
+     */
+    public void tick() {
+        List<Row> currentRows = rows;
+        long runBytesPerDrive = getRunBytesPerDrive();
+        boolean running = false;
+        for (Row row : currentRows) {
+            DriveChecker checker = row.checker;
+            if (checker != null && CheckingStatus.STALLED.equals(row.status)) {
+                double mbps = checker.getMetrics().getCurrentMBps();
+                if (mbps != row.mbps) {
+                    row.mbps = mbps;
+                    dirty.set(true);
+                }
+            }
+            if (checker == null || !CheckingStatus.RUNNING.equals(row.status)) {
+                row.etaSeconds = -1;
+                continue;
+            }
+            running = true;
+            DriveCheckerMetrics metrics = checker.getMetrics();
+            row.mbps = metrics.getCurrentMBps();
+            double averageMBps = metrics.getAverageMBps();
+            long remainingBytes = runBytesPerDrive - metrics.getBytesWritten() - metrics.getBytesVerified();
+            row.etaSeconds = runBytesPerDrive > 0 && averageMBps > 0
+                    ? (long) (Math.max(remainingBytes, 0) / BYTES_PER_MB / averageMBps)
+                    : -1;
+        }
+        if ((dirty.getAndSet(false) || running) && !currentRows.isEmpty()) {
+            fireTableRowsUpdated(0, currentRows.size() - 1);
+        }
+    }
+
+    @Override
+    public int getRowCount() {
+        return rows.size();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMN_NAMES.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMN_NAMES[column];
+    }
+
+    @Override
+    public Class<?> getColumnClass(int columnIndex) {
+        return COLUMN_CLASSES[columnIndex];
+    }
+
+    @Override
+    public boolean isCellEditable(int rowIndex, int columnIndex) {
+        return enabled && columnIndex == COLUMN_SELECTED;
+    }
+
+    @Override
+    public Object getValueAt(int rowIndex, int columnIndex) {
+        Row row = rows.get(rowIndex);
+        switch (columnIndex) {
+            case COLUMN_SELECTED:
+                return row.selected;
+            case COLUMN_DRIVE:
+                return row.drive.getPath();
+            case COLUMN_STATUS:
+                return row.status;
+            case COLUMN_ITERATION:
+                return row.iteration;
+            case COLUMN_COPIED_BYTES:
+                return row.copiedBytes;
+            case COLUMN_MBPS:
+                return row.mbps;
+            case COLUMN_ETA:
+                return row.etaSeconds;
+            default:
+                throw new IndexOutOfBoundsException("Column " + columnIndex);
+        }
+    }
+
+    @Override
+    public void setValueAt(Object value, int rowIndex, int columnIndex) {
+        if (columnIndex != COLUMN_SELECTED) {
+            return;
+        }
+        Row row = rows.get(rowIndex);
+        row.selected = Boolean.TRUE.equals(value);
+        fireTableCellUpdated(rowIndex, columnIndex);
+        if (listener != null) {
+            listener.onDriveSelectionChanged(row.drive, row.selected);
+        }
+    }
+
+    private static final class Row {
+        private final File drive;
+        private volatile boolean selected = false;
+        private volatile CheckingStatus status = CheckingStatus.PENDING;
+        private volatile int iteration = 0;
+        private volatile long copiedBytes = -1;
+        private volatile DriveChecker checker;
+        private volatile double mbps = -1;
+        private volatile long etaSeconds = -1;
+
+        private Row(@Nonnull File drive) {
+            this.drive = drive;
+        }
+    }
+}
@@ -0,0 +1,272 @@
+package com.handoitasdf.drive_checker.ui;
+
+import com.handoitasdf.drive_checker.CheckingStatus;
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.swing.DefaultListCellRenderer;
+import javax.swing.JButton;
+import javax.swing.JComboBox;
+import javax.swing.JComponent;
+import javax.swing.JLabel;
+import javax.swing.JList;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JTable;
+import javax.swing.RowFilter;
+import javax.swing.SwingConstants;
+import javax.swing.SwingWorker;
+import javax.swing.Timer;
+import javax.swing.table.DefaultTableCellRenderer;
+import javax.swing.table.TableRowSorter;
+import java.awt.BorderLayout;
+import java.awt.Component;
+import java.awt.FlowLayout;
+import java.io.File;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Lists the drives in a table, for stations with too many drives to show as tiles.
+ *
+ * The table only renders the visible rows, and progress is published to it in batches by a timer, so the cost
+ * of an update doesn't grow with the number of drives reporting progress.
+ */
+public class DrivesTablePane extends JPanel implements DrivesView {
+    private static final long serialVersionUID = 1L;
+    private static final Logger LOGGER = LoggerFactory.getLogger(DrivesTablePane.class);
+    private static final int UPDATE_INTERVAL_MILLIS = 250;
+    private static final String ALL_STATUSES = "All";
+    private final DrivesTableModel model = new DrivesTableModel();
+    private final JTable table = new JTable(model);
+    private final TableRowSorter<DrivesTableModel> sorter = new TableRowSorter<>(model);
+    private final JComboBox<Object> statusFilterBox = new JComboBox<>();
+    private final JButton refreshBtn = new JButton("Refresh");
+    private final Timer updateTimer = new Timer(UPDATE_INTERVAL_MILLIS, e -> model.tick());
+    private DrivesPaneListener listener;
+
+    public DrivesTablePane() {
+        initLayout();
+        updateTimer.start();
+    }
+
+    @Override
+    @Nonnull
+    public JComponent getComponent() {
+        return this;
+    }
+
+    @Override
+    public void setListener(@Nullable DrivesPaneListener listener) {
+        this.listener = listener;
+        model.setListener(listener);
+    }
+
+    @Override
+    public void refresh() {
+        refreshBtn.setEnabled(false);
+        new SwingWorker<List<File>, Void>() {
+            @Override
+            protected List<File> doInBackground() throws Exception {
+                LOGGER.debug("Refreshing...");
+                return DrivesPane.listDrives();
+            }
+
+            @Override
+            protected void done() {
+                LOGGER.debug("Refresh finished");
+                refreshBtn.setEnabled(true);
+                try {
+                    model.setDrives(get());
+                } catch (Exception ex) {
+                    LOGGER.error("Fail to list drives", ex);
+                    model.setDrives(Collections.emptyList());
+                }
+                if (listener != null) {
+                    listener.onRefreshDone();
+                }
+            }
+        }.execute();
+    }
+
+    @Override
+    public void setEnabled(boolean enabled) {
+        model.setEnabled(enabled);
+        refreshBtn.setEnabled(enabled);
+    }
+
+    @Override
+    @Nonnull
+    public List<File> getDrives() {
+        return model.getDrives();
+    }
+
+    @Override
+    @Nonnull
+    public List<File> getSelectedDrives() {
+        return model.getSelectedDrives();
+    }
+
+    @Override
+    public void setDriveSelected(@Nonnull File drive, boolean selected) {
+        model.setSelected(drive, selected);
+    }
+
+    @Override
+    public void resetCheckStatus() {
+        model.resetCheckStatus();
+    }
+
+    @Override
+    public void setCheckStatus(@Nonnull File drive, @Nonnull CheckingStatus status) {
+        model.setCheckStatus(drive, status);
+    }
+
+    @Override
+    public void setProgress(@Nonnull File drive, int iteration, long copiedBytes) {
+        model.setProgress(drive, iteration, copiedBytes);
+    }
+
+    @Override
+    public void setWorker(@Nullable DrivesCheckWorker worker) {
+        model.setWorker(worker);
+    }
+
+    private void initLayout() {
+        setLayout(new BorderLayout());
+
+        JPanel toolBar = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        statusFilterBox.addItem(ALL_STATUSES);
+        for (CheckingStatus status : CheckingStatus.values()) {
+            statusFilterBox.addItem(status);
+        }
+        statusFilterBox.setRenderer(new StatusListRenderer());
+        statusFilterBox.addActionListener(e -> applyStatusFilter());
+        toolBar.add(new JLabel("Status:"));
+        toolBar.add(statusFilterBox);
+        toolBar.add(refreshBtn);
+        refreshBtn.addActionListener(e -> refresh());
+        add(toolBar, BorderLayout.PAGE_START);
+
+        // Most severe statuses first when sorting by status.
+        sorter.setComparator(DrivesTableModel.COLUMN_STATUS, Comparator.comparingInt(
+                status -> getSeverity((CheckingStatus) status)));
+        sorter.setSortsOnUpdates(true);
+        table.setRowSorter(sorter);
+        table.setFillsViewportHeight(true);
+        table.getColumnModel().getColumn(DrivesTableModel.COLUMN_SELECTED).setMaxWidth(30);
+        table.setDefaultRenderer(CheckingStatus.class, new StatusRenderer());
+        table.getColumnModel().getColumn(DrivesTableModel.COLUMN_ITERATION)
+                .setCellRenderer(new FormattingRenderer(value -> {
+                    int iteration = (Integer) value;
+                    return iteration > 0 ? String.valueOf(iteration) : "";
+                }));
+        table.getColumnModel().getColumn(DrivesTableModel.COLUMN_COPIED_BYTES)
+                .setCellRenderer(new FormattingRenderer(value -> {
+                    long bytes = (Long) value;
+                    return bytes >= 0 ? FileUtils.byteCountToDisplaySize(bytes) : "";
+                }));
+        table.getColumnModel().getColumn(DrivesTableModel.COLUMN_MBPS)
+                .setCellRenderer(new FormattingRenderer(value -> {
+                    double mbps = (Double) value;
+                    return mbps >= 0 ? String.format("%.1f", mbps) : "";
+                }));
+        table.getColumnModel().getColumn(DrivesTableModel.COLUMN_ETA)
+                .setCellRenderer(new FormattingRenderer(value -> formatDuration((Long) value)));
+        add(new JScrollPane(table), BorderLayout.CENTER);
+    }
+
+    private void applyStatusFilter() {
+        Object selected = statusFilterBox.getSelectedItem();
+        if (!(selected instanceof CheckingStatus)) {
+            sorter.setRowFilter(null);
+            return;
+        }
+        sorter.setRowFilter(new RowFilter<DrivesTableModel, Integer>() {
+            @Override
+            public boolean include(Entry<? extends DrivesTableModel, ? extends Integer> entry) {
+                return selected.equals(entry.getValue(DrivesTableModel.COLUMN_STATUS));
+            }
+        });
+    }
+
+    private static int getSeverity(@Nonnull CheckingStatus status) {
+        switch (status) {
+            case STALLED:
+                return 0;
+            case FAILED:
+                return 1;
+            case RUNNING:
+                return 2;
+            case CANCELED:
+                return 3;
+            case PENDING:
+                return 4;
+            default:
+                return 5;
+        }
+    }
+
+    @Nonnull
+    private static String formatDuration(long seconds) {
+        if (seconds < 0) {
+            return "";
+        }
+        return String.format("%d:%02d:%02d", seconds / 3600, seconds / 60 % 60, seconds % 60);
+    }
+
+    private interface Formatter {
+        @Nonnull
+        String format(@Nonnull Object value);
+    }
+
+    private static class FormattingRenderer extends DefaultTableCellRenderer {
+        private static final long serialVersionUID = 1L;
+        private final Formatter formatter;
+
+        private FormattingRenderer(@Nonnull Formatter formatter) {
+            this.formatter = formatter;
+            setHorizontalAlignment(SwingConstants.RIGHT);
+        }
+
+        @Override
+        protected void setValue(Object value) {
+            setText(value == null ? "" : formatter.format(value));
+        }
+    }
+
+    private static class StatusRenderer extends DefaultTableCellRenderer {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public Component getTableCellRendererComponent(
+                JTable table, Object value, boolean isSelected, boolean hasFocus, int row, int column) {
+            super.getTableCellRendererComponent(table, value, isSelected, hasFocus, row, column);
+            CheckingStatus status = (CheckingStatus) value;
+            setText(DrivePane.getStatusText(status));
+            if (!isSelected) {
+                setForeground(DrivePane.getStatusColor(status));
+            }
+            return this;
+        }
+    }
+
+    private static class StatusListRenderer extends DefaultListCellRenderer {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public Component getListCellRendererComponent(
+                JList<?> list, Object value, int index, boolean isSelected, boolean cellHasFocus) {
+            super.getListCellRendererComponent(list, value, index, isSelected, cellHasFocus);
+            if (value instanceof CheckingStatus) {
+                CheckingStatus status = (CheckingStatus) value;
+                setText(CheckingStatus.PENDING.equals(status) ? "Pending" : DrivePane.getStatusText(status));
+            }
+            return this;
+        }
+    }
+}
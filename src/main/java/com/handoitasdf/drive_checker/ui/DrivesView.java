@@ -0,0 +1,51 @@
+package com.handoitasdf.drive_checker.ui;
+
+import com.handoitasdf.drive_checker.CheckingStatus;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.swing.JComponent;
+import java.io.File;
+import java.util.List;
+
+/**
+ * A view listing the drives to check, with their selection and checking progress.
+ *
+ * Progress may be reported from the checking threads; everything else is called on the event dispatch thread.
+ */
+public interface DrivesView {
+
+    @Nonnull
+    JComponent getComponent();
+
+    void setListener(@Nullable DrivesPaneListener listener);
+
+    /**
+     * List the drives again in the background, and invoke {@link DrivesPaneListener#onRefreshDone()} when done.
+     */
+    void refresh();
+
+    void setEnabled(boolean enabled);
+
+    @Nonnull
+    List<File> getDrives();
+
+    @Nonnull
+    List<File> getSelectedDrives();
+
+    void setDriveSelected(@Nonnull File drive, boolean selected);
+
+    /**
+     * Set all drives back to pending and clear their progress, before a new run.
+     */
+    void resetCheckStatus();
+
+    void setCheckStatus(@Nonnull File drive, @Nonnull CheckingStatus status);
+
+    void setProgress(@Nonnull File drive, int iteration, long copiedBytes);
+
+    /**
+     * Bind the view to the worker of the current run, so that it may show more details of the drives.
+     */
+    void setWorker(@Nullable DrivesCheckWorker worker);
+}
@@ -4,43 +4,61 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nonnull;
-import javax.swing.SwingWorker;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
 import java.io.Reader;
 import java.io.Writer;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Properties;
-import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 /**
  * Created by icand on 2017/9/3.
+ *
+ * Changes are coalesced: at most one store is pending at any time, and it runs once the debounce window
+ * after the first change has passed. The file is written to a temporary file and renamed over the old one,
+ * so a crash can't leave a truncated file behind. Pending changes are flushed on shutdown.
  */
 public class PropertiesProvider {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(PropertiesProvider.class);
+    private static final long DEFAULT_DEBOUNCE_MILLIS = 500;
 
-    private Properties properties = new Properties();
+    private final Properties properties = new Properties();
     private final File propertyFile;
-    private final ExecutorService executorService = Executors.newSingleThreadExecutor(runnable -> {
-        Thread thread = new Thread(runnable);
+    private final long debounceMillis;
+    private final ScheduledExecutorService executorService = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "properties-store");
         thread.setDaemon(true);
         return thread;
     });
-    private final Properties propertiesToWrite = new Properties();
+    private final Object storeLock = new Object();
+    private boolean dirty = false;
+    private boolean storeScheduled = false;
 
     public PropertiesProvider(@Nonnull File propertyFile) {
+        this(propertyFile, DEFAULT_DEBOUNCE_MILLIS);
+    }
+
+    public PropertiesProvider(@Nonnull File propertyFile, long debounceMillis) {
         this.propertyFile = propertyFile;
+        this.debounceMillis = debounceMillis;
         loadProperties();
+        Runtime.getRuntime().addShutdownHook(new Thread(this::flush, "properties-flush"));
     }
 
     private void loadProperties() {
@@ -60,15 +78,21 @@ public class PropertiesProvider {
     }
 
     public synchronized void setProperty(@Nonnull String propertyName, @Nonnull String propertyValue) {
+        if (Objects.equals(properties.getProperty(propertyName), propertyValue)) {
+            return;
+        }
         LOGGER.debug("Setting property {} to value {}", propertyName, propertyValue);
         properties.put(propertyName, propertyValue);
-        storeProperties();
+        scheduleStore();
     }
 
     public synchronized void removeProperty(@Nonnull String propertyName) {
+        if (!properties.containsKey(propertyName)) {
+            return;
+        }
         LOGGER.debug("Removing property {}", propertyName);
         properties.remove(propertyName);
-        storeProperties();
+        scheduleStore();
     }
 
     @Nonnull
@@ -79,21 +103,65 @@ public class PropertiesProvider {
                         entry -> entry.getValue().toString()));
     }
 
-    private synchronized void storeProperties() {
+    /**
+     * Store the pending changes now.
+     */
+    public void flush() {
 
-        // Make a copy of the properties so that there won't be multiple thread
-        // access a same Properties instance.
-        propertiesToWrite.clear();
-        propertiesToWrite.putAll(properties);
-        executorService.execute(() -> {
-            LOGGER.debug("Storing properties to file {}", propertyFile.getPath());
-            try (FileOutputStream outputStream = new FileOutputStream(propertyFile)) {
-                Writer writer = new OutputStreamWriter(outputStream, StandardCharsets.UTF_8);
-                propertiesToWrite.store(writer, "Drive checker properties");
+        // Stores are serialized, so that an older copy can never overwrite a newer one.
+        synchronized (storeLock) {
+            Properties propertiesToWrite;
+            synchronized (this) {
+                if (!dirty) {
+                    return;
+                }
+                dirty = false;
+
+                // Make a copy of the properties so that the file is written without blocking the setters.
+                propertiesToWrite = new Properties();
+                propertiesToWrite.putAll(properties);
+            }
+            try {
+                storeAtomically(propertiesToWrite);
             } catch (Exception ex) {
                 LOGGER.error("Fail to store properties to file {}", propertyFile.getPath(), ex);
             }
-        });
+        }
+    }
 
+    private synchronized void scheduleStore() {
+        dirty = true;
+        if (storeScheduled) {
+            return;
+        }
+        storeScheduled = true;
+        executorService.schedule(() -> {
+            synchronized (this) {
+                storeScheduled = false;
+            }
+            flush();
+        }, debounceMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void storeAtomically(@Nonnull Properties propertiesToWrite) throws IOException {
+        LOGGER.debug("Storing properties to file {}", propertyFile.getPath());
+        File directory = propertyFile.getAbsoluteFile().getParentFile();
+        File tempFile = File.createTempFile(propertyFile.getName() + ".", ".tmp", directory);
+        try {
+            try (FileOutputStream outputStream = new FileOutputStream(tempFile)) {
+                Writer writer = new OutputStreamWriter(outputStream, StandardCharsets.UTF_8);
+                propertiesToWrite.store(writer, "Drive checker properties");
+                writer.flush();
+                outputStream.getFD().sync();
+            }
+            try {
+                Files.move(tempFile.toPath(), propertyFile.toPath(),
+                        StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException ex) {
+                Files.move(tempFile.toPath(), propertyFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tempFile.toPath());
+        }
     }
 }
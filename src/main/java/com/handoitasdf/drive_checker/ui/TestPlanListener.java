@@ -0,0 +1,23 @@
+package com.handoitasdf.drive_checker.ui;
+
+import com.handoitasdf.drive_checker.CheckingStatus;
+import com.handoitasdf.drive_checker.plan.TestPlanPhase;
+
+import javax.annotation.Nonnull;
+import java.io.File;
+
+/**
+ * Follows the phases of a {@link TestPlanRunner}.
+ */
+interface TestPlanListener {
+
+    /**
+     * Called on the thread of the runner before the worker of a phase is executed, e.g. to show its drives.
+     */
+    void onPhaseStarted(@Nonnull TestPlanPhase phase, @Nonnull DrivesCheckWorker worker);
+
+    /**
+     * Called on the event dispatch thread.
+     */
+    void onDriveStatusChanged(@Nonnull File drive, @Nonnull CheckingStatus status);
+}
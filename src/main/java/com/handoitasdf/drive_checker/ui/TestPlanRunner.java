@@ -0,0 +1,268 @@
+package com.handoitasdf.drive_checker.ui;
+
+import com.handoitasdf.drive_checker.CheckOptions;
+import com.handoitasdf.drive_checker.CheckingStatus;
+import com.handoitasdf.drive_checker.DriveChecker;
+import com.handoitasdf.drive_checker.RetainedFiles;
+import com.handoitasdf.drive_checker.plan.PhaseType;
+import com.handoitasdf.drive_checker.plan.TestPlan;
+import com.handoitasdf.drive_checker.plan.TestPlanPhase;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.File;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the phases of a {@link TestPlan} one after another without user interaction, each with a
+ * {@link DrivesCheckWorker} of its own, and judges every drive against the thresholds of every phase.
+ *
+ * The copies of the fill phases are kept for the retention phases following them, and deleted once the plan
+ * is done.
+ */
+class TestPlanRunner {
+    private static final Logger LOGGER = LoggerFactory.getLogger(TestPlanRunner.class);
+    private final TestPlan plan;
+    private final List<File> drives;
+    private final File testFile;
+    private final List<CheckOptions> phaseOptions = new ArrayList<>();
+    private final Map<File, RetainedFiles> retainedFiles = new HashMap<>();
+    private final Map<File, String> failures = new LinkedHashMap<>();
+    private final DriveCheckReportGenerator reportGenerator = new DriveCheckReportGenerator();
+    private final CountDownLatch canceled = new CountDownLatch(1);
+    private volatile DrivesCheckWorker currentWorker;
+    private volatile String report = "";
+    private TestPlanListener listener;
+
+    /**
+     * @param testFile The file copied by the phases without a data pattern, or null if no phase copies it.
+     * @throws IllegalArgumentException If the options of a phase are invalid, or if a phase needs the test file
+     *                                  but there isn't one.
+     */
+    TestPlanRunner(@Nonnull TestPlan plan, @Nonnull List<File> drives, @Nullable File testFile) {
+        this.plan = plan;
+        this.drives = new ArrayList<>(drives);
+        this.testFile = testFile != null ? testFile : new File(plan.getName());
+        for (TestPlanPhase phase : plan.getPhases()) {
+            CheckOptions options;
+            try {
+                options = new CheckOptionsProperties(phase.getOptions()).load();
+            } catch (IllegalArgumentException ex) {
+                throw new IllegalArgumentException("Phase " + phase.getName() + ": " + ex.getMessage(), ex);
+            }
+            boolean copiesTestFile = CheckOptions.Workload.LARGE_FILE.equals(options.getWorkload())
+                    || CheckOptions.Workload.FILL.equals(options.getWorkload());
+            boolean copiesTree = CheckOptions.Workload.LARGE_FILE.equals(options.getWorkload())
+                    && testFile != null
+                    && testFile.isDirectory();
+            if (copiesTestFile && options.getDataPattern() == null && !copiesTree
+                    && (testFile == null || !testFile.isFile())) {
+                throw new IllegalArgumentException("Phase " + phase.getName()
+                        + " copies the test file, but there is no test file");
+            }
+            phaseOptions.add(options);
+        }
+    }
+
+    void setListener(@Nullable TestPlanListener listener) {
+        this.listener = listener;
+    }
+
+    @Nullable
+    DrivesCheckWorker getCurrentWorker() {
+        return currentWorker;
+    }
+
+    /**
+     * @return The report of the plan, complete once {@link #run} has returned.
+     */
+    @Nonnull
+    String getReport() {
+        return report;
+    }
+
+    /**
+     * Stop the phase in progress and skip the following ones.
+     */
+    void cancel() {
+        canceled.countDown();
+        DrivesCheckWorker worker = currentWorker;
+        if (worker != null) {
+            worker.cancel(true);
+        }
+    }
+
+    /**
+     * Run the plan and wait for it.
+     *
+     * @return True if all drives pass all their phases.
+     */
+    boolean run() throws InterruptedException {
+        Instant startTime = Instant.now();
+        StringBuilder phaseReports = new StringBuilder();
+        LOGGER.info("Running test plan {} on {} drives", plan.getName(), drives.size());
+        try {
+            List<TestPlanPhase> phases = plan.getPhases();
+            for (int i = 0; i < phases.size() && !isCanceled(); ++i) {
+                phaseReports.append(runPhase(phases.get(i), phaseOptions.get(i), hasRetentionAfter(i)));
+            }
+        } finally {
+            for (RetainedFiles files : retainedFiles.values()) {
+                files.deleteAll();
+            }
+            currentWorker = null;
+        }
+        boolean passed = failures.isEmpty() && !isCanceled();
+        report = generateReport(startTime, Instant.now(), passed) + phaseReports;
+        LOGGER.info("Test plan {} is done: {}", plan.getName(), passed ? "passed" : "failed");
+        return passed;
+    }
+
+    @Nonnull
+    private String runPhase(@Nonnull TestPlanPhase phase, @Nonnull CheckOptions options, boolean retain)
+            throws InterruptedException {
+        StringBuilder builder = new StringBuilder();
+        builder.append(System.lineSeparator())
+                .append("## Phase ")
+                .append(phase.getName())
+                .append(" (")
+                .append(phase.getType().name().toLowerCase())
+                .append(')')
+                .append(System.lineSeparator());
+        List<File> phaseDrives = new ArrayList<>();
+        for (File drive : drives) {
+            if (phase.selects(drive) && !(plan.isStopOnFailure() && failures.containsKey(drive))) {
+                phaseDrives.add(drive);
+            }
+        }
+        if (phaseDrives.isEmpty()) {
+            LOGGER.info("Skipping phase {}, no drive is left for it", phase.getName());
+            return builder.append("Skipped: no drive").append(System.lineSeparator()).toString();
+        }
+        if (phase.getWaitMillis() > 0) {
+            LOGGER.info("Waiting {} ms before phase {}", phase.getWaitMillis(), phase.getName());
+            if (canceled.await(phase.getWaitMillis(), TimeUnit.MILLISECONDS)) {
+                return builder.append("Canceled while waiting").append(System.lineSeparator()).toString();
+            }
+        }
+        LOGGER.info("Running phase {} on {} drives", phase.getName(), phaseDrives.size());
+        DrivesCheckWorker worker = new DrivesCheckWorker(phaseDrives, testFile, phase.getIterationCount(), options);
+        if (retain || PhaseType.RETENTION_VERIFY.equals(phase.getType())) {
+            for (DriveChecker checker : worker.getCheckers()) {
+                checker.setRetainedFiles(
+                        retainedFiles.computeIfAbsent(checker.getDrive(), drive -> new RetainedFiles()));
+            }
+        }
+        CountDownLatch stopped = new CountDownLatch(1);
+        worker.setListener(new DrivesCheckListener() {
+            @Override
+            public void onStart() {
+            }
+
+            @Override
+            public void onStop() {
+                stopped.countDown();
+            }
+
+            @Override
+            public void onDriveStatusChanged(@Nonnull File drive, @Nonnull CheckingStatus checkStatus) {
+                if (listener != null) {
+                    listener.onDriveStatusChanged(drive, checkStatus);
+                }
+            }
+        });
+        currentWorker = worker;
+        if (listener != null) {
+            listener.onPhaseStarted(phase, worker);
+        }
+        if (isCanceled()) {
+            return builder.append("Canceled").append(System.lineSeparator()).toString();
+        }
+        worker.execute();
+        stopped.await();
+        if (worker.getStartTime() != null) {
+            builder.append(reportGenerator.generateReport(worker));
+        }
+        builder.append("Verdict:").append(System.lineSeparator());
+        for (DriveChecker checker : worker.getCheckers()) {
+            String failure = judge(phase, checker);
+            builder.append("  ")
+                    .append(checker.getDrive().getPath())
+                    .append(": ")
+                    .append(failure == null ? "passed" : "failed, " + failure)
+                    .append(System.lineSeparator());
+            if (failure != null && !failures.containsKey(checker.getDrive())) {
+                failures.put(checker.getDrive(), "phase " + phase.getName() + ", " + failure);
+            }
+        }
+        return builder.toString();
+    }
+
+    /**
+     * @return Why the drive fails the phase, or null if it passes.
+     */
+    @Nullable
+    private static String judge(@Nonnull TestPlanPhase phase, @Nonnull DriveChecker checker) {
+        if (!CheckingStatus.SUCCESS.equals(checker.getStatus())) {
+            Exception reason = checker.getFailedReason();
+            return checker.getStatus().name().toLowerCase() + (reason == null ? "" : " (" + reason.getMessage() + ")");
+        }
+        List<String> missed = phase.getThresholds().evaluate(checker);
+        return missed.isEmpty() ? null : String.join("; ", missed);
+    }
+
+    private boolean hasRetentionAfter(int phaseIndex) {
+        List<TestPlanPhase> phases = plan.getPhases();
+        if (!PhaseType.FILL.equals(phases.get(phaseIndex).getType())) {
+            return false;
+        }
+        for (int i = phaseIndex + 1; i < phases.size(); ++i) {
+            if (PhaseType.RETENTION_VERIFY.equals(phases.get(i).getType())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isCanceled() {
+        return canceled.getCount() == 0;
+    }
+
+    @Nonnull
+    private String generateReport(@Nonnull Instant startTime, @Nonnull Instant doneTime, boolean passed) {
+        StringBuilder builder = new StringBuilder();
+        builder.append("Test plan: ")
+                .append(plan.getName())
+                .append(System.lineSeparator())
+                .append("Start time: ")
+                .append(DriveCheckReportGenerator.formatInstant(startTime))
+                .append(System.lineSeparator())
+                .append("Done time: ")
+                .append(DriveCheckReportGenerator.formatInstant(doneTime))
+                .append(System.lineSeparator())
+                .append("Elapsed time: ")
+                .append(DriveCheckReportGenerator.formatElapsedTime(startTime, doneTime))
+                .append(System.lineSeparator())
+                .append("Result: ")
+                .append(passed ? "Passed" : isCanceled() ? "Canceled" : "Failed")
+                .append(System.lineSeparator());
+        for (File drive : drives) {
+            String failure = failures.get(drive);
+            builder.append("  ")
+                    .append(drive.getPath())
+                    .append(": ")
+                    .append(failure == null ? "passed" : "failed in " + failure)
+                    .append(System.lineSeparator());
+        }
+        return builder.toString();
+    }
+}
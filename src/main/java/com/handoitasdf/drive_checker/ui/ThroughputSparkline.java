@@ -0,0 +1,76 @@
+package com.handoitasdf.drive_checker.ui;
+
+import com.handoitasdf.drive_checker.SampleRingBuffer;
+
+import javax.swing.JComponent;
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics;
+
+/**
+ * A small line chart of the recent throughput of a drive.
+ *
+ * The line turns red when the latest sample drops far below the peak of the window, so a stalling drive or
+ * one falling off a throughput cliff stands out. Samples are added and painted on the event dispatch thread;
+ * the point arrays are allocated once, so painting doesn't allocate.
+ */
+public class ThroughputSparkline extends JComponent {
+    private static final long serialVersionUID = 1L;
+    private static final int DEFAULT_CAPACITY = 120;
+    private static final int PREFERRED_WIDTH = 80;
+    private static final int PREFERRED_HEIGHT = 24;
+    private static final double SICK_RATIO = 0.25;
+    private static final Color HEALTHY_COLOR = new Color(0, 160, 0);
+    private static final Color SICK_COLOR = Color.RED;
+    private final SampleRingBuffer samples;
+    private final int[] xPoints;
+    private final int[] yPoints;
+
+    public ThroughputSparkline() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public ThroughputSparkline(int capacity) {
+        samples = new SampleRingBuffer(capacity);
+        xPoints = new int[capacity];
+        yPoints = new int[capacity];
+        setPreferredSize(new Dimension(PREFERRED_WIDTH, PREFERRED_HEIGHT));
+    }
+
+    /**
+     * Add a sample of MB/s. The chart is repainted by the caller's sampling rate, which caps the frame rate.
+     */
+    public void addSample(double mbps) {
+        samples.add(Math.max(0, mbps));
+        repaint();
+    }
+
+    public void clear() {
+        samples.clear();
+        repaint();
+    }
+
+    @Override
+    protected void paintComponent(Graphics graphics) {
+        super.paintComponent(graphics);
+        int count = samples.size();
+        if (count < 2) {
+            return;
+        }
+        int width = getWidth() - 1;
+        int height = getHeight() - 1;
+        double max = samples.getMax();
+        for (int i = 0; i < count; ++i) {
+
+            // The latest sample is at the right edge; the chart fills up from the right.
+            xPoints[i] = width - (count - 1 - i) * width / (samples.capacity() - 1);
+            yPoints[i] = max <= 0 ? height : height - (int) (samples.get(i) / max * height);
+        }
+        graphics.setColor(isSick(max) ? SICK_COLOR : HEALTHY_COLOR);
+        graphics.drawPolyline(xPoints, yPoints, count);
+    }
+
+    private boolean isSick(double max) {
+        return max > 0 && samples.getLatest() < max * SICK_RATIO;
+    }
+}